@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacFreeTextQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacNumericQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacRegexMatchQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.isaac.dos.content.ContentBase;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Quantity;
+import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
+import uk.ac.cam.cl.dtg.segue.dao.content.BenchmarkFixtures;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures marking answers to the numeric, regex match and free text questions of the fixture question page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+    // A fixed content version, so question rules are compiled once as they would be between content changes:
+    private static final String CONTENT_SHA = "benchmark";
+
+    private final ValidatorRuleCache ruleCache = new ValidatorRuleCache(
+            new ContentCache(ContentCache.DEFAULT_MAX_WEIGHT_PER_VERSION, false));
+    private final IsaacNumericValidator numericValidator = new IsaacNumericValidator(ruleCache);
+    private final IsaacRegexMatchValidator regexMatchValidator = new IsaacRegexMatchValidator(ruleCache);
+    private final IsaacFreeTextValidator freeTextValidator = new IsaacFreeTextValidator(ruleCache);
+
+    private IsaacNumericQuestion numericQuestion;
+    private IsaacRegexMatchQuestion regexMatchQuestion;
+    private IsaacFreeTextQuestion freeTextQuestion;
+
+    private Quantity correctQuantity;
+    private Quantity wrongUnitsQuantity;
+    private Quantity wrongSignificantFiguresQuantity;
+    private StringChoice correctRegexAnswer;
+    private StringChoice unmatchedRegexAnswer;
+    private StringChoice correctFreeTextAnswer;
+    private StringChoice unmatchedFreeTextAnswer;
+
+    @Setup
+    public void setUp() {
+        Content questionPage = BenchmarkFixtures.loadContent(BenchmarkFixtures.QUESTION_PAGE);
+        numericQuestion = findFirst(questionPage, IsaacNumericQuestion.class);
+        regexMatchQuestion = findFirst(questionPage, IsaacRegexMatchQuestion.class);
+        freeTextQuestion = findFirst(questionPage, IsaacFreeTextQuestion.class);
+
+        correctQuantity = new Quantity("3.00", "m\\,s^{-1}");
+        wrongUnitsQuantity = new Quantity("3.0", "m\\,s^{-2}");
+        wrongSignificantFiguresQuantity = new Quantity("3.0000", "m\\,s^{-1}");
+        correctRegexAnswer = stringChoice("  Acceleration ");
+        unmatchedRegexAnswer = stringChoice("the gradient of the displacement-time graph");
+        correctFreeTextAnswer = stringChoice("Because frictoin and air resistance act against its motion");
+        unmatchedFreeTextAnswer = stringChoice("It runs out of energy because the motor stops pushing it along");
+    }
+
+    @Benchmark
+    public QuestionValidationResponse numericCorrect() {
+        return numericValidator.validateQuestionResponse(numericQuestion, CONTENT_SHA, correctQuantity);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse numericWrongUnits() {
+        return numericValidator.validateQuestionResponse(numericQuestion, CONTENT_SHA, wrongUnitsQuantity);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse numericWrongSignificantFigures() {
+        return numericValidator.validateQuestionResponse(numericQuestion, CONTENT_SHA, wrongSignificantFiguresQuantity);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse regexMatchCorrect() {
+        return regexMatchValidator.validateQuestionResponse(regexMatchQuestion, CONTENT_SHA, correctRegexAnswer);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse regexMatchUnmatched() {
+        return regexMatchValidator.validateQuestionResponse(regexMatchQuestion, CONTENT_SHA, unmatchedRegexAnswer);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse freeTextCorrect() {
+        return freeTextValidator.validateQuestionResponse(freeTextQuestion, CONTENT_SHA, correctFreeTextAnswer);
+    }
+
+    @Benchmark
+    public QuestionValidationResponse freeTextUnmatched() {
+        return freeTextValidator.validateQuestionResponse(freeTextQuestion, CONTENT_SHA, unmatchedFreeTextAnswer);
+    }
+
+    private static StringChoice stringChoice(final String value) {
+        StringChoice choice = new StringChoice();
+        choice.setValue(value);
+        return choice;
+    }
+
+    /**
+     * @return the first content of the given type in a depth first search of the content, or null if there is none.
+     */
+    private static <T extends ContentBase> T findFirst(final ContentBase content, final Class<T> type) {
+        if (type.isInstance(content)) {
+            return type.cast(content);
+        }
+        if (content instanceof Content && ((Content) content).getChildren() != null) {
+            for (ContentBase child : ((Content) content).getChildren()) {
+                T found = findFirst(child, type);
+                if (null != found) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+}
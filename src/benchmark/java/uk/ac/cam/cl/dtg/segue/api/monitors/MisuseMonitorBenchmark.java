@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares misuse monitor implementations when many request threads notify events at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MisuseMonitorBenchmark {
+    private static final String EVENT = "BenchmarkEvent";
+    private static final int AGENT_COUNT = 1024;
+
+    /**
+     * The monitor under test, shared by every benchmark thread.
+     */
+    @State(Scope.Benchmark)
+    public static class MonitorState {
+        @Param({"InMemoryMisuseMonitor", "ConcurrentMisuseMonitor"})
+        public String implementation;
+
+        IMisuseMonitor monitor;
+        String[] agents;
+
+        @Setup
+        public void setUp() {
+            monitor = "InMemoryMisuseMonitor".equals(implementation)
+                    ? new InMemoryMisuseMonitor() : new ConcurrentMisuseMonitor();
+            monitor.registerHandler(EVENT, new UnlimitedHandler());
+            agents = new String[AGENT_COUNT];
+            for (int i = 0; i < AGENT_COUNT; i++) {
+                agents[i] = "agent-" + i;
+            }
+        }
+    }
+
+    /**
+     * Each thread works through its own run of agents, so threads rarely share a counter.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+        int next;
+
+        @Setup
+        public void setUp() {
+            next = THREAD_IDS.getAndIncrement() * (AGENT_COUNT / 8);
+        }
+    }
+
+    @Benchmark
+    public void notifyEventDistinctAgents(final MonitorState state, final ThreadState thread)
+            throws SegueResourceMisuseException {
+        thread.next = (thread.next + 1) % AGENT_COUNT;
+        state.monitor.notifyEvent(state.agents[thread.next], EVENT);
+    }
+
+    @Benchmark
+    public void notifyEventSameAgent(final MonitorState state) throws SegueResourceMisuseException {
+        state.monitor.notifyEvent(state.agents[0], EVENT);
+    }
+
+    /**
+     * A handler with no hard threshold, so no benchmark call ever throws.
+     */
+    private static class UnlimitedHandler implements IMisuseHandler {
+        @Override
+        public Integer getSoftThreshold() {
+            return null;
+        }
+
+        @Override
+        public Integer getHardThreshold() {
+            return null;
+        }
+
+        @Override
+        public Integer getAccountingIntervalInSeconds() {
+            return 3600;
+        }
+
+        @Override
+        public void executeSoftThresholdAction(final String message) {
+        }
+
+        @Override
+        public void executeHardThresholdAction(final String message) {
+        }
+    }
+}
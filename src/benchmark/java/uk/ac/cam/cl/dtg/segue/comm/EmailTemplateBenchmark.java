@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.segue.dao.content.BenchmarkFixtures;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling in the tags of an event booking email, as is done for every templated email sent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateBenchmark {
+    private EmailManager emailManager;
+    private String template;
+    private Properties templateProperties;
+
+    @Setup
+    public void setUp() {
+        // Only the global string tokens are needed to complete templates:
+        emailManager = new EmailManager(null, null, null, null, null, ImmutableMap.of(
+                "sig", "<p>Isaac Physics Project</p>",
+                "contactUsName", "Isaac Physics events team",
+                "contactUsURL", "https://isaacphysics.org/contact",
+                "replyToAddress", "events@isaacphysics.org"));
+        template = BenchmarkFixtures.load(BenchmarkFixtures.EMAIL_TEMPLATE);
+
+        templateProperties = new Properties();
+        templateProperties.putAll(ImmutableMap.of(
+                "sig", "<p>Isaac Physics Project</p>",
+                "contactUsName", "Isaac Physics events team",
+                "contactUsURL", "https://isaacphysics.org/contact",
+                "replyToAddress", "events@isaacphysics.org"));
+        templateProperties.put("givenName", "Ada");
+        templateProperties.put("familyName", "Lovelace");
+        templateProperties.put("bookingStatus", "CONFIRMED");
+        templateProperties.put("myBookedEventsURL", "https://isaacphysics.org/events?show_booked_only=true");
+        templateProperties.put("event.title", "Mechanics Masterclass");
+        templateProperties.put("event.date", "Saturday 14 November 2026 at 10:00");
+        templateProperties.put("event.location.address.addressLine1", "Cavendish Laboratory");
+        templateProperties.put("event.location.address.town", "Cambridge");
+        templateProperties.put("event.bookingDeadline", "Friday 6 November 2026");
+        templateProperties.put("event.preparationURL", "https://isaacphysics.org/gameboards#mechanics_prep");
+        templateProperties.put("event.title_HTML", "<em>Mechanics Masterclass</em>");
+    }
+
+    @Benchmark
+    public String completePlainTextTemplate() {
+        return emailManager.completeTemplateWithProperties(template, templateProperties, false);
+    }
+
+    @Benchmark
+    public String completeHtmlTemplate() {
+        return emailManager.completeTemplateWithProperties(template, templateProperties, true);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import org.apache.commons.io.IOUtils;
+import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shared fixtures for the benchmarks: representative content, and a content mapper configured as it is in the API.
+ */
+public final class BenchmarkFixtures {
+    public static final String QUESTION_PAGE = "fixtures/question_page.json";
+    public static final String EMAIL_TEMPLATE = "fixtures/email_template.html";
+
+    private static ContentMapper contentMapper;
+
+    /**
+     * Utility class.
+     */
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param name - the path of the fixture on the classpath.
+     * @return the contents of the fixture.
+     */
+    public static String load(final String name) {
+        try (InputStream fixture = BenchmarkFixtures.class.getClassLoader().getResourceAsStream(name)) {
+            if (null == fixture) {
+                throw new IllegalArgumentException("No benchmark fixture named " + name);
+            }
+            return IOUtils.toString(fixture, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a content mapper with every content type registered; scanning for the types is slow, so it is shared.
+     */
+    public static synchronized ContentMapper getContentMapper() {
+        if (null == contentMapper) {
+            contentMapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg"));
+        }
+        return contentMapper;
+    }
+
+    /**
+     * @param name - the path of a content JSON fixture on the classpath.
+     * @return the content as a domain object.
+     */
+    public static Content loadContent(final String name) {
+        try {
+            return getContentMapper().getSharedContentObjectMapper().readValue(load(name), Content.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a question page from the search index into the DTO sent to users: Jackson deserialisation of the
+ * content JSON, then Orika mapping of the domain object to its DTO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentMapperBenchmark {
+    private ContentMapper contentMapper;
+    private ObjectMapper objectMapper;
+    private String questionPageJson;
+    private Content questionPage;
+
+    @Setup
+    public void setUp() {
+        contentMapper = BenchmarkFixtures.getContentMapper();
+        objectMapper = contentMapper.getSharedContentObjectMapper();
+        questionPageJson = BenchmarkFixtures.load(BenchmarkFixtures.QUESTION_PAGE);
+        questionPage = BenchmarkFixtures.loadContent(BenchmarkFixtures.QUESTION_PAGE);
+        // Build the Orika mappers now, rather than in the first measured call:
+        contentMapper.getDTOByDO(questionPage);
+    }
+
+    @Benchmark
+    public Content deserialiseQuestionPage() throws IOException {
+        return objectMapper.readValue(questionPageJson, Content.class);
+    }
+
+    @Benchmark
+    public ContentDTO mapQuestionPageToDTO() {
+        return contentMapper.getDTOByDO(questionPage);
+    }
+
+    @Benchmark
+    public ContentDTO deserialiseAndMapQuestionPage() throws IOException {
+        return contentMapper.getDTOByDO(objectMapper.readValue(questionPageJson, Content.class));
+    }
+}
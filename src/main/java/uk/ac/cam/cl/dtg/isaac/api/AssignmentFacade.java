@@ -19,6 +19,7 @@ import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.opencsv.CSVWriter;
 import io.swagger.v3.oas.annotations.Operation;
@@ -36,6 +37,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.apache.commons.lang3.time.DateUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.jboss.resteasy.annotations.GZIP;
@@ -45,7 +47,6 @@ import uk.ac.cam.cl.dtg.isaac.api.managers.AssignmentManager;
 import uk.ac.cam.cl.dtg.isaac.api.managers.DuplicateAssignmentException;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
 import uk.ac.cam.cl.dtg.isaac.api.services.AssignmentService;
-import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentStatusDTO;
@@ -67,8 +68,11 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -510,19 +514,7 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             for (GameboardItem questionPage : gameboard.getContents()) {
                 questionPageIds.add(questionPage.getId());
             }
-            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttempts;
-            questionAttempts = this.questionManager.getMatchingQuestionAttempts(groupMembers, questionPageIds);
-
-            Map<RegisteredUserDTO, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
-                    questionAttemptsForAllUsersOfInterest = new HashMap<>();
-            for (RegisteredUserDTO user : groupMembers) {
-                questionAttemptsForAllUsersOfInterest.put(user, questionAttempts.get(user.getId()));
-            }
-
             List<String> questionIds = Lists.newArrayList();
-            List<String[]> rows = Lists.newArrayList();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
@@ -555,7 +547,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 }
             }
             headerRow.add("% Correct");
-            rows.add(headerRow.toArray(new String[0]));
 
             List<String> totalsRow = Lists.newArrayList();
             if (includeUserIDs) {
@@ -563,79 +554,35 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             }
             Collections.addAll(totalsRow, ",Correct %".split(","));
 
-            Map<RegisteredUserDTO, Map<String, Integer>> userQuestionDataMap = new HashMap<>();
-
-            // FIXME vvv This is duplicated code vvv
-            // This is properly horrible, can someone rewrite this whole thing?
-            questionAttemptsForAllUsersOfInterest.forEach((user, attempts) -> {
-                Map<String, List<LightweightQuestionValidationResponse>> attemptsByQuestionId = new HashMap<>();
-                for (String pageId : attempts.keySet()) {
-                    Map<String, List<LightweightQuestionValidationResponse>> a = attempts.get(pageId);
-                    for (String questionId : a.keySet()) {
-                        List l = a.get(questionId);
-                        attemptsByQuestionId.put(questionId, l);
-                    }
-                }
-                Map<String, Integer> userAttemptsSummary = attemptsByQuestionId.entrySet().stream().collect(
-                        Collectors.toMap(
-                                Entry::getKey,
-                                e -> e.getValue().stream().map(LightweightQuestionValidationResponse::isCorrect)
-                                        .reduce(false, (a, b) -> a || b)
-                        )
-                ).entrySet().stream().collect(Collectors.toMap(
-                        Entry::getKey,
-                        e -> e.getValue() ? 1 : 0
-                ));
-                userQuestionDataMap.put(user, userAttemptsSummary);
-            });
-            // FIXME ^^^ This is duplicated code ^^^
-            userQuestionDataMap.forEach((user, outcome) -> {
-                questionIds.forEach(questionId -> {
-                    outcome.putIfAbsent(questionId, null);
-                });
-            });
-
-            List<String[]> resultRows = Lists.newArrayList();
+            // The totals come before the rows for each user, so we need every user's results before writing anything.
+            // Only keep whether each question part was answered correctly (null if not attempted), looking them up a
+            // batch of users at a time, rather than holding every attempt by every member of the group:
+            List<UserSummaryDTO> userSummaries = Lists.newArrayList();
+            List<Boolean[]> userResults = Lists.newArrayList();
             int[] columnTotals = new int[questionIds.size()];
-            for (RegisteredUserDTO user : groupMembers) {
-                ArrayList<String> resultRow = Lists.newArrayList();
-                UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
-                        userManager.convertToUserSummaryObject(user));
-
-                resultRow.add(userSummary.getFamilyName());
-                resultRow.add(userSummary.getGivenName());
-                if (includeUserIDs) {
-                    resultRow.add(userSummary.getId().toString());
-                }
-                // can the user access the data?
-                if (userSummary.isAuthorisedFullAccess()) {
-                    int totalCorrect = 0;
-                    int columnNumber = 0;
-                    for (String questionId : questionIds) {
-                        Integer resultForQuestion = userQuestionDataMap.get(user).get(questionId);
-
-                        if (null == resultForQuestion) {
-                            resultRow.add("");
-                        } else {
-                            resultRow.add(String.format("%d", resultForQuestion));
-                        }
-
-                        if (resultForQuestion != null && resultForQuestion == 1) {
-                            totalCorrect++;
-                            columnTotals[columnNumber] += 1;
+            for (List<RegisteredUserDTO> batch : Iterables.partition(groupMembers, CSV_DOWNLOAD_USER_BATCH_SIZE)) {
+                Map<Long, Map<String, Boolean>> questionPartCorrectness =
+                        this.questionManager.getQuestionPartCorrectness(batch, questionPageIds);
+
+                for (RegisteredUserDTO user : batch) {
+                    UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
+                            userManager.convertToUserSummaryObject(user));
+                    Map<String, Boolean> userCorrectness =
+                            questionPartCorrectness.getOrDefault(user.getId(), Collections.emptyMap());
+
+                    Boolean[] results = new Boolean[questionIds.size()];
+                    // can the user access the data?
+                    if (userSummary.isAuthorisedFullAccess()) {
+                        for (int columnNumber = 0; columnNumber < questionIds.size(); columnNumber++) {
+                            results[columnNumber] = userCorrectness.get(questionIds.get(columnNumber));
+                            if (Boolean.TRUE.equals(results[columnNumber])) {
+                                columnTotals[columnNumber] += 1;
+                            }
                         }
-                        columnNumber++;
-                    }
-
-                    double percentageCorrect = ((double) totalCorrect / questionIds.size()) * 100F;
-                    resultRow.add(percentageFormat.format(percentageCorrect));
-
-                } else {
-                    for (@SuppressWarnings("unused") String questionId : questionIds) {
-                        resultRow.add(NOT_SHARING);
                     }
+                    userSummaries.add(userSummary);
+                    userResults.add(results);
                 }
-                Collections.addAll(resultRows, resultRow.toArray(new String[0]));
             }
 
             this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_ASSIGNMENT_PROGRESS_CSV,
@@ -648,16 +595,54 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 totalsRow.add(percentageFormat.format(percentageCorrect));
             }
 
-            rows.add(totalsRow.toArray(new String[0]));
             String userInfoHeader = includeUserIDs ? "Last Name,First Name,User ID" : "Last Name,First Name";
-            rows.add(userInfoHeader.split(","));
-            rows.addAll(resultRows);
-            csvWriter.writeAll(rows);
-            csvWriter.close();
 
-            headerBuilder.append(stringWriter.toString());
-            // get game manager completion information for this assignment.
-            return Response.ok(headerBuilder.toString())
+            // Write the rows straight to the response, rather than building the whole file as a string first:
+            StreamingOutput csvFile = output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                writer.write(headerBuilder.toString());
+                CSVWriter csvWriter = new CSVWriter(writer);
+                csvWriter.writeNext(headerRow.toArray(new String[0]));
+                csvWriter.writeNext(totalsRow.toArray(new String[0]));
+                csvWriter.writeNext(userInfoHeader.split(","));
+
+                for (int userIndex = 0; userIndex < userSummaries.size(); userIndex++) {
+                    UserSummaryDTO userSummary = userSummaries.get(userIndex);
+                    ArrayList<String> resultRow = Lists.newArrayList();
+                    resultRow.add(userSummary.getFamilyName());
+                    resultRow.add(userSummary.getGivenName());
+                    if (includeUserIDs) {
+                        resultRow.add(userSummary.getId().toString());
+                    }
+
+                    if (userSummary.isAuthorisedFullAccess()) {
+                        int totalCorrect = 0;
+                        for (Boolean resultForQuestion : userResults.get(userIndex)) {
+                            if (null == resultForQuestion) {
+                                resultRow.add("");
+                            } else {
+                                resultRow.add(resultForQuestion ? "1" : "0");
+                            }
+
+                            if (Boolean.TRUE.equals(resultForQuestion)) {
+                                totalCorrect++;
+                            }
+                        }
+
+                        double percentageCorrect = ((double) totalCorrect / questionIds.size()) * 100F;
+                        resultRow.add(percentageFormat.format(percentageCorrect));
+
+                    } else {
+                        for (@SuppressWarnings("unused") String questionId : questionIds) {
+                            resultRow.add(NOT_SHARING);
+                        }
+                    }
+                    csvWriter.writeNext(resultRow.toArray(new String[0]));
+                }
+                csvWriter.flush();
+            };
+
+            return Response.ok(csvFile)
                     .header("Content-Disposition", "attachment; filename=assignment_progress.csv")
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
 
@@ -668,8 +653,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown database error.").toResponse();
         } catch (ContentManagerException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown content database error.").toResponse();
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
@@ -719,10 +702,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             List<RegisteredUserDTO> groupMembers;
             groupMembers = this.groupManager.getUsersInGroup(group);
 
-            // String: question part id
-            // Integer: question part result
-            Map<RegisteredUserDTO, Map<GameboardDTO, Map<String, Integer>>> grandTable = new HashMap<>();
-            // Retrieve each user's progress data and cram everything into a Grand Table for later consumption
             List<String> gameboardsIds = assignments.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
             List<GameboardDTO> gameboards = gameManager.getGameboards(gameboardsIds);
 
@@ -736,53 +715,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             }
             List<GameboardItem> gameboardItems = gameboards.stream().map(GameboardDTO::getContents).flatMap(Collection::stream).collect(Collectors.toList());
             List<String> questionPageIds = gameboardItems.stream().map(GameboardItem::getId).collect(Collectors.toList());
-            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttempts;
-            try {
-                questionAttempts = this.questionManager.getMatchingQuestionAttempts(groupMembers, questionPageIds);
-            } catch (IllegalArgumentException e) {
-                questionAttempts = new HashMap<>();
-            }
-            Map<RegisteredUserDTO, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttemptsForAllUsersOfInterest = new HashMap<>();
-            for (RegisteredUserDTO user : groupMembers) {
-                questionAttemptsForAllUsersOfInterest.put(user, questionAttempts.get(user.getId()));
-            }
-
-            for (GameboardDTO gameboard : gameboards) {
-                Map<RegisteredUserDTO, Map<String, Integer>> userQuestionDataMap = new HashMap<>();
-
-                // FIXME vvv This is duplicated code vvv
-                // This is properly horrible, can someone rewrite this whole thing?
-                questionAttemptsForAllUsersOfInterest.forEach((user, attempts) -> {
-                    Map<String, List<LightweightQuestionValidationResponse>> attemptsByQuestionId = new HashMap<>();
-                    for (String pageId : attempts.keySet()) {
-                        Map<String, List<LightweightQuestionValidationResponse>> a = attempts.get(pageId);
-                        for (String questionId : a.keySet()) {
-                            List l = a.get(questionId);
-                            attemptsByQuestionId.put(questionId, l);
-                        }
-                    }
-                    Map<String, Integer> userAttemptsSummary = attemptsByQuestionId.entrySet().stream().collect(
-                            Collectors.toMap(
-                                    Entry::getKey,
-                                    e -> e.getValue().stream().map(LightweightQuestionValidationResponse::isCorrect)
-                                            .reduce(false, (a, b) -> a || b)
-                            )
-                    ).entrySet().stream().collect(Collectors.toMap(
-                            Entry::getKey,
-                            e -> e.getValue() ? 1 : 0
-                    ));
-                    userQuestionDataMap.put(user, userAttemptsSummary);
-                });
-                // FIXME ^^^ This is duplicated code ^^^
-                for (RegisteredUserDTO student : userQuestionDataMap.keySet()) {
-                    Map<GameboardDTO, Map<String, Integer>> entry = grandTable.get(student);
-                    if (null == entry) {
-                        entry = Maps.newHashMap();
-                    }
-                    entry.put(gameboard, userQuestionDataMap.get(student));
-                    grandTable.put(student, entry);
-                }
-            }
 
             // Add a header row with due dates
             ArrayList<String> dueDateRow = Lists.newArrayList();
@@ -852,106 +784,131 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 }
             }
 
-            // Moving on to actual rows...
-            ArrayList<String[]> rows = Lists.newArrayList();
-            rows.add(dueDateRow.toArray(new String[0]));
-            rows.add(headerRow.toArray(new String[0]));
+            StringBuilder headerBuilder = new StringBuilder();
+            if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
+                headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
+            }
+            headerBuilder.append(String.format("Assignments for '%s' (%s)\nDownloaded on %s\nGenerated by: %s %s\n\n",
+                        group.getGroupName(), group.getId(), new Date(), currentlyLoggedInUser.getGivenName(),
+                        currentlyLoggedInUser.getFamilyName()));
 
-            for (RegisteredUserDTO groupMember : groupMembers) {
-                // FIXME Some room for improvement here, as we can retrieve all the users with a single query.
-                // FIXME Not urgent, as the dominating query is the one that retrieves question attempts above.
-                UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
-                        userManager.convertToUserSummaryObject(groupMember));
-
-                ArrayList<String> row = Lists.newArrayList();
-                Map<GameboardDTO, Map<String, Integer>> userAssignments = grandTable.get(groupMember);
-                List<Float> assignmentPercentages = Lists.newArrayList();
-                List<Integer> marks = Lists.newArrayList();
-                int totalQPartsCorrect = 0;
-                int totalQPartsCount = 0;
-                for (AssignmentDTO assignment : assignments) {
-                    GameboardDTO gameboard = assignmentGameboards.get(assignment);
-                    int assignmentQPartsCorrect = 0;
-                    int assignmentQPartsCount = 0;
-                    List<String> questionIds = gameboardQuestionIds.get(gameboard);
-                    List<GameboardItem> questions = gameboard.getContents();
-                    Map<String, Integer> gameboardPartials = Maps.newHashMap();
-                    for (GameboardItem question : questions) {
-                        gameboardPartials.put(question.getId(), 0);
+            this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_GROUP_PROGRESS_CSV,
+                    ImmutableMap.of("groupId", groupId));
+
+            // Write the rows straight to the response a batch of users at a time, so that neither the whole file nor
+            // the attempts of the whole group are ever held in memory. The first batch is read before the response is
+            // committed, so that a database which cannot be read at all still gets an error response:
+            List<List<RegisteredUserDTO>> batches = Lists.newArrayList(
+                    Iterables.partition(groupMembers, CSV_DOWNLOAD_USER_BATCH_SIZE));
+            Map<Long, Map<String, Boolean>> firstBatchCorrectness = batches.isEmpty() ? Collections.emptyMap()
+                    : this.questionManager.getQuestionPartCorrectness(batches.get(0), questionPageIds);
+
+            StreamingOutput csvFile = output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                writer.write(headerBuilder.toString());
+                CSVWriter csvWriter = new CSVWriter(writer);
+                csvWriter.writeNext(dueDateRow.toArray(new String[0]));
+                csvWriter.writeNext(headerRow.toArray(new String[0]));
+
+                for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
+                    List<RegisteredUserDTO> batch = batches.get(batchIndex);
+                    Map<Long, Map<String, Boolean>> questionPartCorrectness;
+                    try {
+                        questionPartCorrectness = 0 == batchIndex ? firstBatchCorrectness
+                                : this.questionManager.getQuestionPartCorrectness(batch, questionPageIds);
+                    } catch (SegueDatabaseException e) {
+                        log.error("Database error while trying to download group progress", e);
+                        // The response has already started, so mark the file as incomplete rather than end it quietly:
+                        csvWriter.writeNext(new String[] {CSV_DOWNLOAD_INCOMPLETE_MARKER});
+                        csvWriter.flush();
+                        throw new IOException("Unable to load question attempts for the group progress CSV.", e);
                     }
-                    HashMap<String, Integer> questionParts = new HashMap<>(gameboardPartials);
-                    for (String s : questionIds) {
-                        Integer mark = userAssignments.get(gameboard).get(s);
-                        String questionPageId = extractPageIdFromQuestionId(s);
-                        questionParts.put(questionPageId, questionParts.get(questionPageId) + 1);
-                        marks.add(mark);
-                        if (null != mark) {
-                            gameboardPartials.put(questionPageId, gameboardPartials.get(questionPageId) + mark);
+
+                    for (RegisteredUserDTO groupMember : batch) {
+                        // FIXME Some room for improvement here, as we can retrieve all the users with a single query.
+                        UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
+                                userManager.convertToUserSummaryObject(groupMember));
+
+                        ArrayList<String> row = Lists.newArrayList();
+                        Map<String, Boolean> userCorrectness =
+                                questionPartCorrectness.getOrDefault(groupMember.getId(), Collections.emptyMap());
+                        List<Float> assignmentPercentages = Lists.newArrayList();
+                        List<Integer> marks = Lists.newArrayList();
+                        int totalQPartsCorrect = 0;
+                        int totalQPartsCount = 0;
+                        for (AssignmentDTO assignment : assignments) {
+                            GameboardDTO gameboard = assignmentGameboards.get(assignment);
+                            int assignmentQPartsCorrect = 0;
+                            int assignmentQPartsCount = 0;
+                            List<String> questionIds = gameboardQuestionIds.get(gameboard);
+                            List<GameboardItem> questions = gameboard.getContents();
+                            Map<String, Integer> gameboardPartials = Maps.newHashMap();
+                            for (GameboardItem question : questions) {
+                                gameboardPartials.put(question.getId(), 0);
+                            }
+                            HashMap<String, Integer> questionParts = new HashMap<>(gameboardPartials);
+                            for (String s : questionIds) {
+                                Boolean correct = userCorrectness.get(s);
+                                Integer mark = null == correct ? null : (correct ? 1 : 0);
+                                String questionPageId = extractPageIdFromQuestionId(s);
+                                questionParts.put(questionPageId, questionParts.get(questionPageId) + 1);
+                                marks.add(mark);
+                                if (null != mark) {
+                                    gameboardPartials.put(questionPageId, gameboardPartials.get(questionPageId) + mark);
+                                }
+                            }
+                            for (Entry<String, Integer> entry : gameboardPartials.entrySet()) {
+                                assignmentQPartsCorrect += entry.getValue();
+                                assignmentQPartsCount += questionParts.get(entry.getKey());
+                            }
+                            totalQPartsCorrect += assignmentQPartsCorrect;
+                            totalQPartsCount += assignmentQPartsCount;
+                            assignmentPercentages.add((100f * assignmentQPartsCorrect) / assignmentQPartsCount);
                         }
-                    }
-                    for (Entry<String, Integer> entry : gameboardPartials.entrySet()) {
-                        assignmentQPartsCorrect += entry.getValue();
-                        assignmentQPartsCount += questionParts.get(entry.getKey());
-                    }
-                    totalQPartsCorrect += assignmentQPartsCorrect;
-                    totalQPartsCount += assignmentQPartsCount;
-                    assignmentPercentages.add((100f * assignmentQPartsCorrect) / assignmentQPartsCount);
-                }
-                float overallTotal = (100f * totalQPartsCorrect) / totalQPartsCount;
+                        float overallTotal = (100f * totalQPartsCorrect) / totalQPartsCount;
 
-                // The next three lines could be a little better if I were not this sleepy...
-                row.add(userSummary.getFamilyName());
-                row.add(userSummary.getGivenName());
-                if (includeUserIDs) {
-                    row.add(userSummary.getId().toString());
-                }
+                        // The next three lines could be a little better if I were not this sleepy...
+                        row.add(userSummary.getFamilyName());
+                        row.add(userSummary.getGivenName());
+                        if (includeUserIDs) {
+                            row.add(userSummary.getId().toString());
+                        }
+
+                        if (userSummary.isAuthorisedFullAccess()) {
+                            row.add(String.format("%.0f", overallTotal));
+                            for (Float assignmentPercentage : assignmentPercentages) {
+                                row.add(String.format("%.0f", assignmentPercentage));
+                            }
+                            row.add("");
+                            for (Integer mark : marks) {
+                                if (null != mark) {
+                                    row.add(String.format("%d", mark));
+                                } else {
+                                    row.add("");
+                                }
+                            }
 
-                if (userSummary.isAuthorisedFullAccess()) {
-                    row.add(String.format("%.0f", overallTotal));
-                    for (Float assignmentPercentage : assignmentPercentages) {
-                        row.add(String.format("%.0f", assignmentPercentage));
-                    }
-                    row.add("");
-                    for (Integer mark : marks) {
-                        if (null != mark) {
-                            row.add(String.format("%d", mark));
                         } else {
+                            row.add(NOT_SHARING);
+                            for (@SuppressWarnings("unused") Float assignmentPercentage : assignmentPercentages) {
+                                row.add(NOT_SHARING);
+                            }
                             row.add("");
+                            for (@SuppressWarnings("unused") Integer mark : marks) {
+                                row.add(NOT_SHARING);
+                            }
                         }
+                        csvWriter.writeNext(row.toArray(new String[0]));
                     }
-
-                } else {
-                    row.add(NOT_SHARING);
-                    for (@SuppressWarnings("unused") Float assignmentPercentage : assignmentPercentages) {
-                        row.add(NOT_SHARING);
-                    }
-                    row.add("");
-                    for (@SuppressWarnings("unused") Integer mark : marks) {
-                        row.add(NOT_SHARING);
-                    }
+                    // Send each batch on as soon as it is written:
+                    csvWriter.flush();
                 }
-                rows.add(row.toArray(new String[0]));
-            }
 
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
-            StringBuilder headerBuilder = new StringBuilder();
-            if (null != formatMode && formatMode.toLowerCase().equals("excel")) {
-                headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
-            }
-            headerBuilder.append(String.format("Assignments for '%s' (%s)\nDownloaded on %s\nGenerated by: %s %s\n\n",
-                        group.getGroupName(), group.getId(), new Date(), currentlyLoggedInUser.getGivenName(),
-                        currentlyLoggedInUser.getFamilyName()))
-                    .append(stringWriter.toString())
-                    .append("\n\nN.B.\n\"The percentages are for question parts completed, not question pages.\"\n");
-
-            this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.DOWNLOAD_GROUP_PROGRESS_CSV,
-                    ImmutableMap.of("groupId", groupId));
+                writer.write("\n\nN.B.\n\"The percentages are for question parts completed, not question pages.\"\n");
+                writer.flush();
+            };
 
-            return Response.ok(headerBuilder.toString())
+            return Response.ok(csvFile)
                     .header("Content-Disposition", "attachment; filename=group_progress.csv")
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
 
@@ -962,8 +919,6 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown database error.").toResponse();
         } catch (ContentManagerException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Unknown content database error.").toResponse();
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
@@ -56,6 +56,12 @@ public final class Constants {
 
     public static final int NUMERIC_QUESTION_DEFAULT_SIGNIFICANT_FIGURES = 2;
 
+    // How many users to look up at once while writing a CSV download, so large downloads use bounded memory.
+    public static final int CSV_DOWNLOAD_USER_BATCH_SIZE = 200;
+    // Written as the last row of a CSV download which fails after it has started, so it cannot pass for a whole file.
+    public static final String CSV_DOWNLOAD_INCOMPLETE_MARKER =
+            "ERROR: this download failed part way through and is incomplete. Please try again.";
+
     /*
      * Game specific variables.
      */
@@ -18,6 +18,7 @@ package uk.ac.cam.cl.dtg.isaac.api;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -37,6 +38,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
 import ma.glasnost.orika.MapperFacade;
 import org.jboss.resteasy.annotations.GZIP;
 import org.slf4j.Logger;
@@ -79,10 +81,14 @@ import uk.ac.cam.cl.dtg.segue.dao.schools.SchoolListReader;
 import uk.ac.cam.cl.dtg.segue.dao.schools.UnableToIndexSchoolsException;
 import uk.ac.cam.cl.dtg.segue.search.AbstractFilterInstruction;
 import uk.ac.cam.cl.dtg.segue.search.DateRangeFilterInstruction;
+import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -93,6 +99,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.DATE_FIELDNAME;
@@ -276,10 +283,7 @@ public class EventsFacade extends AbstractIsaacFacade {
                         ContentService.generateDefaultFieldToMatch(fieldsToMatch), newStartIndex, newLimit,
                         sortInstructions, filterInstructions);
 
-                // augment (maybe slow for large numbers of bookings)
-                for (ContentDTO c : findByFieldNames.getResults()) {
-                    this.augmentEventWithBookingInformation(request, c);
-                }
+                this.augmentEventsWithBookingInformation(request, findByFieldNames.getResults());
             }
 
             return Response.ok(findByFieldNames).build();
@@ -315,7 +319,7 @@ public class EventsFacade extends AbstractIsaacFacade {
 				continue;
 			}
 
-			final IsaacEventPageDTO eventDTOById = this.getAugmentedEventDTOById(request, eventId);
+			final IsaacEventPageDTO eventDTOById = this.getRawEventDTOById(eventId);
 
 			if (tags != null) {
 				Set<String> tagsList = Sets.newHashSet(tags);
@@ -328,6 +332,7 @@ public class EventsFacade extends AbstractIsaacFacade {
 
 			filteredResults.add(eventDTOById);
 		}
+        this.augmentEventsWithBookingInformation(request, filteredResults);
         return new ResultsWrapper<>(filteredResults, (long) filteredResults.size());
     }
 
@@ -349,10 +354,11 @@ public class EventsFacade extends AbstractIsaacFacade {
 
         for (EventBookingDTO booking : userReservationList) {
 
-            final IsaacEventPageDTO eventDTOById = this.getAugmentedEventDTOById(request, booking.getEventId());
+            final IsaacEventPageDTO eventDTOById = this.getRawEventDTOById(booking.getEventId());
 
             filteredResults.add(eventDTOById);
         }
+        this.augmentEventsWithBookingInformation(request, filteredResults);
         return new ResultsWrapper<>(filteredResults, (long) filteredResults.size());
     }
 
@@ -681,80 +687,47 @@ public class EventsFacade extends AbstractIsaacFacade {
                         currentUser, eventBookings, booking -> booking.getUserBooked().getId());
             }
 
-            List<String[]> rows = Lists.newArrayList();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
-            StringBuilder headerBuilder = new StringBuilder();
-            headerBuilder.append(String.format("Event (%s) Attendance: Downloaded on %s \nGenerated by: %s %s \n\n",
-                    eventId, new Date(), currentUser.getGivenName(),
-                    currentUser.getFamilyName()));
-
-            List<String> headerRow = Lists.newArrayList(Arrays.asList("", ""));
-
-            rows.add(headerRow.toArray(new String[0]));
-
-            List<String> totalsRow = Lists.newArrayList();
-
-            List<String[]> resultRows = Lists.newArrayList();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-            for (DetailedEventBookingDTO booking : eventBookings) {
-                ArrayList<String> resultRow = Lists.newArrayList();
-                UserSummaryDTO resultUser = booking.getUserBooked();
-                RegisteredUserDTO resultRegisteredUser;
-                try {
-                    resultRegisteredUser = this.userAccountManager.getUserDTOById(resultUser.getId());
-                } catch (NoUserException e) {
-                    // Possibly a deleted user, silently skipping.
-                    continue;
-                }
-                String schoolId = resultRegisteredUser.getSchoolId();
-                Map<String, String> resultAdditionalInformation = booking.getAdditionalInformation();
-                BookingStatus resultBookingStatus = booking.getBookingStatus();
-                resultRow.add(resultUser.getFamilyName());
-                resultRow.add(resultUser.getGivenName());
-                resultRow.add(resultRegisteredUser.getRole().toString());
-                if (schoolId != null) {
-                    School school = schoolListReader.findSchoolById(schoolId);
-                    if (null != school) {
-                        resultRow.add(school.getName());
-                    } else {
-                        resultRow.add(schoolId);
+            String header = String.format("Event (%s) Attendance: Downloaded on %s \nGenerated by: %s %s \n\n",
+                    eventId, new Date(), currentUser.getGivenName(), currentUser.getFamilyName());
+
+            // Write the rows straight to the response, looking up the users a batch of bookings at a time. The first
+            // batch is looked up before the response is committed, so that lookups which fail outright still get an
+            // error response:
+            List<List<DetailedEventBookingDTO>> batches = Lists.newArrayList(
+                    Iterables.partition(eventBookings, CSV_DOWNLOAD_USER_BATCH_SIZE));
+            List<String[]> firstBatchRows = batches.isEmpty() ? Collections.emptyList()
+                    : getEventBookingCSVRows(batches.get(0));
+
+            StreamingOutput csvFile = output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                writer.write(header);
+                CSVWriter csvWriter = new CSVWriter(writer);
+                csvWriter.writeNext(new String[] {"", ""});
+                csvWriter.writeNext(new String[0]);
+                csvWriter.writeNext(("Family name,Given name,Role,School,Booking status,Booking date,Last updated date,Year group,Job title," +  // lgtm [java/missing-space-in-concatenation]
+                        "Stages,Exam boards,Level of teaching experience,Medical/dietary requirements,Accessibility requirements,Emergency name,Emergency number").split(","));
+
+                for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
+                    List<String[]> rows;
+                    try {
+                        rows = 0 == batchIndex ? firstBatchRows : getEventBookingCSVRows(batches.get(batchIndex));
+                    } catch (SegueDatabaseException | UnableToIndexSchoolsException | SegueSearchException
+                             | IOException e) {
+                        log.error("Error occurred while trying to retrieve all event booking information.", e);
+                        // The response has already started, so mark the file as incomplete rather than end it quietly:
+                        csvWriter.writeNext(new String[] {CSV_DOWNLOAD_INCOMPLETE_MARKER});
+                        csvWriter.flush();
+                        throw new IOException("Unable to look up the users booked on the event.", e);
                     }
-                } else {
-                    resultRow.add(resultRegisteredUser.getSchoolOther());
+                    csvWriter.writeAll(rows);
+                    csvWriter.flush();
                 }
-                resultRow.add(resultBookingStatus.toString());
-                resultRow.add(dateFormat.format(booking.getBookingDate()));
-                resultRow.add(dateFormat.format(booking.getUpdated()));
-                resultRow.add(resultAdditionalInformation.get("yearGroup"));
-                resultRow.add(resultAdditionalInformation.get("jobTitle"));
-                resultRow.add(String.join(" ", resultUser.getRegisteredContexts().stream()
-                        .map(uc -> uc.getStage() != null ? uc.getStage().name() : "").collect(Collectors.toSet())));
-                resultRow.add(String.join(" ", resultUser.getRegisteredContexts().stream()
-                        .map(uc -> uc.getExamBoard() != null ? uc.getExamBoard().name() : "").collect(Collectors.toSet())));
-                resultRow.add(resultAdditionalInformation.get("experienceLevel"));
-                resultRow.add(resultAdditionalInformation.get("medicalRequirements"));
-                resultRow.add(resultAdditionalInformation.get("accessibilityRequirements"));
-                resultRow.add(resultAdditionalInformation.get("emergencyName"));
-                resultRow.add(resultAdditionalInformation.get("emergencyNumber"));
-                Collections.addAll(resultRows, resultRow.toArray(new String[0]));
-            }
+            };
 
-            rows.add(totalsRow.toArray(new String[0]));
-            rows.add(("Family name,Given name,Role,School,Booking status,Booking date,Last updated date,Year group,Job title," +  // lgtm [java/missing-space-in-concatenation]
-                    "Stages,Exam boards,Level of teaching experience,Medical/dietary requirements,Accessibility requirements,Emergency name,Emergency number").split(","));
-            rows.addAll(resultRows);
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
-            headerBuilder.append(stringWriter.toString());
-            return Response.ok(headerBuilder.toString())
+            return Response.ok(csvFile)
                     .header("Content-Disposition", String.format("attachment; filename=event_attendees_%s.csv", eventId))
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
 
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
         } catch (SegueDatabaseException e) {
@@ -766,9 +739,78 @@ public class EventsFacade extends AbstractIsaacFacade {
                     "Content Database error occurred while trying to retrieve event booking information.")
                     .toResponse();
         } catch (UnableToIndexSchoolsException e) {
-        return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Database error while looking up schools", e)
-                .toResponse();
+            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Database error while looking up schools", e)
+                    .toResponse();
+        } catch (IOException e) {
+            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
+        }
     }
+
+    /**
+     * Build the event attendance CSV rows for a batch of bookings, looking up the users booked together.
+     *
+     * @param bookings
+     *            - the batch of bookings.
+     * @return a row for each booking by a user who can still be found.
+     * @throws SegueDatabaseException
+     *             - if the users cannot be looked up.
+     * @throws UnableToIndexSchoolsException
+     *             - if the users' schools cannot be looked up.
+     * @throws SegueSearchException
+     *             - if the users' schools cannot be looked up.
+     * @throws IOException
+     *             - if the users' schools cannot be read.
+     */
+    private List<String[]> getEventBookingCSVRows(final List<DetailedEventBookingDTO> bookings)
+            throws SegueDatabaseException, UnableToIndexSchoolsException, SegueSearchException, IOException {
+        // Deleted users are not found, and are silently skipped below.
+        Map<Long, RegisteredUserDTO> registeredUsersById = this.userAccountManager.findUsers(bookings.stream()
+                .map(booking -> booking.getUserBooked().getId()).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(RegisteredUserDTO::getId, Function.identity()));
+
+        List<String[]> rows = Lists.newArrayList();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        for (DetailedEventBookingDTO booking : bookings) {
+            ArrayList<String> resultRow = Lists.newArrayList();
+            UserSummaryDTO resultUser = booking.getUserBooked();
+            RegisteredUserDTO resultRegisteredUser = registeredUsersById.get(resultUser.getId());
+            if (null == resultRegisteredUser) {
+                // Possibly a deleted user, silently skipping.
+                continue;
+            }
+            String schoolId = resultRegisteredUser.getSchoolId();
+            Map<String, String> resultAdditionalInformation = booking.getAdditionalInformation();
+            BookingStatus resultBookingStatus = booking.getBookingStatus();
+            resultRow.add(resultUser.getFamilyName());
+            resultRow.add(resultUser.getGivenName());
+            resultRow.add(resultRegisteredUser.getRole().toString());
+            if (schoolId != null) {
+                School school = schoolListReader.findSchoolById(schoolId);
+                if (null != school) {
+                    resultRow.add(school.getName());
+                } else {
+                    resultRow.add(schoolId);
+                }
+            } else {
+                resultRow.add(resultRegisteredUser.getSchoolOther());
+            }
+            resultRow.add(resultBookingStatus.toString());
+            resultRow.add(dateFormat.format(booking.getBookingDate()));
+            resultRow.add(dateFormat.format(booking.getUpdated()));
+            resultRow.add(resultAdditionalInformation.get("yearGroup"));
+            resultRow.add(resultAdditionalInformation.get("jobTitle"));
+            resultRow.add(String.join(" ", resultUser.getRegisteredContexts().stream()
+                    .map(uc -> uc.getStage() != null ? uc.getStage().name() : "").collect(Collectors.toSet())));
+            resultRow.add(String.join(" ", resultUser.getRegisteredContexts().stream()
+                    .map(uc -> uc.getExamBoard() != null ? uc.getExamBoard().name() : "").collect(Collectors.toSet())));
+            resultRow.add(resultAdditionalInformation.get("experienceLevel"));
+            resultRow.add(resultAdditionalInformation.get("medicalRequirements"));
+            resultRow.add(resultAdditionalInformation.get("accessibilityRequirements"));
+            resultRow.add(resultAdditionalInformation.get("emergencyName"));
+            resultRow.add(resultAdditionalInformation.get("emergencyNumber"));
+            rows.add(resultRow.toArray(new String[0]));
+        }
+        return rows;
     }
 
     /**
@@ -1477,17 +1519,27 @@ public class EventsFacade extends AbstractIsaacFacade {
                     ContentService.generateDefaultFieldToMatch(fieldsToMatch),
                     newStartIndex, newLimit, sortInstructions, filterInstructions);
 
-            List<Map<String, Object>> resultList = Lists.newArrayList();
-
+            List<IsaacEventPageDTO> manageableEvents = Lists.newArrayList();
             for (ContentDTO c : findByFieldNames.getResults()) {
                 if (!(c instanceof  IsaacEventPageDTO)) {
                     continue;
                 }
                 IsaacEventPageDTO event = (IsaacEventPageDTO) c;
 
-                if (!bookingManager.isUserAbleToManageEvent(currentUser, event)) {
-                    continue;
+                if (bookingManager.isUserAbleToManageEvent(currentUser, event)) {
+                    manageableEvents.add(event);
                 }
+            }
+
+            Map<String, Map<BookingStatus, Long>> bookingCountsByEventId = this.bookingManager
+                    .countNumberOfBookingsByStatus(manageableEvents.stream().map(IsaacEventPageDTO::getId)
+                            .collect(Collectors.toList()));
+
+            List<Map<String, Object>> resultList = Lists.newArrayList();
+
+            for (IsaacEventPageDTO event : manageableEvents) {
+                Map<BookingStatus, Long> bookingCounts =
+                        bookingCountsByEventId.getOrDefault(event.getId(), Collections.emptyMap());
 
                 ImmutableMap.Builder<String, Object> eventOverviewBuilder = new ImmutableMap.Builder<>();
                 eventOverviewBuilder.put("id", event.getId());
@@ -1503,13 +1555,13 @@ public class EventsFacade extends AbstractIsaacFacade {
                 }
 
                 eventOverviewBuilder.put("numberOfConfirmedBookings",
-                        this.bookingManager.countNumberOfBookingsWithStatus(event.getId(), BookingStatus.CONFIRMED));
+                        bookingCounts.getOrDefault(BookingStatus.CONFIRMED, 0L));
                 eventOverviewBuilder.put("numberOfWaitingListBookings",
-                        this.bookingManager.countNumberOfBookingsWithStatus(event.getId(), BookingStatus.WAITING_LIST));
+                        bookingCounts.getOrDefault(BookingStatus.WAITING_LIST, 0L));
                 eventOverviewBuilder.put("numberAttended",
-                        this.bookingManager.countNumberOfBookingsWithStatus(event.getId(), BookingStatus.ATTENDED));
+                        bookingCounts.getOrDefault(BookingStatus.ATTENDED, 0L));
                 eventOverviewBuilder.put("numberAbsent",
-                        this.bookingManager.countNumberOfBookingsWithStatus(event.getId(), BookingStatus.ABSENT));
+                        bookingCounts.getOrDefault(BookingStatus.ABSENT, 0L));
 
                 if (null != event.getNumberOfPlaces()) {
                     eventOverviewBuilder.put("numberOfPlaces", event.getNumberOfPlaces());
@@ -1716,4 +1768,45 @@ public class EventsFacade extends AbstractIsaacFacade {
             throw new ClassCastException("The object provided was not an event.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Augment a list of events with booking information before we send them out.
+     *
+     * This looks up the places available and the current user's booking status for every event in the list with
+     * one query each, rather than two per event.
+     *
+     * @param request - for user look up
+     * @param possibleEvents - ContentDTOs that should hopefully all be IsaacEventPageDTOs.
+     * @throws SegueDatabaseException
+     */
+    private void augmentEventsWithBookingInformation(final HttpServletRequest request,
+                                                     final List<ContentDTO> possibleEvents)
+            throws SegueDatabaseException {
+        List<IsaacEventPageDTO> events = Lists.newArrayList();
+        for (ContentDTO possibleEvent : possibleEvents) {
+            if (!(possibleEvent instanceof IsaacEventPageDTO)) {
+                throw new ClassCastException("The object provided was not an event.");
+            }
+            events.add((IsaacEventPageDTO) possibleEvent);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        List<String> eventIds = events.stream().map(IsaacEventPageDTO::getId).collect(Collectors.toList());
+
+        Map<String, BookingStatus> userBookingStatuses;
+        try {
+            RegisteredUserDTO user = userManager.getCurrentRegisteredUser(request);
+            userBookingStatuses = this.bookingManager.getBookingStatuses(eventIds, user.getId());
+        } catch (NoUserLoggedInException e) {
+            // no action as we don't require the user to be logged in.
+            userBookingStatuses = Collections.emptyMap();
+        }
+
+        Map<String, Long> placesAvailable = this.bookingManager.getPlacesAvailable(events);
+        for (IsaacEventPageDTO event : events) {
+            event.setUserBookingStatus(userBookingStatuses.get(event.getId()));
+            event.setPlacesAvailable(placesAvailable.get(event.getId()));
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.eclipse.jgit.lib.ObjectId;
 import org.jboss.resteasy.annotations.GZIP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,7 +60,6 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
@@ -83,7 +83,6 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 @Tag(name = "/")
 public class IsaacController extends AbstractIsaacFacade {
     private static final Logger log = LoggerFactory.getLogger(IsaacController.class);
-    private static final String ETAG_SEPARATOR = "/";
 
     private final IStatisticsManager statsManager;
     private final UserAccountManager userManager;
@@ -267,25 +266,7 @@ public class IsaacController extends AbstractIsaacFacade {
             return error.toResponse();
         }
 
-        // Determine if we can use the cache; this has two parts: a "quick and cheap" early check that does not need
-        // the file contents, and a more thorough check using the actual file contents.
-        // The ETag has two halves, separated by an ETAG_SEPARATOR.
-        String sha = this.contentManager.getCurrentContentSHA();
-        String earlyCacheCheckTag = String.valueOf(sha.hashCode() + path.hashCode());
-
-        String rawETagHeader = httpServletRequest.getHeader("If-None-Match");
-        String rawETag = null != rawETagHeader ? rawETagHeader.replaceAll("\"", "") : null;
-
-        // If the "early" cache check based on the path and content SHA matches, the file cannot have changed and
-        // we don't need to load it to return a 304 Not Modified:
-        if (null != rawETag && earlyCacheCheckTag.equals(rawETag.split(ETAG_SEPARATOR)[0])) {
-            return Response.notModified().cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true)).tag(rawETag).build();
-        }
-
-        // If the content version has changed, we do need to load the file to see if it has been modified:
-        ByteArrayOutputStream fileContent;
         String mimeType;
-
         switch (Files.getFileExtension(path).toLowerCase()) {
             case "svg":
                 mimeType = "image/svg+xml";
@@ -311,36 +292,41 @@ public class IsaacController extends AbstractIsaacFacade {
                 return error.toResponse();
         }
 
+        ObjectId fileId;
         try {
-            fileContent = this.contentManager.getFileBytes(path);
+            fileId = this.contentManager.getFileId(path);
         } catch (IOException e) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error reading from file repository", e);
             log.error(error.getErrorMessage(), e);
             return error.toResponse();
-        } catch (UnsupportedOperationException e) {
-            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Multiple files match the search path provided.", e);
-            log.error(error.getErrorMessage(), e);
-            return error.toResponse();
         }
 
-        if (null == fileContent) {
+        if (null == fileId) {
             String refererHeader = httpServletRequest.getHeader("Referer");
             SegueErrorResponse error = new SegueErrorResponse(Status.NOT_FOUND, "Unable to locate the file: " + path);
             log.warn(String.format("Unable to locate the file: (%s). Referer: (%s)", path, refererHeader));
             return error.toResponse();
         }
 
-        byte[] fileContentBytes = fileContent.toByteArray();
+        // The blob id changes exactly when the file does, so it stays a valid ETag across content versions which did
+        // not change the file, and can be checked without reading the file at all:
+        EntityTag etag = new EntityTag(fileId.getName());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (null != notModified) {
+            return notModified.cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true)).tag(etag).build();
+        }
 
-        // If the "late" cache check based on the file contents matches, the file still has not changed:
-        String lateCacheCheckTag = String.valueOf(Arrays.hashCode(fileContentBytes));
-        if (null != rawETag && rawETag.contains(ETAG_SEPARATOR) && lateCacheCheckTag.equals(rawETag.split(ETAG_SEPARATOR)[1])) {
-            return Response.notModified().cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true)).tag(rawETag).build();
+        byte[] fileContent;
+        try {
+            fileContent = this.contentManager.getFileBytes(fileId);
+        } catch (IOException e) {
+            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error reading from file repository", e);
+            log.error(error.getErrorMessage(), e);
+            return error.toResponse();
         }
 
-        // Otherwise, just return the full image to the client:
-        EntityTag etag = new EntityTag(earlyCacheCheckTag + ETAG_SEPARATOR + lateCacheCheckTag);
-        return Response.ok(fileContentBytes).type(mimeType)
+        // The cached file contents are written to the response as they are, without being copied:
+        return Response.ok(fileContent).type(mimeType)
                 .cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true))
                 .tag(etag).build();
     }
@@ -384,7 +370,6 @@ public class IsaacController extends AbstractIsaacFacade {
                 return cachedResponse;
             }
 
-            ByteArrayOutputStream fileContent;
             String mimeType;
             switch (Files.getFileExtension(path).toLowerCase()) {
                 case "pdf":
@@ -397,8 +382,8 @@ public class IsaacController extends AbstractIsaacFacade {
                     return error.toResponse(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, false), etag);
             }
 
-            fileContent = this.contentManager.getFileBytes(path);
-            if (null == fileContent) {
+            ObjectId fileId = this.contentManager.getFileId(path);
+            if (null == fileId) {
                 String refererHeader = httpServletRequest.getHeader("Referer");
                 SegueErrorResponse error = new SegueErrorResponse(Status.NOT_FOUND, "Unable to locate the file: " + path);
                 log.warn(String.format("Unable to locate the file: (%s). Referer: (%s)", path, refererHeader));
@@ -410,7 +395,7 @@ public class IsaacController extends AbstractIsaacFacade {
                     .put(CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA()).build();
             getLogManager().logEvent(currentlyLoggedInUser, httpServletRequest, IsaacServerLogType.DOWNLOAD_FILE, logMap);
 
-            return Response.ok(fileContent.toByteArray()).type(mimeType)
+            return Response.ok(this.contentManager.getFileBytes(fileId)).type(mimeType)
                     .cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true))
                     .header("Content-Disposition", "attachment")  // Do not show this file in the browser.
                     .tag(etag).build();
@@ -419,10 +404,6 @@ public class IsaacController extends AbstractIsaacFacade {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error reading file!");
             log.error(error.getErrorMessage(), e);
             return error.toResponse();
-        } catch (UnsupportedOperationException e) {
-            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Multiple files match the path provided.");
-            log.error(error.getErrorMessage(), e);
-            return error.toResponse();
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
         }
@@ -17,6 +17,7 @@ package uk.ac.cam.cl.dtg.isaac.api;
 
 import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.swagger.v3.oas.annotations.Operation;
@@ -71,6 +72,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
@@ -423,18 +425,17 @@ public class PagesFacade extends AbstractIsaacFacade {
 
         try {
             AbstractSegueUserDTO user = userManager.getCurrentUser(httpServletRequest);
-            Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts;
-            userQuestionAttempts = questionManager.getQuestionAttemptsByUser(user);
 
-            // Calculate the ETag
-            EntityTag etag = new EntityTag(questionId.hashCode() + userQuestionAttempts.toString().hashCode() + "");
+            // Calculate the ETag from the attempts version, so no attempts need loading to return a 304:
+            EntityTag etag = new EntityTag(questionId.hashCode() + "-" + this.contentManager.getCurrentContentSHA()
+                    + "-" + questionManager.getQuestionAttemptsVersion(user));
 
             Response cachedResponse = generateCachedResponse(request, etag, NEVER_CACHE_WITHOUT_ETAG_CHECK);
             if (cachedResponse != null) {
                 return cachedResponse;
             }
 
-            Response response = this.findSingleResult(fieldsToMatch, userQuestionAttempts);
+            Response response = this.findSingleResult(fieldsToMatch);
 
             if (response.getEntity() != null && response.getEntity() instanceof IsaacQuestionPageDTO) {
                 SeguePageDTO content = (SeguePageDTO) response.getEntity();
@@ -449,6 +450,13 @@ public class PagesFacade extends AbstractIsaacFacade {
                     userIdForRandomisation = ((RegisteredUserDTO) user).getId().toString();
                 }
 
+                // Only the attempts at this page and the pages it links to are needed:
+                Set<String> questionPageIds = Sets.newHashSet(content.getId());
+                this.collectRelatedContentIds(content, questionPageIds);
+                Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts =
+                        questionManager.getQuestionAttemptsByUserForQuestionPages(user, questionPageIds);
+
+                this.augmentRelatedQuestionsWithAttemptInformation(content, userQuestionAttempts);
                 content = this.questionManager.augmentQuestionObjects(content, userIdForRandomisation,
                         userQuestionAttempts);
 
@@ -794,6 +802,27 @@ public class PagesFacade extends AbstractIsaacFacade {
         }
     }
 
+    /**
+     * Collect the ids of the related content of some content and its children.
+     *
+     * @param content the content to search.
+     * @param relatedContentIds the set to add the ids to.
+     */
+    private void collectRelatedContentIds(final ContentDTO content, final Set<String> relatedContentIds) {
+        if (content.getRelatedContent() != null) {
+            for (ContentSummaryDTO relatedContentSummary : content.getRelatedContent()) {
+                relatedContentIds.add(relatedContentSummary.getId());
+            }
+        }
+        if (content.getChildren() != null) {
+            for (ContentBaseDTO child : content.getChildren()) {
+                if (child instanceof ContentDTO) {
+                    collectRelatedContentIds((ContentDTO) child, relatedContentIds);
+                }
+            }
+        }
+    }
+
     /**
      * This method will extract basic information from a content object so the lighter ContentInfo object can be sent to
      * the client instead.
@@ -837,13 +866,6 @@ public class PagesFacade extends AbstractIsaacFacade {
         return listOfContentInfo;
     }
 
-    /**
-     * As per the {@link #findSingleResult(Map, Map) findSingleResult} method.
-     */
-    private Response findSingleResult(final Map<String, List<String>> fieldsToMatch) {
-        return this.findSingleResult(fieldsToMatch, null);
-    }
-
     /**
      * For use when we expect to only find a single result.
      * 
@@ -851,13 +873,10 @@ public class PagesFacade extends AbstractIsaacFacade {
      * 
      * @param fieldsToMatch
      *            - expects a map of the form fieldname -> list of queries to match
-     * @param usersQuestionAttempts
-     *            - optional question attempt information to support augmentation of content.
      *
      * @return A Response containing a single conceptPage or containing a SegueErrorResponse.
      */
-    private Response findSingleResult(final Map<String, List<String>> fieldsToMatch,
-                                      @Nullable final Map<String, Map<String, List<QuestionValidationResponse>>> usersQuestionAttempts) {
+    private Response findSingleResult(final Map<String, List<String>> fieldsToMatch) {
         try {
             ResultsWrapper<ContentDTO> resultList = api.findMatchingContent(this.contentIndex,
                     ContentService.generateDefaultFieldToMatch(fieldsToMatch), null, null); // includes
@@ -875,7 +894,7 @@ public class PagesFacade extends AbstractIsaacFacade {
                 c = resultList.getResults().get(0);
             }
 
-            return Response.ok(this.augmentContentWithRelatedContent(this.contentIndex, c, usersQuestionAttempts)).build();
+            return Response.ok(this.augmentContentWithRelatedContent(this.contentIndex, c, null)).build();
         } catch (ContentManagerException e1) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error locating the content requested",
                     e1);
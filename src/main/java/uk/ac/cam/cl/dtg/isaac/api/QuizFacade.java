@@ -810,6 +810,8 @@ public class QuizFacade extends AbstractIsaacFacade {
 
             checkQuizAssignmentNotCancelledOrOverdue(quizAttempt);
 
+            // Read the content version first, so we know it is the version the question came from if it is unchanged:
+            String contentSha = this.contentManager.getCurrentContentSHA();
             Content contentBasedOnId;
             try {
                 contentBasedOnId = this.contentManager.getContentDOById(questionId);
@@ -839,7 +841,7 @@ public class QuizFacade extends AbstractIsaacFacade {
 
             ChoiceDTO answerFromClientDTO = quizQuestionManager.convertJsonAnswerToChoice(jsonAnswer);
 
-            QuestionValidationResponseDTO answer = quizQuestionManager.validateAnswer(question, answerFromClientDTO);
+            QuestionValidationResponseDTO answer = quizQuestionManager.validateAnswer(question, contentSha, answerFromClientDTO);
 
             quizQuestionManager.recordQuestionAttempt(quizAttempt, answer);
 
@@ -856,19 +856,103 @@ public class EventBookingManager {
      */
     private Long getPlacesAvailable(final IsaacEventPageDTO event, final boolean countOnlyConfirmed)
             throws SegueDatabaseException {
-        boolean isStudentEvent = event.getTags().contains("student");
-        Integer numberOfPlaces = event.getNumberOfPlaces();
-        if (null == numberOfPlaces) {
+        if (null == event.getNumberOfPlaces()) {
             return null;
         }
 
-        // include deleted users' bookings events only if the event is in the past so it doesn't mess with ability for new users to book on future events.
-        boolean includeDeletedUsersInCounts = false;
-        if (event.getDate() != null && event.getDate().before(new Date())) {
-            includeDeletedUsersInCounts = true;
+        Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts = this.bookingPersistenceManager
+                .getEventBookingStatusCounts(event.getId(), shouldIncludeDeletedUsersInCounts(event));
+
+        return calculatePlacesAvailable(event, countOnlyConfirmed, eventBookingStatusCounts);
+    }
+
+    /**
+     * Find the places available on many events at once, for example to show alongside a list of events.
+     * <p>
+     * This gives the same answers as calling {@link #getPlacesAvailable(IsaacEventPageDTO)} for each event, but
+     * needs only one database query for the whole list.
+     *
+     * @param events - the events we care about
+     * @return map of event id to the number of places available; events without a limit map to null.
+     * @throws SegueDatabaseException - if we cannot contact the database.
+     */
+    public Map<String, Long> getPlacesAvailable(final List<IsaacEventPageDTO> events) throws SegueDatabaseException {
+        Map<String, Long> placesAvailable = new HashMap<>();
+        List<String> limitedEventIds = new ArrayList<>();
+        List<String> eventIdsIncludingDeletedUsers = new ArrayList<>();
+        for (IsaacEventPageDTO event : events) {
+            placesAvailable.put(event.getId(), null);
+            if (null != event.getNumberOfPlaces()) {
+                limitedEventIds.add(event.getId());
+                if (shouldIncludeDeletedUsersInCounts(event)) {
+                    eventIdsIncludingDeletedUsers.add(event.getId());
+                }
+            }
         }
+        if (limitedEventIds.isEmpty()) {
+            return placesAvailable;
+        }
+
+        Map<String, Map<BookingStatus, Map<Role, Long>>> statusCountsByEventId = this.bookingPersistenceManager
+                .getEventBookingStatusCounts(limitedEventIds, eventIdsIncludingDeletedUsers);
 
-        Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts = this.bookingPersistenceManager.getEventBookingStatusCounts(event.getId(), includeDeletedUsersInCounts);
+        for (IsaacEventPageDTO event : events) {
+            if (null != event.getNumberOfPlaces()) {
+                boolean countOnlyConfirmed = EventStatus.WAITING_LIST_ONLY.equals(event.getEventStatus());
+                placesAvailable.put(event.getId(), calculatePlacesAvailable(event, countOnlyConfirmed,
+                        statusCountsByEventId.getOrDefault(event.getId(), Collections.emptyMap())));
+            }
+        }
+        return placesAvailable;
+    }
+
+    /**
+     * Count the bookings on many events at once, broken down by status.
+     * <p>
+     * Like {@link #countNumberOfBookingsWithStatus(String, BookingStatus)}, bookings made by users who have since been
+     * deleted are counted.
+     *
+     * @param eventIds - the events we care about
+     * @return map of event id to booking status to number of bookings; events or statuses without bookings are absent.
+     * @throws SegueDatabaseException - if we cannot contact the database.
+     */
+    public Map<String, Map<BookingStatus, Long>> countNumberOfBookingsByStatus(final List<String> eventIds)
+            throws SegueDatabaseException {
+        Map<String, Map<BookingStatus, Long>> bookingCounts = new HashMap<>();
+        this.bookingPersistenceManager.getEventBookingStatusCounts(eventIds, eventIds)
+                .forEach((eventId, statusCounts) -> {
+                    Map<BookingStatus, Long> countsForEvent = new HashMap<>();
+                    statusCounts.forEach((status, roleCounts) -> countsForEvent.put(status,
+                            roleCounts.values().stream().mapToLong(Long::longValue).sum()));
+                    bookingCounts.put(eventId, countsForEvent);
+                });
+        return bookingCounts;
+    }
+
+    /**
+     * Include deleted users' bookings only if the event is in the past, so they don't mess with the ability for new
+     * users to book on future events.
+     *
+     * @param event - the event we care about
+     * @return whether deleted users' bookings should count towards the event's capacity.
+     */
+    private static boolean shouldIncludeDeletedUsersInCounts(final IsaacEventPageDTO event) {
+        return event.getDate() != null && event.getDate().before(new Date());
+    }
+
+    /**
+     * Work out the places available on an event from its booking counts.
+     *
+     * @param event                    - the event we care about, which must have a number of places.
+     * @param countOnlyConfirmed       - if true only count confirmed bookings (i.e. ignore waiting list ones.
+     * @param eventBookingStatusCounts - the event's bookings by status and role.
+     * @return the number of places available. If a negative number would be returned the method will only return 0,
+     * unless this is a student event.
+     */
+    private static Long calculatePlacesAvailable(final IsaacEventPageDTO event, final boolean countOnlyConfirmed,
+                                                 final Map<BookingStatus, Map<Role, Long>> eventBookingStatusCounts) {
+        boolean isStudentEvent = event.getTags().contains("student");
+        Integer numberOfPlaces = event.getNumberOfPlaces();
 
         long totalBooked = 0L;
         Long studentCount = 0L;
@@ -983,6 +1067,19 @@ public class EventBookingManager {
         }
     }
 
+    /**
+     * Return the booking statuses for the given user on many events at once.
+     *
+     * @param eventIds - of interest
+     * @param userId - of interest.
+     * @return map of event id to the status of the user's booking; events the user has not booked are absent.
+     * @throws SegueDatabaseException - if an error occurs.
+     */
+    public Map<String, BookingStatus> getBookingStatuses(final List<String> eventIds, final Long userId)
+            throws SegueDatabaseException {
+        return this.bookingPersistenceManager.getBookingStatusesByEventIdsAndUser(eventIds, userId);
+    }
+
     /**
      * Cancel a booking.
      * <p>
@@ -96,8 +96,8 @@ public class QuizQuestionManager {
         return questionManager.convertJsonAnswerToChoice(jsonAnswer);
     }
 
-    public QuestionValidationResponseDTO validateAnswer(Question question, ChoiceDTO answerFromClientDTO) throws ErrorResponseWrapper {
-        Response response = questionManager.validateAnswer(question, answerFromClientDTO);
+    public QuestionValidationResponseDTO validateAnswer(Question question, String contentSha, ChoiceDTO answerFromClientDTO) throws ErrorResponseWrapper {
+        Response response = questionManager.validateAnswer(question, contentSha, answerFromClientDTO);
         if (response.getEntity() instanceof QuestionValidationResponseDTO) {
             return (QuestionValidationResponseDTO) response.getEntity();
         } else if (response.getEntity() instanceof SegueErrorResponse) {
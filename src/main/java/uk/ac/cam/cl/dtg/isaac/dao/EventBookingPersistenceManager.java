@@ -25,6 +25,7 @@ import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -167,6 +168,34 @@ public class EventBookingPersistenceManager {
         return dao.getEventBookingStatusCounts(eventId, includeDeletedUsersInCounts);
     }
 
+    /**
+     * Get the current booking counts for many events in one query.
+     *
+     * @param eventIds - the events of interest
+     * @param eventIdsIncludingDeletedUsers - the events whose counts should include deleted users
+     * @return Map of event id to booking status, role to count; events without bookings are absent
+     * @throws SegueDatabaseException - if something is wrong with the database
+     */
+    public Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(
+            final Collection<String> eventIds, final Collection<String> eventIdsIncludingDeletedUsers)
+            throws SegueDatabaseException {
+        return dao.getEventBookingStatusCounts(eventIds, eventIdsIncludingDeletedUsers);
+    }
+
+    /**
+     * Get the status of a user's bookings for many events in one query.
+     *
+     * @param eventIds - the events of interest
+     * @param userId - the user of interest
+     * @return Map of event id to booking status; events the user has not booked are absent
+     * @throws SegueDatabaseException - if something is wrong with the database
+     */
+    public Map<String, BookingStatus> getBookingStatusesByEventIdsAndUser(final Collection<String> eventIds,
+                                                                        final Long userId)
+            throws SegueDatabaseException {
+        return dao.getBookingStatusesByEventIdsAndUser(eventIds, userId);
+    }
+
     /**
      * Get event bookings by an event id.
      * TODO - if an event disappears (either by being unpublished or being deleted, then this method will not pull back the event.
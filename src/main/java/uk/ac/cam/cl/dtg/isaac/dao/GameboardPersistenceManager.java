@@ -78,7 +78,6 @@ public class GameboardPersistenceManager {
 
     private static final Logger log = LoggerFactory.getLogger(GameboardPersistenceManager.class);
     private static final Long GAMEBOARD_TTL_MINUTES = 30L;
-    private static final int GAMEBOARD_ITEM_MAP_BATCH_SIZE = 1000;
 
     private final PostgresSqlDb database;
     private final Cache<String, GameboardDO> gameboardNonPersistentStorage;
@@ -728,28 +727,21 @@ public class GameboardPersistenceManager {
         Map<String, GameboardContentDescriptor> contentDescriptorsMap = Maps.newHashMap();
         contentDescriptors.forEach(cd -> contentDescriptorsMap.put(cd.getId(), cd));
 
-        // Batch the queries to the db to avoid the elasticsearch query clause limit of 1024
-        List<List<GameboardContentDescriptor>> contentDescriptorBatches =
-                Lists.partition(contentDescriptors, GAMEBOARD_ITEM_MAP_BATCH_SIZE);
-        for (List<GameboardContentDescriptor> contentDescriptorBatch : contentDescriptorBatches) {
-            List<String> questionsIds =
-                    contentDescriptorBatch.stream().map(GameboardContentDescriptor::getId).collect(Collectors.toList());
-            // Search for questions that match the ids.
-            ResultsWrapper<ContentDTO> results;
-            try {
-                results = this.contentManager.getContentMatchingIds(
-                        questionsIds, 0, contentDescriptorBatch.size());
-            } catch (ContentManagerException e) {
-                results = new ResultsWrapper<ContentDTO>();
-                log.error("Unable to locate questions for gameboard. Using empty results", e);
-            }
+        // Search for questions that match the ids; the content manager reuses cached questions and batches the rest.
+        List<String> questionsIds =
+                contentDescriptors.stream().map(GameboardContentDescriptor::getId).collect(Collectors.toList());
+        List<ContentDTO> questionsForGameboard;
+        try {
+            questionsForGameboard = this.contentManager.getContentByIds(questionsIds);
+        } catch (ContentManagerException e) {
+            questionsForGameboard = Collections.emptyList();
+            log.error("Unable to locate questions for gameboard. Using empty results", e);
+        }
 
-            // Map each Content object into an GameboardItem object
-            List<ContentDTO> questionsForGameboard = results.getResults();
-            for (ContentDTO c : questionsForGameboard) {
-                GameboardItem contentInfo = this.convertToGameboardItem(c, contentDescriptorsMap.get(c.getId()));
-                gameboardReadyQuestions.put(c.getId(), contentInfo);
-            }
+        // Map each Content object into an GameboardItem object
+        for (ContentDTO c : questionsForGameboard) {
+            GameboardItem contentInfo = this.convertToGameboardItem(c, contentDescriptorsMap.get(c.getId()));
+            gameboardReadyQuestions.put(c.getId(), contentInfo);
         }
         return gameboardReadyQuestions;
     }
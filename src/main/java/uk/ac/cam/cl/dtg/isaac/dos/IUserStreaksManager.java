@@ -2,6 +2,7 @@ package uk.ac.cam.cl.dtg.isaac.dos;
 
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 
+import java.util.Date;
 import java.util.Map;
 
 /**
@@ -45,6 +46,31 @@ public interface IUserStreaksManager {
      */
     int getLongestWeeklyStreak(RegisteredUserDTO user);
 
+    /**
+     * This method will get the current and longest daily and weekly streaks for a registered user, as sent to their
+     * websockets.
+     *
+     * This is served from memory where possible, so the streak functions are only run once per user per session
+     * rather than on every question attempt.
+     *
+     * @param user
+     *            - the registered user
+     * @return a map containing a dailyStreakRecord and a weeklyStreakRecord
+     */
+    Map<String, Object> getUserSnapshot(RegisteredUserDTO user);
+
+    /**
+     * This method will update the user's streaks with a correct question attempt that has just been saved.
+     *
+     * @param user
+     *            - the registered user who answered the question
+     * @param questionId
+     *            - the id of the question part answered correctly
+     * @param dateAttempted
+     *            - when the attempt was made
+     */
+    void recordCorrectAttempt(RegisteredUserDTO user, String questionId, Date dateAttempted);
+
     /**
      * This method will notify a registered user that their streak has changed.
      *
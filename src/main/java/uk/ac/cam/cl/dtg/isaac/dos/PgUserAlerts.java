@@ -2,7 +2,7 @@ package uk.ac.cam.cl.dtg.isaac.dos;
 
 import com.google.api.client.util.Lists;
 import com.google.inject.Inject;
-import uk.ac.cam.cl.dtg.segue.api.userAlerts.UserAlertsWebSocket;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
@@ -12,10 +12,12 @@ import java.util.List;
 public class PgUserAlerts implements IUserAlerts {
 
     private final PostgresSqlDb db;
+    private final IUserAlertBus alertBus;
 
     @Inject
-    public PgUserAlerts(final PostgresSqlDb db) {
+    public PgUserAlerts(final PostgresSqlDb db, final IUserAlertBus alertBus) {
         this.db = db;
+        this.alertBus = alertBus;
     }
 
     private PgUserAlert buildPgUserAlert(final ResultSet result) throws SQLException {
@@ -65,7 +67,7 @@ public class PgUserAlerts implements IUserAlerts {
                 results.next();
 
                 IUserAlert alert = buildPgUserAlert(results);
-                UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+                alertBus.publish(userId, alert);
 
                 return alert;
             }
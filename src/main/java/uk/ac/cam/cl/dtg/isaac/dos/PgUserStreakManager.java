@@ -2,12 +2,14 @@ package uk.ac.cam.cl.dtg.isaac.dos;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.ac.cam.cl.dtg.segue.api.userAlerts.UserAlertsWebSocket;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 
@@ -16,7 +18,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by du220 on 16/04/2018.
@@ -24,18 +30,46 @@ import java.util.Map;
 public class PgUserStreakManager implements IUserStreaksManager {
     private static final Logger log = LoggerFactory.getLogger(PgUserStreakManager.class);
 
+    // Snapshots are dropped once a user stops answering questions, and trusted for a while before being reconciled
+    // with the database, which corrects any attempts recorded by other API nodes.
+    static final long SNAPSHOT_EXPIRY_HOURS = 2;
+    static final long SNAPSHOT_MAXIMUM_SIZE = 100000;
+    static final long SNAPSHOT_RECONCILE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final String CURRENT_STREAK_QUERY =
+            "SELECT * FROM user_streaks_current_progress(?) LEFT JOIN user_streaks(?)" +
+            " ON user_streaks_current_progress.currentdate - user_streaks.enddate <= 1" +
+            " AND user_streaks.startdate <= user_streaks_current_progress.currentdate";
+    private static final String LONGEST_STREAK_QUERY =
+            "SELECT * FROM user_streaks(?) ORDER BY streaklength DESC LIMIT 1";
+    private static final String CURRENT_WEEKLY_STREAK_QUERY =
+            "SELECT * FROM user_streaks_weekly_current_progress(?) LEFT JOIN user_streaks_weekly(?)" +
+            " ON user_streaks_weekly_current_progress.currentweek - user_streaks_weekly.enddate <= 7" +
+            " AND user_streaks_weekly.startdate <= user_streaks_weekly_current_progress.currentweek";
+    private static final String LONGEST_WEEKLY_STREAK_QUERY =
+            "SELECT * FROM user_streaks_weekly(?) ORDER BY streaklength DESC LIMIT 1";
+
     private final PostgresSqlDb database;
+    private final IUserAlertBus alertBus;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Cache<Long, UserStreakSnapshot> snapshots;
 
     /**
      * PgUserStreakManager.
      *
      * @param database
      *            client for postgres.
+     * @param alertBus
+     *            to send streak changes to the user's websockets.
      */
     @Inject
-    public PgUserStreakManager(final PostgresSqlDb database) {
+    public PgUserStreakManager(final PostgresSqlDb database, final IUserAlertBus alertBus) {
         this.database = database;
+        this.alertBus = alertBus;
+        this.snapshots = CacheBuilder.newBuilder()
+                .expireAfterAccess(SNAPSHOT_EXPIRY_HOURS, TimeUnit.HOURS)
+                .maximumSize(SNAPSHOT_MAXIMUM_SIZE)
+                .build();
     }
 
 
@@ -46,11 +80,8 @@ public class PgUserStreakManager implements IUserStreaksManager {
         streakRecord.put("currentActivity", 0);
         streakRecord.put("currentStreak", 0);
 
-        String query = "SELECT * FROM user_streaks_current_progress(?) LEFT JOIN user_streaks(?)" +
-                " ON user_streaks_current_progress.currentdate - user_streaks.enddate <= 1" +
-                " AND user_streaks.startdate <= user_streaks_current_progress.currentdate";
         try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
+             PreparedStatement pst = conn.prepareStatement(CURRENT_STREAK_QUERY);
         ) {
             pst.setLong(1, user.getId());
             pst.setLong(2, user.getId());
@@ -70,9 +101,8 @@ public class PgUserStreakManager implements IUserStreaksManager {
     @Override
     public int getLongestStreak(final RegisteredUserDTO user) {
 
-        String query = "SELECT * FROM user_streaks(?) ORDER BY streaklength DESC LIMIT 1";
         try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
+             PreparedStatement pst = conn.prepareStatement(LONGEST_STREAK_QUERY);
         ) {
             pst.setLong(1, user.getId());
 
@@ -95,11 +125,8 @@ public class PgUserStreakManager implements IUserStreaksManager {
         streakRecord.put("currentActivity", 0);
         streakRecord.put("currentStreak", 0);
 
-        String query = "SELECT * FROM user_streaks_weekly_current_progress(?) LEFT JOIN user_streaks_weekly(?)" +
-                " ON user_streaks_weekly_current_progress.currentweek - user_streaks_weekly.enddate <= 7" +
-                " AND user_streaks_weekly.startdate <= user_streaks_weekly_current_progress.currentweek";
         try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
+             PreparedStatement pst = conn.prepareStatement(CURRENT_WEEKLY_STREAK_QUERY);
         ) {
             pst.setLong(1, user.getId());
             pst.setLong(2, user.getId());
@@ -119,9 +146,8 @@ public class PgUserStreakManager implements IUserStreaksManager {
     @Override
     public int getLongestWeeklyStreak(final RegisteredUserDTO user) {
 
-        String query = "SELECT * FROM user_streaks_weekly(?) ORDER BY streaklength DESC LIMIT 1";
         try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
+             PreparedStatement pst = conn.prepareStatement(LONGEST_WEEKLY_STREAK_QUERY);
         ) {
             pst.setLong(1, user.getId());
 
@@ -136,6 +162,54 @@ public class PgUserStreakManager implements IUserStreaksManager {
         return 0;
     }
 
+    @Override
+    public Map<String, Object> getUserSnapshot(final RegisteredUserDTO user) {
+        try {
+            return this.getSnapshot(user.getId()).toMap();
+        } catch (SQLException e) {
+            log.error(String.format("Unable to load streak snapshot for user %s", user.getId()), e);
+            return new UserStreakSnapshot(LocalDate.now(), 0, 0, 0, 0, 0, 0, 0, 0, 0, 0).toMap();
+        }
+    }
+
+    @Override
+    public void recordCorrectAttempt(final RegisteredUserDTO user, final String questionId,
+                                     final Date dateAttempted) {
+        long userId = user.getId();
+        UserStreakSnapshot snapshot = snapshots.getIfPresent(userId);
+        // Without a snapshot there is nothing to update; the next one loaded will include this attempt:
+        if (null == snapshot) {
+            return;
+        }
+        // An attempt made before the snapshot started loading may or may not have been counted, so reload it:
+        if (dateAttempted.getTime() < snapshot.getLoadedMillis()) {
+            snapshots.invalidate(userId);
+            return;
+        }
+
+        String query = "SELECT CURRENT_DATE AS today, NOT EXISTS(SELECT 1 FROM question_attempts"
+                + " WHERE user_id=? AND question_id=? AND correct AND timestamp < ?) AS first_correct";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setString(2, questionId);
+            pst.setTimestamp(3, new Timestamp(dateAttempted.getTime()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                if (!results.next() || !snapshot.getDay().equals(results.getDate("today").toLocalDate())) {
+                    // The day has changed since the snapshot was loaded, so the progress resets:
+                    snapshots.invalidate(userId);
+                } else if (results.getBoolean("first_correct")) {
+                    snapshot.recordFirstCorrectAttempt();
+                }
+            }
+        } catch (SQLException e) {
+            log.error(String.format("Unable to update streak snapshot for user %s", userId), e);
+            snapshots.invalidate(userId);
+        }
+    }
+
     @Override
     public void notifyUserOfStreakChange(final RegisteredUserDTO user) {
         // FIXME - it is unlikely that this is the best location for this code!
@@ -143,14 +217,114 @@ public class PgUserStreakManager implements IUserStreaksManager {
         long userId = user.getId();
         try {
             IUserAlert alert = new PgUserAlert(null, userId,
-                    objectMapper.writeValueAsString(ImmutableMap.of("dailyStreakRecord", this.getCurrentStreakRecord(user), "weeklyStreakRecord", this.getCurrentWeeklyStreakRecord(user))),
+                    objectMapper.writeValueAsString(this.getUserSnapshot(user)),
                     "progress", new Timestamp(System.currentTimeMillis()), null, null, null);
 
-            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+            alertBus.publish(userId, alert);
         } catch (JsonProcessingException e) {
             log.error(String.format("Unable to serialize user streak change JSON for user %s: %s",
                     user.getId(), e.getMessage()));
         }
     }
 
+    /**
+     * Get the cached streak snapshot for a user, loading it from the database if there is none or it is due to be
+     * reconciled.
+     *
+     * @param userId
+     *            - the user of interest
+     * @return the user's streak snapshot
+     * @throws SQLException
+     *             if the snapshot cannot be loaded
+     */
+    private UserStreakSnapshot getSnapshot(final long userId) throws SQLException {
+        UserStreakSnapshot snapshot = snapshots.getIfPresent(userId);
+        if (snapshot != null && snapshot.needsReloading(System.currentTimeMillis(), SNAPSHOT_RECONCILE_MILLIS)) {
+            snapshots.asMap().remove(userId, snapshot);
+        }
+        try {
+            return snapshots.get(userId, () -> this.loadSnapshot(userId));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Run the streak functions for a user, all on one connection.
+     *
+     * @param userId
+     *            - the user of interest
+     * @return a new snapshot of the user's streaks
+     * @throws SQLException
+     *             if any of the queries fail
+     */
+    @VisibleForTesting
+    UserStreakSnapshot loadSnapshot(final long userId) throws SQLException {
+        long loadedMillis = System.currentTimeMillis();
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement currentDay = conn.prepareStatement(
+                     "SELECT CURRENT_DATE AS today, (CURRENT_DATE + 1)::TIMESTAMPTZ AS tomorrow");
+             PreparedStatement current = conn.prepareStatement(CURRENT_STREAK_QUERY);
+             PreparedStatement longest = conn.prepareStatement(LONGEST_STREAK_QUERY);
+             PreparedStatement currentWeekly = conn.prepareStatement(CURRENT_WEEKLY_STREAK_QUERY);
+             PreparedStatement longestWeekly = conn.prepareStatement(LONGEST_WEEKLY_STREAK_QUERY);
+        ) {
+            LocalDate today;
+            long tomorrowMillis;
+            try (ResultSet results = currentDay.executeQuery()) {
+                results.next();
+                today = results.getDate("today").toLocalDate();
+                tomorrowMillis = results.getTimestamp("tomorrow").getTime();
+            }
+
+            current.setLong(1, userId);
+            current.setLong(2, userId);
+            int[] daily = readCurrentProgress(current);
+            longest.setLong(1, userId);
+            int longestDaily = readLongest(longest);
+
+            currentWeekly.setLong(1, userId);
+            currentWeekly.setLong(2, userId);
+            int[] weekly = readCurrentProgress(currentWeekly);
+            longestWeekly.setLong(1, userId);
+            int longestWeeklyStreak = readLongest(longestWeekly);
+
+            return new UserStreakSnapshot(today, loadedMillis, tomorrowMillis,
+                    daily[0], daily[1], daily[2], Math.max(longestDaily, daily[2]),
+                    weekly[0], weekly[1], weekly[2], Math.max(longestWeeklyStreak, weekly[2]));
+        }
+    }
+
+    /**
+     * @param pst - a current progress query, with its parameters set.
+     * @return the current progress, target and streak length.
+     * @throws SQLException if the query fails.
+     */
+    private static int[] readCurrentProgress(final PreparedStatement pst) throws SQLException {
+        try (ResultSet results = pst.executeQuery()) {
+            if (results.next()) {
+                return new int[] {results.getInt("currentprogress"), results.getInt("targetprogress"),
+                        results.getInt("streaklength")};
+            }
+            return new int[] {0, 0, 0};
+        }
+    }
+
+    /**
+     * @param pst - a longest streak query, with its parameter set.
+     * @return the length of the longest streak, or zero if there has never been one.
+     * @throws SQLException if the query fails.
+     */
+    private static int readLongest(final PreparedStatement pst) throws SQLException {
+        try (ResultSet results = pst.executeQuery()) {
+            if (results.next()) {
+                return results.getInt("streaklength");
+            }
+            return 0;
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dos;
+
+import java.util.Date;
+
+/**
+ * A summary of all of a user's attempts at one question part, as kept up to date in the question_attempt_summaries
+ * table.
+ *
+ * As a LightweightQuestionValidationResponse this is correct if any attempt was correct, and was attempted at the time
+ * of the latest attempt, so it can stand in for the attempts themselves when only the best attempt matters.
+ */
+public class QuestionPartAttemptSummary extends LightweightQuestionValidationResponse {
+    private Date firstAttempted;
+    private Date firstCorrect;
+    private int attemptCount;
+
+    /**
+     * Default Constructor for mappers.
+     */
+    public QuestionPartAttemptSummary() {
+
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param questionId
+     *            - the full id of the question part.
+     * @param firstAttempted
+     *            - when the part was first attempted.
+     * @param latestAttempted
+     *            - when the part was last attempted.
+     * @param firstCorrect
+     *            - when the part was first answered correctly, or null if it has not been.
+     * @param attemptCount
+     *            - the number of attempts at the part.
+     */
+    public QuestionPartAttemptSummary(final String questionId, final Date firstAttempted, final Date latestAttempted,
+                                      final Date firstCorrect, final int attemptCount) {
+        super(questionId, firstCorrect != null, latestAttempted);
+        this.firstAttempted = firstAttempted;
+        this.firstCorrect = firstCorrect;
+        this.attemptCount = attemptCount;
+    }
+
+    /**
+     * Gets the firstAttempted.
+     *
+     * @return the firstAttempted
+     */
+    public Date getFirstAttempted() {
+        return firstAttempted;
+    }
+
+    /**
+     * Sets the firstAttempted.
+     *
+     * @param firstAttempted
+     *            the firstAttempted to set
+     */
+    public void setFirstAttempted(final Date firstAttempted) {
+        this.firstAttempted = firstAttempted;
+    }
+
+    /**
+     * Gets the firstCorrect.
+     *
+     * @return the firstCorrect, or null if no attempt was correct.
+     */
+    public Date getFirstCorrect() {
+        return firstCorrect;
+    }
+
+    /**
+     * Sets the firstCorrect, and so whether the part has been answered correctly.
+     *
+     * @param firstCorrect
+     *            the firstCorrect to set
+     */
+    public void setFirstCorrect(final Date firstCorrect) {
+        this.firstCorrect = firstCorrect;
+        this.setCorrect(firstCorrect != null);
+    }
+
+    /**
+     * Gets the attemptCount.
+     *
+     * @return the attemptCount
+     */
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    /**
+     * Sets the attemptCount.
+     *
+     * @param attemptCount
+     *            the attemptCount to set
+     */
+    public void setAttemptCount(final int attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QuestionPartAttemptSummary [questionId=" + getQuestionId() + ", firstAttempted=" + firstAttempted
+                + ", latestAttempted=" + getDateAttempted() + ", firstCorrect=" + firstCorrect
+                + ", attemptCount=" + attemptCount + "]";
+    }
+}
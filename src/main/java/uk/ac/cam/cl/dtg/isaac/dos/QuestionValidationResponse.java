@@ -17,6 +17,7 @@ package uk.ac.cam.cl.dtg.isaac.dos;
 
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.DTOMapping;
@@ -30,6 +31,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.QuestionValidationResponseDTO;
 public class QuestionValidationResponse extends LightweightQuestionValidationResponse {
     private Choice answer;
     private Content explanation;
+    private boolean checkerError;
 
     /**
      * Default Constructor for mappers.
@@ -97,6 +99,28 @@ public class QuestionValidationResponse extends LightweightQuestionValidationRes
         this.explanation = explanation;
     }
 
+    /**
+     * Whether an external checker failed while marking, so this response may be wrong for the answer. This is never
+     * stored, since it only matters while deciding whether the response can be reused.
+     *
+     * @return true if a checker failed while marking.
+     */
+    @JsonIgnore
+    public final boolean isCheckerError() {
+        return checkerError;
+    }
+
+    /**
+     * Sets whether an external checker failed while marking.
+     *
+     * @param checkerError
+     *            true if a checker failed while marking.
+     */
+    @JsonIgnore
+    public final void setCheckerError(final boolean checkerError) {
+        this.checkerError = checkerError;
+    }
+
     @Override
     public String toString() {
         return "QuestionValidationResponse [questionId=" + super.getQuestionId() + ", answer=" + answer +
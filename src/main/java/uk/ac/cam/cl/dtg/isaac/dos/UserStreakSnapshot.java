@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dos;
+
+import com.google.common.collect.Maps;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * A user's current and longest daily and weekly streaks, loaded from the streak functions in the database and then
+ * kept up to date in memory as the user answers questions.
+ *
+ * A snapshot is only valid for the day it was loaded on, since a new day resets the daily progress and may end the
+ * streak, so it must be reloaded once the database's date has moved on.
+ */
+final class UserStreakSnapshot {
+    private final LocalDate day;
+    private final long loadedMillis;
+    private final long nextDayMillis;
+
+    private int dailyProgress;
+    private final int dailyTarget;
+    private int dailyStreak;
+    private int longestDailyStreak;
+
+    private int weeklyProgress;
+    private final int weeklyTarget;
+    private int weeklyStreak;
+    private int longestWeeklyStreak;
+
+    /**
+     * @param day the database's current date when the snapshot was loaded.
+     * @param loadedMillis when loading started; attempts made before this are already counted.
+     * @param nextDayMillis when the database's date will next change.
+     * @param dailyProgress questions first answered correctly today.
+     * @param dailyTarget questions needed today to extend the daily streak.
+     * @param dailyStreak the length of the daily streak ending today or yesterday.
+     * @param longestDailyStreak the longest daily streak ever.
+     * @param weeklyProgress questions first answered correctly this week.
+     * @param weeklyTarget questions needed this week to extend the weekly streak.
+     * @param weeklyStreak the length of the weekly streak ending this week or last week.
+     * @param longestWeeklyStreak the longest weekly streak ever.
+     */
+    UserStreakSnapshot(final LocalDate day, final long loadedMillis, final long nextDayMillis,
+                       final int dailyProgress, final int dailyTarget, final int dailyStreak,
+                       final int longestDailyStreak, final int weeklyProgress, final int weeklyTarget,
+                       final int weeklyStreak, final int longestWeeklyStreak) {
+        this.day = day;
+        this.loadedMillis = loadedMillis;
+        this.nextDayMillis = nextDayMillis;
+        this.dailyProgress = dailyProgress;
+        this.dailyTarget = dailyTarget;
+        this.dailyStreak = dailyStreak;
+        this.longestDailyStreak = longestDailyStreak;
+        this.weeklyProgress = weeklyProgress;
+        this.weeklyTarget = weeklyTarget;
+        this.weeklyStreak = weeklyStreak;
+        this.longestWeeklyStreak = longestWeeklyStreak;
+    }
+
+    /**
+     * @return the database's date when the snapshot was loaded.
+     */
+    LocalDate getDay() {
+        return day;
+    }
+
+    /**
+     * @return when loading the snapshot started.
+     */
+    long getLoadedMillis() {
+        return loadedMillis;
+    }
+
+    /**
+     * @param nowMillis the current time.
+     * @param reconcileIntervalMillis how long a snapshot is trusted before being reloaded from the database.
+     * @return whether the snapshot should be reloaded.
+     */
+    boolean needsReloading(final long nowMillis, final long reconcileIntervalMillis) {
+        return nowMillis >= nextDayMillis || nowMillis - loadedMillis >= reconcileIntervalMillis;
+    }
+
+    /**
+     * Count a question answered correctly for the first time today, extending the streaks if that meets a target.
+     */
+    synchronized void recordFirstCorrectAttempt() {
+        dailyProgress++;
+        if (dailyProgress == dailyTarget) {
+            dailyStreak++;
+            longestDailyStreak = Math.max(longestDailyStreak, dailyStreak);
+        }
+        weeklyProgress++;
+        if (weeklyProgress == weeklyTarget) {
+            weeklyStreak++;
+            longestWeeklyStreak = Math.max(longestWeeklyStreak, weeklyStreak);
+        }
+    }
+
+    /**
+     * @return the daily and weekly streak records, in the form sent to the user's websockets.
+     */
+    synchronized Map<String, Object> toMap() {
+        Map<String, Object> dailyStreakRecord = Maps.newHashMap();
+        dailyStreakRecord.put("currentActivity", dailyProgress);
+        dailyStreakRecord.put("currentStreak", dailyStreak);
+        dailyStreakRecord.put("largestStreak", longestDailyStreak);
+
+        Map<String, Object> weeklyStreakRecord = Maps.newHashMap();
+        weeklyStreakRecord.put("currentActivity", weeklyProgress);
+        weeklyStreakRecord.put("currentStreak", weeklyStreak);
+        weeklyStreakRecord.put("largestWeeklyStreak", longestWeeklyStreak);
+
+        Map<String, Object> result = Maps.newHashMap();
+        result.put("dailyStreakRecord", dailyStreakRecord);
+        result.put("weeklyStreakRecord", weeklyStreakRecord);
+        return result;
+    }
+}
@@ -20,6 +20,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 
 import jakarta.annotation.Nullable;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -129,6 +130,28 @@ public interface EventBookings {
      */
     Map<BookingStatus, Map<Role, Long>> getEventBookingStatusCounts(String eventId, boolean includeDeletedUsersInCounts) throws SegueDatabaseException;
 
+    /**
+     * For many events at once, provide a count of the current bookings and their statuses.
+     *
+     * @param eventIds - the event ids we care about
+     * @param eventIdsIncludingDeletedUsers - the events whose numbers should include deleted users.
+     * @return Map of event id to booking status to role to number of bookings; events with no bookings are absent.
+     * @throws SegueDatabaseException - if there is a problem accessing the db
+     */
+    Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(Collection<String> eventIds,
+            Collection<String> eventIdsIncludingDeletedUsers) throws SegueDatabaseException;
+
+    /**
+     * Find the status of one user's bookings on many events at once.
+     *
+     * @param eventIds - the event ids we care about
+     * @param userId - the user of interest
+     * @return Map of event id to booking status; events the user has no booking for are absent.
+     * @throws SegueDatabaseException - if there is a problem accessing the db
+     */
+    Map<String, BookingStatus> getBookingStatusesByEventIdsAndUser(Collection<String> eventIds, Long userId)
+            throws SegueDatabaseException;
+
     /**
      * Find all bookings for a given event with a given status.
      *
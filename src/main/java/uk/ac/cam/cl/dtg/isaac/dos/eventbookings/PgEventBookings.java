@@ -30,12 +30,14 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
 import jakarta.annotation.Nullable;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -486,6 +488,77 @@ public class PgEventBookings implements EventBookings {
         }
     }
 
+    @Override
+    public Map<String, Map<BookingStatus, Map<Role, Long>>> getEventBookingStatusCounts(
+            final Collection<String> eventIds, final Collection<String> eventIdsIncludingDeletedUsers)
+            throws SegueDatabaseException {
+        Validate.notNull(eventIds);
+        Validate.notNull(eventIdsIncludingDeletedUsers);
+        Map<String, Map<BookingStatus, Map<Role, Long>>> returnResult = Maps.newHashMap();
+        if (eventIds.isEmpty()) {
+            return returnResult;
+        }
+
+        // As for the single event version, join the users table so that deleted users can be left out of the counts:
+        String query = "SELECT event_bookings.event_id, event_bookings.status, users.role, COUNT(event_bookings.id)"
+                + " FROM event_bookings INNER JOIN users ON event_bookings.user_id = users.id"
+                + " WHERE event_bookings.event_id = ANY(?)"
+                + " AND (NOT users.deleted OR event_bookings.event_id = ANY(?))"
+                + " GROUP BY event_bookings.event_id, event_bookings.status, users.role;";
+
+        try (Connection conn = ds.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            Array eventIdsArray = conn.createArrayOf("varchar", eventIds.toArray());
+            Array includingDeletedArray = conn.createArrayOf("varchar", eventIdsIncludingDeletedUsers.toArray());
+            pst.setArray(1, eventIdsArray);
+            pst.setArray(2, includingDeletedArray);
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    BookingStatus bookingStatus = BookingStatus.valueOf(results.getString("status"));
+                    Role role = Role.valueOf(results.getString("role"));
+                    returnResult.computeIfAbsent(results.getString("event_id"), id -> Maps.newHashMap())
+                            .computeIfAbsent(bookingStatus, status -> Maps.newHashMap())
+                            .put(role, results.getLong("count"));
+                }
+                return returnResult;
+            }
+        } catch (SQLException e) {
+            log.error("DB error ", e);
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    @Override
+    public Map<String, BookingStatus> getBookingStatusesByEventIdsAndUser(final Collection<String> eventIds,
+                                                                        final Long userId)
+            throws SegueDatabaseException {
+        Validate.notNull(eventIds);
+        Validate.notNull(userId);
+        Map<String, BookingStatus> returnResult = Maps.newHashMap();
+        if (eventIds.isEmpty()) {
+            return returnResult;
+        }
+
+        String query = "SELECT event_id, status FROM event_bookings WHERE user_id = ? AND event_id = ANY(?);";
+        try (Connection conn = ds.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setArray(2, conn.createArrayOf("varchar", eventIds.toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    returnResult.put(results.getString("event_id"), BookingStatus.valueOf(results.getString("status")));
+                }
+                return returnResult;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     /**
      * Find all bookings for a given event with a given status.
      * <p>
@@ -18,6 +18,7 @@ package uk.ac.cam.cl.dtg.isaac.dos.users;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -108,6 +109,24 @@ public class RegisteredUser extends AbstractSegueUser {
 
     }
 
+    /**
+     * Copy constructor, for handing out a user that is shared between requests.
+     *
+     * @param other
+     *            - the user to copy.
+     */
+    public RegisteredUser(final RegisteredUser other) {
+        this(other.id, other.givenName, other.familyName, other.email, other.role, other.dateOfBirth, other.gender,
+                other.registrationDate, other.lastUpdated, other.emailToVerify, other.emailVerificationToken,
+                other.emailVerificationStatus);
+        this.schoolId = other.schoolId;
+        this.schoolOther = other.schoolOther;
+        this.registeredContexts = other.registeredContexts == null ? null : new ArrayList<>(other.registeredContexts);
+        this.registeredContextsLastConfirmed = other.registeredContextsLastConfirmed;
+        this.lastSeen = other.lastSeen;
+        this.sessionToken = other.sessionToken;
+    }
+
     /**
      * Gets the id (integer form).
      * @return the id
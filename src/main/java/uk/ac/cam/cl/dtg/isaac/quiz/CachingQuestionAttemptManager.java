@@ -0,0 +1,345 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionPartAttemptSummary;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
+import uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * An IQuestionAttemptManager which keeps the parsed question attempts of recently active users in memory.
+ *
+ * A user's full attempt history is read once and then kept up to date as they answer questions, rather than being
+ * re-read and re-parsed for every question page, gameboard and progress request. The cache is bounded by the total
+ * number of attempts held. Cached attempts are shared, so callers are given copies of the maps and lists holding them.
+ *
+ * Attempts may also be recorded by other servers, so cached attempts are only used while the database's version of
+ * the user's attempts, which is cheap to read, still matches the version they were read at. Changes made through this
+ * manager's database other than by recording attempts, such as account merges, should still be followed by a call to
+ * {@link #invalidateCachedQuestionAttempts(Long)}.
+ */
+public class CachingQuestionAttemptManager implements IQuestionAttemptManager {
+    private static final Logger log = LoggerFactory.getLogger(CachingQuestionAttemptManager.class);
+
+    public static final long DEFAULT_MAX_ATTEMPTS = 250000;
+    private static final long EXPIRY_HOURS = 1;
+    private static final int WRITE_STAMP_STRIPES = 256;
+    private static final String METRIC_NAME = "question_attempts_by_user";
+
+    private final IQuestionAttemptManager database;
+    private final Cache<Long, CachedAttempts> attemptsByUser;
+
+    // Counts writes to the attempts of the users in each stripe, so that attempts read from the database while a
+    // write is in progress are never cached or appended to; see getQuestionAttempts and registerQuestionAttempt.
+    private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_STAMP_STRIPES);
+
+    /**
+     * Create a caching question attempt manager.
+     *
+     * @param database
+     *            - the question attempt manager which stores the attempts.
+     * @param maxAttempts
+     *            - the maximum total number of attempts to hold in memory.
+     * @param recordMetrics
+     *            - whether to register the cache with the Prometheus cache metrics collector.
+     */
+    public CachingQuestionAttemptManager(final IQuestionAttemptManager database, final long maxAttempts,
+                                         final boolean recordMetrics) {
+        this.database = database;
+
+        CacheBuilder<Long, CachedAttempts> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxAttempts)
+                .weigher((Long userId, CachedAttempts attempts) -> attempts.count)
+                .expireAfterAccess(EXPIRY_HOURS, TimeUnit.HOURS);
+        if (recordMetrics) {
+            builder.recordStats();
+        }
+        this.attemptsByUser = builder.build();
+        if (recordMetrics) {
+            CACHE_METRICS_COLLECTOR.addCache(METRIC_NAME, attemptsByUser);
+        }
+    }
+
+    @Override
+    public void registerQuestionAttempt(final Long userId, final String questionPageId, final String fullQuestionId,
+                                        final QuestionValidationResponse questionAttempt)
+            throws SegueDatabaseException {
+        long stampBeforeWrite = writeStamps.incrementAndGet(stripe(userId));
+        database.registerQuestionAttempt(userId, questionPageId, fullQuestionId, questionAttempt);
+
+        String versionAfterWrite = null;
+        try {
+            versionAfterWrite = database.getQuestionAttemptsVersion(userId);
+        } catch (SegueDatabaseException e) {
+            // The attempt was recorded, so only the cached attempts are dropped below:
+            log.warn("Unable to read question attempts version for user " + userId, e);
+        }
+        String newVersion = versionAfterWrite;
+
+        attemptsByUser.asMap().compute(userId, (id, cached) -> {
+            // Stop any read which started before the write completed from being cached:
+            writeStamps.incrementAndGet(stripe(userId));
+            if (null == cached || cached.stamp >= stampBeforeWrite) {
+                // Attempts read after this write started may or may not already include the new attempt:
+                return null;
+            }
+            if (null == newVersion || Long.parseLong(newVersion) != Long.parseLong(cached.version) + 1) {
+                // Another server has changed the user's attempts too, so the cached ones are missing something:
+                return null;
+            }
+            return cached.withAttempt(questionPageId, fullQuestionId, questionAttempt, newVersion);
+        });
+    }
+
+    @Override
+    public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
+            throws SegueDatabaseException {
+        CachedAttempts cached = getCurrentCachedAttempts(userId);
+        if (null != cached) {
+            return copyOf(cached.attempts, cached.attempts.keySet());
+        }
+
+        long stampBeforeRead = writeStamps.get(stripe(userId));
+        // Read the version first, so that an attempt recorded in between leaves the version out of date and the
+        // attempts are read again next time, rather than the version matching attempts which lack it:
+        String version = database.getQuestionAttemptsVersion(userId);
+        Map<String, Map<String, List<QuestionValidationResponse>>> attempts = database.getQuestionAttempts(userId);
+        CachedAttempts loaded = new CachedAttempts(stampBeforeRead, version, copyOf(attempts, attempts.keySet()));
+        attemptsByUser.asMap().compute(userId, (id, existing) -> {
+            if (null != existing) {
+                return existing;
+            }
+            // Only cache the attempts if nothing may have changed them while they were being read:
+            return writeStamps.get(stripe(userId)) == stampBeforeRead ? loaded : null;
+        });
+        return attempts;
+    }
+
+    @Override
+    public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttemptsByQuestionPages(
+            final Long userId, final Collection<String> questionPageIds) throws SegueDatabaseException {
+        CachedAttempts cached = getCurrentCachedAttempts(userId);
+        if (null != cached) {
+            return copyOf(cached.attempts, questionPageIds);
+        }
+        // Not worth reading the user's whole history to cache it when only a few pages are wanted:
+        return database.getQuestionAttemptsByQuestionPages(userId, questionPageIds);
+    }
+
+    @Override
+    public String getQuestionAttemptsVersion(final Long userId) throws SegueDatabaseException {
+        return database.getQuestionAttemptsVersion(userId);
+    }
+
+    @Override
+    public Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
+            getQuestionAttemptsByUsersAndQuestionPrefix(final List<Long> userIds, final List<String> questionPage)
+            throws SegueDatabaseException {
+        return database.getQuestionAttemptsByUsersAndQuestionPrefix(userIds, questionPage);
+    }
+
+    @Override
+    public Map<Long, Map<String, Map<String, QuestionPartAttemptSummary>>>
+            getQuestionAttemptSummariesByUsersAndQuestionPages(final List<Long> userIds,
+                                                               final List<String> questionPageIds)
+            throws SegueDatabaseException {
+        return database.getQuestionAttemptSummariesByUsersAndQuestionPages(userIds, questionPageIds);
+    }
+
+    @Override
+    public Map<String, Map<String, QuestionPartAttemptSummary>> getQuestionAttemptSummaries(final Long userId)
+            throws SegueDatabaseException {
+        return database.getQuestionAttemptSummaries(userId);
+    }
+
+    @Override
+    public Map<Long, Map<String, Boolean>> getQuestionPartCorrectnessByUsersAndQuestionPrefix(
+            final List<Long> userIds, final List<String> questionPage) throws SegueDatabaseException {
+        return database.getQuestionPartCorrectnessByUsersAndQuestionPrefix(userIds, questionPage);
+    }
+
+    @Override
+    public void registerAnonymousQuestionAttempt(final String userId, final String questionPageId,
+                                                 final String fullQuestionId,
+                                                 final QuestionValidationResponse questionAttempt)
+            throws SegueDatabaseException {
+        database.registerAnonymousQuestionAttempt(userId, questionPageId, fullQuestionId, questionAttempt);
+    }
+
+    @Override
+    public Map<String, Map<String, List<QuestionValidationResponse>>> getAnonymousQuestionAttempts(
+            final String anonymousId) throws SegueDatabaseException {
+        return database.getAnonymousQuestionAttempts(anonymousId);
+    }
+
+    @Override
+    public void mergeAnonymousQuestionInformationWithRegisteredUserRecord(final String anonymousUserId,
+                                                                          final Long registeredUserId)
+            throws SegueDatabaseException {
+        try {
+            database.mergeAnonymousQuestionInformationWithRegisteredUserRecord(anonymousUserId, registeredUserId);
+        } finally {
+            // Even a failed merge may have recorded some of the attempts:
+            this.invalidateCachedQuestionAttempts(registeredUserId);
+        }
+    }
+
+    @Override
+    public void invalidateCachedQuestionAttempts(final Long userId) {
+        writeStamps.incrementAndGet(stripe(userId));
+        attemptsByUser.invalidate(userId);
+    }
+
+    @Override
+    public Map<Role, Long> getAnsweredQuestionRolesOverPrevious(final TimeInterval timeInterval)
+            throws SegueDatabaseException {
+        return database.getAnsweredQuestionRolesOverPrevious(timeInterval);
+    }
+
+    @Override
+    public Map<Date, Long> getQuestionAttemptCountForUserByDateRange(final Date fromDate, final Date toDate,
+                                                                     final Long userId, final Boolean perDay)
+            throws SegueDatabaseException {
+        return database.getQuestionAttemptCountForUserByDateRange(fromDate, toDate, userId, perDay);
+    }
+
+    /**
+     * Get a user's cached attempts, if they are still the attempts in the database.
+     *
+     * @param userId - the user id.
+     * @return the cached attempts, or null if there are none or they are out of date.
+     * @throws SegueDatabaseException - if the version of the user's attempts cannot be read.
+     */
+    private CachedAttempts getCurrentCachedAttempts(final Long userId) throws SegueDatabaseException {
+        CachedAttempts cached = attemptsByUser.getIfPresent(userId);
+        if (null == cached) {
+            return null;
+        }
+        if (!cached.version.equals(database.getQuestionAttemptsVersion(userId))) {
+            // Changed elsewhere, most likely by another server; leave any newer entry in place:
+            attemptsByUser.asMap().remove(userId, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * @param userId - the user id.
+     * @return the index of the write stamp for the user.
+     */
+    private static int stripe(final Long userId) {
+        return Math.floorMod(userId.hashCode(), WRITE_STAMP_STRIPES);
+    }
+
+    /**
+     * Copy the maps and lists holding some pages' attempts, keeping the order of the pages and question parts.
+     *
+     * @param attempts - question page --> question part --> attempts at the part.
+     * @param questionPageIds - the pages to copy; pages without any attempts are left out.
+     * @return a copy of the attempts at those pages, sharing the attempts themselves.
+     */
+    private static Map<String, Map<String, List<QuestionValidationResponse>>> copyOf(
+            final Map<String, Map<String, List<QuestionValidationResponse>>> attempts,
+            final Collection<String> questionPageIds) {
+        Map<String, Map<String, List<QuestionValidationResponse>>> copy = Maps.newLinkedHashMap();
+        // Iterate over the attempts, not the requested pages, so the pages stay in the order they were attempted:
+        for (Map.Entry<String, Map<String, List<QuestionValidationResponse>>> page : attempts.entrySet()) {
+            if (!questionPageIds.contains(page.getKey())) {
+                continue;
+            }
+            Map<String, List<QuestionValidationResponse>> pageCopy = Maps.newLinkedHashMap();
+            for (Map.Entry<String, List<QuestionValidationResponse>> part : page.getValue().entrySet()) {
+                pageCopy.put(part.getKey(), Lists.newArrayList(part.getValue()));
+            }
+            copy.put(page.getKey(), pageCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * A user's attempts, which are never modified once cached; new attempts are added by replacing the entry.
+     */
+    private static final class CachedAttempts {
+        private final long stamp;
+        private final String version;
+        private final Map<String, Map<String, List<QuestionValidationResponse>>> attempts;
+        private final int count;
+
+        /**
+         * @param stamp the user's write stamp when the attempts were read.
+         * @param version the version of the user's attempts in the database, read before the attempts.
+         * @param attempts question page --> question part --> attempts at the part, in the order they were made.
+         */
+        private CachedAttempts(final long stamp, final String version,
+                               final Map<String, Map<String, List<QuestionValidationResponse>>> attempts) {
+            this(stamp, version, attempts, attempts.values().stream()
+                    .flatMap(page -> page.values().stream()).mapToInt(List::size).sum());
+        }
+
+        /**
+         * @param stamp the user's write stamp when the attempts were read.
+         * @param version the version of the user's attempts in the database, read before the attempts.
+         * @param attempts question page --> question part --> attempts at the part, in the order they were made.
+         * @param count the total number of attempts.
+         */
+        private CachedAttempts(final long stamp, final String version,
+                               final Map<String, Map<String, List<QuestionValidationResponse>>> attempts,
+                               final int count) {
+            this.stamp = stamp;
+            this.version = version;
+            this.attempts = attempts;
+            this.count = count;
+        }
+
+        /**
+         * @param questionPageId the page of the question part attempted.
+         * @param fullQuestionId the question part attempted.
+         * @param questionAttempt the new attempt.
+         * @param newVersion the version of the user's attempts in the database including the new one.
+         * @return the attempts including the new one, copying only the maps and list which change.
+         */
+        private CachedAttempts withAttempt(final String questionPageId, final String fullQuestionId,
+                                           final QuestionValidationResponse questionAttempt, final String newVersion) {
+            Map<String, Map<String, List<QuestionValidationResponse>>> newAttempts = Maps.newLinkedHashMap(attempts);
+            Map<String, List<QuestionValidationResponse>> page = Maps.newLinkedHashMap(
+                    attempts.getOrDefault(questionPageId, Maps.newLinkedHashMap()));
+            List<QuestionValidationResponse> part = Lists.newArrayList(
+                    page.getOrDefault(fullQuestionId, Lists.newArrayList()));
+            part.add(questionAttempt);
+            page.put(fullQuestionId, part);
+            newAttempts.put(questionPageId, page);
+            return new CachedAttempts(stamp, newVersion, newAttempts, count + 1);
+        }
+    }
+}
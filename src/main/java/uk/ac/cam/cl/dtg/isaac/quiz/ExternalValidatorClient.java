@@ -0,0 +1,308 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.Histogram;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATOR_LATENCY_HISTOGRAM;
+
+/**
+ * A shared HTTP client for one external checker host, e.g. the equality checker or the chemistry checker.
+ *
+ * Connections are pooled and kept alive between requests, and identical requests which are already in flight are
+ * coalesced so that many students submitting the same answer at once only cost one round trip. If the checker keeps
+ * failing, a simple circuit breaker fails subsequent requests immediately for a short period rather than tying up
+ * request threads waiting for timeouts. Only a bounded number of requests may wait for a connection; beyond that,
+ * requests are refused straight away rather than queueing behind a slow checker.
+ *
+ * The client owns its threads and connections, so must be closed once it is no longer needed.
+ */
+public class ExternalValidatorClient implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ExternalValidatorClient.class);
+
+    public static final int DEFAULT_TIMEOUT_MILLISECONDS = 5000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    private static final int FAILURES_BEFORE_CIRCUIT_OPENS = 5;
+    private static final long CIRCUIT_OPEN_MILLISECONDS = 10000;
+    private static final int MAX_WAITING_REQUESTS_PER_CONNECTION = 10;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    // Waiting for a pooled connection, connecting and reading the response are each limited by the timeout:
+    private static final int TIMEOUTS_PER_REQUEST = 3;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<HashMap<String, Object>> RESPONSE_TYPE = new TypeReference<>() { };
+
+    private final String name;
+    private final String baseUrl;
+    private final long waitTimeoutMilliseconds;
+    private final CloseableHttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<HashMap<String, Object>>> inFlightRequests;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong circuitOpenUntil = new AtomicLong();
+
+    /**
+     * Create a client for an external checker.
+     *
+     * @param name
+     *            - the name of the checker, used to label its latency metrics.
+     * @param hostname
+     *            - the checker host.
+     * @param port
+     *            - the checker port.
+     * @param timeoutMilliseconds
+     *            - the connect, connection request and socket timeout.
+     * @param maxConnections
+     *            - the maximum number of open connections to the checker. Up to ten times as many requests may wait
+     *            for a connection before further requests are refused.
+     */
+    public ExternalValidatorClient(final String name, final String hostname, final String port,
+                                   final int timeoutMilliseconds, final int maxConnections) {
+        this.name = name;
+        this.baseUrl = "http://" + hostname + ":" + port;
+        this.waitTimeoutMilliseconds = (long) timeoutMilliseconds * TIMEOUTS_PER_REQUEST;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMilliseconds)
+                .setConnectionRequestTimeout(timeoutMilliseconds)
+                .setSocketTimeout(timeoutMilliseconds)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.executor = new ThreadPoolExecutor(maxConnections, maxConnections,
+                IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxConnections * MAX_WAITING_REQUESTS_PER_CONNECTION),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.inFlightRequests = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Make a JSON HTTP POST request to the checker, and provide the response JSON as a HashMap.
+     *
+     * The returned map may be shared with other callers who made an identical request, so must not be modified.
+     *
+     * @param path - the path of the checker endpoint, e.g. "/check".
+     * @param requestBody - the JSON request body as a Map.
+     * @return the response JSON, as a HashMap
+     * @throws IOException - on failure to communicate with the checker, if it does not respond in time, or if the
+     *                       circuit breaker is open.
+     */
+    public HashMap<String, Object> check(final String path, final Map<String, String> requestBody)
+            throws IOException {
+        return checkAll(path, List.of(requestBody)).get(0);
+    }
+
+    /**
+     * Make several JSON HTTP POST requests to the checker in parallel, and provide the responses in request order.
+     *
+     * @param path - the path of the checker endpoint, e.g. "/check".
+     * @param requestBodies - the JSON request bodies.
+     * @return the response JSON for each request, in the same order as the requests.
+     * @throws IOException - on failure to communicate with the checker, if it does not respond to every request in
+     *                       time, or if the circuit breaker is open.
+     */
+    public List<HashMap<String, Object>> checkAll(final String path, final List<Map<String, String>> requestBodies)
+            throws IOException {
+        List<CompletableFuture<HashMap<String, Object>>> futures = new ArrayList<>(requestBodies.size());
+        for (Map<String, String> requestBody : requestBodies) {
+            futures.add(checkAsync(path, requestBody));
+        }
+        List<HashMap<String, Object>> responses = new ArrayList<>(requestBodies.size());
+        // The requests run in parallel, so share one deadline rather than allowing the timeout for each in turn:
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMilliseconds);
+        try {
+            for (CompletableFuture<HashMap<String, Object>> future : futures) {
+                responses.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + name, e);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (TimeoutException e) {
+            // The request carries on in the background, and is limited by the client's own timeouts:
+            throw new IOException(String.format("No response from %s within %dms.", name, waitTimeoutMilliseconds),
+                    e);
+        }
+        return responses;
+    }
+
+    /**
+     * @param response a response from a checker.
+     * @return whether the checker failed, rather than giving a result for the request. Answers with syntax errors or
+     *         similar problems are reported as errors without a code, and are a result.
+     */
+    public static boolean isCheckerError(final Map<String, Object> response) {
+        return response.containsKey("error") && response.containsKey("code");
+    }
+
+    /**
+     * Start a request to the checker, joining an identical in-flight request if there is one.
+     *
+     * @param path the path of the checker endpoint.
+     * @param requestBody the JSON request body as a Map.
+     * @return a future for the response.
+     * @throws IOException if the circuit breaker is open, too many requests are already waiting, or the request
+     *                     cannot be serialised.
+     */
+    private CompletableFuture<HashMap<String, Object>> checkAsync(final String path,
+                                                                  final Map<String, String> requestBody)
+            throws IOException {
+        if (System.currentTimeMillis() < circuitOpenUntil.get()) {
+            throw new IOException(String.format("Not contacting %s after repeated failures.", name));
+        }
+
+        // Sort the keys so that equivalent requests serialise identically and can be coalesced.
+        String requestString = objectMapper.writeValueAsString(new TreeMap<>(requestBody));
+        String url = baseUrl + path;
+        String requestKey = url + "\n" + requestString;
+
+        CompletableFuture<HashMap<String, Object>> newRequest = new CompletableFuture<>();
+        CompletableFuture<HashMap<String, Object>> existingRequest = inFlightRequests.putIfAbsent(requestKey, newRequest);
+        if (existingRequest != null) {
+            return existingRequest;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    newRequest.complete(post(url, requestString));
+                } catch (IOException | RuntimeException e) {
+                    newRequest.completeExceptionally(e);
+                } finally {
+                    inFlightRequests.remove(requestKey, newRequest);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            IOException rejected = new IOException(executor.isShutdown()
+                    ? String.format("The client for %s has been closed.", name)
+                    : String.format("Too many requests already waiting for %s.", name), e);
+            // Anyone who joined this request in the meantime must not wait for it either:
+            inFlightRequests.remove(requestKey, newRequest);
+            newRequest.completeExceptionally(rejected);
+            throw rejected;
+        }
+        return newRequest;
+    }
+
+    /**
+     * Stop the client's threads, waiting briefly for requests already started, and release its connections.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn(String.format("Requests to %s still running at shutdown; abandoning them.", name));
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("Error releasing connections to " + name, e);
+        }
+    }
+
+    /**
+     * Send a request to the checker, recording its latency and updating the circuit breaker.
+     *
+     * @param url the checker endpoint.
+     * @param requestString the JSON request body.
+     * @return the response JSON, as a HashMap.
+     * @throws IOException on failure to communicate with the checker.
+     */
+    private HashMap<String, Object> post(final String url, final String requestString) throws IOException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setEntity(new StringEntity(requestString, ContentType.APPLICATION_JSON));
+
+        Histogram.Timer timer = VALIDATOR_LATENCY_HISTOGRAM.labels(name).startTimer();
+        try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost)) {
+            HttpEntity responseEntity = httpResponse.getEntity();
+            String responseString = EntityUtils.toString(responseEntity);
+            HashMap<String, Object> response = objectMapper.readValue(responseString, RESPONSE_TYPE);
+            consecutiveFailures.set(0);
+            return response;
+        } catch (IOException e) {
+            if (consecutiveFailures.incrementAndGet() >= FAILURES_BEFORE_CIRCUIT_OPENS) {
+                log.error(String.format("%s has failed %d times in a row; not contacting it for %d seconds.",
+                        name, consecutiveFailures.get(), CIRCUIT_OPEN_MILLISECONDS / 1000));
+                circuitOpenUntil.set(System.currentTimeMillis() + CIRCUIT_OPEN_MILLISECONDS);
+                consecutiveFailures.set(0);
+            }
+            throw e;
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+    /**
+     * @param cause the failure of a request.
+     * @return the failure as an IOException.
+     */
+    private IOException asIOException(final Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException("Unexpected failure while contacting " + name, cause);
+    }
+}
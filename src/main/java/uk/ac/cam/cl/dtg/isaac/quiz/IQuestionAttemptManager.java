@@ -1,5 +1,6 @@
 package uk.ac.cam.cl.dtg.isaac.quiz;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -7,6 +8,7 @@ import java.util.Map;
 import uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionPartAttemptSummary;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 
@@ -46,6 +48,32 @@ public interface IQuestionAttemptManager {
     Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException;
 
+    /**
+     * Get a user's question attempts for some question pages only.
+     *
+     * @param userId
+     *            - the id of the user to search for.
+     * @param questionPageIds
+     *            - the ids of the question pages to get attempts for.
+     * @return the questionAttempts map, containing only the requested pages which the user has attempted.
+     * @throws SegueDatabaseException
+     *             - If there is a database error.
+     */
+    Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttemptsByQuestionPages(Long userId,
+            Collection<String> questionPageIds) throws SegueDatabaseException;
+
+    /**
+     * Get a value which changes whenever a user's question attempts do, without reading the attempts.
+     *
+     * @param userId
+     *            - the id of the user to search for.
+     * @return a version number for the user's question attempts, which increases by exactly one for each attempt
+     *          recorded and changes whenever the attempts change in any other way.
+     * @throws SegueDatabaseException
+     *             - If there is a database error.
+     */
+    String getQuestionAttemptsVersion(Long userId) throws SegueDatabaseException;
+
     /**
      * A method that makes a single database request for a group of users and questions to get all of their attempt
      * information back.
@@ -53,9 +81,7 @@ public interface IQuestionAttemptManager {
      * @param userIds
      *            - list of user ids to look up results for.
      * @param questionPage
-     *            - list of question page ids (prefixes to question ids) that we should look up. If this list is
-     *              too long, it may be ignored and all attempts returned for the relevant users to avoid expensive
-     *              additional filtering.
+     *            - list of question page ids that we should look up.
      * @return a Map of userId --> Map of question_page --> Map of Question_id --> List of lightweight users attempts
      *          (without the actual question attempt values).
      * @throws SegueDatabaseException
@@ -64,6 +90,50 @@ public interface IQuestionAttemptManager {
     Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
             getQuestionAttemptsByUsersAndQuestionPrefix(List<Long> userIds, List<String> questionPage)
             throws SegueDatabaseException;
+
+    /**
+     * Get the summary of each user's attempts at each part of some question pages, without fetching the attempts.
+     *
+     * @param userIds
+     *            - list of user ids to look up results for.
+     * @param questionPageIds
+     *            - list of question page ids that we should look up.
+     * @return a Map of userId --> Map of question_page --> Map of Question_id --> summary of the user's attempts;
+     *          question parts a user has not attempted are absent.
+     * @throws SegueDatabaseException
+     *             - if a database error occurrs
+     */
+    Map<Long, Map<String, Map<String, QuestionPartAttemptSummary>>> getQuestionAttemptSummariesByUsersAndQuestionPages(
+            List<Long> userIds, List<String> questionPageIds) throws SegueDatabaseException;
+
+    /**
+     * Get the summary of a user's attempts at every question part they have attempted.
+     *
+     * @param userId
+     *            - the id of the user to search for.
+     * @return a Map of question_page --> Map of Question_id --> summary of the user's attempts, with the question
+     *          pages in the order they were first attempted.
+     * @throws SegueDatabaseException
+     *             - If there is a database error.
+     */
+    Map<String, Map<String, QuestionPartAttemptSummary>> getQuestionAttemptSummaries(Long userId)
+            throws SegueDatabaseException;
+
+    /**
+     * Find whether each user has answered each question part correctly, without fetching the individual attempts.
+     *
+     * @param userIds
+     *            - list of user ids to look up results for.
+     * @param questionPage
+     *            - list of question page ids that we should look up.
+     * @return a Map of userId --> Map of question_id --> true if any attempt was correct; question parts a user
+     *          has not attempted are absent.
+     * @throws SegueDatabaseException
+     *             - if a database error occurrs
+     */
+    Map<Long, Map<String, Boolean>> getQuestionPartCorrectnessByUsersAndQuestionPrefix(List<Long> userIds,
+                                                                                    List<String> questionPage)
+            throws SegueDatabaseException;
     
     /**
      * @param userId
@@ -100,6 +170,17 @@ public interface IQuestionAttemptManager {
     void mergeAnonymousQuestionInformationWithRegisteredUserRecord(String anonymousUserId, Long registeredUserId)
             throws SegueDatabaseException;
 
+    /**
+     * Forget anything held in memory about a user's question attempts, after they have been changed by something
+     * other than this manager, such as an account merge.
+     *
+     * @param userId
+     *            - the id of the user whose attempts have changed.
+     */
+    default void invalidateCachedQuestionAttempts(final Long userId) {
+        // Nothing is held in memory by default.
+    }
+
     /**
      * Count the users by role which have answered questions over the previous time interval
      * @param timeInterval time interval over which to count
@@ -17,27 +17,13 @@ package uk.ac.cam.cl.dtg.isaac.quiz;
 
 
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.EntityUtils;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 
-import java.io.IOException;
-import java.io.StringWriter;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Interface that allows the quiz engine to validate questions and answers.
@@ -68,6 +54,30 @@ public interface IValidator {
     QuestionValidationResponse validateQuestionResponse(Question question, Choice answer)
             throws ValidatorUnavailableException;
 
+    /**
+     * Validate an answer to a question known to belong to a particular content version.
+     *
+     * Validators which keep state derived from questions between attempts, such as compiled rules, may use the
+     * version to tell copies of a question apart; others need not override this.
+     *
+     * @param question
+     *            - question to check against.
+     * @param contentSha
+     *            - the content version the question was loaded from, or null if it is not known.
+     * @param answer
+     *            - answer from the user.
+     *
+     * @throws ValidatorUnavailableException
+     *            - If the checking server/code is not working.
+     *
+     * @return a QuestionValidationResponseDTO
+     */
+    default QuestionValidationResponse validateQuestionResponse(final Question question, final String contentSha,
+                                                                final Choice answer)
+            throws ValidatorUnavailableException {
+        return validateQuestionResponse(question, answer);
+    }
+
     /**
      * Create a new list of Choice objects, sorted into correct-first order for checking.
      *
@@ -89,38 +99,6 @@ public interface IValidator {
     }
 
 
-    /**
-     * Make a JSON HTTP POST request to an external validator, and provide the response JSON as a HashMap.
-     *
-     * @param externalValidatorUrl - the URL of an external validator to POST to.
-     * @param requestBody - the JSON request body as a Map
-     * @return the response JSON, as a HashMap
-     * @throws IOException - on failure to communicate with the external validator
-     */
-    default HashMap<String, Object> getResponseFromExternalValidator(final String externalValidatorUrl,
-                                                                     final Map<String, String> requestBody) throws IOException {
-        // This is ridiculous. All we want to do is pass some JSON to a REST endpoint and get some JSON back.
-        ObjectMapper mapper = new ObjectMapper();
-        StringWriter sw = new StringWriter();
-        JsonGenerator g = new JsonFactory().createGenerator(sw);
-        mapper.writeValue(g, requestBody);
-        g.close();
-        String requestString = sw.toString();
-
-        HttpClient httpClient = new DefaultHttpClient();
-        HttpPost httpPost = new HttpPost(externalValidatorUrl);
-
-        httpPost.setEntity(new StringEntity(requestString, "UTF-8"));
-        httpPost.addHeader("Content-Type", "application/json");
-
-        HttpResponse httpResponse = httpClient.execute(httpPost);
-        HttpEntity responseEntity = httpResponse.getEntity();
-        String responseString = EntityUtils.toString(responseEntity);
-        HashMap<String, Object> response = mapper.readValue(responseString, HashMap.class);
-
-        return response;
-    }
-
     /**
      *  Check if a feedback content object contains no meaningful feedback.
      *
@@ -28,9 +28,12 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.FreeTextRule;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
+@DeterministicValidator
 public class IsaacFreeTextValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacFreeTextValidator.class);
 
@@ -43,6 +46,22 @@ public class IsaacFreeTextValidator implements IValidator {
     private static final String ESCAPE_CHARACTER = "\\";
     private static final String TEMPORARY_OBSCURE_CHARACTER = "\uBAD1"; // Same character as is used in PMatch library
 
+    private final ValidatorRuleCache ruleCache;
+
+    /**
+     * Create a validator which converts the rules of each question on every attempt.
+     */
+    public IsaacFreeTextValidator() {
+        this(ValidatorRuleCache.uncached());
+    }
+
+    /**
+     * @param ruleCache - the shared cache of compiled question rules.
+     */
+    public IsaacFreeTextValidator(final ValidatorRuleCache ruleCache) {
+        this.ruleCache = ruleCache;
+    }
+
     private static String convertToPMatchWildcardNotation(final String ruleValue) {
         String ouSyntaxRuleValue = ruleValue;
         for (Map.Entry<String, String> wildcardMap : WILDCARD_CONVERSION_MAP.entrySet()) {
@@ -62,15 +81,28 @@ public class IsaacFreeTextValidator implements IValidator {
         return ouSyntaxRuleValue;
     }
 
-    private String removeNonAlphanumericChars(final String answer, final String rule) {
-        String strippedAnswer = answer;
+    /**
+     * @param rule - the rule value, whose own punctuation should be kept in answers.
+     * @return the non-alphanumeric characters to remove from answers checked against the rule.
+     */
+    private static String charactersToStrip(final String rule) {
+        StringBuilder charactersToStrip = new StringBuilder();
         for (char nonAlphanumericChar : NON_ALPHANUMERIC_CHARS.toCharArray()) {
-            String nonAlphanumericCharStr = String.valueOf(nonAlphanumericChar);
-            if (!rule.contains(nonAlphanumericCharStr)) {
-                strippedAnswer = strippedAnswer.replace(nonAlphanumericCharStr, " ");
+            if (rule.indexOf(nonAlphanumericChar) < 0) {
+                charactersToStrip.append(nonAlphanumericChar);
             }
         }
-        return strippedAnswer;
+        return charactersToStrip.toString();
+    }
+
+    private static String removeNonAlphanumericChars(final String answer, final String charactersToStrip) {
+        char[] strippedAnswer = answer.toCharArray();
+        for (int i = 0; i < strippedAnswer.length; i++) {
+            if (charactersToStrip.indexOf(strippedAnswer[i]) >= 0) {
+                strippedAnswer[i] = ' ';
+            }
+        }
+        return new String(strippedAnswer);
     }
 
     private static String extractAnswerValue(Choice answer, boolean caseInsensitive) {
@@ -105,27 +137,52 @@ public class IsaacFreeTextValidator implements IValidator {
         return result.toString();
     }
 
+    /**
+     * Convert every rule of a question to the form PMatch uses, so this is only done once per content version.
+     *
+     * @param question - the free text question.
+     * @return the compiled rules, in question order.
+     */
+    private static CompiledRules compileRules(final Question question) {
+        List<Choice> choices = ((IsaacFreeTextQuestion) question).getChoices();
+        List<CompiledRule> rules = new ArrayList<>();
+        for (int i = 0; i < choices.size(); i++) {
+            Choice rule = choices.get(i);
+            if (rule instanceof FreeTextRule) {
+                FreeTextRule freeTextRule = (FreeTextRule) rule;
+                rules.add(new CompiledRule(i, freeTextRule.isCaseInsensitive(),
+                        charactersToStrip(freeTextRule.getValue()), evaluateMatchingOptions(freeTextRule),
+                        extractRuleValue(freeTextRule)));
+            } else {
+                log.error("QuestionId: " + question.getId() + " contains a choice which is not a FreeTextRule.");
+            }
+        }
+        return new CompiledRules(rules);
+    }
+
     @Override
     public final QuestionValidationResponse validateQuestionResponse(final Question question, final Choice answer) {
+        return validateQuestionResponse(question, null, answer);
+    }
+
+    @Override
+    public final QuestionValidationResponse validateQuestionResponse(final Question question, final String contentSha,
+                                                                     final Choice answer) {
         validateInputs(question, answer);
         IsaacFreeTextQuestion freeTextQuestion = (IsaacFreeTextQuestion)question;
 
         boolean isCorrectResponse = false;
         Content feedback = null;
-        for (Choice rule : freeTextQuestion.getChoices()) {
-            if (rule instanceof FreeTextRule) {
-                FreeTextRule freeTextRule = (FreeTextRule) rule;
-                String answerString = extractAnswerValue(answer, freeTextRule.isCaseInsensitive());
-                answerString = removeNonAlphanumericChars(answerString, freeTextRule.getValue());
-                PMatch questionAnswerMatcher = new PMatch(answerString);
-                String matchingParameters = evaluateMatchingOptions(freeTextRule);
-                if (questionAnswerMatcher.match(matchingParameters, extractRuleValue(freeTextRule))) {
-                    isCorrectResponse = rule.isCorrect();
-                    feedback = (Content) rule.getExplanation();
-                    break; // on first matching rule
-                }
-            } else {
-                log.error("QuestionId: " + question.getId() + " contains a choice which is not a FreeTextRule.");
+        for (CompiledRule compiledRule : ruleCache.get(contentSha, question, CompiledRules.class,
+                IsaacFreeTextValidator::compileRules).rules) {
+            String answerString = extractAnswerValue(answer, compiledRule.caseInsensitive);
+            answerString = removeNonAlphanumericChars(answerString, compiledRule.charactersToStrip);
+            PMatch questionAnswerMatcher = new PMatch(answerString);
+            if (questionAnswerMatcher.match(compiledRule.matchingParameters, compiledRule.pMatchRuleValue)) {
+                Choice rule = freeTextQuestion.getChoices().get(compiledRule.choiceIndex);
+                isCorrectResponse = rule.isCorrect();
+                feedback = (Content) rule.getExplanation();
+                break; // on first matching rule
             }
         }
 
@@ -136,4 +193,45 @@ public class IsaacFreeTextValidator implements IValidator {
 
         return new QuestionValidationResponse(question.getId(), answer, isCorrectResponse, feedback, new Date());
     }
+
+    /**
+     * The compiled rules of a question, in question order.
+     */
+    private static final class CompiledRules {
+        private final List<CompiledRule> rules;
+
+        /**
+         * @param rules the compiled rules.
+         */
+        private CompiledRules(final List<CompiledRule> rules) {
+            this.rules = rules;
+        }
+    }
+
+    /**
+     * A free text rule converted to what PMatch needs to check an answer against it.
+     */
+    private static final class CompiledRule {
+        private final int choiceIndex;
+        private final boolean caseInsensitive;
+        private final String charactersToStrip;
+        private final String matchingParameters;
+        private final String pMatchRuleValue;
+
+        /**
+         * @param choiceIndex the position of the rule in the question's choices.
+         * @param caseInsensitive whether answers are lower cased before matching.
+         * @param charactersToStrip the punctuation to remove from answers.
+         * @param matchingParameters the PMatch options of the rule.
+         * @param pMatchRuleValue the rule value in PMatch wildcard notation.
+         */
+        private CompiledRule(final int choiceIndex, final boolean caseInsensitive, final String charactersToStrip,
+                             final String matchingParameters, final String pMatchRuleValue) {
+            this.choiceIndex = choiceIndex;
+            this.caseInsensitive = caseInsensitive;
+            this.charactersToStrip = charactersToStrip;
+            this.matchingParameters = matchingParameters;
+            this.pMatchRuleValue = pMatchRuleValue;
+        }
+    }
 }
@@ -29,9 +29,11 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -39,6 +41,7 @@ import static java.lang.Math.min;
 /**
  * Validator that only provides functionality to validate Numeric questions.
  */
+@DeterministicValidator
 public class IsaacNumericValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacNumericValidator.class);
 
@@ -54,9 +57,11 @@ public class IsaacNumericValidator implements IValidator {
        Inputs of style "1x10^3" and of style "10^3" must be dealt with separately, since for the latter we need
        to add a "1" to the start so both can become "1e3" when replacing the 10 part.
      */
-    private static final String PREFIXED_POWER_OF_TEN_REGEX = "[ ]?((\\*|x|X|×|\\\\times)[ ]?10(\\^|\\*\\*)|e|E)([({](?<exp1>-?[0-9]+)[)}]|(?<exp2>-?[0-9]+))";
-    private static final String BARE_POWER_OF_TEN_REGEX = "^(10(\\^|\\*\\*))([({](?<exp1>-?[0-9]+)[)}]|(?<exp2>-?[0-9]+))$";
-    private static final String INVALID_NEGATIVE_STANDARD_FORM = ".*?10-([0-9]+).*?";
+    private static final Pattern PREFIXED_POWER_OF_TEN_REGEX = Pattern.compile("[ ]?((\\*|x|X|×|\\\\times)[ ]?10(\\^|\\*\\*)|e|E)([({](?<exp1>-?[0-9]+)[)}]|(?<exp2>-?[0-9]+))");
+    private static final Pattern BARE_POWER_OF_TEN_REGEX = Pattern.compile("^(10(\\^|\\*\\*))([({](?<exp1>-?[0-9]+)[)}]|(?<exp2>-?[0-9]+))$");
+    private static final Pattern INVALID_NEGATIVE_STANDARD_FORM = Pattern.compile(".*?10-([0-9]+).*?");
+
+    private final ValidatorRuleCache ruleCache;
 
     /**
      * A class to represent the significant figures a number has, noting if it is ambiguous and the range if so.
@@ -80,9 +85,67 @@ public class IsaacNumericValidator implements IValidator {
         }
     }
 
+    /**
+     * The parsed form of a question's choices, in checking order.
+     */
+    private static final class CompiledQuantities {
+        private final List<CompiledQuantity> orderedQuantities;
+
+        /**
+         * @param orderedQuantities the parsed choices, correct choices first.
+         */
+        private CompiledQuantities(final List<CompiledQuantity> orderedQuantities) {
+            this.orderedQuantities = orderedQuantities;
+        }
+    }
+
+    /**
+     * A choice of a numeric question with its value already parsed, so it need not be parsed again on every attempt.
+     */
+    private static final class CompiledQuantity {
+        private final int choiceIndex;
+        private final String value;
+        private final String units;
+        private final BigDecimal parsedValue;
+
+        /**
+         * @param choiceIndex the position of the choice in the question's choices.
+         * @param value       the trimmed value of the choice.
+         * @param units       the trimmed units of the choice, or null if it has none.
+         * @param parsedValue the exact value of the choice, or null if the value cannot be parsed.
+         */
+        private CompiledQuantity(final int choiceIndex, final String value, final String units,
+                                 final BigDecimal parsedValue) {
+            this.choiceIndex = choiceIndex;
+            this.value = value;
+            this.units = units;
+            this.parsedValue = parsedValue;
+        }
+    }
+
+    /**
+     * Create a validator which parses the choices of each question on every attempt.
+     */
+    public IsaacNumericValidator() {
+        this(ValidatorRuleCache.uncached());
+    }
+
+    /**
+     * @param ruleCache - the shared cache of parsed question choices.
+     */
+    public IsaacNumericValidator(final ValidatorRuleCache ruleCache) {
+        this.ruleCache = ruleCache;
+    }
+
     @Override
     public final QuestionValidationResponse validateQuestionResponse(
             final Question question, final Choice answer) {
+        return validateQuestionResponse(question, null, answer);
+    }
+
+    @Override
+    public final QuestionValidationResponse validateQuestionResponse(
+            final Question question, final String contentSha, final Choice answer) {
 
         if (!(question instanceof IsaacNumericQuestion)) {
             throw new IllegalArgumentException(String.format(
@@ -152,9 +215,9 @@ public class IsaacNumericValidator implements IValidator {
 
             // Step 2 - then do correct answer numeric equivalence checking.
             if (shouldValidateWithUnits) {
-                bestResponse = this.validateWithUnits(isaacNumericQuestion, answerFromUser);
+                bestResponse = this.validateWithUnits(isaacNumericQuestion, contentSha, answerFromUser);
             } else {
-                bestResponse = this.validateWithoutUnits(isaacNumericQuestion, answerFromUser);
+                bestResponse = this.validateWithoutUnits(isaacNumericQuestion, contentSha, answerFromUser);
             }
 
             // If incorrect and we have not used the default validation response then go ahead and return it 
@@ -209,7 +272,7 @@ public class IsaacNumericValidator implements IValidator {
             log.debug("Validation failed for '" + answerFromUser.getValue() + " " + answerFromUser.getUnits() + "': "
                     + "cannot parse as number!");
             HashSet<String> responseTags = new HashSet<>(ImmutableList.of("unrecognised_format"));
-            if (answerFromUser.getValue().matches(INVALID_NEGATIVE_STANDARD_FORM)) {
+            if (INVALID_NEGATIVE_STANDARD_FORM.matcher(answerFromUser.getValue()).matches()) {
                 responseTags.add("invalid_std_form");
             }
             Content invalidFormatResponse = new Content("Your answer is not in a format we recognise, please enter your answer as a decimal number.");
@@ -223,11 +286,12 @@ public class IsaacNumericValidator implements IValidator {
      * Numerically validate the students answer ensuring that the correct unit value is specified.
      *
      * @param isaacNumericQuestion - question to validate.
+     * @param contentSha           - the content version the question belongs to, or null if it is not known.
      * @param answerFromUser       - answer from user
      * @return the validation response
      */
     private QuantityValidationResponse validateWithUnits(final IsaacNumericQuestion isaacNumericQuestion,
-                                                         final Quantity answerFromUser) {
+                                                         final String contentSha, final Quantity answerFromUser) {
         log.debug("\t[validateWithUnits]");
         QuantityValidationResponse bestResponse = null;
         Integer sigFigsToValidateWith = null;
@@ -238,43 +302,41 @@ public class IsaacNumericValidator implements IValidator {
         }
 
         String unitsFromUser = answerFromUser.getUnits().trim();
+        BigDecimal valueFromUser = null;
 
-        List<Choice> orderedChoices = getOrderedChoices(isaacNumericQuestion.getChoices());
-        for (Choice c : orderedChoices) {
-            if (c instanceof Quantity) {
-                Quantity quantityFromQuestion = (Quantity) c;
-
-                if (quantityFromQuestion.getUnits() == null) {
-                    log.error("Expected units and no units can be found for question id: " + isaacNumericQuestion.getId());
-                    continue;
-                }
+        for (CompiledQuantity compiledQuantity : getCompiledQuantities(isaacNumericQuestion, contentSha).orderedQuantities) {
+            Quantity quantityFromQuestion =
+                    (Quantity) isaacNumericQuestion.getChoices().get(compiledQuantity.choiceIndex);
 
-                String unitsFromChoice = quantityFromQuestion.getUnits().trim();
-                String quantityFromChoice = quantityFromQuestion.getValue().trim();
+            if (compiledQuantity.units == null) {
+                log.error("Expected units and no units can be found for question id: " + isaacNumericQuestion.getId());
+                continue;
+            }
 
-                boolean numericValuesMatched = numericValuesMatch(quantityFromChoice, answerFromUser.getValue(),
-                        sigFigsToValidateWith);
+            String unitsFromChoice = compiledQuantity.units;
+            if (null == valueFromUser) {
+                valueFromUser = parseNumber(answerFromUser.getValue());
+            }
 
-                // What sort of match do we have:
-                if (numericValuesMatched && unitsFromUser.equals(unitsFromChoice)) {
-                    // Exact match: nothing else can do better, but previous match may tell us if units are also correct:
-                    Boolean unitsCorrect = (null != bestResponse && bestResponse.getCorrectUnits()) || quantityFromQuestion.isCorrect();
-                    bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
-                            quantityFromQuestion.isCorrect(), (Content) quantityFromQuestion.getExplanation(),
-                            quantityFromQuestion.isCorrect(), unitsCorrect, new Date());
-                    break;
-                } else if (numericValuesMatched && !unitsFromUser.equals(unitsFromChoice) && quantityFromQuestion.isCorrect()) {
-                    // Matches value but not units of a correct choice.
-                    bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
-                            false, new Content(DEFAULT_WRONG_UNIT_VALIDATION_RESPONSE), true, false, new Date());
-                } else if (!numericValuesMatched && unitsFromUser.equals(unitsFromChoice) && quantityFromQuestion.isCorrect()) {
-                    // Matches units but not value of a correct choice.
-                    bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
-                            false, new Content(DEFAULT_VALIDATION_RESPONSE), false, true, new Date());
-                }
-            } else {
-                log.error("Isaac Numeric Validator for questionId: " + isaacNumericQuestion.getId()
-                        + " expected there to be a Quantity. Instead it found a Choice.");
+            boolean numericValuesMatched = numericValuesMatch(compiledQuantity, valueFromUser,
+                    sigFigsToValidateWith);
+
+            // What sort of match do we have:
+            if (numericValuesMatched && unitsFromUser.equals(unitsFromChoice)) {
+                // Exact match: nothing else can do better, but previous match may tell us if units are also correct:
+                Boolean unitsCorrect = (null != bestResponse && bestResponse.getCorrectUnits()) || quantityFromQuestion.isCorrect();
+                bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
+                        quantityFromQuestion.isCorrect(), (Content) quantityFromQuestion.getExplanation(),
+                        quantityFromQuestion.isCorrect(), unitsCorrect, new Date());
+                break;
+            } else if (numericValuesMatched && !unitsFromUser.equals(unitsFromChoice) && quantityFromQuestion.isCorrect()) {
+                // Matches value but not units of a correct choice.
+                bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
+                        false, new Content(DEFAULT_WRONG_UNIT_VALIDATION_RESPONSE), true, false, new Date());
+            } else if (!numericValuesMatched && unitsFromUser.equals(unitsFromChoice) && quantityFromQuestion.isCorrect()) {
+                // Matches units but not value of a correct choice.
+                bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
+                        false, new Content(DEFAULT_VALIDATION_RESPONSE), false, true, new Date());
             }
         }
 
@@ -291,11 +353,12 @@ public class IsaacNumericValidator implements IValidator {
      * Numerically validate the response without units being considered.
      *
      * @param isaacNumericQuestion - question to validate.
+     * @param contentSha           - the content version the question belongs to, or null if it is not known.
      * @param answerFromUser       - answer from user
      * @return the validation response
      */
     private QuantityValidationResponse validateWithoutUnits(final IsaacNumericQuestion isaacNumericQuestion,
-                                                            final Quantity answerFromUser) {
+                                                            final String contentSha, final Quantity answerFromUser) {
         log.debug("\t[validateWithoutUnits]");
         QuantityValidationResponse bestResponse = null;
         Integer sigFigsToValidateWith = null;
@@ -305,22 +368,21 @@ public class IsaacNumericValidator implements IValidator {
                     isaacNumericQuestion.getSignificantFiguresMin(), isaacNumericQuestion.getSignificantFiguresMax());
         }
 
-        List<Choice> orderedChoices = getOrderedChoices(isaacNumericQuestion.getChoices());
+        BigDecimal valueFromUser = null;
 
-        for (Choice c : orderedChoices) {
-            if (c instanceof Quantity) {
-                Quantity quantityFromQuestion = (Quantity) c;
+        for (CompiledQuantity compiledQuantity : getCompiledQuantities(isaacNumericQuestion, contentSha).orderedQuantities) {
+            if (null == valueFromUser) {
+                valueFromUser = parseNumber(answerFromUser.getValue());
+            }
 
-                // Do we have a match? Since only comparing values, either an exact match or not a match at all.
-                if (numericValuesMatch(quantityFromQuestion.getValue(), answerFromUser.getValue(), sigFigsToValidateWith)) {
-                    bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
-                            quantityFromQuestion.isCorrect(), (Content) quantityFromQuestion.getExplanation(),
-                            quantityFromQuestion.isCorrect(), null, new Date());
-                    break;
-                }
-            } else {
-                log.error("Isaac Numeric Validator expected there to be a Quantity in ("
-                        + isaacNumericQuestion.getCanonicalSourceFile() + ") Instead it found a Choice.");
+            // Do we have a match? Since only comparing values, either an exact match or not a match at all.
+            if (numericValuesMatch(compiledQuantity, valueFromUser, sigFigsToValidateWith)) {
+                Quantity quantityFromQuestion =
+                        (Quantity) isaacNumericQuestion.getChoices().get(compiledQuantity.choiceIndex);
+                bestResponse = new QuantityValidationResponse(isaacNumericQuestion.getId(), answerFromUser,
+                        quantityFromQuestion.isCorrect(), (Content) quantityFromQuestion.getExplanation(),
+                        quantityFromQuestion.isCorrect(), null, new Date());
+                break;
             }
         }
 
@@ -333,6 +395,42 @@ public class IsaacNumericValidator implements IValidator {
         }
     }
 
+    /**
+     * Parse the choices of a question, correct choices first, once per content version.
+     *
+     * @param isaacNumericQuestion - question whose choices are needed.
+     * @param contentSha           - the content version the question belongs to, or null if it is not known.
+     * @return the parsed choices which are quantities.
+     */
+    private CompiledQuantities getCompiledQuantities(final IsaacNumericQuestion isaacNumericQuestion,
+                                                     final String contentSha) {
+        return ruleCache.get(contentSha, isaacNumericQuestion, CompiledQuantities.class, question -> {
+            List<Choice> choices = ((IsaacNumericQuestion) question).getChoices();
+            List<CompiledQuantity> orderedQuantities = new ArrayList<>();
+            for (Choice c : getOrderedChoices(choices)) {
+                if (!(c instanceof Quantity)) {
+                    log.error("Isaac Numeric Validator for questionId: " + question.getId()
+                            + " expected there to be a Quantity. Instead it found a Choice.");
+                    continue;
+                }
+                Quantity quantityFromQuestion = (Quantity) c;
+                String value = quantityFromQuestion.getValue().trim();
+                String units = null == quantityFromQuestion.getUnits() ? null : quantityFromQuestion.getUnits().trim();
+                BigDecimal parsedValue;
+                try {
+                    parsedValue = parseNumber(value);
+                } catch (NumberFormatException e) {
+                    // Keep the choice so that answers compared against it are reported as unrecognised, as before:
+                    log.error("Unable to parse choice value '" + value + "' for question id: " + question.getId());
+                    parsedValue = null;
+                }
+                orderedQuantities.add(new CompiledQuantity(ValidatorRuleCache.indexOfChoice(choices, c), value, units,
+                        parsedValue));
+            }
+            return new CompiledQuantities(orderedQuantities);
+        });
+    }
+
     /**
      * Test whether two quantity values match. Parse the strings as doubles, supporting notation of 3x10^12 to mean
      * 3e12, then test that they match to given number of s.f.
@@ -346,19 +444,37 @@ public class IsaacNumericValidator implements IValidator {
      */
     private boolean numericValuesMatch(final String trustedValue, final String untrustedValue,
                                        final Integer significantFiguresRequired) throws NumberFormatException {
+        BigDecimal untrustedParsedValue = parseNumber(untrustedValue);
+        CompiledQuantity trustedQuantity = new CompiledQuantity(0, trustedValue, null, parseNumber(trustedValue));
+        return numericValuesMatch(trustedQuantity, untrustedParsedValue, significantFiguresRequired);
+    }
+
+    /**
+     * Test whether two quantity values match, to the given number of significant figures.
+     *
+     * @param trustedQuantity            - the parsed choice
+     * @param untrustedValue             - the parsed answer from the user
+     * @param significantFiguresRequired - the number of significant figures to perform comparisons to (can be null, in
+     *                                   which case exact comparison is performed)
+     * @return true when the numbers match
+     * @throws NumberFormatException - when the choice value could not be parsed
+     */
+    private boolean numericValuesMatch(final CompiledQuantity trustedQuantity, final BigDecimal untrustedValue,
+                                       final Integer significantFiguresRequired) throws NumberFormatException {
         log.debug("\t[numericValuesMatch]");
         double trustedDouble, untrustedDouble;
 
-        String untrustedParsedValue = reformatNumberForParsing(untrustedValue);
-        String trustedParsedValue = reformatNumberForParsing(trustedValue);
+        if (null == trustedQuantity.parsedValue) {
+            throw new NumberFormatException("Unable to parse choice value: " + trustedQuantity.value);
+        }
 
         if (null == significantFiguresRequired) {
-            trustedDouble = stringValueToDouble(trustedParsedValue);
-            untrustedDouble = stringValueToDouble(untrustedParsedValue);
+            trustedDouble = trustedQuantity.parsedValue.doubleValue();
+            untrustedDouble = untrustedValue.doubleValue();
         } else {
             // Round to N s.f.
-            trustedDouble = roundStringValueToSigFigs(trustedParsedValue, significantFiguresRequired);
-            untrustedDouble = roundStringValueToSigFigs(untrustedParsedValue, significantFiguresRequired);
+            trustedDouble = roundToSigFigs(trustedQuantity.parsedValue, significantFiguresRequired);
+            untrustedDouble = roundToSigFigs(untrustedValue, significantFiguresRequired);
         }
 
         final double epsilon = 1e-50;
@@ -374,27 +490,32 @@ public class IsaacNumericValidator implements IValidator {
      * @return the rounded number.
      */
     private double roundStringValueToSigFigs(final String value, final int sigFigs) {
-        log.debug("\t[roundStringValueToSigFigs]");
-
-        // To prevent floating point arithmetic errors when rounding the value, use a BigDecimal and pass the string
-        // value of the number:
-        BigDecimal bigDecimalValue = new BigDecimal(value);
-        BigDecimal rounded = bigDecimalValue.round(new MathContext(sigFigs, RoundingMode.HALF_UP));
+        return roundToSigFigs(new BigDecimal(value), sigFigs);
+    }
 
-        return rounded.doubleValue();
+    /**
+     * Round a number to a given number of significant figures.
+     *
+     * @param value   - number to round
+     * @param sigFigs - number of significant figures required
+     * @return the rounded number.
+     */
+    private double roundToSigFigs(final BigDecimal value, final int sigFigs) {
+        log.debug("\t[roundToSigFigs]");
 
+        // To prevent floating point arithmetic errors when rounding the value, round the exact BigDecimal value:
+        return value.round(new MathContext(sigFigs, RoundingMode.HALF_UP)).doubleValue();
     }
 
     /**
-     * Return a double equivalent to value.
+     * Parse a number in any of the forms we accept, supporting notation of 3x10^12 to mean 3e12.
      *
-     * @param value - number, as String, to convert to double
-     * @return the converted number.
+     * @param value - number, as String, to parse
+     * @return the exact value of the number.
+     * @throws NumberFormatException - when the value cannot be parsed
      */
-    private double stringValueToDouble(final String value) {
-        log.debug("\t[stringValueToDouble]");
-
-        return new BigDecimal(value).doubleValue();
+    private BigDecimal parseNumber(final String value) throws NumberFormatException {
+        return new BigDecimal(reformatNumberForParsing(value));
     }
 
     /**
@@ -556,8 +677,8 @@ public class IsaacNumericValidator implements IValidator {
      */
     private String reformatNumberForParsing(final String numberToFormat) {
         String reformattedNumber = numberToFormat.trim().replace("−", "-");
-        reformattedNumber = reformattedNumber.replaceFirst(PREFIXED_POWER_OF_TEN_REGEX, "e${exp1}${exp2}");
-        reformattedNumber = reformattedNumber.replaceFirst(BARE_POWER_OF_TEN_REGEX, "1e${exp1}${exp2}");
+        reformattedNumber = PREFIXED_POWER_OF_TEN_REGEX.matcher(reformattedNumber).replaceFirst("e${exp1}${exp2}");
+        reformattedNumber = BARE_POWER_OF_TEN_REGEX.matcher(reformattedNumber).replaceFirst("1e${exp1}${exp2}");
         return reformattedNumber;
     }
 
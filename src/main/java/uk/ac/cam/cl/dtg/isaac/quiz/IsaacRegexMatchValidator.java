@@ -26,9 +26,11 @@ import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
 import uk.ac.cam.cl.dtg.isaac.dos.content.RegexPattern;
 import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 
 /**
@@ -36,9 +38,31 @@ import java.util.regex.Pattern;
  */
 public class IsaacRegexMatchValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacRegexMatchValidator.class);
-    
+
+    private final ValidatorRuleCache ruleCache;
+
+    /**
+     * Create a validator which compiles the patterns of each question on every attempt.
+     */
+    public IsaacRegexMatchValidator() {
+        this(ValidatorRuleCache.uncached());
+    }
+
+    /**
+     * @param ruleCache - the shared cache of compiled question patterns.
+     */
+    public IsaacRegexMatchValidator(final ValidatorRuleCache ruleCache) {
+        this.ruleCache = ruleCache;
+    }
+
     @Override
     public final QuestionValidationResponse validateQuestionResponse(final Question question, final Choice answer) {
+        return validateQuestionResponse(question, null, answer);
+    }
+
+    @Override
+    public final QuestionValidationResponse validateQuestionResponse(final Question question, final String contentSha,
+                                                                     final Choice answer) {
         Validate.notNull(question);
         Validate.notNull(answer);
 
@@ -78,31 +102,16 @@ public class IsaacRegexMatchValidator implements IValidator {
         // STEP 2: If they did, does their answer match a known answer?
 
         if (null == feedback) {
+            List<Choice> choices = regexMatchQuestion.getChoices();
 
-            // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
-            List<Choice> orderedChoices = getOrderedChoices(regexMatchQuestion.getChoices());
-
-            // For all the choices on this question...
-            for (Choice c : orderedChoices) {
-
-                // ... that are of the RegexPattern type, ...
-                if (!(c instanceof RegexPattern)) {
-                    log.error("Isaac RegexMatch Validator for questionId: " + regexMatchQuestion.getId()
-                            + " expected there to be a RegexPattern. Instead it found a Choice.");
-                    continue;
-                }
-                RegexPattern regexPattern = (RegexPattern) c;
-
-                if (null == regexPattern.getValue() || regexPattern.getValue().isEmpty()) {
-                    log.error("Expected a regex pattern to match on, but none found in choice for question id: "
-                            + regexMatchQuestion.getId());
-                    continue;
-                }
+            // For all the choices on this question, with incorrect choices last so correct ones take precedence ...
+            for (CompiledPattern compiledPattern : ruleCache.get(contentSha, question, CompiledPatterns.class,
+                    this::compilePatterns).patterns) {
 
                 // ... check if they match the pattern, ...
-                if (matchesPattern(regexPattern.getValue(), userAnswer.getValue(), regexPattern.isCaseInsensitive(),
-                        regexPattern.isMultiLineRegex(), regexPattern.isMatchWholeString())) {
+                if (compiledPattern.matches(userAnswer.getValue())) {
                     // ... and break at the first matched pattern.
+                    RegexPattern regexPattern = (RegexPattern) choices.get(compiledPattern.choiceIndex);
                     feedback = (Content) regexPattern.getExplanation();
                     responseCorrect = regexPattern.isCorrect();
                     break;
@@ -118,23 +127,110 @@ public class IsaacRegexMatchValidator implements IValidator {
         return new QuestionValidationResponse(question.getId(), userAnswer, responseCorrect, feedback, new Date());
     }
 
-    private boolean matchesPattern(String trustedRegexPattern, String userValue, final Boolean caseInsensitive,
-                                   final Boolean multiLineRegex, final Boolean matchWholeString) {
+    /**
+     * Compile the patterns of every usable choice of a question, in the order they should be checked.
+     *
+     * A pattern which does not compile is kept in its place, failing only when an answer is checked against it, so
+     * answers matching an earlier choice are still marked.
+     *
+     * @param question - the regex match question.
+     * @return the compiled patterns.
+     */
+    private CompiledPatterns compilePatterns(final Question question) {
+        List<Choice> choices = ((IsaacRegexMatchQuestion) question).getChoices();
+        List<CompiledPattern> patterns = new ArrayList<>();
+
+        // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
+        for (Choice c : getOrderedChoices(choices)) {
+            // ... that are of the RegexPattern type, ...
+            if (!(c instanceof RegexPattern)) {
+                log.error("Isaac RegexMatch Validator for questionId: " + question.getId()
+                        + " expected there to be a RegexPattern. Instead it found a Choice.");
+                continue;
+            }
+            RegexPattern regexPattern = (RegexPattern) c;
+
+            if (null == regexPattern.getValue() || regexPattern.getValue().isEmpty()) {
+                log.error("Expected a regex pattern to match on, but none found in choice for question id: "
+                        + question.getId());
+                continue;
+            }
 
-        if (null == trustedRegexPattern || null == userValue) {
-            return false;
+            // The pattern is case sensitive and single line by default - the regex flags are combined with bitwise OR
+            Boolean caseInsensitive = regexPattern.isCaseInsensitive();
+            Boolean multiLineRegex = regexPattern.isMultiLineRegex();
+            Boolean matchWholeString = regexPattern.isMatchWholeString();
+            Pattern answerPattern = null;
+            PatternSyntaxException invalidPattern = null;
+            try {
+                answerPattern = Pattern.compile(regexPattern.getValue(),
+                        (null != caseInsensitive && caseInsensitive ? Pattern.CASE_INSENSITIVE : 0)
+                                | (null != multiLineRegex && multiLineRegex ? Pattern.MULTILINE : 0));
+            } catch (PatternSyntaxException e) {
+                invalidPattern = e;
+            }
+            patterns.add(new CompiledPattern(ValidatorRuleCache.indexOfChoice(choices, c), answerPattern,
+                    invalidPattern, null != matchWholeString && matchWholeString));
         }
+        return new CompiledPatterns(patterns);
+    }
 
-        // The pattern is case sensitive and single line by default - the regex flags are combined with bitwise OR
-        Pattern answerPattern = Pattern.compile(trustedRegexPattern,
-                (null != caseInsensitive && caseInsensitive ? Pattern.CASE_INSENSITIVE : 0)
-                        | (null != multiLineRegex && multiLineRegex ? Pattern.MULTILINE : 0));
+    /**
+     * The compiled patterns of a question's choices, in checking order.
+     */
+    private static final class CompiledPatterns {
+        private final List<CompiledPattern> patterns;
+
+        /**
+         * @param patterns the compiled patterns, in checking order.
+         */
+        private CompiledPatterns(final List<CompiledPattern> patterns) {
+            this.patterns = patterns;
+        }
+    }
+
+    /**
+     * The compiled pattern of one choice.
+     */
+    private static final class CompiledPattern {
+        private final int choiceIndex;
+        private final Pattern pattern;
+        private final PatternSyntaxException invalidPattern;
+        private final boolean matchWholeString;
+
+        /**
+         * @param choiceIndex the position of the choice in the question's choices.
+         * @param pattern the compiled pattern, or null if it is invalid.
+         * @param invalidPattern the reason the pattern could not be compiled, or null if it is valid.
+         * @param matchWholeString whether the whole answer must match, rather than just part of it.
+         */
+        private CompiledPattern(final int choiceIndex, final Pattern pattern,
+                                final PatternSyntaxException invalidPattern, final boolean matchWholeString) {
+            this.choiceIndex = choiceIndex;
+            this.pattern = pattern;
+            this.invalidPattern = invalidPattern;
+            this.matchWholeString = matchWholeString;
+        }
 
-        // Try to match entire answer by default
-        if (null == matchWholeString || !matchWholeString) {
-            return answerPattern.matcher(userValue).find();
-        } else {
-            return answerPattern.matcher(userValue).matches();
+        /**
+         * @param userValue the answer from the user.
+         * @return whether the answer matches the pattern.
+         * @throws PatternSyntaxException if the pattern is invalid, as it would be if compiled for this answer.
+         */
+        private boolean matches(final String userValue) {
+            if (null == userValue) {
+                return false;
+            }
+            if (null != invalidPattern) {
+                throw new PatternSyntaxException(invalidPattern.getDescription(), invalidPattern.getPattern(),
+                        invalidPattern.getIndex());
+            }
+            // Try to match entire answer by default
+            if (matchWholeString) {
+                return pattern.matcher(userValue).matches();
+            } else {
+                return pattern.matcher(userValue).find();
+            }
         }
     }
 }
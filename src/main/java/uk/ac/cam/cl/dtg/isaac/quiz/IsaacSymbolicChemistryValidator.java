@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.quiz;
 
 import com.google.api.client.util.Maps;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,11 +31,13 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Validator that only provides functionality to validate symbolic chemistry questions.
  *
  */
+@DeterministicValidator
 public class IsaacSymbolicChemistryValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacSymbolicChemistryValidator.class);
 
@@ -50,14 +53,15 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private static final String CHECKER_PATH = "/check";
 
-    public IsaacSymbolicChemistryValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+    private final ExternalValidatorClient checker;
+
+    /**
+     * @param checker - the shared client for the chemistry checker.
+     */
+    public IsaacSymbolicChemistryValidator(final ExternalValidatorClient checker) {
+        this.checker = checker;
     }
 
     @Override
@@ -84,6 +88,7 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
         // These variables store the important features of the response we'll send.
         Content feedback = null;                        // The feedback we send the user
         boolean responseCorrect = false;                // Whether we're right or wrong
+        boolean checkerError = false;                   // Whether the checker failed for any choice
 
         boolean allTypeMismatch = true;                 // Whether type of answer matches one of the correct answers
         boolean allChemistry = true, allNuclear = true;
@@ -161,145 +166,149 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(chemistryQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Collect the choices that are of the ChemicalFormula type and that have a mhchem expression, and check the
+            // submitted answer against all of them with the chemistry checker at once.
+            List<ChemicalFormula> formulaChoices = Lists.newArrayList();
+            List<Map<String, String>> checkerRequests = Lists.newArrayList();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the ChemicalFormula type, ...
                 if (!(c instanceof ChemicalFormula)) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
                 ChemicalFormula formulaChoice = (ChemicalFormula) c;
-
-                // ... and that have a mhchem expression ...
                 if (null == formulaChoice.getMhchemExpression() || formulaChoice.getMhchemExpression().isEmpty()) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
-                // ... test their answer against this choice with the symbolic checker.
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", formulaChoice.getMhchemExpression());
+                req.put("test", submittedFormula.getMhchemExpression());
+                req.put("description", chemistryQuestion.getId());
+                formulaChoices.add(formulaChoice);
+                checkerRequests.add(req);
+            }
+
+            List<HashMap<String, Object>> checkerResponses;
+            try {
+                checkerResponses = checker.checkAll(CHECKER_PATH, checkerRequests);
+            } catch (IOException e) {
+                log.error("Failed to check formula with chemistry checker. Is the server running? Not trying again.");
+                throw new ValidatorUnavailableException("We are having problems marking Chemistry Questions."
+                        + " Please try again later!");
+            }
+
+            // For all the checked choices on this question...
+            for (int i = 0; i < formulaChoices.size(); i++) {
+                ChemicalFormula formulaChoice = formulaChoices.get(i);
+                HashMap<String, Object> response = checkerResponses.get(i);
 
                 IsaacSymbolicChemistryValidator.MatchType matchType;
-                HashMap<String, Object> response;
 
-                try {
+                if (response.containsKey("error")) {
 
-                    // Pass some JSON to a REST endpoint and get some JSON back.
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", formulaChoice.getMhchemExpression());
-                    req.put("test", submittedFormula.getMhchemExpression());
-                    req.put("description", chemistryQuestion.getId());
+                    // If it doesn't contain a code, it wasn't a fatal error in the checker; probably only a
+                    // problem with the submitted answer.
+                    log.warn("Problem checking formula \"" + submittedFormula.getMhchemExpression()
+                            + "\" with symbolic chemistry checker: " + response.get("error"));
+                    checkerError = ExternalValidatorClient.isCheckerError(response);
+                    break;
 
-                    response = getResponseFromExternalValidator(externalValidatorUrl, req);
+                } else if (response.get("containsError").equals(true)) {
 
-                    if (response.containsKey("error")) {
+                    // Contains error term in expression: Cannot be matched with any terms.
+                    containsError = true;
+                    break;
 
-                        // If it doesn't contain a code, it wasn't a fatal error in the checker; probably only a
-                        // problem with the submitted answer.
-                        log.warn("Problem checking formula \"" + submittedFormula.getMhchemExpression()
-                                + "\" with symbolic chemistry checker: " + response.get("error"));
-                        break;
+                }
 
-                    } else if (response.get("containsError").equals(true)) {
+                if (formulaChoice.isCorrect()) {
 
-                        // Contains error term in expression: Cannot be matched with any terms.
-                        containsError = true;
-                        break;
+                    // Check if type mismatch occurred, when choice is correct answer.
+                    allTypeMismatch = allTypeMismatch && response.get("typeMismatch").equals(true);
 
-                    }
+                    String expectedType = (String) response.get("expectedType");
 
-                    if (c.isCorrect()) {
+                    allChemistry = allChemistry && !expectedType.contains("nuclear");
+                    allNuclear = allNuclear && expectedType.contains("nuclear");
 
-                        // Check if type mismatch occurred, when choice is correct answer.
-                        allTypeMismatch = allTypeMismatch && response.get("typeMismatch").equals(true);
+                    allExpression = allExpression && expectedType.contains("expression");
+                    allEquation = allEquation && expectedType.contains("equation");
 
-                        String expectedType = (String) response.get("expectedType");
+                }
 
-                        allChemistry = allChemistry && !expectedType.contains("nuclear");
-                        allNuclear = allNuclear && expectedType.contains("nuclear");
+                // Identify the type of student answer.
+                if (!typeKnownFlag) {
 
-                        allExpression = allExpression && expectedType.contains("expression");
-                        allEquation = allEquation && expectedType.contains("equation");
+                    receivedType = (String) response.get("receivedType");
+                    isEquation = receivedType.contains("equation");
+                    isNuclear = receivedType.contains("nuclear");
+                    typeKnownFlag = true;
 
-                    }
+                }
 
-                    // Identify the type of student answer.
-                    if (!typeKnownFlag) {
+                // Check if equation is balanced, given that choice is of type equation.
+                if (!balancedKnownFlag && isEquation && response.get("typeMismatch").equals(false)) {
 
-                        receivedType = (String) response.get("receivedType");
-                        isEquation = receivedType.contains("equation");
-                        isNuclear = receivedType.contains("nuclear");
-                        typeKnownFlag = true;
+                    // Check if equation (physical/chemical) is balanced.
+                    isBalanced = response.get("isBalanced").equals(true);
+                    balancedKnownFlag = true;
 
-                    }
+                }
+
+                // Check if equation is valid, given that choice is of type nuclear.
+                if (!validityKnownFlag && isNuclear && response.get("typeMismatch").equals(false)) {
 
-                    // Check if equation is balanced, given that choice is of type equation.
-                    if (!balancedKnownFlag && isEquation && response.get("typeMismatch").equals(false)) {
+                    // Check if nuclear (equation/expression) has valid atomic numbers.
+                    isValid = response.get("validAtomicNumber").equals(true);
+                    validityKnownFlag = true;
+                }
 
-                        // Check if equation (physical/chemical) is balanced.
-                        isBalanced = response.get("isBalanced").equals(true);
-                        balancedKnownFlag = true;
 
-                    }
+                if (response.get("equal").equals(true)) {
 
-                    // Check if equation is valid, given that choice is of type nuclear.
-                    if (!validityKnownFlag && isNuclear && response.get("typeMismatch").equals(false)) {
+                    // Input is semantically equivalent to correct answer.
+                    matchType = MatchType.EXACT;
 
-                        // Check if nuclear (equation/expression) has valid atomic numbers.
-                        isValid = response.get("validAtomicNumber").equals(true);
-                        validityKnownFlag = true;
+                } else if (response.get("expectedType").equals("equation") || response.get("expectedType").equals("expression")) {
+                    if (response.get("weaklyEquivalent").equals(false)) {
+                        // This is not a match.
+                        continue;
                     }
+                    // Strength of match, increasing from 0.
+                    int counter = 0;
+                    if (response.get("sameState").equals(true)) {
+                        counter++;
+                    }
+                    if (response.get("sameCoefficient").equals(true)) {
+                        counter++;
+                    }
+                    if (response.get("expectedType").equals("equation") && response.get("sameArrow").equals(true)) {
+                        counter++;
+                    }
+                    matchType = MatchType.valueOf("WEAK" + counter);
+                } else {
 
+                    // Response & Answer have type NuclearEquation or NuclearExpression.
+                    if (response.get("weaklyEquivalent").equals(false)) {
+                        // This is not a match
+                        continue;
+                    }
 
-                    if (response.get("equal").equals(true)) {
-
-                        // Input is semantically equivalent to correct answer.
-                        matchType = MatchType.EXACT;
-
-                    } else if (response.get("expectedType").equals("equation") || response.get("expectedType").equals("expression")) {
-                        if (response.get("weaklyEquivalent").equals(false)) {
-                            // This is not a match.
-                            continue;
-                        }
-                        // Strength of match, increasing from 0.
-                        int counter = 0;
-                        if (response.get("sameState").equals(true)) {
-                            counter++;
-                        }
-                        if (response.get("sameCoefficient").equals(true)) {
-                            counter++;
-                        }
-                        if (response.get("expectedType").equals("equation") && response.get("sameArrow").equals(true)) {
-                            counter++;
-                        }
-                        matchType = MatchType.valueOf("WEAK" + counter);
-                    } else {
-
-                        // Response & Answer have type NuclearEquation or NuclearExpression.
-                        if (response.get("weaklyEquivalent").equals(false)) {
-                            // This is not a match
-                            continue;
-                        }
-
-                        // Measure the 'weakness' level. (0 is the weakest)
-                        int counter = 0;
-                        // FIXME: Nuclear Equations and Expressions don't have 'sameCoefficient' property?!
-                        // So ignore this for now!
-                        // if (response.get("sameCoefficient").equals(true)) {
-                        //     counter++;
-                        // }
-
-                        matchType = MatchType.valueOf("WEAK" + counter);
+                    // Measure the 'weakness' level. (0 is the weakest)
+                    int counter = 0;
+                    // FIXME: Nuclear Equations and Expressions don't have 'sameCoefficient' property?!
+                    // So ignore this for now!
+                    // if (response.get("sameCoefficient").equals(true)) {
+                    //     counter++;
+                    // }
 
-                    }
+                    matchType = MatchType.valueOf("WEAK" + counter);
 
-                } catch (IOException e) {
-                    log.error("Failed to check formula with chemistry checker. Is the server running? Not trying again.");
-                    throw new ValidatorUnavailableException("We are having problems marking Chemistry Questions."
-                            + " Please try again later!");
                 }
 
+
                 if (matchType == IsaacSymbolicChemistryValidator.MatchType.EXACT) {
 
                     // Found an exact match with one of the choices!
@@ -401,7 +410,10 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
         if (feedbackIsNullOrEmpty(feedback) && null != chemistryQuestion.getDefaultFeedback()) {
             feedback = chemistryQuestion.getDefaultFeedback();
         }
-        return new QuestionValidationResponse(chemistryQuestion.getId(), answer, responseCorrect, feedback, new Date());
+        QuestionValidationResponse validationResponse = new QuestionValidationResponse(chemistryQuestion.getId(), answer,
+                responseCorrect, feedback, new Date());
+        validationResponse.setCheckerError(checkerError);
+        return validationResponse;
     }
 
 }
@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.quiz;
 
 import com.google.api.client.util.Maps;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,11 +34,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Validator that provides functionality to validate symbolic logic questions.
  *
  */
+@DeterministicValidator
 public class IsaacSymbolicLogicValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacSymbolicLogicValidator.class);
 
@@ -47,14 +50,15 @@ public class IsaacSymbolicLogicValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private static final String CHECKER_PATH = "/check/logic";
 
-    public IsaacSymbolicLogicValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check/logic";
+    private final ExternalValidatorClient checker;
+
+    /**
+     * @param checker - the shared client for the symbolic equality checker.
+     */
+    public IsaacSymbolicLogicValidator(final ExternalValidatorClient checker) {
+        this.checker = checker;
     }
 
     @Override
@@ -82,6 +86,7 @@ public class IsaacSymbolicLogicValidator implements IValidator {
         Content feedback = null;                        // The feedback we send the user
         MatchType responseMatchType = MatchType.NONE;   // The match type we found
         boolean responseCorrect = false;                // Whether we're right or wrong
+        boolean checkerError = false;                   // Whether the checker failed for any choice
 
 
         // There are several specific responses the user can receive. Each of them will set feedback content, so
@@ -148,66 +153,71 @@ public class IsaacSymbolicLogicValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(symbolicLogicQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Collect the choices that are of the LogicFormula type and that have a python expression, and check the
+            // submitted answer against all of them with the symbolic checker at once.
+            List<LogicFormula> logicFormulaChoices = Lists.newArrayList();
+            List<Map<String, String>> checkerRequests = Lists.newArrayList();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the LogicFormula type, ...
                 if (!(c instanceof LogicFormula)) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
                 LogicFormula logicFormulaChoice = (LogicFormula) c;
-
-                // ... and that have a python expression ...
                 if (null == logicFormulaChoice.getPythonExpression() || logicFormulaChoice.getPythonExpression().isEmpty()) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
-                // ... test their answer against this choice with the symbolic checker.
-
                 // We don't do any sanitisation of user input here, we'll leave that to the python.
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", logicFormulaChoice.getPythonExpression());
+                req.put("test", submittedLogicFormula.getPythonExpression());
+                req.put("description", symbolicLogicQuestion.getId());
+                if (symbolicLogicQuestion.getAvailableSymbols() != null) {
+                    req.put("symbols", String.join(",", symbolicLogicQuestion.getAvailableSymbols()));
+                }
+                logicFormulaChoices.add(logicFormulaChoice);
+                checkerRequests.add(req);
+            }
 
-                MatchType matchType = MatchType.NONE;
+            List<HashMap<String, Object>> checkerResponses;
+            try {
+                checkerResponses = checker.checkAll(CHECKER_PATH, checkerRequests);
+            } catch (IOException e) {
+                log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                throw new ValidatorUnavailableException("We are having problems marking Logic Questions."
+                        + " Please try again later!");
+            }
 
-                try {
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", logicFormulaChoice.getPythonExpression());
-                    req.put("test", submittedLogicFormula.getPythonExpression());
-                    req.put("description", symbolicLogicQuestion.getId());
-                    if (symbolicLogicQuestion.getAvailableSymbols() != null) {
-                        req.put("symbols", String.join(",", symbolicLogicQuestion.getAvailableSymbols()));
-                    }
+            // For all the checked choices on this question...
+            for (int i = 0; i < logicFormulaChoices.size(); i++) {
+                LogicFormula logicFormulaChoice = logicFormulaChoices.get(i);
+                HashMap<String, Object> response = checkerResponses.get(i);
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
-
-                    if (response.containsKey("error")) {
-                        if (response.containsKey("code")) {
-                            log.error("Failed to check logic formula \"" + submittedLogicFormula.getPythonExpression()
-                                    + "\" against \"" + logicFormulaChoice.getPythonExpression() + "\": " + response.get("error"));
-                        } else if (response.containsKey("syntax_error")) {
-                            // There's a syntax error in the "test" expression, no use checking it further:
-                            closestMatch = null;
-                            feedback = new Content("Your answer does not seem to be valid boolean logic.<br>"
-                                        + "Check for things like mismatched brackets or misplaced symbols.");
-                            feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
-                            responseCorrect = false;
-                            break;
-                        } else {
-                            log.warn("Problem checking logic formula \"" + submittedLogicFormula.getPythonExpression()
-                                    + "\" for (" + symbolicLogicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
-                        }
+                MatchType matchType = MatchType.NONE;
+
+                if (response.containsKey("error")) {
+                    if (ExternalValidatorClient.isCheckerError(response)) {
+                        checkerError = true;
+                        log.error("Failed to check logic formula \"" + submittedLogicFormula.getPythonExpression()
+                                + "\" against \"" + logicFormulaChoice.getPythonExpression() + "\": " + response.get("error"));
+                    } else if (response.containsKey("syntax_error")) {
+                        // There's a syntax error in the "test" expression, no use checking it further:
+                        closestMatch = null;
+                        feedback = new Content("Your answer does not seem to be valid boolean logic.<br>"
+                                    + "Check for things like mismatched brackets or misplaced symbols.");
+                        feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
+                        responseCorrect = false;
+                        break;
                     } else {
-                        if (response.get("equal").equals("true")) {
-                            matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
-                        }
+                        log.warn("Problem checking logic formula \"" + submittedLogicFormula.getPythonExpression()
+                                + "\" for (" + symbolicLogicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
+                    }
+                } else {
+                    if (response.get("equal").equals("true")) {
+                        matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
                     }
-
-                } catch (IOException e) {
-                    log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
-                    throw new ValidatorUnavailableException("We are having problems marking Logic Questions."
-                            + " Please try again later!");
                 }
 
                 if (matchType == MatchType.EXACT) {
@@ -262,7 +272,10 @@ public class IsaacSymbolicLogicValidator implements IValidator {
 
         // If we got this far and feedback is still null, they were wrong. There's no useful feedback we can give at this point.
 
-        return new FormulaValidationResponse(symbolicLogicQuestion.getId(), answer, feedback, responseCorrect, responseMatchType.toString(), new Date());
+        FormulaValidationResponse validationResponse = new FormulaValidationResponse(symbolicLogicQuestion.getId(),
+                answer, feedback, responseCorrect, responseMatchType.toString(), new Date());
+        validationResponse.setCheckerError(checkerError);
+        return validationResponse;
     }
 
 }
@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.quiz;
 
 import com.google.api.client.util.Maps;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,11 +34,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Validator that provides functionality to validate symbolic questions.
  *
  */
+@DeterministicValidator
 public class IsaacSymbolicValidator implements IValidator {
     private static final Logger log = LoggerFactory.getLogger(IsaacSymbolicValidator.class);
 
@@ -48,14 +51,15 @@ public class IsaacSymbolicValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private static final String CHECKER_PATH = "/check";
 
-    public IsaacSymbolicValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+    private final ExternalValidatorClient checker;
+
+    /**
+     * @param checker - the shared client for the symbolic equality checker.
+     */
+    public IsaacSymbolicValidator(final ExternalValidatorClient checker) {
+        this.checker = checker;
     }
 
     @Override
@@ -83,6 +87,7 @@ public class IsaacSymbolicValidator implements IValidator {
         Content feedback = null;                        // The feedback we send the user
         MatchType responseMatchType = MatchType.NONE;   // The match type we found
         boolean responseCorrect = false;                // Whether we're right or wrong
+        boolean checkerError = false;                   // Whether the checker failed for any choice
 
 
         // There are several specific responses the user can receive. Each of them will set feedback content, so
@@ -149,66 +154,71 @@ public class IsaacSymbolicValidator implements IValidator {
             // Sort the choices so that we match incorrect choices last, taking precedence over correct ones.
             List<Choice> orderedChoices = getOrderedChoices(symbolicQuestion.getChoices());
 
-            // For all the choices on this question...
+            // Collect the choices that are of the Formula type and that have a python expression, and check the
+            // submitted answer against all of them with the symbolic checker at once.
+            List<Formula> formulaChoices = Lists.newArrayList();
+            List<Map<String, String>> checkerRequests = Lists.newArrayList();
             for (Choice c : orderedChoices) {
-
-                // ... that are of the Formula type, ...
                 if (!(c instanceof Formula)) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
                 Formula formulaChoice = (Formula) c;
-
-                // ... and that have a python expression ...
                 if (null == formulaChoice.getPythonExpression() || formulaChoice.getPythonExpression().isEmpty()) {
                     // Don't need to log this - it will have been logged above.
                     continue;
                 }
 
-                // ... test their answer against this choice with the symbolic checker.
-
                 // We don't do any sanitisation of user input here, we'll leave that to the python.
+                HashMap<String, String> req = Maps.newHashMap();
+                req.put("target", formulaChoice.getPythonExpression());
+                req.put("test", submittedFormula.getPythonExpression());
+                req.put("description", symbolicQuestion.getId());
+                if (symbolicQuestion.getAvailableSymbols() != null) {
+                    req.put("symbols", String.join(",", symbolicQuestion.getAvailableSymbols()));
+                }
+                formulaChoices.add(formulaChoice);
+                checkerRequests.add(req);
+            }
 
-                MatchType matchType = MatchType.NONE;
+            List<HashMap<String, Object>> checkerResponses;
+            try {
+                checkerResponses = checker.checkAll(CHECKER_PATH, checkerRequests);
+            } catch (IOException e) {
+                log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
+                throw new ValidatorUnavailableException("We are having problems marking Symbolic Questions."
+                        + " Please try again later!");
+            }
 
-                try {
-                    HashMap<String, String> req = Maps.newHashMap();
-                    req.put("target", formulaChoice.getPythonExpression());
-                    req.put("test", submittedFormula.getPythonExpression());
-                    req.put("description", symbolicQuestion.getId());
-                    if (symbolicQuestion.getAvailableSymbols() != null) {
-                        req.put("symbols", String.join(",", symbolicQuestion.getAvailableSymbols()));
-                    }
+            // For all the checked choices on this question...
+            for (int i = 0; i < formulaChoices.size(); i++) {
+                Formula formulaChoice = formulaChoices.get(i);
+                HashMap<String, Object> response = checkerResponses.get(i);
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
-
-                    if (response.containsKey("error")) {
-                        if (response.containsKey("code")) {
-                            log.error("Failed to check formula \"" + submittedFormula.getPythonExpression()
-                                    + "\" against \"" + formulaChoice.getPythonExpression() + "\": " + response.get("error"));
-                        } else if (response.containsKey("syntax_error")) {
-                            // There's a syntax error in the "test" expression, no use checking it further:
-                            closestMatch = null;
-                            feedback = new Content("Your answer does not seem to be valid maths.<br>"
-                                        + "Check for things like mismatched brackets or misplaced symbols.");
-                            feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
-                            responseCorrect = false;
-                            break;
-                        } else {
-                            log.warn("Problem checking formula \"" + submittedFormula.getPythonExpression()
-                                    + "\" for (" + symbolicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
-                        }
+                MatchType matchType = MatchType.NONE;
+
+                if (response.containsKey("error")) {
+                    if (ExternalValidatorClient.isCheckerError(response)) {
+                        checkerError = true;
+                        log.error("Failed to check formula \"" + submittedFormula.getPythonExpression()
+                                + "\" against \"" + formulaChoice.getPythonExpression() + "\": " + response.get("error"));
+                    } else if (response.containsKey("syntax_error")) {
+                        // There's a syntax error in the "test" expression, no use checking it further:
+                        closestMatch = null;
+                        feedback = new Content("Your answer does not seem to be valid maths.<br>"
+                                    + "Check for things like mismatched brackets or misplaced symbols.");
+                        feedback.setTags(new HashSet<>(Collections.singletonList("syntax_error")));
+                        responseCorrect = false;
+                        break;
                     } else {
-                        if (response.get("equal").equals("true")) {
-                            matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
-                        }
+                        log.warn("Problem checking formula \"" + submittedFormula.getPythonExpression()
+                                + "\" for (" + symbolicQuestion.getId() + ") with symbolic checker: " + response.get("error"));
+                    }
+                } else {
+                    if (response.get("equal").equals("true")) {
+                        matchType = MatchType.valueOf(((String) response.get("equality_type")).toUpperCase());
                     }
-
-                } catch (IOException e) {
-                    log.error("Failed to check formula with symbolic checker. Is the server running? Not trying again.");
-                    throw new ValidatorUnavailableException("We are having problems marking Symbolic Questions."
-                            + " Please try again later!");
                 }
 
                 if (matchType == MatchType.EXACT) {
@@ -270,7 +280,10 @@ public class IsaacSymbolicValidator implements IValidator {
 
         // If we got this far and feedback is still null, they were wrong. There's no useful feedback we can give at this point.
 
-        return new FormulaValidationResponse(symbolicQuestion.getId(), answer, feedback, responseCorrect, responseMatchType.toString(), new Date());
+        FormulaValidationResponse validationResponse = new FormulaValidationResponse(symbolicQuestion.getId(), answer,
+                feedback, responseCorrect, responseMatchType.toString(), new Date());
+        validationResponse.setCheckerError(checkerError);
+        return validationResponse;
     }
 
 }
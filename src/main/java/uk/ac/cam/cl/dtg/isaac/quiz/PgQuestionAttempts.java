@@ -24,6 +24,7 @@ import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionPartAttemptSummary;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
@@ -36,14 +37,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager.extractPageIdFromQuestionId;
@@ -54,7 +56,15 @@ import static uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager.extractPageIdF
  */
 public class PgQuestionAttempts implements IQuestionAttemptManager {
     private static final Logger log = LoggerFactory.getLogger(PgQuestionAttempts.class);
-    private static final int MAX_PAGE_IDS_TO_MATCH = 200;
+    private static final String UPSERT_ATTEMPT_SUMMARY = "INSERT INTO question_attempt_summaries(user_id, question_id,"
+            + " page_id, first_attempt, latest_attempt, first_correct, attempt_count) VALUES (?, ?, ?, ?, ?, ?, 1)"
+            + " ON CONFLICT (user_id, question_id) DO UPDATE SET"
+            + " first_attempt = LEAST(question_attempt_summaries.first_attempt, excluded.first_attempt),"
+            + " latest_attempt = GREATEST(question_attempt_summaries.latest_attempt, excluded.latest_attempt),"
+            + " first_correct = LEAST(question_attempt_summaries.first_correct, excluded.first_correct),"
+            + " attempt_count = question_attempt_summaries.attempt_count + 1;";
+    private static final String BUMP_ATTEMPTS_VERSION = "INSERT INTO question_attempt_versions(user_id, version)"
+            + " VALUES (?, 1) ON CONFLICT (user_id) DO UPDATE SET version = question_attempt_versions.version + 1;";
             
     private final PostgresSqlDb database;
     private final ObjectMapper objectMapper;
@@ -163,24 +173,56 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
 
         String query = "INSERT INTO question_attempts(user_id, question_id, question_attempt, correct, \"timestamp\")" +
                 " VALUES (?, ?, ?::text::jsonb, ?, ?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setLong(1, userId);
-            pst.setString(2, fullQuestionId);
-            pst.setString(3, objectMapper.writeValueAsString(questionAttempt));
+        try (Connection conn = database.getDatabaseConnection()) {
+            try {
+                // Record the attempt and update the summary of the user's attempts at the part and the version of
+                // their attempts together:
+                conn.setAutoCommit(false);
+
+                Timestamp dateAttempted = new Timestamp(questionAttempt.getDateAttempted().getTime());
+                try (PreparedStatement pst = conn.prepareStatement(query)) {
+                    pst.setLong(1, userId);
+                    pst.setString(2, fullQuestionId);
+                    pst.setString(3, objectMapper.writeValueAsString(questionAttempt));
+
+                    if (questionAttempt.isCorrect() != null) {
+                        pst.setBoolean(4, questionAttempt.isCorrect());
+                    } else {
+                        pst.setNull(4, java.sql.Types.NULL);
+                    }
+                    pst.setTimestamp(5, dateAttempted);
 
-            if (questionAttempt.isCorrect() != null) {
-                pst.setBoolean(4, questionAttempt.isCorrect());
-            } else {
-                pst.setNull(4, java.sql.Types.NULL);
-            }
-            pst.setTimestamp(5, new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime()));
+                    if (pst.executeUpdate() == 0) {
+                        throw new SegueDatabaseException("Unable to save question attempt.");
+                    }
+                }
 
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save question attempt.");
-            }
+                try (PreparedStatement pst = conn.prepareStatement(UPSERT_ATTEMPT_SUMMARY)) {
+                    pst.setLong(1, userId);
+                    pst.setString(2, fullQuestionId);
+                    pst.setString(3, extractPageIdFromQuestionId(fullQuestionId));
+                    pst.setTimestamp(4, dateAttempted);
+                    pst.setTimestamp(5, dateAttempted);
+                    if (Boolean.TRUE.equals(questionAttempt.isCorrect())) {
+                        pst.setTimestamp(6, dateAttempted);
+                    } else {
+                        pst.setNull(6, java.sql.Types.TIMESTAMP);
+                    }
+                    pst.executeUpdate();
+                }
+
+                try (PreparedStatement pst = conn.prepareStatement(BUMP_ATTEMPTS_VERSION)) {
+                    pst.setLong(1, userId);
+                    pst.executeUpdate();
+                }
 
+                conn.commit();
+            } catch (SQLException | JsonProcessingException | SegueDatabaseException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
         } catch (JsonProcessingException e) {
@@ -191,31 +233,39 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     @Override
     public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException {
-        String query = "SELECT * FROM question_attempts WHERE user_id = ? ORDER BY \"timestamp\" ASC";
+        String query = "SELECT question_attempt FROM question_attempts WHERE user_id = ? ORDER BY \"timestamp\" ASC";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setLong(1, userId);
 
             try (ResultSet results = pst.executeQuery()) {
-                // Since we go to the effort of sorting the attempts in Postgres, use LinkedHashMap which is ordered:
-                Map<String, Map<String, List<QuestionValidationResponse>>> mapOfQuestionAttemptsByPage = Maps.newLinkedHashMap();
-
-                while (results.next()) {
-                    QuestionValidationResponse questionAttempt = objectMapper.readValue(
-                            results.getString("question_attempt"), QuestionValidationResponse.class);
-                    String questionPageId = extractPageIdFromQuestionId(questionAttempt.getQuestionId());
-                    String questionId = questionAttempt.getQuestionId();
+                return this.readQuestionAttemptsByPage(results);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        } catch (IOException e) {
+            throw new SegueDatabaseException("Exception while parsing json", e);
+        }
+    }
 
-                    Map<String, List<QuestionValidationResponse>> attemptsForThisQuestionPage
-                            = mapOfQuestionAttemptsByPage.computeIfAbsent(questionPageId, k -> Maps.newLinkedHashMap());
+    @Override
+    public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttemptsByQuestionPages(
+            final Long userId, final Collection<String> questionPageIds) throws SegueDatabaseException {
+        if (questionPageIds.isEmpty()) {
+            return Maps.newLinkedHashMap();
+        }
 
-                    List<QuestionValidationResponse> listOfResponses
-                            = attemptsForThisQuestionPage.computeIfAbsent(questionId, k -> Lists.newArrayList());
+        String query = "SELECT question_attempt FROM question_attempts WHERE user_id = ? AND page_id = ANY(?)"
+                + " ORDER BY \"timestamp\" ASC";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setArray(2, conn.createArrayOf("varchar", questionPageIds.stream().distinct().toArray()));
 
-                    listOfResponses.add(questionAttempt);
-                }
-                return mapOfQuestionAttemptsByPage;
+            try (ResultSet results = pst.executeQuery()) {
+                return this.readQuestionAttemptsByPage(results);
             }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
@@ -224,61 +274,113 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
-    public Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> getLightweightQuestionAttemptsByUsers(final List<Long> userIds)
-            throws SegueDatabaseException {
+    @Override
+    public String getQuestionAttemptsVersion(final Long userId) throws SegueDatabaseException {
+        // A single row, however many attempts the user has made; it is bumped whenever their attempts change:
+        String query = "SELECT version FROM question_attempt_versions WHERE user_id = ?";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
 
-        if (userIds.isEmpty()) {
-            return Maps.newHashMap();
+            try (ResultSet results = pst.executeQuery()) {
+                // Users whose attempts have never changed since versions were introduced have no row:
+                return String.valueOf(results.next() ? results.getLong("version") : 0L);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
         }
+    }
 
-        try (Connection conn = database.getDatabaseConnection()) {
-            StringBuilder query = new StringBuilder();
-            query.append("SELECT id, user_id, question_id, correct, timestamp FROM question_attempts WHERE");
-
-            // add all of the user ids we are interested in.
-            if (!userIds.isEmpty()) {
-                String inParams = userIds.stream().map(u -> "?").collect(Collectors.joining(", "));
-                query.append(String.format(" user_id IN (%s)", inParams));
-            }
-            query.append(" ORDER BY \"timestamp\" ASC");
+    /**
+     * Parse question attempts into nested maps, keeping them in the order the query returned them.
+     *
+     * @param results
+     *            - rows with a question_attempt column.
+     * @return map of question page id to question part id to list of attempts.
+     * @throws SQLException
+     *             - if a column cannot be read.
+     * @throws IOException
+     *             - if an attempt cannot be parsed.
+     */
+    private Map<String, Map<String, List<QuestionValidationResponse>>> readQuestionAttemptsByPage(
+            final ResultSet results) throws SQLException, IOException {
+        // Since we go to the effort of sorting the attempts in Postgres, use LinkedHashMap which is ordered:
+        Map<String, Map<String, List<QuestionValidationResponse>>> mapOfQuestionAttemptsByPage = Maps.newLinkedHashMap();
 
-            try (PreparedStatement pst = conn.prepareStatement(query.toString())) {
+        while (results.next()) {
+            QuestionValidationResponse questionAttempt = objectMapper.readValue(
+                    results.getString("question_attempt"), QuestionValidationResponse.class);
+            String questionPageId = extractPageIdFromQuestionId(questionAttempt.getQuestionId());
+            String questionId = questionAttempt.getQuestionId();
 
-                Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn = Maps.newHashMap();
+            Map<String, List<QuestionValidationResponse>> attemptsForThisQuestionPage
+                    = mapOfQuestionAttemptsByPage.computeIfAbsent(questionPageId, k -> Maps.newLinkedHashMap());
 
-                int index = 1;
-                for (Long userId : userIds) {
-                    pst.setLong(index++, userId);
-                    mapToReturn.put(userId, new HashMap<>());
-                }
+            List<QuestionValidationResponse> listOfResponses
+                    = attemptsForThisQuestionPage.computeIfAbsent(questionId, k -> Lists.newArrayList());
 
-                try (ResultSet results = pst.executeQuery()) {
-                    while (results.next()) {
-                        LightweightQuestionValidationResponse partialQuestionAttempt = resultsToLightweightValidationResponse(results);
+            listOfResponses.add(questionAttempt);
+        }
+        return mapOfQuestionAttemptsByPage;
+    }
 
-                        String questionPageId = extractPageIdFromQuestionId(partialQuestionAttempt.getQuestionId());
-                        String questionId = partialQuestionAttempt.getQuestionId();
-                        Long userId = results.getLong("user_id");
+    @Override
+    public Map<String, Map<String, QuestionPartAttemptSummary>> getQuestionAttemptSummaries(final Long userId)
+            throws SegueDatabaseException {
+        String query = "SELECT * FROM question_attempt_summaries WHERE user_id = ? ORDER BY first_attempt ASC";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setLong(1, userId);
 
-                        Map<String, Map<String, List<LightweightQuestionValidationResponse>>> mapOfQuestionAttemptsByPage
-                                = mapToReturn.get(userId);
+            try (ResultSet results = pst.executeQuery()) {
+                // Pages are in the order they were first attempted, so use LinkedHashMap which is ordered:
+                Map<String, Map<String, QuestionPartAttemptSummary>> summariesByPage = Maps.newLinkedHashMap();
+                while (results.next()) {
+                    summariesByPage.computeIfAbsent(results.getString("page_id"), k -> Maps.newLinkedHashMap())
+                            .put(results.getString("question_id"), resultsToAttemptSummary(results));
+                }
+                return summariesByPage;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
 
-                        Map<String, List<LightweightQuestionValidationResponse>> attemptsForThisQuestionPage =
-                                mapOfQuestionAttemptsByPage.computeIfAbsent(questionPageId, k -> Maps.newHashMap());
+    @Override
+    public Map<Long, Map<String, Map<String, QuestionPartAttemptSummary>>>
+            getQuestionAttemptSummariesByUsersAndQuestionPages(final List<Long> userIds,
+                                                               final List<String> questionPageIds)
+            throws SegueDatabaseException {
+        Map<Long, Map<String, Map<String, QuestionPartAttemptSummary>>> mapToReturn = Maps.newHashMap();
+        if (userIds.isEmpty() || questionPageIds.isEmpty()) {
+            return mapToReturn;
+        }
 
-                        List<LightweightQuestionValidationResponse> listOfResponses =
-                                attemptsForThisQuestionPage.computeIfAbsent(questionId, k -> Lists.newArrayList());
+        String query = "SELECT * FROM question_attempt_summaries WHERE user_id = ANY(?) AND page_id = ANY(?)";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setArray(1, conn.createArrayOf("bigint", userIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("varchar", questionPageIds.stream().distinct().toArray()));
+            for (Long userId : userIds) {
+                mapToReturn.put(userId, new HashMap<>());
+            }
 
-                        listOfResponses.add(partialQuestionAttempt);
-                    }
-                    return mapToReturn;
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    mapToReturn.get(results.getLong("user_id"))
+                            .computeIfAbsent(results.getString("page_id"), k -> Maps.newHashMap())
+                            .put(results.getString("question_id"), resultsToAttemptSummary(results));
                 }
+                return mapToReturn;
             }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
         }
     }
-    
+
     @Override
     public Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
             getQuestionAttemptsByUsersAndQuestionPrefix(final List<Long> userIds, final List<String> allQuestionPageIds)
@@ -291,65 +393,73 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
             return Maps.newHashMap();
         }
 
-        List<String> uniquePageIds = allQuestionPageIds.stream().distinct().collect(Collectors.toList());
-        if (uniquePageIds.size() > MAX_PAGE_IDS_TO_MATCH) {
-            // The repeated "OR question_id LIKE ___" will get very inefficient beyond this:
-            log.debug(String.format("Attempting to match too many (%s) question page IDs; returning all attempts for these users instead!", uniquePageIds.size()));
-            return this.getLightweightQuestionAttemptsByUsers(userIds);
-        }
+        // A single scan of question_attempts_by_user_page, however many users and pages:
+        String query = "SELECT id, user_id, question_id, page_id, correct, timestamp FROM question_attempts"
+                + " WHERE user_id = ANY(?) AND page_id = ANY(?) ORDER BY \"timestamp\" ASC";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setArray(1, conn.createArrayOf("bigint", userIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("varchar", allQuestionPageIds.stream().distinct().toArray()));
 
-        try (Connection conn = database.getDatabaseConnection()) {
-            StringBuilder query = new StringBuilder();
-            query.append("SELECT id, user_id, question_id, correct, timestamp FROM question_attempts WHERE");
-            
-            // add all of the user ids we are interested in.
-            if (!userIds.isEmpty()) {
-                String inParams = userIds.stream().map(u -> "?").collect(Collectors.joining(", "));
-                query.append(String.format(" user_id IN (%s)", inParams));
+            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn
+                    = Maps.newHashMap();
+            for (Long userId : userIds) {
+                mapToReturn.put(userId, new HashMap<>());
             }
 
-            // add all of the question page ids we are interested in
-            String questionIdsOr = uniquePageIds.stream().map(q -> "question_id LIKE ?").collect(Collectors.joining(" OR "));
-            query.append(" AND (").append(questionIdsOr).append(")");
-            query.append(" ORDER BY \"timestamp\" ASC");
-            
-            try (PreparedStatement pst = conn.prepareStatement(query.toString())) {
-
-                Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn
-                        = Maps.newHashMap();
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    LightweightQuestionValidationResponse partialQuestionAttempt = resultsToLightweightValidationResponse(results);
 
-                int index = 1;
-                for (Long userId : userIds) {
-                    pst.setLong(index++, userId);
-                    mapToReturn.put(userId, new HashMap<>());
-                }
+                    String questionPageId = results.getString("page_id");
+                    String questionId = partialQuestionAttempt.getQuestionId();
+                    Long userId = results.getLong("user_id");
 
-                for (String pageId : uniquePageIds) {
-                    // Using LIKE matching on part IDs, so add wildcard to each page ID:
-                    pst.setString(index++, pageId + "%");
-                }
+                    Map<String, Map<String, List<LightweightQuestionValidationResponse>>> mapOfQuestionAttemptsByPage
+                            = mapToReturn.get(userId);
 
-                try (ResultSet results = pst.executeQuery()) {
-                    while (results.next()) {
-                        LightweightQuestionValidationResponse partialQuestionAttempt = resultsToLightweightValidationResponse(results);
+                    Map<String, List<LightweightQuestionValidationResponse>> attemptsForThisQuestionPage
+                            = mapOfQuestionAttemptsByPage.computeIfAbsent(questionPageId, k -> Maps.newHashMap());
 
-                        String questionPageId = extractPageIdFromQuestionId(partialQuestionAttempt.getQuestionId());
-                        String questionId = partialQuestionAttempt.getQuestionId();
-                        Long userId = results.getLong("user_id");
+                    List<LightweightQuestionValidationResponse> listOfResponses
+                            = attemptsForThisQuestionPage.computeIfAbsent(questionId, k -> Lists.newArrayList());
 
-                        Map<String, Map<String, List<LightweightQuestionValidationResponse>>> mapOfQuestionAttemptsByPage
-                                = mapToReturn.get(userId);
+                    listOfResponses.add(partialQuestionAttempt);
+                }
+                return mapToReturn;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
 
-                        Map<String, List<LightweightQuestionValidationResponse>> attemptsForThisQuestionPage
-                                = mapOfQuestionAttemptsByPage.computeIfAbsent(questionPageId, k -> Maps.newHashMap());
+    @Override
+    public Map<Long, Map<String, Boolean>> getQuestionPartCorrectnessByUsersAndQuestionPrefix(
+            final List<Long> userIds, final List<String> allQuestionPageIds) throws SegueDatabaseException {
+        Map<Long, Map<String, Boolean>> mapToReturn = Maps.newHashMap();
+        if (allQuestionPageIds.isEmpty() || userIds.isEmpty()) {
+            return mapToReturn;
+        }
 
-                        List<LightweightQuestionValidationResponse> listOfResponses
-                                = attemptsForThisQuestionPage.computeIfAbsent(questionId, k -> Lists.newArrayList());
+        // The summaries hold one row per user and question part however many attempts, so need no aggregating:
+        String query = "SELECT user_id, question_id, first_correct IS NOT NULL AS correct"
+                + " FROM question_attempt_summaries WHERE user_id = ANY(?) AND page_id = ANY(?)";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)
+        ) {
+            pst.setArray(1, conn.createArrayOf("bigint", userIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("varchar", allQuestionPageIds.stream().distinct().toArray()));
+            for (Long userId : userIds) {
+                mapToReturn.put(userId, new HashMap<>());
+            }
 
-                        listOfResponses.add(partialQuestionAttempt);
-                    }
-                    return mapToReturn;
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    mapToReturn.get(results.getLong("user_id"))
+                            .put(results.getString("question_id"), results.getBoolean("correct"));
                 }
+                return mapToReturn;
             }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
@@ -460,6 +570,12 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
 
+    private QuestionPartAttemptSummary resultsToAttemptSummary(final ResultSet results) throws SQLException {
+        return new QuestionPartAttemptSummary(results.getString("question_id"), results.getTimestamp("first_attempt"),
+                results.getTimestamp("latest_attempt"), results.getTimestamp("first_correct"),
+                results.getInt("attempt_count"));
+    }
+
     private LightweightQuestionValidationResponse resultsToLightweightValidationResponse(final ResultSet results) throws SQLException {
         LightweightQuestionValidationResponse partialQuestionAttempt = new QuestionValidationResponse();
 
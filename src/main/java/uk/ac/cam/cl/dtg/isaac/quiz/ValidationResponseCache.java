@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATION_RESPONSE_CACHE_REQUESTS;
+
+/**
+ * A bounded cache of validation responses from {@link DeterministicValidator}s.
+ *
+ * Responses are keyed by the content version, the question ID and a canonical form of the submitted answer, so a
+ * content change can never return a stale mark. Cached responses are shared and must be copied, not modified.
+ */
+public class ValidationResponseCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 50000;
+
+    private final Cache<Key, QuestionValidationResponse> responses;
+
+    /**
+     * Create a validation response cache.
+     *
+     * @param maximumSize
+     *            - the maximum number of responses to keep.
+     */
+    public ValidationResponseCache(final long maximumSize) {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+    }
+
+    /**
+     * @param validator the validator class, used to decide whether its responses can be cached.
+     * @return whether responses from this validator may be cached.
+     */
+    public static boolean isCacheable(final Class<? extends IValidator> validator) {
+        return validator.isAnnotationPresent(DeterministicValidator.class);
+    }
+
+    /**
+     * Look up a previous response to an identical answer, recording a hit or miss for the validator.
+     *
+     * @param validatorName
+     *            - the validator name, used to label the hit rate metric.
+     * @param contentSha
+     *            - the content version the question belongs to.
+     * @param questionId
+     *            - the question ID.
+     * @param canonicalAnswer
+     *            - a canonical representation of the submitted answer.
+     * @return the shared cached response, or null if there is none.
+     */
+    public QuestionValidationResponse getIfPresent(final String validatorName, final String contentSha,
+                                                   final String questionId, final String canonicalAnswer) {
+        QuestionValidationResponse response = responses.getIfPresent(new Key(contentSha, questionId, canonicalAnswer));
+        VALIDATION_RESPONSE_CACHE_REQUESTS.labels(validatorName, null == response ? "miss" : "hit").inc();
+        return response;
+    }
+
+    /**
+     * Remember a response to an answer.
+     *
+     * @param contentSha
+     *            - the content version the question belongs to.
+     * @param questionId
+     *            - the question ID.
+     * @param canonicalAnswer
+     *            - a canonical representation of the submitted answer.
+     * @param response
+     *            - the validator response, which must not be modified afterwards.
+     */
+    public void put(final String contentSha, final String questionId, final String canonicalAnswer,
+                    final QuestionValidationResponse response) {
+        responses.put(new Key(contentSha, questionId, canonicalAnswer), response);
+    }
+
+    /**
+     * The identity of a submitted answer to a question in a particular content version.
+     */
+    private static final class Key {
+        private final String contentSha;
+        private final String questionId;
+        private final String canonicalAnswer;
+
+        /**
+         * @param contentSha the content version.
+         * @param questionId the question ID.
+         * @param canonicalAnswer the canonical form of the answer.
+         */
+        private Key(final String contentSha, final String questionId, final String canonicalAnswer) {
+            this.contentSha = contentSha;
+            this.questionId = questionId;
+            this.canonicalAnswer = canonicalAnswer;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return contentSha.equals(other.contentSha) && questionId.equals(other.questionId)
+                    && canonicalAnswer.equals(other.canonicalAnswer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contentSha, questionId, canonicalAnswer);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentCache;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.VALIDATOR_RULE_CACHE_REQUESTS;
+
+/**
+ * A cache of the compiled form of questions' answer-checking rules, such as regex Patterns or parsed numbers.
+ *
+ * Rules are compiled once per question on first use and kept in the content cache under the content version the
+ * question was loaded from, so they are dropped with the rest of that version's content. Compiled rules are shared
+ * between threads and must not be modified.
+ */
+public class ValidatorRuleCache {
+    private static final String KEY_KIND = "compiledValidatorRules";
+
+    private final ContentCache contentCache;
+
+    /**
+     * Create a validator rule cache.
+     *
+     * @param contentCache
+     *            - the per-version content cache to keep compiled rules in, or null to never cache.
+     */
+    public ValidatorRuleCache(final ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * A rule cache which never caches, for validators constructed outside the injector such as in tests.
+     *
+     * @return a cache which compiles rules on every request.
+     */
+    public static ValidatorRuleCache uncached() {
+        return new ValidatorRuleCache(null);
+    }
+
+    /**
+     * Get the compiled rules of a question, compiling them if this is the first use in its content version.
+     *
+     * @param contentSha
+     *            - the content version the question was loaded from; rules are only cached if this is known.
+     * @param question
+     *            - the question whose rules are needed.
+     * @param compiledType
+     *            - the type of the compiled rules, so different validators never share an entry.
+     * @param compiler
+     *            - compiles the rules of the question; must not return null.
+     * @param <T>
+     *            - the type of the compiled rules.
+     * @return the shared compiled rules.
+     */
+    public <T> T get(final String contentSha, final Question question, final Class<T> compiledType,
+                     final Function<Question, T> compiler) {
+        if (null == contentCache || null == contentSha || null == question.getId()) {
+            return compiler.apply(question);
+        }
+
+        ContentCache.Key<T> key = ContentCache.Key.of(KEY_KIND, compiledType, question.getId());
+        T rules = contentCache.getIfPresent(contentSha, key);
+        VALIDATOR_RULE_CACHE_REQUESTS.labels(compiledType.getSimpleName(), null == rules ? "miss" : "hit").inc();
+        if (null == rules) {
+            // Compile outside the cache so that a broken rule throws exactly as it would without caching:
+            rules = compiler.apply(question);
+            contentCache.put(contentSha, key, rules);
+        }
+        return rules;
+    }
+
+    /**
+     * Find the position of a choice in a question's choices, so compiled rules can refer to choices of any copy of the
+     * question; a question is deserialised afresh for each attempt.
+     *
+     * @param choices
+     *            - the question's choices.
+     * @param choice
+     *            - one of those choices, such as from a reordered copy of the list.
+     * @return the position of that exact choice object, or -1 if it is not present.
+     */
+    static int indexOfChoice(final List<Choice> choices, final Choice choice) {
+        for (int i = 0; i < choices.size(); i++) {
+            if (choices.get(i) == choice) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -163,6 +163,11 @@ public final class Constants {
      */
     public static final String SESSION_EXPIRY_SECONDS_REMEMBERED = "SESSION_EXPIRY_SECONDS_REMEMBERED";
 
+    /**
+     * Constant representing the property name for how long a validated session may be reused without re-reading the user, in seconds.
+     */
+    public static final String SESSION_CACHE_SECONDS = "SESSION_CACHE_SECONDS";
+
     /**
      * Constant representing the key for the SESSION USER ID - used in HMAC calculations.
      */
@@ -327,6 +332,10 @@ public final class Constants {
 
     // Logging component
     public static final String LOGGING_ENABLED = "LOGGING_ENABLED";
+    public static final String ASYNC_LOGGING_ENABLED = "ASYNC_LOGGING_ENABLED";
+    public static final String ASYNC_LOGGING_QUEUE_SIZE = "ASYNC_LOGGING_QUEUE_SIZE";
+    public static final String ASYNC_LOGGING_BATCH_SIZE = "ASYNC_LOGGING_BATCH_SIZE";
+    public static final String ASYNC_LOGGING_FLUSH_INTERVAL_MILLISECONDS = "ASYNC_LOGGING_FLUSH_INTERVAL_MILLISECONDS";
     public static final Integer MAX_LOG_REQUEST_BODY_SIZE_IN_BYTES = 1000000;
 
     public interface LogType {
@@ -389,6 +398,7 @@ public final class Constants {
 
     // Metrics Component
     public static final String API_METRICS_EXPORT_PORT = "API_METRICS_EXPORT_PORT";
+    public static final String ETL_METRICS_EXPORT_PORT = "ETL_METRICS_EXPORT_PORT";
 
     // IP Geocoding stuff
     public static final String IP_INFO_DB_API_KEY = "IP_INFO_DB_API_KEY";
@@ -499,6 +509,9 @@ public final class Constants {
 
     // cache settings
     public static final String MAX_CONTENT_CACHE_TIME = "MAX_CONTENT_CACHE_TIME";
+    public static final String CONTENT_CACHE_MAX_WEIGHT = "CONTENT_CACHE_MAX_WEIGHT";
+    public static final String CONTENT_SNAPSHOT_MODE = "CONTENT_SNAPSHOT_MODE";
+    public static final String CONTENT_FILE_CACHE_MAX_BYTES = "CONTENT_FILE_CACHE_MAX_BYTES";
     
     public static final int NUMBER_SECONDS_IN_MINUTE = 60;
     public static final int NUMBER_SECONDS_IN_FIVE_MINUTES = NUMBER_SECONDS_IN_MINUTE * 5;
@@ -513,6 +526,11 @@ public final class Constants {
 
     public static final String ANONYMOUS_USER = "ANONYMOUS_USER";
     public static final int LAST_SEEN_UPDATE_FREQUENCY_MINUTES = 5;
+    public static final String LAST_SEEN_FLUSH_INTERVAL_SECONDS = "LAST_SEEN_FLUSH_INTERVAL_SECONDS";
+
+    public static final String EMAIL_OUTBOX_WORKERS = "EMAIL_OUTBOX_WORKERS";
+    public static final String EMAIL_OUTBOX_SENDS_PER_SECOND = "EMAIL_OUTBOX_SENDS_PER_SECOND";
+    public static final String EMAIL_OUTBOX_MAX_ATTEMPTS = "EMAIL_OUTBOX_MAX_ATTEMPTS";
 
     /**
      * Redirect response field name.
@@ -543,7 +561,16 @@ public final class Constants {
     public static final String CHEMISTRY_CHECKER_HOST = "CHEMISTRY_CHECKER_HOST";
     public static final String CHEMISTRY_CHECKER_PORT = "CHEMISTRY_CHECKER_PORT";
 
+    public static final String EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS = "EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS";
+    public static final String EXTERNAL_VALIDATOR_MAX_CONNECTIONS = "EXTERNAL_VALIDATOR_MAX_CONNECTIONS";
+    public static final String VALIDATION_RESPONSE_CACHE_SIZE = "VALIDATION_RESPONSE_CACHE_SIZE";
+    public static final String QUESTION_ATTEMPT_CACHE_MAX_ATTEMPTS = "QUESTION_ATTEMPT_CACHE_MAX_ATTEMPTS";
+
     public static final String QUESTION_MISUSE_THRESHOLD_OVERRIDE = "QUESTION_MISUSE_THRESHOLD_OVERRIDE";
+    public static final String MISUSE_MONITOR_CLUSTERED = "MISUSE_MONITOR_CLUSTERED";
+    public static final String MISUSE_MONITOR_SYNC_INTERVAL_MILLISECONDS = "MISUSE_MONITOR_SYNC_INTERVAL_MILLISECONDS";
+    public static final String MISUSE_MONITOR_MAX_STALENESS_MILLISECONDS = "MISUSE_MONITOR_MAX_STALENESS_MILLISECONDS";
+    public static final String USER_ALERTS_CLUSTERED = "USER_ALERTS_CLUSTERED";
 
     // User Preferences:
     public enum SegueUserPreferences {
@@ -250,6 +250,8 @@ public class QuestionFacade extends AbstractSegueFacade {
             return new SegueErrorResponse(Status.BAD_REQUEST, "No answer received.").toResponse();
         }
 
+        // Read the content version first, so we know it is the version the question came from if it is unchanged later:
+        String contentSha = this.contentManager.getCurrentContentSHA();
         Content contentBasedOnId;
         try {
             contentBasedOnId = this.contentManager.getContentDOById(
@@ -290,7 +292,7 @@ public class QuestionFacade extends AbstractSegueFacade {
 
             AbstractSegueUserDTO currentUser = this.userManager.getCurrentUser(request);
 
-            Response response = this.questionManager.validateAnswer(question, answerFromClientDTO);
+            Response response = this.questionManager.validateAnswer(question, contentSha, answerFromClientDTO);
 
             // After validating the answer, work out whether this is abuse of the endpoint. If so, record the attempt in
             // the log, but don't save it for the user. Also, return an error.
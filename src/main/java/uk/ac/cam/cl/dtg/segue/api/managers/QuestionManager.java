@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
@@ -28,6 +29,7 @@ import org.joda.time.LocalDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.configuration.IsaacApplicationRegister;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserStreaksManager;
 import uk.ac.cam.cl.dtg.isaac.dos.TestCase;
 import uk.ac.cam.cl.dtg.isaac.dos.TestQuestion;
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacItemQuestionDTO;
@@ -37,7 +39,9 @@ import uk.ac.cam.cl.dtg.segue.api.ErrorResponseWrapper;
 import uk.ac.cam.cl.dtg.segue.configuration.SegueGuiceConfigurationModule;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionPartAttemptSummary;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
 import uk.ac.cam.cl.dtg.isaac.dos.content.ChoiceQuestion;
@@ -62,12 +66,14 @@ import uk.ac.cam.cl.dtg.isaac.quiz.ISpecifier;
 import uk.ac.cam.cl.dtg.isaac.quiz.IValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.SpecifiesWith;
 import uk.ac.cam.cl.dtg.isaac.quiz.ValidatesWith;
+import uk.ac.cam.cl.dtg.isaac.quiz.ValidationResponseCache;
 import uk.ac.cam.cl.dtg.isaac.quiz.ValidatorUnavailableException;
 
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -88,17 +94,30 @@ public class QuestionManager {
 
     private final ContentMapper mapper;
     private final IQuestionAttemptManager questionAttemptPersistenceManager;
+    private final GitContentManager contentManager;
+    private final ValidationResponseCache validationResponseCache;
+    private final IUserStreaksManager userStreaksManager;
+
     /**
      * Create a default Question manager object.
      * 
      * @param mapper
      *            - an auto mapper to allow us to convert to and from QuestionValidationResponseDOs and DTOs.
      * @param questionPersistenceManager - for question attempt persistence.
+     * @param contentManager - to find the content version questions belong to.
+     * @param validationResponseCache - shared cache of responses from deterministic validators.
+     * @param userStreaksManager - to keep users' streaks up to date as they answer questions.
      */
     @Inject
-    public QuestionManager(final ContentMapper mapper, final IQuestionAttemptManager questionPersistenceManager) {
+    public QuestionManager(final ContentMapper mapper, final IQuestionAttemptManager questionPersistenceManager,
+                           final GitContentManager contentManager,
+                           final ValidationResponseCache validationResponseCache,
+                           final IUserStreaksManager userStreaksManager) {
         this.mapper = mapper;
         this.questionAttemptPersistenceManager = questionPersistenceManager;
+        this.contentManager = contentManager;
+        this.validationResponseCache = validationResponseCache;
+        this.userStreaksManager = userStreaksManager;
     }
 
     /**
@@ -106,11 +125,15 @@ public class QuestionManager {
      * 
      * @param question
      *            The question to which the answer must be validated against.
+     * @param contentSha
+     *            The content version current when the question was loaded, read before loading it, or null if it is
+     *            not known.
      * @param submittedAnswer
      *            from the client as a DTO for comparison.
      * @return A response containing a QuestionValidationResponse object.
      */
-    public final Response validateAnswer(final Question question, final ChoiceDTO submittedAnswer) {
+    public final Response validateAnswer(final Question question, final String contentSha,
+                                         final ChoiceDTO submittedAnswer) {
         IValidator validator = locateValidator(question.getClass());
 
         if (null == validator) {
@@ -121,11 +144,36 @@ public class QuestionManager {
         }
 
         Choice answerFromUser = mapper.getAutoMapper().map(submittedAnswer, Choice.class);
+        String validatorName = validator.getClass().getSimpleName();
+
+        // The question is only known to belong to contentSha if that was still current after it was loaded:
+        String questionSha = null != contentSha && contentSha.equals(contentManager.getCurrentContentSHA())
+                ? contentSha : null;
+
+        // Deterministic validators always give the same response to the same answer, so we can reuse earlier marks:
+        String canonicalAnswer = null;
+        if (ValidationResponseCache.isCacheable(validator.getClass()) && question.getId() != null
+                && questionSha != null) {
+            canonicalAnswer = canonicalAnswer(answerFromUser);
+        }
+        boolean cacheable = canonicalAnswer != null;
+
+        if (cacheable) {
+            QuestionValidationResponse cachedResponse = validationResponseCache.getIfPresent(validatorName,
+                    contentSha, question.getId(), canonicalAnswer);
+            if (cachedResponse != null) {
+                // Mapping to a DTO copies the shared cached response, so it is safe to stamp the new attempt time:
+                QuestionValidationResponseDTO responseCopy =
+                        mapper.getAutoMapper().map(cachedResponse, QuestionValidationResponseDTO.class);
+                responseCopy.setDateAttempted(new Date());
+                return Response.ok(responseCopy).build();
+            }
+        }
+
         QuestionValidationResponse validateQuestionResponse;
-        Histogram.Timer validatorTimer =
-                VALIDATOR_LATENCY_HISTOGRAM.labels(validator.getClass().getSimpleName()).startTimer();
+        Histogram.Timer validatorTimer = VALIDATOR_LATENCY_HISTOGRAM.labels(validatorName).startTimer();
         try {
-            validateQuestionResponse = validator.validateQuestionResponse(question, answerFromUser);
+            validateQuestionResponse = validator.validateQuestionResponse(question, questionSha, answerFromUser);
         } catch (ValidatorUnavailableException e) {
             return SegueErrorResponse.getServiceUnavailableResponse(e.getClass().getSimpleName() + ": "
                     + e.getMessage());
@@ -133,11 +181,32 @@ public class QuestionManager {
             validatorTimer.observeDuration();
         }
 
+        // A checker failure is not the mark for this answer, so must not be given to everyone else who submits it:
+        if (cacheable && validateQuestionResponse != null && !validateQuestionResponse.isCheckerError()) {
+            validationResponseCache.put(contentSha, question.getId(), canonicalAnswer, validateQuestionResponse);
+        }
+
         return Response.ok(
                 mapper.getAutoMapper().map(validateQuestionResponse, QuestionValidationResponseDTO.class)).build();
 
     }
 
+    /**
+     * Serialise an answer to a canonical form, so that identical answers can share a cached validation response.
+     *
+     * @param answer
+     *            - the answer submitted by the user.
+     * @return the canonical JSON form of the answer, or null if it cannot be serialised.
+     */
+    private String canonicalAnswer(final Choice answer) {
+        try {
+            return mapper.getSharedContentObjectMapper().writeValueAsString(answer);
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to serialise answer for the validation response cache", e);
+            return null;
+        }
+    }
+
     /**
      * Reflection to try and determine the associated validator for the question being answered.
      * 
@@ -325,6 +394,11 @@ public class QuestionManager {
                 questionPageId, questionResponse.getQuestionId(), questionResponseDO);
             log.debug("Question information recorded for user: " + registeredUser.getId());
 
+            if (Boolean.TRUE.equals(questionResponse.isCorrect())) {
+                this.userStreaksManager.recordCorrectAttempt(registeredUser, questionResponse.getQuestionId(),
+                        questionResponse.getDateAttempted());
+            }
+
         } else if (user instanceof AnonymousUserDTO) {
             AnonymousUserDTO anonymousUserDTO = (AnonymousUserDTO) user;
 
@@ -394,8 +468,60 @@ public class QuestionManager {
             return this.questionAttemptPersistenceManager.getAnonymousQuestionAttempts(anonymousUser.getSessionId());
         }
     }
-    
+
+    /**
+     * Get the question attempts for a given user on some question pages only, to avoid loading a whole history.
+     *
+     * @param user
+     *            - with the session information included.
+     * @param questionPageIds
+     *            - the ids of the question pages of interest.
+     * @return map of question attempts (QuestionPageId -> QuestionID -> [QuestionValidationResponse] or an empty map.
+     * @throws SegueDatabaseException
+     *             - if there is a database error.
+     */
+    public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttemptsByUserForQuestionPages(
+            final AbstractSegueUserDTO user, final Collection<String> questionPageIds) throws SegueDatabaseException {
+        Validate.notNull(user);
+
+        if (user instanceof RegisteredUserDTO) {
+            return this.questionAttemptPersistenceManager.getQuestionAttemptsByQuestionPages(
+                    ((RegisteredUserDTO) user).getId(), questionPageIds);
+        } else {
+            // Anonymous attempts are stored together, so there is nothing to gain from fetching only some of them:
+            Map<String, Map<String, List<QuestionValidationResponse>>> anonymousAttempts =
+                    this.getQuestionAttemptsByUser(user);
+            anonymousAttempts.keySet().retainAll(questionPageIds);
+            return anonymousAttempts;
+        }
+    }
+
+    /**
+     * Get a value which changes whenever a user's question attempts do, for use in ETags.
+     *
+     * @param user
+     *            - with the session information included.
+     * @return an opaque version string for the user's question attempts.
+     * @throws SegueDatabaseException
+     *             - if there is a database error.
+     */
+    public String getQuestionAttemptsVersion(final AbstractSegueUserDTO user) throws SegueDatabaseException {
+        Validate.notNull(user);
+
+        if (user instanceof RegisteredUserDTO) {
+            return this.questionAttemptPersistenceManager.getQuestionAttemptsVersion(((RegisteredUserDTO) user).getId());
+        } else {
+            // Anonymous users only have the few attempts made in their session:
+            return String.valueOf(this.getQuestionAttemptsByUser(user).toString().hashCode());
+        }
+    }
+
     /**
+     * Get the users' attempts at some question pages, for working out which question parts they have answered.
+     *
+     * Rather than every attempt, each question part's list holds a single summary of the user's attempts at it,
+     * which is correct if any attempt was and dated at the latest attempt.
+     *
      * @param users who we are interested in.
      * @param questionPageIds we want to look up.
      * @return a map of user id to question page id to question_id to list of attempts.
@@ -408,7 +534,58 @@ public class QuestionManager {
             userIds.add(user.getId());
         }
 
-        return this.questionAttemptPersistenceManager.getQuestionAttemptsByUsersAndQuestionPrefix(userIds,
+        Map<Long, Map<String, Map<String, QuestionPartAttemptSummary>>> summaries =
+                this.questionAttemptPersistenceManager.getQuestionAttemptSummariesByUsersAndQuestionPages(userIds,
+                        questionPageIds);
+
+        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> attempts = Maps.newHashMap();
+        for (Map.Entry<Long, Map<String, Map<String, QuestionPartAttemptSummary>>> userSummaries : summaries.entrySet()) {
+            Map<String, Map<String, List<LightweightQuestionValidationResponse>>> userAttempts = Maps.newHashMap();
+            for (Map.Entry<String, Map<String, QuestionPartAttemptSummary>> pageSummaries
+                    : userSummaries.getValue().entrySet()) {
+                Map<String, List<LightweightQuestionValidationResponse>> pageAttempts = Maps.newHashMap();
+                for (QuestionPartAttemptSummary partSummary : pageSummaries.getValue().values()) {
+                    pageAttempts.put(partSummary.getQuestionId(), Collections.singletonList(partSummary));
+                }
+                userAttempts.put(pageSummaries.getKey(), pageAttempts);
+            }
+            attempts.put(userSummaries.getKey(), userAttempts);
+        }
+        return attempts;
+    }
+
+    /**
+     * Get the summary of a user's attempts at every question part they have attempted.
+     *
+     * @param user who we are interested in.
+     * @return a map of question page id to question_id to summary of attempts, in the order the pages were first
+     *          attempted.
+     * @throws SegueDatabaseException if there is a database error.
+     */
+    public Map<String, Map<String, QuestionPartAttemptSummary>> getQuestionAttemptSummariesByUser(
+            final RegisteredUserDTO user) throws SegueDatabaseException {
+        Validate.notNull(user);
+        return this.questionAttemptPersistenceManager.getQuestionAttemptSummaries(user.getId());
+    }
+
+    /**
+     * Find whether users have answered question parts correctly, for progress reports which need no other details
+     * of the attempts.
+     *
+     * @param users who we are interested in.
+     * @param questionPageIds we want to look up.
+     * @return a map of user id to question part id to whether any attempt at it was correct.
+     * @throws SegueDatabaseException if there is a database error.
+     */
+    public Map<Long, Map<String, Boolean>> getQuestionPartCorrectness(final List<RegisteredUserDTO> users,
+                                                                      final List<String> questionPageIds)
+            throws SegueDatabaseException {
+        List<Long> userIds = Lists.newArrayList();
+        for (RegisteredUserDTO user : users) {
+            userIds.add(user.getId());
+        }
+
+        return this.questionAttemptPersistenceManager.getQuestionPartCorrectnessByUsersAndQuestionPrefix(userIds,
                 questionPageIds);
     }
 
@@ -444,6 +621,16 @@ public class QuestionManager {
                 anonymousUser.getSessionId(), registeredUser.getId());
     }
 
+    /**
+     * Forget anything held in memory about a user's question attempts, after an account merge or deletion.
+     *
+     * @param userId
+     *            - the id of the user whose attempts have changed.
+     */
+    public void invalidateCachedQuestionAttempts(final Long userId) {
+        this.questionAttemptPersistenceManager.invalidateCachedQuestionAttempts(userId);
+    }
+
     /**
      * Count the users by role which have answered questions over the previous time interval
      * @param timeInterval time interval over which to count
@@ -40,11 +40,10 @@ import uk.ac.cam.cl.dtg.segue.dao.schools.UnableToIndexSchoolsException;
 import uk.ac.cam.cl.dtg.isaac.dos.AudienceContext;
 import uk.ac.cam.cl.dtg.isaac.dos.Difficulty;
 import uk.ac.cam.cl.dtg.isaac.dos.IUserStreaksManager;
-import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionPartAttemptSummary;
 import uk.ac.cam.cl.dtg.isaac.dos.Stage;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
 import uk.ac.cam.cl.dtg.isaac.dos.users.School;
-import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.QuestionDTO;
@@ -58,8 +57,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneId;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -73,7 +70,6 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static com.google.common.collect.Maps.immutableEntry;
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval.*;
@@ -431,11 +427,12 @@ public class StatisticsManager implements IStatisticsManager {
         LocalDate lastDayOfPreviousAcademicYear =
                 now.isAfter(endOfAugustThisYear) ? endOfAugustThisYear : endOfAugustLastYear;
 
-        Map<String, Map<String, List<QuestionValidationResponse>>> questionAttemptsByUser = questionManager.getQuestionAttemptsByUser(userOfInterest);
+        Map<String, Map<String, QuestionPartAttemptSummary>> questionAttemptsByUser =
+                questionManager.getQuestionAttemptSummariesByUser(userOfInterest);
         Map<String, ContentDTO> questionMap = this.getQuestionMap(questionAttemptsByUser.keySet());
 
         // Loop through each Question attempted:
-        for (Entry<String, Map<String, List<QuestionValidationResponse>>> question : questionAttemptsByUser.entrySet()) {
+        for (Entry<String, Map<String, QuestionPartAttemptSummary>> question : questionAttemptsByUser.entrySet()) {
             ContentDTO questionContentDTO = questionMap.get(question.getKey());
             if (null == questionContentDTO) {
                 log.warn(String.format("Excluding missing question (%s) from user progress statistics for user (%s)!",
@@ -454,29 +451,28 @@ public class StatisticsManager implements IStatisticsManager {
 
                 boolean questionPartIsCorrect = false;  // Is this Part of the Question correct?
                 // Has the user attempted this part of the question at all?
-                if (question.getValue().containsKey(questionPart.getId())) {
+                QuestionPartAttemptSummary partSummary = question.getValue().get(questionPart.getId());
+                if (partSummary != null) {
                     attemptedQuestionParts++;
 
+                    // Attempts after the first correct one are ignored:
                     LocalDate mostRecentAttemptAtThisQuestionPart = null;
+                    Date lastCountedAttempt =
+                            partSummary.isCorrect() ? partSummary.getFirstCorrect() : partSummary.getDateAttempted();
+                    if (lastCountedAttempt != null) {
+                        mostRecentAttemptAtThisQuestionPart = LocalDateTime.ofInstant(
+                                lastCountedAttempt.toInstant(), ZoneId.systemDefault()).toLocalDate();
+                    }
 
-                    // Loop through each attempt at the Question Part if they have attempted it:
-                    for (QuestionValidationResponse validationResponse : question.getValue().get(questionPart.getId())) {
-                        LocalDate dateAttempted = LocalDateTime.ofInstant(
-                                validationResponse.getDateAttempted().toInstant(), ZoneId.systemDefault()).toLocalDate();
-                        if (mostRecentAttemptAtThisQuestionPart == null || dateAttempted.isAfter(mostRecentAttemptAtThisQuestionPart)) {
-                            mostRecentAttemptAtThisQuestionPart = dateAttempted;
-                        }
-                        if (validationResponse.isCorrect() != null && validationResponse.isCorrect()) {
-                            correctQuestionParts++;
-                            if (dateAttempted.isAfter(lastDayOfPreviousAcademicYear)) {
-                                correctQuestionPartsThisAcademicYear++;
-                                if (mostRecentCorrectQuestionPart == null || dateAttempted.isAfter(mostRecentCorrectQuestionPart)) {
-                                    mostRecentCorrectQuestionPart = dateAttempted;
-                                }
+                    if (partSummary.isCorrect()) {
+                        correctQuestionParts++;
+                        if (mostRecentAttemptAtThisQuestionPart.isAfter(lastDayOfPreviousAcademicYear)) {
+                            correctQuestionPartsThisAcademicYear++;
+                            if (mostRecentCorrectQuestionPart == null || mostRecentAttemptAtThisQuestionPart.isAfter(mostRecentCorrectQuestionPart)) {
+                                mostRecentCorrectQuestionPart = mostRecentAttemptAtThisQuestionPart;
                             }
-                            questionPartIsCorrect = true;
-                            break; // early so that later attempts are ignored
                         }
+                        questionPartIsCorrect = true;
                     }
 
                     // Type Stats - Count the attempt at the Question Part:
@@ -745,18 +741,8 @@ public class StatisticsManager implements IStatisticsManager {
     @Override
     public Map<String, Object> getDetailedUserStatistics(RegisteredUserDTO userOfInterest) {
 
-        // user streak info
-        Map<String, Object> userStreakRecord = userStreaksManager.getCurrentStreakRecord(userOfInterest);
-        userStreakRecord.put("largestStreak", userStreaksManager.getLongestStreak(userOfInterest));
-
-        Map<String, Object> userWeeklyStreakRecord = userStreaksManager.getCurrentWeeklyStreakRecord(userOfInterest);
-        userWeeklyStreakRecord.put("largestWeeklyStreak", userStreaksManager.getLongestWeeklyStreak(userOfInterest));
-
-        Map<String, Object> result = Maps.newHashMap();
-        result.put("dailyStreakRecord", userStreakRecord);
-        result.put("weeklyStreakRecord", userWeeklyStreakRecord);
-
-        return result;
+        // user streak info, kept up to date in memory as the user answers questions:
+        return userStreaksManager.getUserSnapshot(userOfInterest);
     }
 
     /**
@@ -769,20 +755,8 @@ public class StatisticsManager implements IStatisticsManager {
      *             - if something goes wrong.
      */
     private Map<String, ContentDTO> getQuestionMap(final Collection<String> ids) throws ContentManagerException {
-        Map<Map.Entry<BooleanOperator, String>, List<String>> fieldsToMap = Maps.newHashMap();
-
-        fieldsToMap.put(immutableEntry(BooleanOperator.OR, ID_FIELDNAME + '.' + UNPROCESSED_SEARCH_FIELD_SUFFIX),
-                new ArrayList<>(ids));
-
-        fieldsToMap.put(immutableEntry(BooleanOperator.OR, TYPE_FIELDNAME),
-                Arrays.asList(QUESTION_TYPE, FAST_TRACK_QUESTION_TYPE));
-
         // Search for questions that match the ids.
-        ResultsWrapper<ContentDTO> allMatchingIds =
-                this.contentManager.getContentMatchingIds(ids,
-                        0, ids.size());
-
-        List<ContentDTO> questionsForGameboard = allMatchingIds.getResults();
+        List<ContentDTO> questionsForGameboard = this.contentManager.getContentByIds(ids);
 
         Map<String, ContentDTO> questionIdToQuestionMap = Maps.newHashMap();
         for (ContentDTO content : questionsForGameboard) {
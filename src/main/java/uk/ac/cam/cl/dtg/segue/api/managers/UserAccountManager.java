@@ -42,6 +42,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IAnonymousUserDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
+import uk.ac.cam.cl.dtg.segue.dao.users.LastSeenAggregator;
 import uk.ac.cam.cl.dtg.isaac.dos.AbstractUserPreferenceManager;
 import uk.ac.cam.cl.dtg.isaac.dos.UserPreference;
 import uk.ac.cam.cl.dtg.isaac.dos.users.UserContext;
@@ -63,6 +64,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.core.Response;
@@ -108,6 +110,7 @@ public class UserAccountManager implements IUserAccountManager {
     private final ISecondFactorAuthenticator secondFactorManager;
 
     private final AbstractUserPreferenceManager userPreferenceManager;
+    private final LastSeenAggregator lastSeenAggregator;
 
     private final int USER_NAME_MAX_LENGTH = 255;
     private static final Pattern USER_NAME_FORBIDDEN_CHARS_REGEX = Pattern.compile("[*<>]");
@@ -143,6 +146,43 @@ public class UserAccountManager implements IUserAccountManager {
                               final ILogManager logManager, final UserAuthenticationManager userAuthenticationManager,
                               final ISecondFactorAuthenticator secondFactorManager,
                               final AbstractUserPreferenceManager userPreferenceManager) {
+        this(database, questionDb, properties, providersToRegister, dtoMapper, emailQueue, temporaryUserCache,
+                logManager, userAuthenticationManager, secondFactorManager, userPreferenceManager, null);
+    }
+
+    /**
+     * Create an instance of the user manager class.
+     *  @param database
+     *            - an IUserDataManager that will support persistence.
+     * @param questionDb
+     *            - allows this class to instruct the questionDB to merge an anonymous user with a registered user.
+     * @param properties
+     *            - A property loader
+     * @param providersToRegister
+     *            - A map of known authentication providers.
+     * @param dtoMapper
+     *            - the preconfigured DO to DTO object mapper for user objects.
+     * @param emailQueue
+     *            - the preconfigured communicator manager for sending e-mails.
+     * @param temporaryUserCache
+     *            - temporary user cache for anonymous users
+     * @param logManager
+     *            - so that we can log events for users.
+     * @param userAuthenticationManager
+     * @param secondFactorManager
+     * @param userPreferenceManager
+     *            - Allows user preferences to be managed.
+     * @param lastSeenAggregator
+     *            - if not null, last seen dates are handed to this to be written in batches rather than updated
+     *            before returning.
+     */
+    public UserAccountManager(final IUserDataManager database, final QuestionManager questionDb, final PropertiesLoader properties,
+                              final Map<AuthenticationProvider, IAuthenticator> providersToRegister, final MapperFacade dtoMapper,
+                              final EmailManager emailQueue, final IAnonymousUserDataManager temporaryUserCache,
+                              final ILogManager logManager, final UserAuthenticationManager userAuthenticationManager,
+                              final ISecondFactorAuthenticator secondFactorManager,
+                              final AbstractUserPreferenceManager userPreferenceManager,
+                              @Nullable final LastSeenAggregator lastSeenAggregator) {
 
         Validate.notNull(properties.getProperty(HMAC_SALT));
         Validate.notNull(properties.getProperty(SESSION_EXPIRY_SECONDS_DEFAULT));
@@ -164,6 +204,7 @@ public class UserAccountManager implements IUserAccountManager {
         this.userAuthenticationManager = userAuthenticationManager;
         this.secondFactorManager = secondFactorManager;
         this.userPreferenceManager = userPreferenceManager;
+        this.lastSeenAggregator = lastSeenAggregator;
     }
 
     /**
@@ -1233,6 +1274,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // save the user
         RegisteredUser userToReturn = this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedSessions(userToReturn.getId());
         if (null != newPassword && !newPassword.isEmpty()) {
             authenticator.setOrChangeUsersPassword(userToReturn, newPassword);
         }
@@ -1280,6 +1322,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         userToSave.setRole(requestedRole);
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedSessions(userToSave.getId());
     }
 
     /**
@@ -1303,6 +1346,7 @@ public class UserAccountManager implements IUserAccountManager {
         userToSave.setEmailVerificationStatus(requestedEmailVerificationStatus);
         userToSave.setLastUpdated(new Date());
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedSessions(userToSave.getId());
     }
 
     /**
@@ -1325,6 +1369,8 @@ public class UserAccountManager implements IUserAccountManager {
 
         // delete the user.
         this.database.deleteUserAccount(userDOById);
+        this.userAuthenticationManager.invalidateCachedSessions(userDOById.getId());
+        this.questionAttemptDb.invalidateCachedQuestionAttempts(userDOById.getId());
     }
 
     /**
@@ -1351,6 +1397,11 @@ public class UserAccountManager implements IUserAccountManager {
 
         // merge the users.
         this.database.mergeUserAccounts(targetUser, sourceUser);
+        this.userAuthenticationManager.invalidateCachedSessions(targetUser.getId());
+        this.userAuthenticationManager.invalidateCachedSessions(sourceUser.getId());
+        // The merge moves question attempts between the accounts in the database:
+        this.questionAttemptDb.invalidateCachedQuestionAttempts(targetUser.getId());
+        this.questionAttemptDb.invalidateCachedQuestionAttempts(sourceUser.getId());
     }
 
     /**
@@ -1408,6 +1459,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user object
             this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedSessions(user.getId());
 
             String emailVerificationToken = user.getEmailVerificationToken();
 
@@ -1492,6 +1544,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user
             RegisteredUser createOrUpdateUser = this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedSessions(createOrUpdateUser.getId());
             log.info(String.format("Email verification for user (%s) has completed successfully.",
                     createOrUpdateUser.getId()));
             return this.convertUserDOToUserDTO(createOrUpdateUser);
@@ -2022,16 +2075,20 @@ public class UserAccountManager implements IUserAccountManager {
      *             - if an error occurs with the update.
      */
     private void updateLastSeen(final RegisteredUser user) throws SegueDatabaseException {
-        if (user.getLastSeen() == null) {
-            this.database.updateUserLastSeen(user);
-        } else {
+        if (user.getLastSeen() != null) {
             // work out if we should update the user record again...
             long timeDiff = Math.abs(new Date().getTime() - user.getLastSeen().getTime());
             long minutesElapsed = TimeUnit.MILLISECONDS.toMinutes(timeDiff);
-            if (minutesElapsed > LAST_SEEN_UPDATE_FREQUENCY_MINUTES) {
-                this.database.updateUserLastSeen(user);
+            if (minutesElapsed <= LAST_SEEN_UPDATE_FREQUENCY_MINUTES) {
+                return;
             }
         }
+
+        if (null != this.lastSeenAggregator) {
+            this.lastSeenAggregator.recordLastSeen(user.getId(), new Date());
+        } else {
+            this.database.updateUserLastSeen(user);
+        }
     }
 
     /**
@@ -2054,6 +2111,7 @@ public class UserAccountManager implements IUserAccountManager {
             throw new NoUserLoggedInException();
         }
         this.database.incrementSessionToken(user);
+        this.userAuthenticationManager.invalidateCachedSessions(user.getId());
         logUserOut(request, response);
     }
 
@@ -18,6 +18,8 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -79,8 +81,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
 
 /**
  * This class handles all authentication details, including creation / destruction of sessions. It also handles adding
@@ -89,6 +93,11 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class UserAuthenticationManager {
     private static final Logger log = LoggerFactory.getLogger(UserAuthenticationManager.class);
     private static final String HMAC_SHA_ALGORITHM = "HmacSHA256";
+    private static final int DEFAULT_SESSION_CACHE_SECONDS = 5;
+    private static final int SESSION_CACHE_MAXIMUM_SIZE = 20000;
+
+    // Creating and keying a Mac is far more expensive than using one, so each thread keeps one for the last key it saw.
+    private static final ThreadLocal<KeyedMac> THREAD_MAC = new ThreadLocal<>();
 
     private final PropertiesLoader properties;
     private final IUserDataManager database;
@@ -96,6 +105,8 @@ public class UserAuthenticationManager {
     private final ObjectMapper serializationMapper;
     private final boolean checkOriginHeader;
     private final boolean setSecureCookies;
+    // Cache of the form raw auth cookie value --> session already validated against the database; null if disabled.
+    private final Cache<String, AuthenticatedSession> sessionCache;
     
     private final Map<AuthenticationProvider, IAuthenticator> registeredAuthProviders;
 
@@ -129,6 +140,17 @@ public class UserAuthenticationManager {
         boolean isProduction = properties.getProperty(Constants.SEGUE_APP_ENVIRONMENT).equals(EnvironmentType.PROD.name());
         this.checkOriginHeader = isProduction;
         this.setSecureCookies = isProduction;
+
+        String sessionCacheSecondsProperty = properties.getProperty(SESSION_CACHE_SECONDS);
+        int sessionCacheSeconds = null == sessionCacheSecondsProperty ? DEFAULT_SESSION_CACHE_SECONDS
+                : Integer.parseInt(sessionCacheSecondsProperty);
+        if (sessionCacheSeconds > 0) {
+            this.sessionCache = CacheBuilder.newBuilder().maximumSize(SESSION_CACHE_MAXIMUM_SIZE)
+                    .expireAfterWrite(sessionCacheSeconds, TimeUnit.SECONDS).recordStats().build();
+            CACHE_METRICS_COLLECTOR.addCache("authenticated_sessions", this.sessionCache);
+        } else {
+            this.sessionCache = null;
+        }
     }
 
     /**
@@ -335,12 +357,9 @@ public class UserAuthenticationManager {
         // WARNING: There are two public getUserFromSession methods: ensure you check both!
         Validate.notNull(request);
 
-        Map<String, String> currentSessionInformation;
+        String segueAuthCookieValue;
         try {
-            currentSessionInformation = this.getSegueSessionFromRequest(request);
-        } catch (IOException e1) {
-            log.debug("Error parsing session information to retrieve user.");
-            return null;
+            segueAuthCookieValue = this.getSegueAuthCookieValue(request);
         } catch (InvalidSessionException e) {
             log.debug("We cannot read the session information. It probably doesn't exist");
             // assuming that no user is logged in.
@@ -367,7 +386,12 @@ public class UserAuthenticationManager {
             }
         }
 
-        return getUserFromSessionInformationMap(currentSessionInformation, allowIncompleteLoginsToReturnUser);
+        try {
+            return getUserFromSessionCookie(segueAuthCookieValue, allowIncompleteLoginsToReturnUser);
+        } catch (IOException e1) {
+            log.debug("Error parsing session information to retrieve user.");
+            return null;
+        }
     }
 
     /**
@@ -378,9 +402,9 @@ public class UserAuthenticationManager {
         // WARNING: There are two public getUserFromSession methods: ensure you check both!
         Validate.notNull(request);
 
-        Map<String, String> currentSessionInformation;
         try {
-            currentSessionInformation = this.getSegueSessionFromRequest(request);
+            // WebSocket UpgradeRequests should never use a partial login:
+            return getUserFromSessionCookie(this.getSegueAuthCookieValue(request), false);
         } catch (IOException e1) {
             log.error("Error parsing session information to retrieve user.");
             return null;
@@ -389,9 +413,22 @@ public class UserAuthenticationManager {
             // assuming that no user is logged in.
             return null;
         }
+    }
 
-        // WebSocket UpgradeRequests should never use a partial login:
-        return getUserFromSessionInformationMap(currentSessionInformation, false);
+    /**
+     * Forget any sessions for this user which have been validated recently, so that the next request from each of
+     * them reads the user from the database again.
+     *
+     * This must be called whenever something that affects authentication or authorisation changes, such as the
+     * session token, role or the existence of the account; otherwise the change may take a few seconds to apply.
+     *
+     * @param userId - the id of the user whose sessions have changed.
+     */
+    public void invalidateCachedSessions(final Long userId) {
+        if (null == sessionCache || null == userId) {
+            return;
+        }
+        sessionCache.asMap().values().removeIf(session -> userId.equals(session.user.getId()));
     }
 
     /**
@@ -418,6 +455,52 @@ public class UserAuthenticationManager {
     }
 
 
+    /**
+     * Find the user for a Segue auth cookie, reusing a recent validation of the same cookie where possible.
+     *
+     * A cookie which validated against the database within the last few seconds is trusted again without parsing it,
+     * recalculating its HMAC or reading the user, provided it has not expired since. Callers always get their own copy
+     * of the user, since the cached one is shared between requests.
+     *
+     * @param segueAuthCookieValue - the raw value of the Segue auth cookie.
+     * @param allowIncompleteLoginsToReturnUser - boolean if true will allow users that haven't completed MFA to be returned,
+     *                                          false will be stricter and return null if user hasn't completed MFA.
+     * @return either the valid user from the cookie, or null if no valid user
+     * @throws IOException - if the cookie cannot be parsed.
+     */
+    private RegisteredUser getUserFromSessionCookie(final String segueAuthCookieValue,
+                                                    final boolean allowIncompleteLoginsToReturnUser) throws IOException {
+        AuthenticatedSession cachedSession = null == sessionCache ? null : sessionCache.getIfPresent(segueAuthCookieValue);
+        if (null != cachedSession) {
+            if (System.currentTimeMillis() > cachedSession.expiresAtMillis) {
+                log.debug("Session expired");
+                sessionCache.invalidate(segueAuthCookieValue);
+                return null;
+            }
+            if (cachedSession.partialLogin && !allowIncompleteLoginsToReturnUser) {
+                log.debug("Incomplete MFA flow - no user object to be provided");
+                return null;
+            }
+            return new RegisteredUser(cachedSession.user);
+        }
+
+        Map<String, String> currentSessionInformation = this.parseSegueSession(segueAuthCookieValue);
+        RegisteredUser user = getUserFromSessionInformationMap(currentSessionInformation, allowIncompleteLoginsToReturnUser);
+        if (null != user && null != sessionCache) {
+            try {
+                SimpleDateFormat sessionDateFormat = new SimpleDateFormat(DEFAULT_DATE_FORMAT);
+                long expiresAtMillis = sessionDateFormat.parse(currentSessionInformation.get(DATE_EXPIRES)).getTime();
+                boolean partialLogin = Boolean.parseBoolean(currentSessionInformation.get(PARTIAL_LOGIN_FLAG));
+                sessionCache.put(segueAuthCookieValue,
+                        new AuthenticatedSession(new RegisteredUser(user), expiresAtMillis, partialLogin));
+            } catch (ParseException e) {
+                // Cannot happen for a session that has just been validated, but there is no harm in not caching it.
+                log.debug("Unable to cache session with unparseable expiry date.");
+            }
+        }
+        return user;
+    }
+
     /**
      * This method tries to address some of the duplication when extracting a user from a request.
      *
@@ -1084,7 +1167,37 @@ public class UserAuthenticationManager {
      */
     private Map<String, String> getSegueSessionFromRequest(final HttpServletRequest request) throws IOException,
             InvalidSessionException {
-        // WARNING: There are two getSegueSessionFromRequest methods: ensure you update both!
+        return this.parseSegueSession(this.getSegueAuthCookieValue(request));
+    }
+
+    /**
+     * Decode the session information held in a Segue auth cookie.
+     *
+     * @param segueAuthCookieValue
+     *            - the raw value of the Segue auth cookie.
+     * @return The segue session information (unchecked or validated)
+     * @throws IOException
+     *             - problem parsing session information.
+     */
+    private Map<String, String> parseSegueSession(final String segueAuthCookieValue) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, String> sessionInformation = this.serializationMapper.readValue(Base64.decodeBase64(segueAuthCookieValue),
+                HashMap.class);
+
+        return sessionInformation;
+    }
+
+    /**
+     * This method will extract the raw Segue auth cookie value from a given request.
+     *
+     * @param request
+     *            - possibly containing a segue cookie.
+     * @return The encoded segue session information (unchecked or validated)
+     * @throws InvalidSessionException
+     *             - if there is no session set.
+     */
+    private String getSegueAuthCookieValue(final HttpServletRequest request) throws InvalidSessionException {
+        // WARNING: There are two getSegueAuthCookieValue methods: ensure you update both!
         Cookie segueAuthCookie = null;
         if (request.getCookies() == null) {
             throw new InvalidSessionException("There are no cookies set.");
@@ -1100,21 +1213,16 @@ public class UserAuthenticationManager {
             throw new InvalidSessionException("There are no cookies set.");
         }
 
-        @SuppressWarnings("unchecked")
-        Map<String, String> sessionInformation = this.serializationMapper.readValue(Base64.decodeBase64(segueAuthCookie.getValue()),
-                HashMap.class);
-
-        return sessionInformation;
+        return segueAuthCookie.getValue();
     }
 
     /**
-     * @see #getSegueSessionFromRequest(HttpServletRequest) - except for some reason a WebSocket UpgradeRrequest is not
+     * @see #getSegueAuthCookieValue(HttpServletRequest) - except for some reason a WebSocket UpgradeRrequest is not
      *          an HttpServletRequest. Worse, the cookies from an HttpServletRequest are Cookie objects, but those
      *          from the WebSocket UpgradeRequest are HttpCookies!
      */
-    private Map<String, String> getSegueSessionFromRequest(final UpgradeRequest request) throws IOException,
-            InvalidSessionException {
-        // WARNING: There are two getSegueSessionFromRequest methods: ensure you update both!
+    private String getSegueAuthCookieValue(final UpgradeRequest request) throws InvalidSessionException {
+        // WARNING: There are two getSegueAuthCookieValue methods: ensure you update both!
         HttpCookie segueAuthCookie = null;
         if (request.getCookies() == null) {
             throw new InvalidSessionException("There are no cookies set.");
@@ -1130,11 +1238,7 @@ public class UserAuthenticationManager {
             throw new InvalidSessionException("There are no cookies set.");
         }
 
-        @SuppressWarnings("unchecked")
-        Map<String, String> sessionInformation = this.serializationMapper.readValue(Base64.decodeBase64(segueAuthCookie.getValue()),
-                HashMap.class);
-
-        return sessionInformation;
+        return segueAuthCookie.getValue();
     }
     
     /**
@@ -1151,11 +1255,17 @@ public class UserAuthenticationManager {
         Validate.notEmpty(dataToSign, "Data to sign cannot be blank.");
 
         try {
-            SecretKeySpec signingKey = new SecretKeySpec(key.getBytes(), HMAC_SHA_ALGORITHM);
-            Mac mac = Mac.getInstance(HMAC_SHA_ALGORITHM);
-            mac.init(signingKey);
+            KeyedMac keyedMac = THREAD_MAC.get();
+            if (null == keyedMac || !keyedMac.key.equals(key)) {
+                SecretKeySpec signingKey = new SecretKeySpec(key.getBytes(), HMAC_SHA_ALGORITHM);
+                Mac mac = Mac.getInstance(HMAC_SHA_ALGORITHM);
+                mac.init(signingKey);
+                keyedMac = new KeyedMac(key, mac);
+                THREAD_MAC.set(keyedMac);
+            }
 
-            byte[] rawHmac = mac.doFinal(dataToSign.getBytes());
+            // doFinal leaves the Mac reset and ready to sign the next data with the same key.
+            byte[] rawHmac = keyedMac.mac.doFinal(dataToSign.getBytes());
 
             String result = new String(Base64.encodeBase64(rawHmac));
             return result;
@@ -1164,4 +1274,41 @@ public class UserAuthenticationManager {
             throw new IllegalArgumentException();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * A session which was recently validated against the database.
+     */
+    private static final class AuthenticatedSession {
+        private final RegisteredUser user;
+        private final long expiresAtMillis;
+        private final boolean partialLogin;
+
+        /**
+         * @param user - a private copy of the user the session belongs to.
+         * @param expiresAtMillis - when the session expires, in epoch milliseconds.
+         * @param partialLogin - whether the user has yet to complete MFA.
+         */
+        private AuthenticatedSession(final RegisteredUser user, final long expiresAtMillis, final boolean partialLogin) {
+            this.user = user;
+            this.expiresAtMillis = expiresAtMillis;
+            this.partialLogin = partialLogin;
+        }
+    }
+
+    /**
+     * A Mac already initialised with a signing key.
+     */
+    private static final class KeyedMac {
+        private final String key;
+        private final Mac mac;
+
+        /**
+         * @param key - the signing key the Mac was initialised with.
+         * @param mac - the initialised Mac.
+         */
+        private KeyedMac(final String key, final Mac mac) {
+            this.key = key;
+            this.mac = mac;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import org.apache.commons.lang3.Validate;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A misuse monitor which keeps its counts in memory without any global lock.
+ *
+ * Each agent and event has one atomic counter, holding the start of its current accounting window and the number of
+ * events seen in it packed into a single long, so that an increment is one compare-and-set and allocates nothing once
+ * the counter exists. Like {@link InMemoryMisuseMonitor}, each window starts with the first event after the previous
+ * window expired and lasts for the handler's accounting interval. Threshold actions run for the one increment which
+ * takes the count from below a threshold to at or above it, even when many threads race to cross it.
+ */
+public class ConcurrentMisuseMonitor implements IMisuseMonitor {
+    private static final int COUNT_BITS = 23;
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+    // A counter which has not yet seen an event; no real packed value can be negative.
+    private static final long NO_WINDOW = -1;
+
+    // Cache of the form agentIdentifier --> Event --> packed window start and count
+    private final Cache<String, ConcurrentMap<String, AtomicLong>> countersByAgent;
+    private final Map<String, IMisuseHandler> handlerMap;
+    private final LongSupplier clock;
+    private final long epochMillis;
+
+    /**
+     * Creates a misuse monitor that just uses non-persistent storage.
+     */
+    @Inject
+    public ConcurrentMisuseMonitor() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a misuse monitor with a custom clock, for testing.
+     *
+     * @param clock
+     *            - supplies the current time in epoch milliseconds.
+     */
+    ConcurrentMisuseMonitor(final LongSupplier clock) {
+        this.countersByAgent = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS)
+                .<String, ConcurrentMap<String, AtomicLong>>build();
+        this.handlerMap = Maps.newConcurrentMap();
+        this.clock = clock;
+        // Window starts are stored relative to this, so they fit in the bits not used by the count:
+        this.epochMillis = clock.getAsLong();
+    }
+
+    @Override
+    public void registerHandler(final String eventToHandle, final IMisuseHandler handler) {
+        handlerMap.put(eventToHandle, handler);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
+            throws SegueResourceMisuseException {
+        this.notifyEvent(agentIdentifier, eventLabel, 1);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel, final Integer adjustmentValue)
+            throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        Validate.notNull(adjustmentValue);
+        Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
+
+        IMisuseHandler handler = handlerMap.get(eventLabel);
+        Validate.notNull(handler, "No handler has been registered for " + eventLabel);
+
+        AtomicLong counter = getOrCreateCounter(agentIdentifier, eventLabel);
+        long now = clock.getAsLong() - epochMillis;
+        long intervalMillis = handler.getAccountingIntervalInSeconds() * 1000L;
+
+        long previous;
+        long updated;
+        long previousCount;
+        long newCount;
+        do {
+            previous = counter.get();
+            long windowStart = previous >>> COUNT_BITS;
+            long count = previous & MAX_COUNT;
+            if (NO_WINDOW == previous || now - windowStart > intervalMillis) {
+                // The last window has expired, so start counting again from now.
+                windowStart = now;
+                count = 0;
+            }
+            previousCount = count;
+            newCount = Math.min(count + adjustmentValue, MAX_COUNT);
+            updated = windowStart << COUNT_BITS | newCount;
+        } while (!counter.compareAndSet(previous, updated));
+
+        Integer softThreshold = handler.getSoftThreshold();
+        if (softThreshold != null && previousCount < softThreshold && newCount >= softThreshold) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        Integer hardThreshold = handler.getHardThreshold();
+        if (hardThreshold != null && previousCount < hardThreshold && newCount >= hardThreshold) {
+            handler.executeHardThresholdAction(String.format("(%s) has exceeded the hard limit!", agentIdentifier));
+        }
+
+        if (hardThreshold != null && newCount > hardThreshold) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+        }
+    }
+
+    @Override
+    public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
+        return willHaveMisused(agentIdentifier, eventToCheck, 0);
+    }
+
+    @Override
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        ConcurrentMap<String, AtomicLong> counters = countersByAgent.getIfPresent(agentIdentifier);
+        if (null == counters || counters.get(eventToCheck) == null) {
+            return false;
+        }
+
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        if (null == handler || null == handler.getHardThreshold()) {
+            return false;
+        }
+
+        long packed = counters.get(eventToCheck).get();
+        long windowStart = packed >>> COUNT_BITS;
+        long count = packed & MAX_COUNT;
+        long now = clock.getAsLong() - epochMillis;
+        return NO_WINDOW != packed && now - windowStart <= handler.getAccountingIntervalInSeconds() * 1000L
+                && count + adjustmentValue >= handler.getHardThreshold();
+    }
+
+    @Override
+    public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
+        ConcurrentMap<String, AtomicLong> counters = countersByAgent.getIfPresent(agentIdentifier);
+        if (counters != null) {
+            counters.remove(eventLabel);
+        }
+    }
+
+    /**
+     * Find the counter for an agent and event, creating it if this is the first event.
+     *
+     * @param agentIdentifier the agent using the resource.
+     * @param eventLabel the event.
+     * @return the counter.
+     */
+    private AtomicLong getOrCreateCounter(final String agentIdentifier, final String eventLabel) {
+        ConcurrentMap<String, AtomicLong> counters = countersByAgent.getIfPresent(agentIdentifier);
+        if (null == counters) {
+            try {
+                counters = countersByAgent.get(agentIdentifier, ConcurrentHashMap::new);
+            } catch (ExecutionException e) {
+                // Creating an empty map cannot fail.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        AtomicLong counter = counters.get(eventLabel);
+        if (null == counter) {
+            counter = counters.computeIfAbsent(eventLabel, label -> new AtomicLong(NO_WINDOW));
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A misuse monitor which shares its counts between every API node through the misuse_counters table.
+ *
+ * Events are counted locally and the deltas are periodically written to the database in one batched upsert, which
+ * returns the merged count from every node. Decisions use the last merged count plus any local events not yet
+ * written, and a count is re-read from the database before use if it has not been synchronised within the staleness
+ * window, so a limit can be exceeded cluster-wide by at most what the other nodes see in that window. Re-reads happen
+ * in the background; only the first read of a count waits for the database, and then for a bounded time. Accounting
+ * windows are decided by the database clock, so all nodes agree on when a count resets, and counts whose window has
+ * ended are periodically deleted.
+ *
+ * Threshold actions run on the node whose event takes its view of the count across the threshold, so each node runs
+ * them at most once per window. If the database is unavailable the monitor carries on with its local counts.
+ */
+public class PgMisuseMonitor implements IMisuseMonitor, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PgMisuseMonitor.class);
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLISECONDS = 1000;
+    public static final long DEFAULT_MAX_STALENESS_MILLISECONDS = 5000;
+    public static final long DEFAULT_PURGE_INTERVAL_MILLISECONDS = TimeUnit.HOURS.toMillis(1);
+
+    // Each row has 4 bind parameters, and postgres allows at most 65535 in one statement.
+    private static final int MAX_ROWS_PER_UPSERT = 1000;
+    private static final int MAX_ROWS_PER_PURGE = 10000;
+    private static final long MAX_FIRST_LOAD_WAIT_MILLISECONDS = 200;
+    private static final int LOAD_THREADS = 2;
+    private static final int MAX_QUEUED_LOADS = 1000;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO misuse_counters(agent_identifier, event_label, window_expires, count) VALUES ";
+    private static final String UPSERT_ROW = "(?, ?, now() + ? * INTERVAL '1 second', ?)";
+    private static final String UPSERT_SUFFIX = " ON CONFLICT (agent_identifier, event_label) DO UPDATE SET"
+            + " count = CASE WHEN misuse_counters.window_expires < now() THEN EXCLUDED.count"
+            + " ELSE misuse_counters.count + EXCLUDED.count END,"
+            + " window_expires = CASE WHEN misuse_counters.window_expires < now() THEN EXCLUDED.window_expires"
+            + " ELSE misuse_counters.window_expires END"
+            + " RETURNING agent_identifier, event_label, window_expires, count;";
+    private static final Comparator<CounterState> UPSERT_ORDER = Comparator
+            .comparing((CounterState state) -> state.agentIdentifier).thenComparing(state -> state.eventLabel);
+
+    private final PostgresSqlDb database;
+    private final Map<String, IMisuseHandler> handlerMap;
+    private final Cache<CounterKey, CounterState> counters;
+    private final long maxStalenessMillis;
+    private final ScheduledExecutorService syncExecutor;
+    private final ThreadPoolExecutor loadExecutor;
+
+    /**
+     * Creates a misuse monitor backed by postgres.
+     *
+     * @param database
+     *            - client for postgres.
+     * @param syncIntervalMilliseconds
+     *            - how often local counts are written to and merged from the database.
+     * @param maxStalenessMilliseconds
+     *            - how old a merged count can be before it is re-read from the database on use.
+     */
+    public PgMisuseMonitor(final PostgresSqlDb database, final long syncIntervalMilliseconds,
+                           final long maxStalenessMilliseconds) {
+        this.database = database;
+        this.handlerMap = Maps.newConcurrentMap();
+        this.counters = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS)
+                .<CounterKey, CounterState>build();
+        this.maxStalenessMillis = maxStalenessMilliseconds;
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("misuse-monitor-sync").setDaemon(true).build());
+        this.syncExecutor.scheduleWithFixedDelay(this::syncWithDatabase, syncIntervalMilliseconds,
+                syncIntervalMilliseconds, TimeUnit.MILLISECONDS);
+        this.syncExecutor.scheduleWithFixedDelay(this::purgeExpiredCounts, DEFAULT_PURGE_INTERVAL_MILLISECONDS,
+                DEFAULT_PURGE_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+        // Reads are dropped rather than queued without limit if the database falls behind; the local count is used.
+        this.loadExecutor = new ThreadPoolExecutor(LOAD_THREADS, LOAD_THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED_LOADS),
+                new ThreadFactoryBuilder().setNameFormat("misuse-monitor-load-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public void registerHandler(final String eventToHandle, final IMisuseHandler handler) {
+        handlerMap.put(eventToHandle, handler);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
+            throws SegueResourceMisuseException {
+        this.notifyEvent(agentIdentifier, eventLabel, 1);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel, final Integer adjustmentValue)
+            throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        Validate.notNull(adjustmentValue);
+        Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
+
+        IMisuseHandler handler = handlerMap.get(eventLabel);
+        Validate.notNull(handler, "No handler has been registered for " + eventLabel);
+
+        CounterState state = getFreshState(agentIdentifier, eventLabel, handler);
+        long previousCount;
+        long newCount;
+        synchronized (state) {
+            state.expireIfNeeded(System.currentTimeMillis());
+            previousCount = state.total();
+            state.pendingDelta += adjustmentValue;
+            newCount = state.total();
+        }
+
+        Integer softThreshold = handler.getSoftThreshold();
+        if (softThreshold != null && previousCount < softThreshold && newCount >= softThreshold) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        Integer hardThreshold = handler.getHardThreshold();
+        if (hardThreshold != null && previousCount < hardThreshold && newCount >= hardThreshold) {
+            handler.executeHardThresholdAction(String.format("(%s) has exceeded the hard limit!", agentIdentifier));
+        }
+
+        if (hardThreshold != null && newCount > hardThreshold) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+        }
+    }
+
+    @Override
+    public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
+        return willHaveMisused(agentIdentifier, eventToCheck, 0);
+    }
+
+    @Override
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        if (null == handler || null == handler.getHardThreshold()) {
+            return false;
+        }
+
+        CounterState state = getFreshState(agentIdentifier, eventToCheck, handler);
+        synchronized (state) {
+            state.expireIfNeeded(System.currentTimeMillis());
+            return state.total() > 0 && state.total() + adjustmentValue >= handler.getHardThreshold();
+        }
+    }
+
+    @Override
+    public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
+        counters.invalidate(new CounterKey(agentIdentifier, eventLabel));
+
+        String query = "DELETE FROM misuse_counters WHERE agent_identifier = ? AND event_label = ?;";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Unable to reset misuse count for " + eventLabel, e);
+        }
+    }
+
+    /**
+     * Stop synchronising, after writing any outstanding local counts to the database.
+     */
+    @Override
+    public void close() {
+        loadExecutor.shutdownNow();
+        syncExecutor.shutdown();
+        try {
+            syncExecutor.awaitTermination(DEFAULT_MAX_STALENESS_MILLISECONDS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncWithDatabase();
+    }
+
+    /**
+     * Delete every count whose window has ended. The upsert starts a new window for an expired row anyway, so this only
+     * stops the table growing with agents which never come back. Rows being written by another node are skipped.
+     *
+     * @return the number of counts deleted.
+     */
+    public int purgeExpiredCounts() {
+        String query = "DELETE FROM misuse_counters WHERE (agent_identifier, event_label) IN"
+                + " (SELECT agent_identifier, event_label FROM misuse_counters WHERE window_expires < now()"
+                + " LIMIT ? FOR UPDATE SKIP LOCKED);";
+        int total = 0;
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setInt(1, MAX_ROWS_PER_PURGE);
+            int deleted;
+            do {
+                deleted = pst.executeUpdate();
+                total += deleted;
+            } while (deleted == MAX_ROWS_PER_PURGE);
+        } catch (SQLException e) {
+            log.error("Unable to delete expired misuse counts", e);
+        }
+        return total;
+    }
+
+    /**
+     * Find the local state for an agent and event, starting a read of the merged count from the database if it is new
+     * or stale.
+     *
+     * Only the first read of a count is waited for, and for at most a short time; after that the local count is used
+     * and is brought up to date when the read completes.
+     *
+     * @param agentIdentifier the agent using the resource.
+     * @param eventLabel the event.
+     * @param handler the handler for the event.
+     * @return the counter state.
+     */
+    private CounterState getFreshState(final String agentIdentifier, final String eventLabel,
+                                       final IMisuseHandler handler) {
+        CounterState state;
+        try {
+            state = counters.get(new CounterKey(agentIdentifier, eventLabel),
+                    () -> new CounterState(agentIdentifier, eventLabel, handler.getAccountingIntervalInSeconds()));
+        } catch (ExecutionException e) {
+            // Creating an empty state cannot fail.
+            throw new IllegalStateException(e);
+        }
+
+        Future<?> firstLoad;
+        synchronized (state) {
+            // If a sync is in progress it will bring the count up to date when it completes.
+            if (!state.syncInProgress && System.currentTimeMillis() - state.lastSyncedMillis > maxStalenessMillis) {
+                state.syncInProgress = true;
+                try {
+                    state.load = loadExecutor.submit(() -> loadFromDatabase(state));
+                } catch (RejectedExecutionException e) {
+                    state.syncInProgress = false;
+                    log.warn("Too many misuse counts waiting to be read; using the local count for " + eventLabel);
+                }
+            }
+            if (state.lastSyncedMillis != 0 || null == state.load) {
+                return state;
+            }
+            firstLoad = state.load;
+        }
+
+        try {
+            firstLoad.get(MAX_FIRST_LOAD_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out reading misuse count; using the local count for " + eventLabel);
+        } catch (ExecutionException e) {
+            log.error("Unable to read misuse count; using the local count for " + eventLabel, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return state;
+    }
+
+    /**
+     * Read the merged count for one agent and event from the database into its local state.
+     *
+     * @param state the counter state, which must have been marked as syncing.
+     */
+    private void loadFromDatabase(final CounterState state) {
+        String query = "SELECT window_expires, count FROM misuse_counters"
+                + " WHERE agent_identifier = ? AND event_label = ? AND window_expires >= now();";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setString(1, state.agentIdentifier);
+            pst.setString(2, state.eventLabel);
+            try (ResultSet results = pst.executeQuery()) {
+                synchronized (state) {
+                    if (results.next()) {
+                        state.merged(results.getInt("count"), results.getTimestamp("window_expires").getTime());
+                    } else {
+                        state.merged(0, 0);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Unable to read misuse count; using the local count for " + state.eventLabel, e);
+        } finally {
+            synchronized (state) {
+                state.syncInProgress = false;
+            }
+        }
+    }
+
+    /**
+     * Write every local count that has changed to the database, and merge the returned cluster counts.
+     *
+     * Counts are written in a fixed order so that two nodes writing the same rows cannot deadlock, and in chunks to
+     * stay within the bind parameter limit. If a chunk fails the rest are left pending and written next time.
+     */
+    private void syncWithDatabase() {
+        List<CounterState> dirtyStates = Lists.newArrayList();
+        Map<CounterState, Long> deltas = Maps.newIdentityHashMap();
+        for (CounterState state : counters.asMap().values()) {
+            synchronized (state) {
+                if (state.pendingDelta > 0 && !state.syncInProgress) {
+                    state.syncInProgress = true;
+                    dirtyStates.add(state);
+                    deltas.put(state, state.pendingDelta);
+                }
+            }
+        }
+        if (dirtyStates.isEmpty()) {
+            return;
+        }
+        dirtyStates.sort(UPSERT_ORDER);
+
+        int written = 0;
+        try (Connection conn = database.getDatabaseConnection()) {
+            for (List<CounterState> chunk : Lists.partition(dirtyStates, MAX_ROWS_PER_UPSERT)) {
+                upsert(conn, chunk, deltas);
+                written += chunk.size();
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Keep the pending deltas so they are written next time.
+            log.error(String.format("Unable to synchronise %d misuse counts with the database",
+                    dirtyStates.size() - written), e);
+        } finally {
+            for (CounterState state : dirtyStates) {
+                synchronized (state) {
+                    state.syncInProgress = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one chunk of local counts to the database in a single upsert, and merge the returned cluster counts.
+     *
+     * @param conn the connection to use.
+     * @param states the counts to write, in upsert order.
+     * @param deltas the pending delta being written for each count.
+     * @throws SQLException if the upsert fails, in which case none of the chunk has been written.
+     */
+    private void upsert(final Connection conn, final List<CounterState> states, final Map<CounterState, Long> deltas)
+            throws SQLException {
+        StringBuilder query = new StringBuilder(UPSERT_PREFIX);
+        for (int i = 0; i < states.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append(UPSERT_ROW);
+        }
+        query.append(UPSERT_SUFFIX);
+
+        Map<CounterKey, CounterState> stateByKey = Maps.newHashMap();
+        try (PreparedStatement pst = conn.prepareStatement(query.toString())) {
+            int index = 1;
+            for (CounterState state : states) {
+                stateByKey.put(new CounterKey(state.agentIdentifier, state.eventLabel), state);
+                pst.setString(index++, state.agentIdentifier);
+                pst.setString(index++, state.eventLabel);
+                pst.setInt(index++, state.accountingIntervalSeconds);
+                pst.setInt(index++, (int) Math.min(Integer.MAX_VALUE, deltas.get(state)));
+            }
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    CounterState state = stateByKey.get(new CounterKey(results.getString("agent_identifier"),
+                            results.getString("event_label")));
+                    if (null == state) {
+                        continue;
+                    }
+                    synchronized (state) {
+                        state.pendingDelta -= deltas.get(state);
+                        state.merged(results.getInt("count"), results.getTimestamp("window_expires").getTime());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This node's view of the count for one agent and event. Guarded by its own monitor.
+     */
+    private static final class CounterState {
+        private final String agentIdentifier;
+        private final String eventLabel;
+        private final int accountingIntervalSeconds;
+
+        // The count from every node, as of the last sync, and when the database will reset it.
+        private long clusterCount;
+        private long windowExpiresMillis;
+        // Events seen on this node which have not yet been written to the database.
+        private long pendingDelta;
+        private long lastSyncedMillis;
+        private boolean syncInProgress;
+        // The most recent background read of the count, if there has been one.
+        private Future<?> load;
+
+        /**
+         * @param agentIdentifier the agent using the resource.
+         * @param eventLabel the event.
+         * @param accountingIntervalSeconds the length of the accounting window.
+         */
+        private CounterState(final String agentIdentifier, final String eventLabel,
+                             final int accountingIntervalSeconds) {
+            this.agentIdentifier = agentIdentifier;
+            this.eventLabel = eventLabel;
+            this.accountingIntervalSeconds = accountingIntervalSeconds;
+        }
+
+        /**
+         * @return the number of events in the current window, as far as this node knows.
+         */
+        private long total() {
+            return clusterCount + pendingDelta;
+        }
+
+        /**
+         * Forget the count once its window has ended, and start a local window if there is none. The database decides
+         * the real window on the next sync, so this only matters if the database is unavailable.
+         *
+         * @param nowMillis the current time.
+         */
+        private void expireIfNeeded(final long nowMillis) {
+            if (windowExpiresMillis != 0 && nowMillis > windowExpiresMillis) {
+                clusterCount = 0;
+                windowExpiresMillis = 0;
+                if (!syncInProgress) {
+                    // These events belong to the window which has just ended.
+                    pendingDelta = 0;
+                }
+            }
+            if (0 == windowExpiresMillis) {
+                windowExpiresMillis = nowMillis + accountingIntervalSeconds * 1000L;
+            }
+        }
+
+        /**
+         * Record the merged count read from the database.
+         *
+         * @param count the cluster-wide count.
+         * @param expiresMillis when the count's window ends, or 0 if there is no current window.
+         */
+        private void merged(final long count, final long expiresMillis) {
+            this.clusterCount = count;
+            this.windowExpiresMillis = expiresMillis;
+            this.lastSyncedMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The agent and event a count is for.
+     */
+    private static final class CounterKey {
+        private final String agentIdentifier;
+        private final String eventLabel;
+
+        /**
+         * @param agentIdentifier the agent using the resource.
+         * @param eventLabel the event.
+         */
+        private CounterKey(final String agentIdentifier, final String eventLabel) {
+            this.agentIdentifier = agentIdentifier;
+            this.eventLabel = eventLabel;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey other = (CounterKey) o;
+            return agentIdentifier.equals(other.agentIdentifier) && eventLabel.equals(other.eventLabel);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(agentIdentifier, eventLabel);
+        }
+    }
+}
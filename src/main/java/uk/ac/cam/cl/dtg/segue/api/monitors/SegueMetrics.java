@@ -44,6 +44,14 @@ public final class SegueMetrics {
             .name("isaac_question_validation")
             .labelNames("validator")
             .help("Validator latency in seconds.").register();
+    public static final Counter VALIDATION_RESPONSE_CACHE_REQUESTS = Counter.build()
+            .name("isaac_question_validation_cache_requests")
+            .labelNames("validator", "result")
+            .help("Validation response cache lookups by validator and hit or miss.").register();
+    public static final Counter VALIDATOR_RULE_CACHE_REQUESTS = Counter.build()
+            .name("isaac_question_validator_rule_cache_requests")
+            .labelNames("rules", "result")
+            .help("Compiled validator rule cache lookups by rule type and hit or miss.").register();
 
     // Cache Metrics
     public static final CacheMetricsCollector CACHE_METRICS_COLLECTOR = new CacheMetricsCollector().register();
@@ -61,6 +69,19 @@ public final class SegueMetrics {
     public static final Counter USER_REGISTRATION = Counter.build()
             .name("segue_user_registration_total").help("User registrations since process start.").register();
 
+    public static final Histogram USER_ALERT_DELIVERY_LAG = Histogram.build()
+            .name("segue_user_alert_delivery_lag").help("Time from publishing a user alert to dispatching it to"
+                    + " this node's websockets in seconds.").register();
+    public static final Counter USER_ALERT_PUBLISH_FAILURES = Counter.build()
+            .name("segue_user_alert_publish_failures_total").labelNames("reason")
+            .help("User alerts only delivered to the publishing node since process start.").register();
+    public static final Counter USER_ALERTS_DROPPED = Counter.build()
+            .name("segue_user_alerts_dropped_total")
+            .help("User alerts received from the bus but not dispatched because this node was too far behind,"
+                    + " since process start.").register();
+    public static final Counter USER_ALERT_BUS_RECONNECTS = Counter.build()
+            .name("segue_user_alert_bus_reconnects_total")
+            .help("Times the user alert listener has reconnected since process start.").register();
     public static final Gauge CURRENT_WEBSOCKET_USERS = Gauge.build()
             .name("segue_websocket_users").help("Currently number of websocket users/browsers.").register();
     // Anonymous user stats are calculated using metrics on the guava cache which holds a reference to each active user
@@ -80,10 +101,40 @@ public final class SegueMetrics {
     // Email Metrics
     public static final Counter QUEUED_EMAIL = Counter.build()
             .name("segue_queued_email_total").help("All emails queued since process start").labelNames("type", "sender").register();
+    public static final Gauge EMAIL_OUTBOX_DEPTH = Gauge.build()
+            .name("segue_email_outbox_depth").help("Emails waiting in the outbox to be sent by any node.").register();
+    public static final Histogram EMAIL_SEND_DURATION = Histogram.build()
+            .name("segue_email_send_duration").help("Time taken to hand an email to the SMTP server in seconds.")
+            .register();
+    public static final Counter EMAIL_SEND_FAILURES = Counter.build()
+            .name("segue_email_send_failures_total").labelNames("outcome")
+            .help("Emails which could not be sent since process start, by whether they will be retried.").register();
 
     // Log Event Metrics
     public static final Counter LOG_EVENT = Counter.build()
             .name("isaac_log_event").help("Counter for Log Events by type").labelNames("type").register();
+    public static final Gauge LOG_EVENT_QUEUE_DEPTH = Gauge.build()
+            .name("segue_log_event_queue_depth").help("Log events waiting to be written asynchronously.").register();
+    public static final Histogram LOG_EVENT_BATCH_SIZE = Histogram.build()
+            .name("segue_log_event_batch_size").buckets(1, 5, 10, 25, 50, 100, 250, 500, 1000)
+            .help("Number of log events written in each asynchronous batch.").register();
+    public static final Histogram LOG_EVENT_FLUSH_LATENCY = Histogram.build()
+            .name("segue_log_event_flush_latency").help("Asynchronous log event batch write latency in seconds.")
+            .register();
+    public static final Counter LOG_EVENT_DROPPED = Counter.build()
+            .name("segue_log_event_dropped_total").labelNames("reason")
+            .help("Log events discarded by the asynchronous writer since process start.").register();
+    public static final Gauge LAST_SEEN_PENDING_USERS = Gauge.build()
+            .name("segue_last_seen_pending_users").help("Users whose last seen date is waiting to be written.")
+            .register();
+    public static final Histogram LAST_SEEN_FLUSH_DURATION = Histogram.build()
+            .name("segue_last_seen_flush_duration").help("Batched last seen update duration in seconds.").register();
+
+    // Content Indexing Metrics
+    public static final Histogram CONTENT_INDEX_STAGE_DURATION = Histogram.build()
+            .name("segue_content_index_stage_duration").labelNames("stage")
+            .buckets(0.1, 0.5, 1, 5, 10, 30, 60, 120, 300, 600)
+            .help("Time taken by each stage of indexing a content version in seconds.").register();
 
     /**
      *  Private constructor as it does not make sense to instantiate this class.
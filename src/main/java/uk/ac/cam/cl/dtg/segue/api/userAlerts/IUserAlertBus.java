@@ -0,0 +1,36 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+
+/**
+ * Delivers user alerts to the websockets of the user they are for, wherever those websockets are connected.
+ */
+public interface IUserAlertBus {
+
+    /**
+     * Send an alert to every websocket the user has open.
+     *
+     * Delivery is best effort: a user who is not connected, or whose connection is interrupted, will not receive it.
+     *
+     * @param userId
+     *            - the id of the user the alert is for.
+     * @param alert
+     *            - the alert to send.
+     */
+    void publish(long userId, IUserAlert alert);
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+
+/**
+ * An alert bus for a single API node, which only delivers alerts to websockets connected to this JVM.
+ */
+public class LocalUserAlertBus implements IUserAlertBus {
+
+    @Override
+    public void publish(final long userId, final IUserAlert alert) {
+        UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+    }
+}
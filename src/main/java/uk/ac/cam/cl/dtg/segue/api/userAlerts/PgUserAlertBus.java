@@ -0,0 +1,357 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlert;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.USER_ALERTS_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.USER_ALERT_BUS_RECONNECTS;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.USER_ALERT_DELIVERY_LAG;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.USER_ALERT_PUBLISH_FAILURES;
+
+/**
+ * An alert bus shared between every API node through Postgres LISTEN/NOTIFY.
+ *
+ * Alerts are published with NOTIFY, and every node, including the publishing one, LISTENs on a dedicated connection
+ * and passes the alerts it receives to the websockets connected to it. If the listening connection is lost it is
+ * reopened with a backoff; alerts published while it is down are not seen by that node, but persisted alerts are
+ * still sent to each websocket when it connects. If an alert cannot be published, or is too large for NOTIFY, it is
+ * only delivered on the publishing node.
+ *
+ * Alerts are dispatched to websockets by a fixed set of threads, each with a bounded queue, and each user's alerts
+ * always go to the same thread so they arrive in order. A websocket which is slow to accept an alert therefore only
+ * delays the users who share its thread, and if a thread falls too far behind, further alerts for its users are
+ * dropped, although persisted ones are still sent when the user's websocket next connects.
+ */
+public class PgUserAlertBus implements IUserAlertBus, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PgUserAlertBus.class);
+
+    private static final String CHANNEL = "user_alerts";
+    // Postgres rejects NOTIFY payloads of 8000 bytes or more:
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+    private static final int POLL_TIMEOUT_MILLISECONDS = 5000;
+    private static final long IDLE_CHECK_INTERVAL_MILLISECONDS = 30000;
+    private static final long MIN_RECONNECT_DELAY_MILLISECONDS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLISECONDS = 60000;
+    private static final int DISPATCH_THREADS = 8;
+    private static final int MAX_QUEUED_ALERTS_PER_THREAD = 1000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final PostgresSqlDb database;
+    private final ExecutorService listenerExecutor;
+    private final List<ExecutorService> dispatchExecutors;
+    private volatile Connection listenerConnection;
+    private volatile boolean closed;
+
+    /**
+     * Creates an alert bus and starts listening for alerts from every node.
+     *
+     * @param database
+     *            - client for postgres.
+     */
+    public PgUserAlertBus(final PostgresSqlDb database) {
+        this.database = database;
+        this.listenerExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("user-alert-listener").setDaemon(true).build());
+        // Sending to a websocket can block, so alerts are dispatched on their own threads to keep the listener reading:
+        ThreadFactory dispatchThreads =
+                new ThreadFactoryBuilder().setNameFormat("user-alert-dispatcher-%d").setDaemon(true).build();
+        this.dispatchExecutors = Lists.newArrayList();
+        for (int i = 0; i < DISPATCH_THREADS; i++) {
+            this.dispatchExecutors.add(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUED_ALERTS_PER_THREAD), dispatchThreads));
+        }
+        this.listenerExecutor.submit(this::listenUntilClosed);
+    }
+
+    @Override
+    public void publish(final long userId, final IUserAlert alert) {
+        String payload;
+        try {
+            payload = encodeNotification(userId, alert, System.currentTimeMillis());
+        } catch (JsonProcessingException e) {
+            log.error(String.format("Unable to serialise alert for user (%s); delivering locally only.", userId), e);
+            USER_ALERT_PUBLISH_FAILURES.labels("serialisation").inc();
+            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+            return;
+        }
+
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            log.warn(String.format("Alert for user (%s) is too large to publish; delivering locally only.", userId));
+            USER_ALERT_PUBLISH_FAILURES.labels("too_large").inc();
+            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+            return;
+        }
+
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT pg_notify(?, ?);");
+        ) {
+            pst.setString(1, CHANNEL);
+            pst.setString(2, payload);
+            pst.execute();
+        } catch (SQLException e) {
+            log.error(String.format("Unable to publish alert for user (%s); delivering locally only.", userId), e);
+            USER_ALERT_PUBLISH_FAILURES.labels("database").inc();
+            UserAlertsWebSocket.notifyUserOfAlert(userId, alert);
+        }
+    }
+
+    /**
+     * Stop listening for alerts.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection conn = listenerConnection;
+        if (conn != null) {
+            try {
+                // Closing the connection stops the listener waiting for notifications.
+                conn.close();
+            } catch (SQLException e) {
+                log.debug("Error closing user alert listener connection.", e);
+            }
+        }
+        listenerExecutor.shutdownNow();
+        for (ExecutorService dispatchExecutor : dispatchExecutors) {
+            dispatchExecutor.shutdown();
+        }
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_TIMEOUT_MILLISECONDS);
+            for (ExecutorService dispatchExecutor : dispatchExecutors) {
+                dispatchExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Listen for alerts until closed, reconnecting with an increasing delay whenever the connection is lost.
+     */
+    private void listenUntilClosed() {
+        long reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+        while (!closed) {
+            try (Connection conn = database.getDedicatedConnection()) {
+                listenerConnection = conn;
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL + ";");
+                }
+                log.info("Listening for user alerts from every API node.");
+                reconnectDelay = MIN_RECONNECT_DELAY_MILLISECONDS;
+                receiveNotifications(conn);
+            } catch (SQLException e) {
+                if (closed) {
+                    return;
+                }
+                log.error(String.format("Lost connection listening for user alerts; reconnecting in %d ms.",
+                        reconnectDelay), e);
+            } finally {
+                listenerConnection = null;
+            }
+
+            if (closed) {
+                return;
+            }
+            USER_ALERT_BUS_RECONNECTS.inc();
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLISECONDS);
+        }
+    }
+
+    /**
+     * Pass each notification received on a connection to the dispatcher, until closed or the connection fails.
+     *
+     * @param conn
+     *            - a connection which is listening on the alert channel.
+     * @throws SQLException
+     *             - if the connection fails.
+     */
+    private void receiveNotifications(final Connection conn) throws SQLException {
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        long lastActivity = System.currentTimeMillis();
+        while (!closed) {
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLISECONDS);
+            if (notifications != null && notifications.length > 0) {
+                lastActivity = System.currentTimeMillis();
+                for (PGNotification notification : notifications) {
+                    dispatch(notification.getParameter());
+                }
+            } else if (System.currentTimeMillis() - lastActivity > IDLE_CHECK_INTERVAL_MILLISECONDS) {
+                // A quiet connection may have been silently dropped; make sure the server is still there.
+                try (Statement st = conn.createStatement()) {
+                    st.execute("SELECT 1;");
+                }
+                lastActivity = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Deliver a notification to the websockets connected to this node, or drop it if its user's dispatcher is full.
+     *
+     * @param payload
+     *            - the notification payload, as published.
+     */
+    private void dispatch(final String payload) {
+        AlertNotification notification;
+        try {
+            notification = decodeNotification(payload);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to read user alert: " + payload, e);
+            return;
+        }
+
+        try {
+            dispatchExecutorFor(notification.userId).execute(() -> {
+                try {
+                    USER_ALERT_DELIVERY_LAG.observe(
+                            Math.max(0, System.currentTimeMillis() - notification.publishedMillis) / 1000.0);
+                    UserAlertsWebSocket.notifyUserOfAlert(notification.userId, notification.alert);
+                } catch (RuntimeException e) {
+                    log.error("Unable to deliver user alert: " + payload, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (closed) {
+                log.debug("Dropping user alert received during shutdown.");
+            } else {
+                log.warn(String.format("Too many user alerts waiting to be sent; dropping alert for user (%s).",
+                        notification.userId));
+                USER_ALERTS_DROPPED.inc();
+            }
+        }
+    }
+
+    /**
+     * @param userId
+     *            - the id of the user an alert is for.
+     * @return the executor which dispatches every alert for that user.
+     */
+    private ExecutorService dispatchExecutorFor(final long userId) {
+        return dispatchExecutors.get(Math.floorMod(Long.hashCode(userId), dispatchExecutors.size()));
+    }
+
+    /**
+     * @param userId
+     *            - the id of the user the alert is for.
+     * @param alert
+     *            - the alert.
+     * @param publishedMillis
+     *            - when the alert was published.
+     * @return the NOTIFY payload for the alert.
+     * @throws JsonProcessingException
+     *             - if the alert cannot be serialised.
+     */
+    @VisibleForTesting
+    static String encodeNotification(final long userId, final IUserAlert alert, final long publishedMillis)
+            throws JsonProcessingException {
+        return objectMapper.writeValueAsString(ImmutableMap.of(
+                "userId", userId,
+                "published", publishedMillis,
+                "alert", alert
+        ));
+    }
+
+    /**
+     * @param payload
+     *            - a NOTIFY payload produced by encodeNotification.
+     * @return the alert and who it is for.
+     * @throws IOException
+     *             - if the payload cannot be read.
+     */
+    @VisibleForTesting
+    static AlertNotification decodeNotification(final String payload) throws IOException {
+        JsonNode notification = objectMapper.readTree(payload);
+        JsonNode alert = notification.get("alert");
+        IUserAlert userAlert = new PgUserAlert(longOrNull(alert, "id"), longOrNull(alert, "userId"),
+                textOrNull(alert, "message"), textOrNull(alert, "link"), dateOrNull(alert, "created"),
+                dateOrNull(alert, "seen"), dateOrNull(alert, "clicked"), dateOrNull(alert, "dismissed"));
+        return new AlertNotification(notification.get("userId").asLong(), notification.get("published").asLong(),
+                userAlert);
+    }
+
+    private static Long longOrNull(final JsonNode node, final String field) {
+        JsonNode value = node.get(field);
+        return null == value || value.isNull() ? null : value.asLong();
+    }
+
+    private static String textOrNull(final JsonNode node, final String field) {
+        JsonNode value = node.get(field);
+        return null == value || value.isNull() ? null : value.asText();
+    }
+
+    private static Date dateOrNull(final JsonNode node, final String field) {
+        Long millis = longOrNull(node, field);
+        return null == millis ? null : new Date(millis);
+    }
+
+    /**
+     * An alert received from the bus.
+     */
+    @VisibleForTesting
+    static final class AlertNotification {
+        final long userId;
+        final long publishedMillis;
+        final IUserAlert alert;
+
+        /**
+         * @param userId the id of the user the alert is for.
+         * @param publishedMillis when the alert was published.
+         * @param alert the alert.
+         */
+        private AlertNotification(final long userId, final long publishedMillis, final IUserAlert alert) {
+            this.userId = userId;
+            this.publishedMillis = publishedMillis;
+            this.alert = alert;
+        }
+    }
+}
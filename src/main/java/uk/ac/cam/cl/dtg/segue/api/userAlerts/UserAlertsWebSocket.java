@@ -72,13 +72,15 @@ public class UserAlertsWebSocket implements IAlertListener {
     // operations on the user sets of websockets are unsafe unless used with the matching user lock.
     private static Map<Long, Set<UserAlertsWebSocket>> unsafeConnectedSockets = Maps.newConcurrentMap();
     private static final int MAX_NUMBER_OF_CONCURRENT_USER_TAB_OPERATIONS = 200;
-    // If we move to supporting connections across multiple APIs, we could use postgres for a distributed lock.
+    // These locks only guard this JVM's sockets; alerts from other API nodes arrive through the IUserAlertBus.
     private static Striped<Lock> userLocks = Striped.lazyWeakLock(MAX_NUMBER_OF_CONCURRENT_USER_TAB_OPERATIONS);
 
     private static final Logger log = LoggerFactory.getLogger(UserAlertsWebSocket.class);
 
     /**
-     * This static method obtains a user lock and sends an alert to each of that user's websockets.
+     * This static method obtains a user lock and sends an alert to each of that user's websockets on this node.
+     *
+     * Alerts should be sent through an IUserAlertBus, which calls this on each node the user may be connected to.
      * @param userId ID of the user to send the messages, we do not check its validity here.
      * @param alert the alert to send to the user.
      */
@@ -102,4 +102,11 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
             throw new CommunicationException(e);
         }
     }
+
+    /**
+     * Close any SMTP connections the current thread has open; for threads which are about to finish sending email.
+     */
+    public void closeConnections() {
+        mailer.closeConnections();
+    }
 }
\ No newline at end of file
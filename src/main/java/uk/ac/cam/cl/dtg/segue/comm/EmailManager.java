@@ -18,8 +18,10 @@ package uk.ac.cam.cl.dtg.segue.comm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
-import com.google.api.client.util.Sets;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.Validate;
@@ -45,16 +47,19 @@ import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 import jakarta.annotation.Nullable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.QUEUED_EMAIL;
@@ -63,6 +68,9 @@ import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.QUEUED_EMAIL;
  * EmailManager
  * Responsible for orchestration of email sending in Segue.
  *
+ * Emails are queued in the persistent outbox when there is one; the in-memory queue is only used without an outbox, or
+ * if the outbox cannot be written to.
+ *
  */
 public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationMessage> {
     private final AbstractUserPreferenceManager userPreferenceManager;
@@ -74,8 +82,18 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     private final Map<String, String> globalStringTokens;
 
     private static final Logger log = LoggerFactory.getLogger(EmailManager.class);
-    private static final int MINIMUM_TAG_LENGTH = 4;
-    private static final DateFormat FULL_DATE_FORMAT = new SimpleDateFormat("EEE d MMM yyyy h:mm aaa");
+    // SimpleDateFormat is not thread safe, and emails for a mass send are rendered on several threads:
+    private static final ThreadLocal<DateFormat> FULL_DATE_FORMAT = ThreadLocal.withInitial(() -> {
+        DateFormat fullDateFormat = new SimpleDateFormat("EEE d MMM yyyy h:mm aaa");
+        fullDateFormat.setTimeZone(TimeZone.getTimeZone(DEFAULT_TIME_LOCALITY));
+        return fullDateFormat;
+    });
+    private static final EmailTokenAccessor<RegisteredUserDTO> USER_TOKEN_ACCESSOR =
+            EmailTokenAccessor.forClass(RegisteredUserDTO.class);
+    private static final int MASS_EMAIL_BATCH_SIZE = 500;
+
+    private final ExecutorService massEmailRenderer;
+    private final PgEmailOutbox outbox;
 
     /**
      * @param communicator
@@ -91,29 +109,81 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
      * @param globalStringTokens a map containing a token that if seen in an email template should be replaced with some
      *                           static string.
      */
-    @Inject
     public EmailManager(final EmailCommunicator communicator, final AbstractUserPreferenceManager userPreferenceManager,
                         final PropertiesLoader globalProperties, final GitContentManager contentManager,
                         final ILogManager logManager, final Map<String, String> globalStringTokens) {
+        this(communicator, userPreferenceManager, globalProperties, contentManager, logManager, globalStringTokens,
+                null);
+    }
+
+    /**
+     * @param communicator
+     *            class we'll use to send the actual email.
+     * @param userPreferenceManager
+     *            user preference manager used to check if users want email.
+     * @param globalProperties
+     *            global properties used to get host name
+     * @param contentManager
+     *            content for email templates
+     * @param logManager
+     *            so we can log e-mail events.
+     * @param globalStringTokens a map containing a token that if seen in an email template should be replaced with some
+     *                           static string.
+     * @param outbox
+     *            (nullable) the persistent queue to send emails from, or null to only use the in-memory queue.
+     */
+    @Inject
+    public EmailManager(final EmailCommunicator communicator, final AbstractUserPreferenceManager userPreferenceManager,
+                        final PropertiesLoader globalProperties, final GitContentManager contentManager,
+                        final ILogManager logManager, final Map<String, String> globalStringTokens,
+                        @Nullable final PgEmailOutbox outbox) {
         super(communicator);
+        this.outbox = outbox;
         this.userPreferenceManager = userPreferenceManager;
         this.globalProperties = globalProperties;
         this.contentManager = contentManager;
         this.logManager = logManager;
         this.globalStringTokens = globalStringTokens;
-
-        FULL_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone(DEFAULT_TIME_LOCALITY));
+        this.massEmailRenderer = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder().setNameFormat("mass-email-renderer-%d").setDaemon(true).build());
     }
 
     @Override
     protected void addToQueue(final EmailCommunicationMessage email) {
-        // Label metrics with sender address, but Prometheus label cannot be null so need the default value here too:
-        String senderAddress = globalProperties.getProperty(MAIL_FROM_ADDRESS);
-        if (email.getOverrideEnvelopeFrom() != null && !email.getOverrideEnvelopeFrom().isEmpty()) {
-            senderAddress = email.getOverrideEnvelopeFrom();
+        addAllToQueue(Collections.singletonList(email));
+    }
+
+    /**
+     * Queue several emails at once, which is much cheaper than queueing them one by one when there is an outbox.
+     *
+     * @param emails
+     *            - the emails to send.
+     */
+    private void addAllToQueue(final List<EmailCommunicationMessage> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        for (EmailCommunicationMessage email : emails) {
+            // Label metrics with sender address, but Prometheus label cannot be null so need the default value here:
+            String senderAddress = globalProperties.getProperty(MAIL_FROM_ADDRESS);
+            if (email.getOverrideEnvelopeFrom() != null && !email.getOverrideEnvelopeFrom().isEmpty()) {
+                senderAddress = email.getOverrideEnvelopeFrom();
+            }
+            QUEUED_EMAIL.labels(email.getEmailType().name(), senderAddress).inc();
+        }
+
+        if (outbox != null) {
+            try {
+                outbox.enqueue(emails);
+                return;
+            } catch (SegueDatabaseException e) {
+                log.error(String.format("Unable to add %d emails to the outbox; sending from memory instead.",
+                        emails.size()), e);
+            }
+        }
+        for (EmailCommunicationMessage email : emails) {
+            super.addToQueue(email);
         }
-        QUEUED_EMAIL.labels(email.getEmailType().name(), senderAddress).inc();
-        super.addToQueue(email);
     }
 
     /**
@@ -170,9 +240,8 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         propertiesToReplace.putAll(this.flattenTokenMap(tokenToValueMapping, Maps.newHashMap(), ""));
 
         // Add all properties in the user DTO (preserving types) so they are available to email templates.
-        Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(userDTO);
-
-        propertiesToReplace.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+        propertiesToReplace.putAll(this.flattenTokenMap(USER_TOKEN_ACCESSOR.getProperties(userDTO), Maps.newHashMap(),
+                ""));
 
         // Sanitizes inputs from users
         sanitizeEmailParameters(propertiesToReplace);
@@ -218,6 +287,9 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     }
     
     /**
+     * Send an email from the content templates to many users. The template is checked before returning, but the emails
+     * are rendered and queued in the background.
+     *
      * @param sendingUser
      * 				- the user object for the user sending the email
      * @param contentObjectId
@@ -238,44 +310,30 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         Validate.notNull(contentObjectId);
 
         EmailTemplateDTO emailContent = getEmailTemplateDTO(contentObjectId);
-
-        int numberOfFilteredUsers = 0;
-        for (RegisteredUserDTO user : allSelectedUsers) {
-            Properties p = new Properties();
-            p.putAll(this.globalStringTokens);
-
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(user);
-            p.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
-
-            sanitizeEmailParameters(p);
-
-            EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), emailContent, p,
-                    emailType, null);
-
-            // add to the queue
-            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e);
-            if (!emailAddedToSendQueue) {
-                numberOfFilteredUsers++;
-            }
-        }
-
-        List<Long> ids = Lists.newArrayList();
-        allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
-
-        ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
-                .put("contentObjectId", contentObjectId)
-                .put(CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA())
-                .put("numberFiltered", numberOfFilteredUsers)
-                .put("type", emailType).build();
-
-        this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_MASS_EMAIL, eventDetails);
-        log.info(String.format("Admin user (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
-                allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+        ParsedEmail parsedEmail = parseEmail(emailContent);
+        String contentVersion = this.contentManager.getCurrentContentSHA();
+
+        sendMassEmail(allSelectedUsers, parsedEmail, emailType, numberOfFilteredUsers -> {
+            List<Long> ids = Lists.newArrayList();
+            allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
+
+            ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
+                    .put("contentObjectId", contentObjectId)
+                    .put(CONTENT_VERSION_FIELDNAME, contentVersion)
+                    .put("numberFiltered", numberOfFilteredUsers)
+                    .put("type", emailType).build();
+
+            this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_MASS_EMAIL, eventDetails);
+            log.info(String.format("Admin user (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
+                    allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+        });
     }
 
 
     /**
+     * Send an email with custom content to many users. The template is checked before returning, but the emails are
+     * rendered and queued in the background.
+     *
      * @param sendingUser
      * 				- the user object for the user sending the email
      * @param emailTemplate
@@ -292,43 +350,113 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
                                        final EmailType emailType) throws SegueDatabaseException, ContentManagerException {
         Validate.notNull(allSelectedUsers);
 
+        ParsedEmail parsedEmail = parseEmail(emailTemplate);
+        String contentVersion = this.contentManager.getCurrentContentSHA();
 
-        int numberOfFilteredUsers = 0;
-        for (RegisteredUserDTO user : allSelectedUsers) {
-            Properties p = new Properties();
-            p.putAll(this.globalStringTokens);
+        sendMassEmail(allSelectedUsers, parsedEmail, emailType, numberOfFilteredUsers -> {
+            List<Long> ids = Lists.newArrayList();
+            allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
 
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(user);
-            p.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+            ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
+                    .put("htmlTemplate", emailTemplate.getHtmlContent())
+                    .put(CONTENT_VERSION_FIELDNAME, contentVersion)
+                    .put("numberFiltered", numberOfFilteredUsers)
+                    .put("type", emailType).build();
 
-            sanitizeEmailParameters(p);
-
-            EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), emailTemplate, p,
+            this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_CUSTOM_MASS_EMAIL, eventDetails);
+            log.info(String.format("User (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
+                    allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+        });
+    }
+    
+    
+    /**
+     * Render and queue an email for each user, in parallel batches off the calling thread.
+     *
+     * @param users
+     *            - the users to send email to.
+     * @param parsedEmail
+     *            - the parsed email templates.
+     * @param emailType
+     *            - the type of email to send (affects who receives it).
+     * @param onQueued
+     *            - called with the number of users filtered out, once every email has been queued.
+     */
+    private void sendMassEmail(final List<RegisteredUserDTO> users, final ParsedEmail parsedEmail,
+                               final EmailType emailType, final IntConsumer onQueued) {
+        if (!users.isEmpty()) {
+            // Every user has the same tokens, so rendering one email now reports a broken template to the sender:
+            RegisteredUserDTO firstUser = users.get(0);
+            constructMultiPartEmail(firstUser.getId(), firstUser.getEmail(), parsedEmail, getUserEmailProperties(firstUser),
                     emailType, null);
+        }
 
-            // add to the queue
-            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e);
-            if (!emailAddedToSendQueue) {
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        for (List<RegisteredUserDTO> batch : Iterables.partition(users, MASS_EMAIL_BATCH_SIZE)) {
+            batches.add(CompletableFuture.supplyAsync(() -> queueEmails(batch, parsedEmail, emailType),
+                    massEmailRenderer));
+        }
+
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            if (e != null) {
+                log.error("Unable to queue some emails of a mass email.", e);
+            }
+            onQueued.accept(batches.stream().filter(batch -> !batch.isCompletedExceptionally())
+                    .mapToInt(CompletableFuture::join).sum());
+        });
+    }
+
+    /**
+     * Render and queue an email for each of a batch of users.
+     *
+     * @param users
+     *            - the users to send email to.
+     * @param parsedEmail
+     *            - the parsed email templates.
+     * @param emailType
+     *            - the type of email to send.
+     * @return the number of users who were filtered out or could not be emailed.
+     */
+    private int queueEmails(final List<RegisteredUserDTO> users, final ParsedEmail parsedEmail,
+                            final EmailType emailType) {
+        int numberOfFilteredUsers = 0;
+        List<EmailCommunicationMessage> emailsToQueue = new ArrayList<>(users.size());
+        for (RegisteredUserDTO user : users) {
+            try {
+                EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), parsedEmail,
+                        getUserEmailProperties(user), emailType, null);
+
+                if (this.filterByPreferences(user, e)) {
+                    emailsToQueue.add(e);
+                } else {
+                    numberOfFilteredUsers++;
+                }
+            } catch (SegueDatabaseException | RuntimeException e) {
+                log.error(String.format("Unable to queue email for user (%s).", user.getId()), e);
                 numberOfFilteredUsers++;
             }
         }
+        // add the whole batch to the queue at once
+        this.addAllToQueue(emailsToQueue);
+        return numberOfFilteredUsers;
+    }
 
-        List<Long> ids = Lists.newArrayList();
-        allSelectedUsers.stream().map(RegisteredUserDTO::getId).forEach(ids::add);
+    /**
+     * @param user
+     *            - the recipient of an email.
+     * @return the global tokens and all properties in the user DTO, sanitised, for use in email templates.
+     */
+    private Properties getUserEmailProperties(final RegisteredUserDTO user) {
+        Properties p = new Properties();
+        p.putAll(this.globalStringTokens);
 
-        ImmutableMap<String, Object> eventDetails = new ImmutableMap.Builder<String, Object>().put(USER_ID_LIST_FKEY_FIELDNAME, ids)
-                .put("htmlTemplate", emailTemplate.getHtmlContent())
-                .put(CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA())
-                .put("numberFiltered", numberOfFilteredUsers)
-                .put("type", emailType).build();
+        // Add all properties in the user DTO (preserving types) so they are available to email templates.
+        p.putAll(this.flattenTokenMap(USER_TOKEN_ACCESSOR.getProperties(user), Maps.newHashMap(), ""));
 
-        this.logManager.logInternalEvent(sendingUser, SegueServerLogType.SEND_CUSTOM_MASS_EMAIL, eventDetails);
-        log.info(String.format("User (%s) added %d emails to the queue. %d were filtered.", sendingUser.getEmail(),
-                allSelectedUsers.size() - numberOfFilteredUsers, numberOfFilteredUsers));
+        sanitizeEmailParameters(p);
+        return p;
     }
-    
-    
+
     /**
      * This method checks the database for the user's email preferences and either adds them to 
      * the queue, or filters them out.
@@ -346,6 +474,27 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
      */
     private boolean filterByPreferencesAndAddToQueue(final RegisteredUserDTO userDTO,
                     final EmailCommunicationMessage email) throws SegueDatabaseException {
+        if (filterByPreferences(userDTO, email)) {
+            addToQueue(email);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method checks the database for the user's email preferences to decide whether an email should be sent,
+     * logging it as sent if so. The caller is responsible for adding the email to the queue.
+     *
+     * @param userDTO
+     * 		- the userDTO used for logging. Must not be null.
+     * @param email
+     * 		- the email we want to send. Must be non-null and have an associated non-null user id
+     * @return boolean - true if the email should be added to the queue false if it was filtered for some reason
+     * @throws SegueDatabaseException
+     *             - the content was of incorrect type
+     */
+    private boolean filterByPreferences(final RegisteredUserDTO userDTO, final EmailCommunicationMessage email)
+            throws SegueDatabaseException {
         Validate.notNull(email);
         Validate.notNull(userDTO);
 
@@ -366,7 +515,6 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         if (!email.getEmailType().isValidEmailPreference()) {
             log.info(String.format("Added %s email to the queue with subject: %s", email.getEmailType().toString().toLowerCase(), email.getSubject()));
             logManager.logInternalEvent(userDTO, SegueServerLogType.SENT_EMAIL, eventDetails);
-            addToQueue(email);
             return true;
         }
 
@@ -375,7 +523,6 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
             // If no preference is present, do not send the email.
             if (preference != null && preference.getPreferenceValue()) {
                 logManager.logInternalEvent(userDTO, SegueServerLogType.SENT_EMAIL, eventDetails);
-                addToQueue(email);
                 return true;
             }
 
@@ -470,7 +617,7 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         } else if (o instanceof String) {
             valueToStore = (String) o;
         } else if (o instanceof Date) {
-            valueToStore = FULL_DATE_FORMAT.format((Date) o);
+            valueToStore = FULL_DATE_FORMAT.get().format((Date) o);
         } else if (o instanceof Number || o instanceof Boolean) {
             valueToStore = o.toString();
         } else if (o instanceof Enum) {
@@ -495,72 +642,20 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         return valueToStore;
     }
 
-    private String completeTemplateWithProperties(final String content, final Properties templateProperties)
-            throws IllegalArgumentException {
-        return completeTemplateWithProperties(content, templateProperties, false);
-    }
-
     /**
-     * Method to parse and replace template elements with the form {{TAG}}.
+     * Method to replace template elements with the form {{TAG}}.
      *
+     * @param content
+     *            the template, which is only parsed the first time it is seen
      * @param templateProperties
      *            list of properties from which we can fill in the template
+     * @param html
+     *            whether to prefer TAG_HTML properties over TAG properties
      * @return template with completed fields
      */
-    private String completeTemplateWithProperties(final String content, final Properties templateProperties, final boolean html) {
-        String template = content;
-
-        Pattern p = Pattern.compile("\\{\\{[A-Za-z0-9.]+\\}\\}");
-        Matcher m = p.matcher(template);
-        int offset = 0;
-        Set<String> unknownTags = Sets.newHashSet();
-
-        while (m.find()) {
-            if (m.start() + offset >= 0 && m.end() + offset <= template.length()) {
-                String tag = template.substring(m.start() + offset, m.end() + offset);
-
-                if (tag.length() <= MINIMUM_TAG_LENGTH) {
-                    log.info("Skipped email template tag with no contents: " + tag);
-                    break;
-                }
-
-                String strippedTag = tag.substring(2, tag.length() - 2);
-
-                // Check all properties required in the page are in the properties list
-                if (html && templateProperties.containsKey(strippedTag + "_HTML")) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
-
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag + "_HTML") != null) {
-                        template += templateProperties.getProperty(strippedTag + "_HTML");
-                    }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag + "_HTML").length() - tag.length();
-                } else if (templateProperties.containsKey(strippedTag)) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
-
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag) != null) {
-                        template += templateProperties.getProperty(strippedTag);
-                    }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag).length() - tag.length();
-                } else {
-                    unknownTags.add(tag);
-                }
-            }
-        }
-
-        if (unknownTags.size() != 0) {
-            log.error("Email template contains tags that were not resolved! - " + unknownTags);
-            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
-        }
-
-        return template;
+    @VisibleForTesting
+    String completeTemplateWithProperties(final String content, final Properties templateProperties, final boolean html) {
+        return EmailTemplate.parse(content).render(templateProperties, html);
     }
 
     /**
@@ -610,16 +705,65 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
                                          EmailTemplateDTO emailContent, Properties contentProperties,
                                          final EmailType emailType, @Nullable final List<EmailAttachment> attachments)
                     throws ContentManagerException, ResourceNotFoundException {
+        return constructMultiPartEmail(userId, userEmail, parseEmail(emailContent), contentProperties, emailType,
+                attachments);
+    }
+
+    /**
+     * Parse the templates of an email, and the HTML and plain text wrappers it is sent in, so that the same email can
+     * be completed for many users.
+     *
+     * @param emailContent
+     * 		- the email template.
+     * @return the parsed templates.
+     * @throws ContentManagerException
+     * 		- if there has been an error accessing content
+     * @throws ResourceNotFoundException
+     * 		- if a wrapper template has not been found
+     */
+    private ParsedEmail parseEmail(final EmailTemplateDTO emailContent)
+            throws ContentManagerException, ResourceNotFoundException {
+        ContentDTO htmlTemplate = getContentDTO("email-template-html");
+        ContentDTO plainTextTemplate = getContentDTO("email-template-ascii");
+
+        return new ParsedEmail(emailContent, EmailTemplate.parse(emailContent.getPlainTextContent()),
+                EmailTemplate.parse(emailContent.getHtmlContent()), EmailTemplate.parse(htmlTemplate.getValue()),
+                EmailTemplate.parse(plainTextTemplate.getValue()));
+    }
+
+    /**
+     * Complete parsed email templates for one recipient.
+     *
+     * @param userId
+     * 		- (nullable) the id of the user the email should be sent to
+     * @param userEmail
+     * 		- the email of the user
+     * @param parsedEmail
+     * 		- the parsed email templates
+     * @param contentProperties
+     * 		- the values of the tags in the email content
+     * @param emailType
+     *      - the type of e-mail being created
+     * @param attachments
+     * 		- list of attachment objects
+     * @return a multi-part EmailCommunicationMessage
+     */
+    private EmailCommunicationMessage constructMultiPartEmail(@Nullable final Long userId, final String userEmail,
+                                                              final ParsedEmail parsedEmail,
+                                                              final Properties contentProperties,
+                                                              final EmailType emailType,
+                                                              @Nullable final List<EmailAttachment> attachments) {
         Validate.notNull(userEmail);
         Validate.notEmpty(userEmail);
+        EmailTemplateDTO emailContent = parsedEmail.emailContent;
 
         // Ensure global properties are included, but in a safe manner (allow contentProperties to override globals!)
         Properties contentPropertiesToUse = new Properties();
         contentPropertiesToUse.putAll(this.globalStringTokens);
         contentPropertiesToUse.putAll(contentProperties);
 
-        String plainTextContent = completeTemplateWithProperties(emailContent.getPlainTextContent(), contentPropertiesToUse);
-        String HTMLContent = completeTemplateWithProperties(emailContent.getHtmlContent(), contentPropertiesToUse, true);
+        String plainTextContent = parsedEmail.plainTextContent.render(contentPropertiesToUse, false);
+        String HTMLContent = parsedEmail.htmlContent.render(contentPropertiesToUse, true);
 
         // Extract from address and reply to addresses:
         String overrideFromAddress = emailContent.getOverrideFromAddress();
@@ -633,23 +777,20 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         if (replyToName == null || replyToName.isEmpty()) {
             replyToName = globalProperties.getProperty(Constants.MAIL_NAME);
         }
-        ContentDTO htmlTemplate = getContentDTO("email-template-html");
-        ContentDTO plainTextTemplate = getContentDTO("email-template-ascii");
 
         Properties htmlTemplateProperties = new Properties();
         htmlTemplateProperties.put("content", HTMLContent);
         htmlTemplateProperties.put("email", userEmail);
         htmlTemplateProperties.putAll(this.globalStringTokens);
 
-        String htmlMessage = completeTemplateWithProperties(htmlTemplate.getValue(), htmlTemplateProperties, true);
+        String htmlMessage = parsedEmail.htmlWrapper.render(htmlTemplateProperties, true);
 
         Properties plainTextTemplateProperties = new Properties();
         plainTextTemplateProperties.put("content", plainTextContent);
         plainTextTemplateProperties.put("email", userEmail);
         plainTextTemplateProperties.putAll(this.globalStringTokens);
 
-        String plainTextMessage = completeTemplateWithProperties(plainTextTemplate.getValue(),
-                plainTextTemplateProperties);
+        String plainTextMessage = parsedEmail.plainTextWrapper.render(plainTextTemplateProperties, false);
 
         return new EmailCommunicationMessage(userId, userEmail, emailContent.getSubject(),
                 plainTextMessage, htmlMessage, emailType,
@@ -724,4 +865,32 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         }
         return emailPreferences;
     }
-}
\ No newline at end of file
+
+    /**
+     * The parsed templates of an email and of the wrappers it is sent in.
+     */
+    private static final class ParsedEmail {
+        private final EmailTemplateDTO emailContent;
+        private final EmailTemplate plainTextContent;
+        private final EmailTemplate htmlContent;
+        private final EmailTemplate htmlWrapper;
+        private final EmailTemplate plainTextWrapper;
+
+        /**
+         * @param emailContent the email template, for its subject and addresses.
+         * @param plainTextContent the plain text content.
+         * @param htmlContent the HTML content.
+         * @param htmlWrapper the HTML template the content is placed in.
+         * @param plainTextWrapper the plain text template the content is placed in.
+         */
+        private ParsedEmail(final EmailTemplateDTO emailContent, final EmailTemplate plainTextContent,
+                            final EmailTemplate htmlContent, final EmailTemplate htmlWrapper,
+                            final EmailTemplate plainTextWrapper) {
+            this.emailContent = emailContent;
+            this.plainTextContent = plainTextContent;
+            this.htmlContent = htmlContent;
+            this.htmlWrapper = htmlWrapper;
+            this.plainTextWrapper = plainTextWrapper;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An email template parsed into alternating literal text and {{TAG}} placeholders, so it can be filled in for many
+ * recipients without searching the template text again.
+ *
+ * Parsed templates are immutable and shared, and are kept in a small cache keyed by the template text.
+ */
+final class EmailTemplate {
+    private static final Logger log = LoggerFactory.getLogger(EmailTemplate.class);
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\{\\{[A-Za-z0-9.]+\\}\\}");
+    private static final String HTML_TAG_SUFFIX = "_HTML";
+    private static final long MAXIMUM_CACHED_TEMPLATES = 200;
+    // A guess at the average length of a tag's value, to avoid growing the output while rendering:
+    private static final int EXPECTED_VALUE_LENGTH = 16;
+
+    private static final Cache<String, EmailTemplate> PARSED_TEMPLATES = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_TEMPLATES)
+            .build();
+
+    // There is always one more literal than there are tags; the literal at i comes before the tag at i.
+    private final String[] literals;
+    private final String[] tags;
+    private final String[] htmlTags;
+    private final int literalLength;
+
+    /**
+     * @param literals the literal text between tags.
+     * @param tags the tag names, without braces.
+     */
+    private EmailTemplate(final List<String> literals, final List<String> tags) {
+        this.literals = literals.toArray(new String[0]);
+        this.tags = tags.toArray(new String[0]);
+        this.htmlTags = new String[this.tags.length];
+        for (int i = 0; i < this.tags.length; i++) {
+            htmlTags[i] = this.tags[i] + HTML_TAG_SUFFIX;
+        }
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Parse a template, or reuse an earlier parse of the same template text.
+     *
+     * @param content
+     *            - the template text, containing tags of the form {{TAG}}.
+     * @return the parsed template.
+     */
+    static EmailTemplate parse(final String content) {
+        EmailTemplate template = PARSED_TEMPLATES.getIfPresent(content);
+        if (null == template) {
+            List<String> literals = new ArrayList<>();
+            List<String> tags = new ArrayList<>();
+            Matcher m = TAG_PATTERN.matcher(content);
+            int literalStart = 0;
+            while (m.find()) {
+                literals.add(content.substring(literalStart, m.start()));
+                tags.add(content.substring(m.start() + 2, m.end() - 2));
+                literalStart = m.end();
+            }
+            literals.add(content.substring(literalStart));
+            template = new EmailTemplate(literals, tags);
+            PARSED_TEMPLATES.put(content, template);
+        }
+        return template;
+    }
+
+    /**
+     * Fill in every tag of the template.
+     *
+     * @param templateProperties
+     *            - the value of each tag.
+     * @param html
+     *            - whether this is an HTML template, where a TAG_HTML property is used in preference to TAG.
+     * @return the completed template.
+     * @throws IllegalArgumentException
+     *             - if a tag has no value.
+     */
+    String render(final Properties templateProperties, final boolean html) throws IllegalArgumentException {
+        StringBuilder completed = new StringBuilder(literalLength + tags.length * EXPECTED_VALUE_LENGTH);
+        Set<String> unknownTags = null;
+
+        for (int i = 0; i < tags.length; i++) {
+            completed.append(literals[i]);
+
+            String key;
+            if (html && templateProperties.containsKey(htmlTags[i])) {
+                key = htmlTags[i];
+            } else if (templateProperties.containsKey(tags[i])) {
+                key = tags[i];
+            } else {
+                if (null == unknownTags) {
+                    unknownTags = new LinkedHashSet<>();
+                }
+                unknownTags.add("{{" + tags[i] + "}}");
+                continue;
+            }
+
+            String value = templateProperties.getProperty(key);
+            if (null != value) {
+                completed.append(value);
+            }
+        }
+        completed.append(literals[tags.length]);
+
+        if (null != unknownTags) {
+            log.error("Email template contains tags that were not resolved! - " + unknownTags);
+            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
+        }
+
+        return completed.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads every bean property of an object into a map of email template tokens, like a BeanMap, but through getters
+ * generated once per class rather than by reflection on every object.
+ *
+ * @param <T> the type of object to read.
+ */
+final class EmailTokenAccessor<T> {
+    private static final Logger log = LoggerFactory.getLogger(EmailTokenAccessor.class);
+
+    private final Map<String, Function<T, Object>> getters;
+
+    /**
+     * @param getters the property names and their getters.
+     */
+    private EmailTokenAccessor(final Map<String, Function<T, Object>> getters) {
+        this.getters = getters;
+    }
+
+    /**
+     * Generate getters for every readable property of a class.
+     *
+     * @param beanClass
+     *            - the class whose properties should be read.
+     * @param <T>
+     *            - the type of the class.
+     * @return an accessor for objects of that class.
+     */
+    static <T> EmailTokenAccessor<T> forClass(final Class<T> beanClass) {
+        Map<String, Function<T, Object>> getters = new LinkedHashMap<>();
+        try {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(beanClass, Object.class)
+                    .getPropertyDescriptors()) {
+                if (null != property.getReadMethod()) {
+                    getters.put(property.getName(), generateGetter(beanClass, property));
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Unable to read the properties of " + beanClass.getName(), e);
+        }
+        return new EmailTokenAccessor<>(getters);
+    }
+
+    /**
+     * @param bean
+     *            - the object to read.
+     * @return a map of each property name to its value, with the same contents as a BeanMap of the object.
+     */
+    Map<String, Object> getProperties(final T bean) {
+        Map<String, Object> properties = new LinkedHashMap<>(getters.size() * 2);
+        getters.forEach((name, getter) -> properties.put(name, getter.apply(bean)));
+        return properties;
+    }
+
+    /**
+     * Generate a Function calling the getter of a property, boxing primitive values.
+     *
+     * @param beanClass the class declaring the property.
+     * @param property the property.
+     * @param <T> the type of the class.
+     * @return a function returning the value of the property.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, Object> generateGetter(final Class<T> beanClass, final PropertyDescriptor property) {
+        MethodHandle getter;
+        try {
+            getter = MethodHandles.publicLookup().unreflect(property.getReadMethod());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Unable to access the getter of " + property.getName(), e);
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class), getter,
+                    MethodType.methodType(getter.type().wrap().returnType(), beanClass));
+            return (Function<T, Object>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            // Not every getter can be linked directly, e.g. one inherited from a class we cannot see; use the handle:
+            log.debug("Falling back to a method handle for the getter of " + property.getName(), e);
+            return bean -> {
+                try {
+                    return getter.invoke(bean);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+}
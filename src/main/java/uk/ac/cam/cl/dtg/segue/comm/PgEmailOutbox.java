@@ -0,0 +1,564 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.Histogram;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.Closeable;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_DEPTH;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_SEND_DURATION;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_SEND_FAILURES;
+
+/**
+ * A queue of emails waiting to be sent, held in the email_outbox table so that it survives restarts and does not
+ * grow the heap.
+ *
+ * Each worker repeatedly claims a small batch of due emails, highest priority first, by leasing them in a short
+ * transaction: their next attempt is moved past the lease, so workers on every API node can share the table without
+ * sending an email twice. The emails are then sent outside any transaction. Each email is deleted as soon as it has
+ * been sent; one which fails is retried later with exponential backoff, and is marked as failed once it has used all
+ * its attempts. An email whose row cannot be read is marked as failed straight away, without holding up the rest of
+ * its batch. If a node dies part way through a batch its unsent emails are claimed again when the lease ends, so
+ * none are lost, and at most the email being sent at the time may be sent twice.
+ *
+ * Sending is limited to a fixed rate on each node, shared between its workers.
+ */
+public class PgEmailOutbox implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PgEmailOutbox.class);
+
+    public static final int DEFAULT_WORKERS = 2;
+    public static final double DEFAULT_SENDS_PER_SECOND = 20;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    private static final int BATCH_SIZE = 20;
+    private static final long LEASE_SECONDS = 600;
+    private static final long POLL_INTERVAL_MILLISECONDS = 1000;
+    private static final long DEPTH_REFRESH_INTERVAL_SECONDS = 15;
+    private static final long FIRST_RETRY_DELAY_SECONDS = 60;
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<List<Map<String, String>>> ATTACHMENTS_TYPE =
+            new TypeReference<List<Map<String, String>>>() { };
+
+    private static final String INSERT = "INSERT INTO email_outbox(priority, email_type, user_id, recipient_address,"
+            + " subject, plain_text_message, html_message, override_from_address, override_from_name,"
+            + " override_envelope_from, reply_to_address, reply_to_name, attachments)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::text::jsonb);";
+    private static final String CLAIM = "UPDATE email_outbox SET next_attempt = now() + ? * INTERVAL '1 second'"
+            + " WHERE id IN (SELECT id FROM email_outbox WHERE NOT failed AND next_attempt <= now()"
+            + " ORDER BY priority, id LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING *;";
+    private static final String DELETE_SENT = "DELETE FROM email_outbox WHERE id = ?;";
+    private static final String RELEASE = "UPDATE email_outbox SET next_attempt = now() WHERE id = ANY(?);";
+    private static final String RECORD_FAILURE = "UPDATE email_outbox SET attempts = ?,"
+            + " next_attempt = now() + ? * INTERVAL '1 second', last_error = ?, failed = ? WHERE id = ?;";
+    private static final String COUNT_PENDING = "SELECT count(*) FROM email_outbox WHERE NOT failed;";
+
+    private final PostgresSqlDb database;
+    private final EmailCommunicator communicator;
+    private final RateLimiter rateLimiter;
+    private final int maxAttempts;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService depthMonitor;
+    // Workers wait on this between polls, so that newly queued emails can wake them early:
+    private final Object newEmails = new Object();
+    private volatile boolean closed;
+
+    /**
+     * Creates an outbox and starts its workers.
+     *
+     * @param database
+     *            - client for postgres.
+     * @param communicator
+     *            - used to send each email.
+     * @param workerCount
+     *            - the number of threads sending emails on this node.
+     * @param sendsPerSecond
+     *            - the most emails this node will send each second.
+     * @param maxAttempts
+     *            - how many times an email is tried before it is marked as failed.
+     */
+    public PgEmailOutbox(final PostgresSqlDb database, final EmailCommunicator communicator, final int workerCount,
+                         final double sendsPerSecond, final int maxAttempts) {
+        Validate.isTrue(workerCount > 0, "Expected at least one worker.");
+        Validate.isTrue(sendsPerSecond > 0, "Expected a positive send rate.");
+        Validate.isTrue(maxAttempts > 0, "Expected at least one attempt.");
+        this.database = database;
+        this.communicator = communicator;
+        this.rateLimiter = RateLimiter.create(sendsPerSecond);
+        this.maxAttempts = maxAttempts;
+
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                new ThreadFactoryBuilder().setNameFormat("email-outbox-worker-%d").setDaemon(true).build());
+        for (int i = 0; i < workerCount; i++) {
+            this.workers.submit(this::sendUntilClosed);
+        }
+        this.depthMonitor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("email-outbox-depth").setDaemon(true).build());
+        this.depthMonitor.scheduleWithFixedDelay(this::refreshDepth, 0, DEPTH_REFRESH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Add emails to the outbox, in one transaction.
+     *
+     * @param emails
+     *            - the emails to send; any attachments must have String content.
+     * @throws SegueDatabaseException
+     *             - if the emails cannot be stored, in which case none of them will be sent.
+     */
+    public void enqueue(final Collection<EmailCommunicationMessage> emails) throws SegueDatabaseException {
+        if (emails.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(INSERT);
+        ) {
+            for (EmailCommunicationMessage email : emails) {
+                pst.setInt(1, email.getPriority());
+                pst.setString(2, email.getEmailType().name());
+                if (null == email.getUserId()) {
+                    pst.setNull(3, Types.INTEGER);
+                } else {
+                    pst.setLong(3, email.getUserId());
+                }
+                pst.setString(4, email.getRecipientAddress());
+                pst.setString(5, email.getSubject());
+                pst.setString(6, email.getPlainTextMessage());
+                pst.setString(7, email.getHTMLMessage());
+                pst.setString(8, email.getOverrideFromAddress());
+                pst.setString(9, email.getOverrideFromName());
+                pst.setString(10, email.getOverrideEnvelopeFrom());
+                pst.setString(11, email.getReplyToAddress());
+                pst.setString(12, email.getReplyToName());
+                pst.setString(13, attachmentsToJson(email.getAttachments()));
+                pst.addBatch();
+            }
+            conn.setAutoCommit(false);
+            try {
+                pst.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+
+        synchronized (newEmails) {
+            newEmails.notifyAll();
+        }
+    }
+
+    /**
+     * Stop the workers, once they have finished the batches they are sending.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (newEmails) {
+            newEmails.notifyAll();
+        }
+        depthMonitor.shutdown();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The loop each worker runs: send batches while there are emails due, otherwise wait for more.
+     */
+    private void sendUntilClosed() {
+        try {
+            while (!closed) {
+                int claimed;
+                try {
+                    claimed = sendBatch();
+                } catch (SQLException | RuntimeException e) {
+                    log.error("Unable to send a batch of emails from the outbox.", e);
+                    claimed = 0;
+                }
+                if (claimed < BATCH_SIZE) {
+                    synchronized (newEmails) {
+                        if (!closed) {
+                            newEmails.wait(POLL_INTERVAL_MILLISECONDS);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            communicator.closeConnections();
+        }
+    }
+
+    /**
+     * Claim a batch of due emails, send them and record the outcome of each.
+     *
+     * If sending takes more than half the lease, the rest of the batch is released for any worker to claim, so that
+     * a slow mail server cannot let the lease end while this worker still intends to send them.
+     *
+     * @return the number of emails claimed.
+     * @throws SQLException
+     *             - if the batch cannot be claimed; any emails whose outcome cannot be recorded are retried once
+     *             their lease ends.
+     */
+    private int sendBatch() throws SQLException {
+        List<OutboxEntry> batch = claimBatch();
+        long releaseAfter = System.nanoTime() + TimeUnit.SECONDS.toNanos(LEASE_SECONDS) / 2;
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (System.nanoTime() > releaseAfter) {
+                release(batch.subList(i, batch.size()));
+                break;
+            }
+            OutboxEntry entry = batch.get(i);
+            rateLimiter.acquire();
+            Histogram.Timer timer = EMAIL_SEND_DURATION.startTimer();
+            boolean sent;
+            try {
+                communicator.sendMessage(entry.email);
+                sent = true;
+            } catch (CommunicationException | RuntimeException e) {
+                entry.error = e.getMessage();
+                sent = false;
+            } finally {
+                timer.observeDuration();
+            }
+
+            try {
+                if (sent) {
+                    deleteSent(entry);
+                } else {
+                    recordFailure(entry);
+                }
+            } catch (SQLException e) {
+                log.error(String.format("Unable to record the outcome of sending email (%s); it will be tried again"
+                        + " in %d seconds.", entry.id, LEASE_SECONDS), e);
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Lease the emails which are due, so that no other worker claims them until the lease ends, and commit the lease.
+     *
+     * @return the emails claimed, highest priority first.
+     * @throws SQLException
+     *             - if the emails cannot be claimed.
+     */
+    private List<OutboxEntry> claimBatch() throws SQLException {
+        List<OutboxEntry> batch = Lists.newArrayList();
+        List<OutboxEntry> unreadable = Lists.newArrayList();
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(CLAIM);
+        ) {
+            pst.setLong(1, LEASE_SECONDS);
+            pst.setInt(2, BATCH_SIZE);
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    long id = results.getLong("id");
+                    int priority = results.getInt("priority");
+                    int attempts = results.getInt("attempts");
+                    try {
+                        batch.add(new OutboxEntry(id, priority, attempts, emailFromResultSet(results)));
+                    } catch (JsonProcessingException | RuntimeException e) {
+                        // One bad row must not stop the rest of the batch being sent:
+                        OutboxEntry entry = new OutboxEntry(id, priority, attempts, null);
+                        entry.error = "Unable to read the email: " + e.getMessage();
+                        unreadable.add(entry);
+                    }
+                }
+            }
+        }
+
+        for (OutboxEntry entry : unreadable) {
+            try {
+                recordUnreadable(entry);
+            } catch (SQLException e) {
+                log.error(String.format("Unable to mark unreadable email (%s) as failed; it will be claimed again"
+                        + " in %d seconds.", entry.id, LEASE_SECONDS), e);
+            }
+        }
+        // RETURNING does not keep the order of the sub-select:
+        batch.sort(Comparator.comparingInt((OutboxEntry entry) -> entry.priority).thenComparingLong(entry -> entry.id));
+        return batch;
+    }
+
+    /**
+     * @param entry
+     *            - an email which has been sent.
+     * @throws SQLException
+     *             - if the email cannot be removed from the outbox.
+     */
+    private void deleteSent(final OutboxEntry entry) throws SQLException {
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(DELETE_SENT);
+        ) {
+            pst.setLong(1, entry.id);
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * End the lease on claimed emails which this worker will not send, so they can be claimed again straight away.
+     *
+     * @param entries
+     *            - the claimed emails which have not been sent.
+     */
+    private void release(final List<OutboxEntry> entries) {
+        List<Long> ids = Lists.newArrayList();
+        for (OutboxEntry entry : entries) {
+            ids.add(entry.id);
+        }
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(RELEASE);
+        ) {
+            Array idArray = conn.createArrayOf("BIGINT", ids.toArray());
+            pst.setArray(1, idArray);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error(String.format("Unable to release %d emails; they will be claimed when their lease ends.",
+                    ids.size()), e);
+        }
+    }
+
+    /**
+     * Schedule a failed email to be retried, or mark it as failed if it has no attempts left.
+     *
+     * @param entry
+     *            - the email which could not be sent.
+     * @throws SQLException
+     *             - if the failure cannot be recorded.
+     */
+    private void recordFailure(final OutboxEntry entry) throws SQLException {
+        int attempts = entry.attempts + 1;
+        boolean abandoned = attempts >= maxAttempts;
+        long retryDelaySeconds = retryDelaySeconds(attempts);
+        String error = null == entry.error ? "Unknown error"
+                : entry.error.substring(0, Math.min(entry.error.length(), MAX_ERROR_LENGTH));
+
+        if (abandoned) {
+            log.error(String.format("Giving up on email (%s) of type %s after %d attempts: %s", entry.id,
+                    entry.email.getEmailType(), attempts, error));
+        } else {
+            log.warn(String.format("Unable to send email (%s); will retry in %d seconds: %s", entry.id,
+                    retryDelaySeconds, error));
+        }
+        EMAIL_SEND_FAILURES.labels(abandoned ? "abandoned" : "retry").inc();
+
+        saveFailure(entry.id, attempts, retryDelaySeconds, error, abandoned);
+    }
+
+    /**
+     * Mark an email whose row cannot be read as failed, since trying it again would fail in the same way.
+     *
+     * @param entry
+     *            - the email which could not be read, with the reason in its error.
+     * @throws SQLException
+     *             - if the failure cannot be recorded.
+     */
+    private void recordUnreadable(final OutboxEntry entry) throws SQLException {
+        String error = entry.error.substring(0, Math.min(entry.error.length(), MAX_ERROR_LENGTH));
+        log.error(String.format("Giving up on email (%s) which cannot be read: %s", entry.id, error));
+        EMAIL_SEND_FAILURES.labels("abandoned").inc();
+
+        saveFailure(entry.id, entry.attempts + 1, 0, error, true);
+    }
+
+    /**
+     * @param id
+     *            - the outbox row id of the email which failed.
+     * @param attempts
+     *            - how many times the email has been tried, including the one which has just failed.
+     * @param retryDelaySeconds
+     *            - how long to wait before trying it again.
+     * @param error
+     *            - why the email failed.
+     * @param abandoned
+     *            - whether the email should not be tried again.
+     * @throws SQLException
+     *             - if the failure cannot be recorded.
+     */
+    private void saveFailure(final long id, final int attempts, final long retryDelaySeconds, final String error,
+                             final boolean abandoned) throws SQLException {
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(RECORD_FAILURE);
+        ) {
+            pst.setInt(1, attempts);
+            pst.setLong(2, retryDelaySeconds);
+            pst.setString(3, error);
+            pst.setBoolean(4, abandoned);
+            pst.setLong(5, id);
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * @param attempts
+     *            - how many times an email has been tried, including the one which has just failed.
+     * @return how long to wait before trying it again.
+     */
+    private static long retryDelaySeconds(final int attempts) {
+        return Math.min(MAX_RETRY_DELAY_SECONDS, FIRST_RETRY_DELAY_SECONDS << Math.min(attempts - 1, 30));
+    }
+
+    /**
+     * Update the queue depth metric with the number of emails waiting to be sent by any node.
+     */
+    private void refreshDepth() {
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(COUNT_PENDING);
+             ResultSet results = pst.executeQuery();
+        ) {
+            if (results.next()) {
+                EMAIL_OUTBOX_DEPTH.set(results.getLong(1));
+            }
+        } catch (SQLException e) {
+            log.error("Unable to count the emails in the outbox.", e);
+        }
+    }
+
+    /**
+     * @param results
+     *            - a result set positioned at an email_outbox row.
+     * @return the email the row holds.
+     * @throws SQLException
+     *             - if the row cannot be read.
+     * @throws JsonProcessingException
+     *             - if the attachments cannot be read.
+     */
+    private static EmailCommunicationMessage emailFromResultSet(final ResultSet results)
+            throws SQLException, JsonProcessingException {
+        long userId = results.getLong("user_id");
+        return new EmailCommunicationMessage(results.wasNull() ? null : userId,
+                results.getString("recipient_address"), results.getString("subject"),
+                results.getString("plain_text_message"), results.getString("html_message"),
+                EmailType.valueOf(results.getString("email_type")), results.getString("override_from_address"),
+                results.getString("override_from_name"), results.getString("override_envelope_from"),
+                results.getString("reply_to_address"), results.getString("reply_to_name"),
+                attachmentsFromJson(results.getString("attachments")));
+    }
+
+    /**
+     * @param attachments
+     *            - (nullable) the attachments of an email, which must have String content.
+     * @return the attachments as a JSON array, or null if there are none.
+     * @throws JsonProcessingException
+     *             - if the attachments cannot be serialised.
+     */
+    private static String attachmentsToJson(final List<EmailAttachment> attachments) throws JsonProcessingException {
+        if (null == attachments) {
+            return null;
+        }
+        List<Map<String, String>> attachmentList = Lists.newArrayList();
+        for (EmailAttachment attachment : attachments) {
+            if (null == attachment) {
+                continue;
+            }
+            Validate.isInstanceOf(String.class, attachment.getAttachment(),
+                    "Only attachments with String content can be stored in the outbox.");
+            Map<String, String> attachmentMap = Maps.newHashMap();
+            attachmentMap.put("fileName", attachment.getFileName());
+            attachmentMap.put("mimeType", attachment.getMimeType());
+            attachmentMap.put("content", (String) attachment.getAttachment());
+            attachmentList.add(attachmentMap);
+        }
+        return mapper.writeValueAsString(attachmentList);
+    }
+
+    /**
+     * @param json
+     *            - (nullable) attachments as stored by attachmentsToJson.
+     * @return the attachments, or null if there are none.
+     * @throws JsonProcessingException
+     *             - if the attachments cannot be read.
+     */
+    private static List<EmailAttachment> attachmentsFromJson(final String json) throws JsonProcessingException {
+        if (null == json) {
+            return null;
+        }
+        List<EmailAttachment> attachments = Lists.newArrayList();
+        for (Map<String, String> attachment : mapper.readValue(json, ATTACHMENTS_TYPE)) {
+            attachments.add(new EmailAttachment(attachment.get("fileName"), attachment.get("mimeType"),
+                    attachment.get("content")));
+        }
+        return Collections.unmodifiableList(attachments);
+    }
+
+    /**
+     * An email claimed from the outbox by a worker.
+     */
+    private static final class OutboxEntry {
+        private final long id;
+        private final int priority;
+        private final int attempts;
+        private final EmailCommunicationMessage email;
+        private String error;
+
+        /**
+         * @param id the outbox row id.
+         * @param priority the email's priority, lowest first.
+         * @param attempts how many times the email has been tried already.
+         * @param email the email, or null if its row cannot be read.
+         */
+        private OutboxEntry(final long id, final int priority, final int attempts,
+                            final EmailCommunicationMessage email) {
+            this.id = id;
+            this.priority = priority;
+            this.attempts = attempts;
+            this.email = email;
+        }
+    }
+}
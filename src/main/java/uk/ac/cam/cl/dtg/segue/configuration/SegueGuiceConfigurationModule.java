@@ -62,10 +62,17 @@ import uk.ac.cam.cl.dtg.isaac.dos.PgLocationHistory;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlerts;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserPreferenceManager;
 import uk.ac.cam.cl.dtg.isaac.dos.PgUserStreakManager;
+import uk.ac.cam.cl.dtg.isaac.quiz.ExternalValidatorClient;
+import uk.ac.cam.cl.dtg.isaac.quiz.ValidationResponseCache;
+import uk.ac.cam.cl.dtg.isaac.quiz.ValidatorRuleCache;
 import uk.ac.cam.cl.dtg.isaac.quiz.IQuestionAttemptManager;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicChemistryValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicLogicValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicValidator;
+import uk.ac.cam.cl.dtg.isaac.quiz.IsaacFreeTextValidator;
+import uk.ac.cam.cl.dtg.isaac.quiz.IsaacNumericValidator;
+import uk.ac.cam.cl.dtg.isaac.quiz.IsaacRegexMatchValidator;
+import uk.ac.cam.cl.dtg.isaac.quiz.CachingQuestionAttemptManager;
 import uk.ac.cam.cl.dtg.isaac.quiz.PgQuestionAttempts;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.ExternalAccountManager;
@@ -82,6 +89,9 @@ import uk.ac.cam.cl.dtg.segue.api.managers.StubExternalAccountManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAuthenticationManager;
 import uk.ac.cam.cl.dtg.segue.api.monitors.*;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.IUserAlertBus;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.LocalUserAlertBus;
+import uk.ac.cam.cl.dtg.segue.api.userAlerts.PgUserAlertBus;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.FacebookAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.GoogleAuthenticator;
@@ -97,7 +107,9 @@ import uk.ac.cam.cl.dtg.segue.auth.SegueTOTPAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.TwitterAuthenticator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
+import uk.ac.cam.cl.dtg.segue.comm.PgEmailOutbox;
 import uk.ac.cam.cl.dtg.segue.comm.ICommunicator;
+import uk.ac.cam.cl.dtg.segue.dao.AsyncLogEventWriter;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
 import uk.ac.cam.cl.dtg.segue.dao.LogManagerEventPublisher;
@@ -116,6 +128,7 @@ import uk.ac.cam.cl.dtg.segue.dao.users.IPasswordDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.ITOTPDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserGroupPersistenceManager;
+import uk.ac.cam.cl.dtg.segue.dao.users.LastSeenAggregator;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgAnonymousUsers;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgExternalAccountPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgPasswordDataManager;
@@ -170,13 +183,20 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static GitContentManager contentManager = null;
     private static RestHighLevelClient elasticSearchClient = null;
     private static UserAccountManager userManager = null;
+    private static LastSeenAggregator lastSeenAggregator = null;
     private static UserAuthenticationManager userAuthenticationManager = null;
     private static IQuestionAttemptManager questionPersistenceManager = null;
+    private static ValidationResponseCache validationResponseCache = null;
+    private static IUserStreaksManager userStreaksManager = null;
+    private static ValidatorRuleCache validatorRuleCache = null;
+    private static AsyncLogEventWriter asyncLogEventWriter = null;
     private static SegueJobService segueJobService = null;
 
     private static LogManagerEventPublisher logManager;
     private static EmailManager emailCommunicationQueue = null;
+    private static PgEmailOutbox emailOutbox = null;
     private static IMisuseMonitor misuseMonitor = null;
+    private static IUserAlertBus userAlertBus = null;
     private static IMetricsExporter metricsExporter = null;
     private static StatisticsManager statsManager = null;
     private static GroupManager groupManager = null;
@@ -185,6 +205,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static SchoolListReader schoolListReader = null;
     private static AssignmentManager assignmentManager = null;
     private static IGroupObserver groupObserver = null;
+    private static final Map<String, ExternalValidatorClient> externalValidatorClients =
+            com.google.common.collect.Maps.newHashMap();
 
     private static Collection<Class<? extends ServletContextListener>> contextListeners;
     private static final Map<String, Reflections> reflections = com.google.common.collect.Maps.newHashMap();
@@ -380,8 +402,6 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
 
         bind(IUserAlerts.class).to(PgUserAlerts.class);
 
-        bind(IUserStreaksManager.class).to(PgUserStreakManager.class);
-
         bind(IStatisticsManager.class).to(StatisticsManager.class);
 
         bind(ITransactionManager.class).to(PgTransactionManager.class);
@@ -495,6 +515,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - boolean to determine if we should persist log messages.
      * @param lhm
      *            - location history manager
+     * @param properties
+     *            - properties loader to read the asynchronous logging settings from.
      * @return A fully configured LogManager
      */
     @Inject
@@ -502,12 +524,25 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Singleton
     private static ILogManager getLogManager(final PostgresSqlDb database,
                                              @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
-                                             final LocationManager lhm) {
+                                             final LocationManager lhm, final PropertiesLoader properties) {
 
         if (null == logManager) {
             ObjectMapper objectMapper = new ObjectMapper();
             objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-            logManager = new PgLogManagerEventListener(new PgLogManager(database, objectMapper, loggingEnabled, lhm));
+
+            if (loggingEnabled && Boolean.parseBoolean(properties.getProperty(Constants.ASYNC_LOGGING_ENABLED))) {
+                String queueSize = properties.getProperty(Constants.ASYNC_LOGGING_QUEUE_SIZE);
+                String batchSize = properties.getProperty(Constants.ASYNC_LOGGING_BATCH_SIZE);
+                String flushInterval = properties.getProperty(Constants.ASYNC_LOGGING_FLUSH_INTERVAL_MILLISECONDS);
+                asyncLogEventWriter = new AsyncLogEventWriter(database,
+                        null == queueSize ? AsyncLogEventWriter.DEFAULT_QUEUE_SIZE : Integer.parseInt(queueSize),
+                        null == batchSize ? AsyncLogEventWriter.DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize),
+                        null == flushInterval ? AsyncLogEventWriter.DEFAULT_FLUSH_INTERVAL_MILLISECONDS
+                                : Long.parseLong(flushInterval));
+                log.info("Log manager configured to write log events asynchronously.");
+            }
+            logManager = new PgLogManagerEventListener(
+                    new PgLogManager(database, objectMapper, loggingEnabled, lhm, asyncLogEventWriter));
 
             log.info("Creating singleton of LogManager");
             if (loggingEnabled) {
@@ -584,6 +619,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      * 			- the content so we can access email templates
      * @param logManager
      * 			- the logManager to log email sent
+     * @param database
+     * 			- the database holding the persistent email outbox
      * @return an instance of the queue
      */
     @Inject
@@ -592,7 +629,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static EmailManager getMessageCommunicationQueue(final PropertiesLoader properties, final EmailCommunicator emailCommunicator,
                                                              final AbstractUserPreferenceManager userPreferenceManager,
                                                              final GitContentManager contentManager,
-                                                             final ILogManager logManager) {
+                                                             final ILogManager logManager,
+                                                             final PostgresSqlDb database) {
 
         Map<String, String> globalTokens = Maps.newHashMap();
         globalTokens.put("sig", properties.getProperty(EMAIL_SIGNATURE));
@@ -612,8 +650,16 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         globalTokens.put("siteBaseURL", String.format("https://%s", properties.getProperty(HOST_NAME)));
 
         if (null == emailCommunicationQueue) {
+            String workers = properties.getProperty(Constants.EMAIL_OUTBOX_WORKERS);
+            String sendsPerSecond = properties.getProperty(Constants.EMAIL_OUTBOX_SENDS_PER_SECOND);
+            String maxAttempts = properties.getProperty(Constants.EMAIL_OUTBOX_MAX_ATTEMPTS);
+            emailOutbox = new PgEmailOutbox(database, emailCommunicator,
+                    null == workers ? PgEmailOutbox.DEFAULT_WORKERS : Integer.parseInt(workers),
+                    null == sendsPerSecond ? PgEmailOutbox.DEFAULT_SENDS_PER_SECOND
+                            : Double.parseDouble(sendsPerSecond),
+                    null == maxAttempts ? PgEmailOutbox.DEFAULT_MAX_ATTEMPTS : Integer.parseInt(maxAttempts));
             emailCommunicationQueue = new EmailManager(emailCommunicator, userPreferenceManager, properties,
-                    contentManager, logManager, globalTokens);
+                    contentManager, logManager, globalTokens, emailOutbox);
             log.info("Creating singleton of EmailCommunicationQueue");
         }
         return emailCommunicationQueue;
@@ -688,9 +734,15 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                                                final ISecondFactorAuthenticator secondFactorManager,
                                                final AbstractUserPreferenceManager userPreferenceManager) {
         if (null == userManager) {
+            String flushInterval = properties.getProperty(LAST_SEEN_FLUSH_INTERVAL_SECONDS);
+            long flushIntervalSeconds = null == flushInterval ? LastSeenAggregator.DEFAULT_FLUSH_INTERVAL_SECONDS
+                    : Long.parseLong(flushInterval);
+            if (flushIntervalSeconds > 0) {
+                lastSeenAggregator = new LastSeenAggregator(database, flushIntervalSeconds);
+            }
             userManager = new UserAccountManager(database, questionManager, properties, providersToRegister,
                     mapperFacade, emailQueue, temporaryUserCache, logManager, userAuthenticationManager,
-                    secondFactorManager, userPreferenceManager);
+                    secondFactorManager, userPreferenceManager, lastSeenAggregator);
             log.info("Creating singleton of UserManager");
         }
 
@@ -703,15 +755,20 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *
      * @param ds - postgres data source
      * @param objectMapper - mapper
+     * @param properties - to configure the size of the question attempt cache
      * @return a singleton for question persistence.
      */
     @Inject
     @Provides
     @Singleton
-    private IQuestionAttemptManager getQuestionManager(final PostgresSqlDb ds, final ContentMapper objectMapper) {
-        // this needs to be a singleton as it provides a temporary cache for anonymous question attempts.
+    private IQuestionAttemptManager getQuestionManager(final PostgresSqlDb ds, final ContentMapper objectMapper,
+                                                       final PropertiesLoader properties) {
+        // this needs to be a singleton as it provides a cache of registered users' question attempts.
         if (null == questionPersistenceManager) {
-            questionPersistenceManager = new PgQuestionAttempts(ds, objectMapper);
+            String maxAttempts = properties.getProperty(Constants.QUESTION_ATTEMPT_CACHE_MAX_ATTEMPTS);
+            questionPersistenceManager = new CachingQuestionAttemptManager(new PgQuestionAttempts(ds, objectMapper),
+                    null == maxAttempts ? CachingQuestionAttemptManager.DEFAULT_MAX_ATTEMPTS
+                            : Long.parseLong(maxAttempts), true);
             log.info("Creating singleton of IQuestionAttemptManager");
         }
 
@@ -759,6 +816,56 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return groupObserver;
     }
 
+    /**
+     * Get singleton of the user alert bus.
+     *
+     * Note: this has to be a singleton as it holds the connection which listens for alerts from other API nodes.
+     *
+     * @param properties
+     *            - to decide whether alerts are shared between API nodes.
+     * @param database
+     *            - to share alerts between API nodes, if configured.
+     * @return the singleton of the user alert bus.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static IUserAlertBus getUserAlertBus(final PropertiesLoader properties, final PostgresSqlDb database) {
+        if (null == userAlertBus) {
+            if (Boolean.parseBoolean(properties.getProperty(Constants.USER_ALERTS_CLUSTERED))) {
+                userAlertBus = new PgUserAlertBus(database);
+                log.info("Creating singleton of UserAlertBus, shared between API nodes through the database");
+            } else {
+                userAlertBus = new LocalUserAlertBus();
+                log.info("Creating singleton of UserAlertBus");
+            }
+        }
+        return userAlertBus;
+    }
+
+    /**
+     * Get singleton of the user streaks manager.
+     *
+     * Note: this has to be a singleton as it keeps (in memory) a snapshot of each active user's streaks.
+     *
+     * @param database
+     *            - to calculate streaks from question attempts.
+     * @param alertBus
+     *            - to send streak changes to the user's websockets.
+     * @return the singleton of the user streaks manager.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static IUserStreaksManager getUserStreaksManager(final PostgresSqlDb database,
+                                                             final IUserAlertBus alertBus) {
+        if (null == userStreaksManager) {
+            userStreaksManager = new PgUserStreakManager(database, alertBus);
+            log.info("Creating singleton of UserStreaksManager");
+        }
+        return userStreaksManager;
+    }
+
     /**
      * Get singleton of misuseMonitor.
      *
@@ -768,15 +875,29 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - so that the monitors can send e-mails.
      * @param properties
      *            - so that the monitors can look up email settings etc.
+     * @param database
+     *            - to share misuse counts between API nodes, if configured.
      * @return gets the singleton of the misuse manager.
      */
     @Inject
     @Provides
     @Singleton
-    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final PropertiesLoader properties) {
+    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final PropertiesLoader properties,
+                                            final PostgresSqlDb database) {
         if (null == misuseMonitor) {
-            misuseMonitor = new InMemoryMisuseMonitor();
-            log.info("Creating singleton of MisuseMonitor");
+            if (Boolean.parseBoolean(properties.getProperty(Constants.MISUSE_MONITOR_CLUSTERED))) {
+                String syncInterval = properties.getProperty(Constants.MISUSE_MONITOR_SYNC_INTERVAL_MILLISECONDS);
+                String maxStaleness = properties.getProperty(Constants.MISUSE_MONITOR_MAX_STALENESS_MILLISECONDS);
+                misuseMonitor = new PgMisuseMonitor(database,
+                        null == syncInterval ? PgMisuseMonitor.DEFAULT_SYNC_INTERVAL_MILLISECONDS
+                                : Long.parseLong(syncInterval),
+                        null == maxStaleness ? PgMisuseMonitor.DEFAULT_MAX_STALENESS_MILLISECONDS
+                                : Long.parseLong(maxStaleness));
+                log.info("Creating singleton of MisuseMonitor, shared between API nodes through the database");
+            } else {
+                misuseMonitor = new ConcurrentMisuseMonitor();
+                log.info("Creating singleton of MisuseMonitor");
+            }
 
             // TODO: We should automatically register all handlers that implement this interface using reflection?
             // register handlers segue specific handlers
@@ -1157,8 +1278,9 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Inject
     private static IsaacSymbolicValidator getSymbolicValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+        return new IsaacSymbolicValidator(getExternalValidatorClient("equality_checker",
+                properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), properties));
     }
 
     /**
@@ -1171,8 +1293,9 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Inject
     private static IsaacSymbolicChemistryValidator getSymbolicChemistryValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicChemistryValidator(properties.getProperty(Constants.CHEMISTRY_CHECKER_HOST),
-                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT));
+        return new IsaacSymbolicChemistryValidator(getExternalValidatorClient("chemistry_checker",
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_HOST),
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT), properties));
     }
 
     /**
@@ -1185,8 +1308,111 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Inject
     private static IsaacSymbolicLogicValidator getSymbolicLogicValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicLogicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+        return new IsaacSymbolicLogicValidator(getExternalValidatorClient("equality_checker",
+                properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), properties));
+    }
+
+    /**
+     * Gets the shared client for an external checker, so that all validators using the same checker host share one
+     * connection pool.
+     *
+     * @param name
+     *            - the name of the checker, used to label metrics.
+     * @param hostname
+     *            - the checker host.
+     * @param port
+     *            - the checker port.
+     * @param properties
+     *            - properties loader to read timeout and pool size from.
+     * @return the client for that checker host.
+     */
+    private static synchronized ExternalValidatorClient getExternalValidatorClient(
+            final String name, final String hostname, final String port, final PropertiesLoader properties) {
+        return externalValidatorClients.computeIfAbsent(hostname + ":" + port, hostAndPort -> {
+            String timeout = properties.getProperty(Constants.EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS);
+            String maxConnections = properties.getProperty(Constants.EXTERNAL_VALIDATOR_MAX_CONNECTIONS);
+            log.info("Creating ExternalValidatorClient for " + name + " at " + hostAndPort);
+            return new ExternalValidatorClient(name, hostname, port,
+                    null == timeout ? ExternalValidatorClient.DEFAULT_TIMEOUT_MILLISECONDS : Integer.parseInt(timeout),
+                    null == maxConnections ? ExternalValidatorClient.DEFAULT_MAX_CONNECTIONS
+                            : Integer.parseInt(maxConnections));
+        });
+    }
+
+    /**
+     * Gets the singleton cache of responses from deterministic validators, shared by every QuestionManager.
+     *
+     * @param properties
+     *            - properties loader to read the cache size from.
+     * @return the validation response cache.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static synchronized ValidationResponseCache getValidationResponseCache(
+            final PropertiesLoader properties) {
+        if (null == validationResponseCache) {
+            String maximumSize = properties.getProperty(Constants.VALIDATION_RESPONSE_CACHE_SIZE);
+            validationResponseCache = new ValidationResponseCache(null == maximumSize
+                    ? ValidationResponseCache.DEFAULT_MAXIMUM_SIZE : Long.parseLong(maximumSize));
+            log.info("Creating singleton of ValidationResponseCache");
+        }
+        return validationResponseCache;
+    }
+
+    /**
+     * Gets the singleton cache of compiled question rules, shared by every validator which compiles its rules.
+     *
+     * @param contentManager
+     *            - content manager whose per-version cache holds the compiled rules.
+     * @return the validator rule cache.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static synchronized ValidatorRuleCache getValidatorRuleCache(final GitContentManager contentManager) {
+        if (null == validatorRuleCache) {
+            validatorRuleCache = new ValidatorRuleCache(contentManager.getContentCache());
+            log.info("Creating singleton of ValidatorRuleCache");
+        }
+        return validatorRuleCache;
+    }
+
+    /**
+     * Gets an instance of the numeric question validator.
+     *
+     * @return IsaacNumericValidator using the shared rule cache.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static IsaacNumericValidator getNumericValidator(final ValidatorRuleCache ruleCache) {
+        return new IsaacNumericValidator(ruleCache);
+    }
+
+    /**
+     * Gets an instance of the regex match question validator.
+     *
+     * @return IsaacRegexMatchValidator using the shared rule cache.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static IsaacRegexMatchValidator getRegexMatchValidator(final ValidatorRuleCache ruleCache) {
+        return new IsaacRegexMatchValidator(ruleCache);
+    }
+
+    /**
+     * Gets an instance of the free text question validator.
+     *
+     * @return IsaacFreeTextValidator using the shared rule cache.
+     */
+    @Provides
+    @Singleton
+    @Inject
+    private static IsaacFreeTextValidator getFreeTextValidator(final ValidatorRuleCache ruleCache) {
+        return new IsaacFreeTextValidator(ruleCache);
     }
 
     /**
@@ -1270,6 +1496,33 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     public void contextDestroyed(final ServletContextEvent sce) {
         // Close all resources we hold.
         log.info("Segue Config Module notified of shutdown. Releasing resources");
+        if (asyncLogEventWriter != null) {
+            // This must happen before the database is closed, so that queued log events are not lost.
+            asyncLogEventWriter.close();
+            asyncLogEventWriter = null;
+        }
+        if (lastSeenAggregator != null) {
+            // Write any outstanding last seen dates while we still have a database.
+            lastSeenAggregator.close();
+            lastSeenAggregator = null;
+        }
+        if (misuseMonitor instanceof PgMisuseMonitor) {
+            // Write any outstanding misuse counts while we still have a database.
+            ((PgMisuseMonitor) misuseMonitor).close();
+        }
+        if (userAlertBus instanceof PgUserAlertBus) {
+            ((PgUserAlertBus) userAlertBus).close();
+        }
+        if (emailOutbox != null) {
+            // Let the workers finish the batches they have claimed while we still have a database.
+            emailOutbox.close();
+            emailOutbox = null;
+        }
+        synchronized (SegueGuiceConfigurationModule.class) {
+            externalValidatorClients.values().forEach(ExternalValidatorClient::close);
+            externalValidatorClients.clear();
+        }
+
         try {
             elasticSearchClient.close();
             elasticSearchClient = null;
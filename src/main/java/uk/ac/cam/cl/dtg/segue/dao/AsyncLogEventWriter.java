@@ -0,0 +1,349 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_BATCH_SIZE;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_FLUSH_LATENCY;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_QUEUE_DEPTH;
+
+/**
+ * Writes log events to the logged_events table in batches from a background thread.
+ *
+ * Events are held in a bounded queue and written with a single multi-row INSERT once a batch is full or the flush
+ * interval has passed, so request threads never wait for the database. If the database rejects some of the events
+ * in a batch, the batch is split and retried so that only the bad events are lost. If the queue fills up because the
+ * database cannot keep up, new events are dropped rather than slowing down requests. Closing the writer flushes every
+ * queued event; anything submitted after that is written synchronously.
+ */
+public class AsyncLogEventWriter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogEventWriter.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLISECONDS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLISECONDS = 30000;
+    private static final long DROP_WARNING_INTERVAL_MILLISECONDS = 60000;
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String INSERT_PREFIX = "INSERT INTO logged_events(user_id, anonymous_user, event_type,"
+            + " event_details_type, event_details, ip_address, timestamp) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?::text::jsonb, ?::inet, ?)";
+    private static final int PARAMETERS_PER_ROW = 7;
+    // Postgres allows at most 65535 bind parameters in one statement:
+    public static final int MAX_BATCH_SIZE = 65535 / PARAMETERS_PER_ROW;
+
+    private final PostgresSqlDb database;
+    private final BlockingQueue<QueuedLogEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread writerThread;
+    private final AtomicLong lastDropWarning = new AtomicLong();
+    private final Object progressLock = new Object();
+    private long eventsQueued;
+    private long eventsCompleted;
+
+    private volatile boolean running;
+
+    /**
+     * Create and start an asynchronous log event writer.
+     *
+     * @param database
+     *            - client for postgres.
+     * @param queueSize
+     *            - the maximum number of events waiting to be written before new events are dropped.
+     * @param batchSize
+     *            - the maximum number of events written in one INSERT, at most MAX_BATCH_SIZE.
+     * @param flushIntervalMilliseconds
+     *            - the longest an event waits for a batch to fill before it is written.
+     */
+    public AsyncLogEventWriter(final PostgresSqlDb database, final int queueSize, final int batchSize,
+                               final long flushIntervalMilliseconds) {
+        this.database = database;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        if (batchSize > MAX_BATCH_SIZE) {
+            log.warn(String.format("Log event batch size %d is too large for one INSERT; using %d.", batchSize,
+                    MAX_BATCH_SIZE));
+        }
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMilliseconds);
+
+        this.running = true;
+        this.writerThread = new Thread(this::drainQueue, "log-event-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue a log event to be written.
+     *
+     * @param event
+     *            - the event to write.
+     */
+    public void submit(final QueuedLogEvent event) {
+        boolean accepting;
+        boolean queued = false;
+        synchronized (progressLock) {
+            // Checked under the lock so that nothing can be queued after close() has told the writer to finish.
+            accepting = running;
+            if (accepting) {
+                queued = queue.offer(event);
+                if (queued) {
+                    eventsQueued++;
+                }
+            }
+        }
+        if (!accepting) {
+            // We are shutting down, so there is no writer thread to hand over to:
+            writeBatch(Collections.singletonList(event));
+            return;
+        }
+        if (!queued) {
+            LOG_EVENT_DROPPED.labels("queue_full").inc();
+            long now = System.currentTimeMillis();
+            long lastWarning = lastDropWarning.get();
+            if (now - lastWarning > DROP_WARNING_INTERVAL_MILLISECONDS && lastDropWarning.compareAndSet(lastWarning, now)) {
+                log.warn(String.format("Log event queue is full (%d events); dropping log events.", queue.size()));
+            }
+        }
+        LOG_EVENT_QUEUE_DEPTH.set(queue.size());
+    }
+
+    /**
+     * Wait until every event queued before this call has been written (or has failed to be written).
+     *
+     * This is for callers which are about to query or update logged events and need earlier events to be visible.
+     */
+    public void flush() {
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLISECONDS;
+        synchronized (progressLock) {
+            long target = eventsQueued;
+            while (eventsCompleted < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !writerThread.isAlive()) {
+                    log.error("Timed out waiting for queued log events to be written.");
+                    return;
+                }
+                try {
+                    progressLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting events, and wait for every queued event to be written.
+     */
+    @Override
+    public void close() {
+        log.info(String.format("Flushing %d queued log events before shutdown.", queue.size()));
+        synchronized (progressLock) {
+            running = false;
+        }
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.error("Log event writer did not finish flushing before the shutdown timeout.");
+        }
+    }
+
+    /**
+     * The writer thread: repeatedly collect a batch of events and write it, until closed and empty.
+     */
+    private void drainQueue() {
+        List<QueuedLogEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Only close() stops this thread, so carry on and write whatever we already have.
+                log.warn("Log event writer interrupted; continuing.");
+            }
+            LOG_EVENT_QUEUE_DEPTH.set(queue.size());
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                synchronized (progressLock) {
+                    eventsCompleted += batch.size();
+                    progressLock.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for at least one event, then keep collecting until the batch is full or the flush interval has passed.
+     *
+     * Waits are split into short slices so that the writer notices promptly when it is closed.
+     *
+     * @param batch the list to add events to.
+     * @throws InterruptedException if the writer thread is interrupted while waiting.
+     */
+    private void collectBatch(final List<QueuedLogEvent> batch) throws InterruptedException {
+        QueuedLogEvent first = queue.poll(Math.min(flushIntervalNanos, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+        if (null == first) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && running) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            QueuedLogEvent next = queue.poll(Math.min(remaining, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+    }
+
+    /**
+     * Write a batch of events, recording how long it took.
+     *
+     * @param batch the events to write.
+     */
+    private void writeBatch(final List<QueuedLogEvent> batch) {
+        Histogram.Timer timer = LOG_EVENT_FLUSH_LATENCY.startTimer();
+        try {
+            writeEvents(batch);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+    /**
+     * Write events with a single multi-row INSERT. If the database rejects some of them, split them in half and write
+     * each half separately, so that a bad event only loses itself rather than everything written alongside it.
+     *
+     * @param events the events to write.
+     */
+    private void writeEvents(final List<QueuedLogEvent> events) {
+        try {
+            insert(events);
+            LOG_EVENT_BATCH_SIZE.observe(events.size());
+        } catch (SQLException e) {
+            if (events.size() > 1 && isRejectedData(e)) {
+                int middle = events.size() / 2;
+                writeEvents(events.subList(0, middle));
+                writeEvents(events.subList(middle, events.size()));
+                return;
+            }
+            LOG_EVENT_DROPPED.labels("write_failed").inc(events.size());
+            log.error(String.format("Unable to save %d log events to the database", events.size()), e);
+        }
+    }
+
+    /**
+     * @param events the events to insert.
+     * @throws SQLException if the events cannot be inserted.
+     */
+    private void insert(final List<QueuedLogEvent> events) throws SQLException {
+        StringBuilder query = new StringBuilder(INSERT_PREFIX);
+        for (int i = 0; i < events.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+        }
+
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query.toString());
+        ) {
+            int index = 1;
+            for (QueuedLogEvent event : events) {
+                pst.setString(index++, event.userId);
+                pst.setBoolean(index++, event.anonymousUser);
+                pst.setString(index++, event.eventType);
+                pst.setString(index++, event.eventDetailsType);
+                pst.setString(index++, event.eventDetailsJson);
+                pst.setString(index++, event.ipAddress);
+                pst.setTimestamp(index++, event.timestamp);
+            }
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * @param e a failure to insert events.
+     * @return whether the database rejected the values of some events, such as invalid JSON or an oversized value, as
+     *         opposed to a failure which would affect any insert, such as a lost connection.
+     */
+    private static boolean isRejectedData(final SQLException e) {
+        String sqlState = e.getSQLState();
+        // Data exceptions, integrity constraint violations and program limits such as oversized values:
+        return sqlState != null
+                && (sqlState.startsWith("22") || sqlState.startsWith("23") || sqlState.startsWith("54"));
+    }
+
+    /**
+     * A log event ready to be written, with its details already serialised so it no longer refers to request state.
+     */
+    public static final class QueuedLogEvent {
+        private final String userId;
+        private final boolean anonymousUser;
+        private final String eventType;
+        private final String eventDetailsType;
+        private final String eventDetailsJson;
+        private final String ipAddress;
+        private final Timestamp timestamp;
+
+        /**
+         * @param userId the user or anonymous session ID.
+         * @param anonymousUser whether the userId is an anonymous session ID.
+         * @param eventType the type of event.
+         * @param eventDetailsType the class name of the event details.
+         * @param eventDetailsJson the event details as JSON.
+         * @param ipAddress the client IP address, or null.
+         * @param timestamp when the event happened.
+         */
+        public QueuedLogEvent(final String userId, final boolean anonymousUser, final String eventType,
+                              final String eventDetailsType, final String eventDetailsJson, final String ipAddress,
+                              final Timestamp timestamp) {
+            this.userId = userId;
+            this.anonymousUser = anonymousUser;
+            this.eventType = eventType;
+            this.eventDetailsType = eventDetailsType;
+            this.eventDetailsJson = eventDetailsJson;
+            this.ipAddress = ipAddress;
+            this.timestamp = timestamp;
+        }
+    }
+}
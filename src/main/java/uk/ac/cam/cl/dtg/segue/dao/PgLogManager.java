@@ -35,6 +35,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.AnonymousUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
 
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.sql.Connection;
@@ -66,6 +67,7 @@ public class PgLogManager implements ILogManager {
     private final LocationManager locationManager;
     private final boolean loggingEnabled;
     private final ObjectMapper objectMapper;
+    private final AsyncLogEventWriter asyncWriter;
 
     /**
      * PgLogManager.
@@ -83,11 +85,31 @@ public class PgLogManager implements ILogManager {
     public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper,
             @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
             final LocationManager locationManager) {
+        this(database, objectMapper, loggingEnabled, locationManager, null);
+    }
 
+    /**
+     * PgLogManager.
+     *
+     * @param database
+     *            client for postgres.
+     * @param objectMapper
+     *            - so we can map event details to and from json
+     * @param loggingEnabled
+     *            - whether the log event should be persisted or not?
+     * @param locationManager
+     *            - Helps identify a rough location for an ip address.
+     * @param asyncWriter
+     *            - if not null, log events are queued to be written by this in the background rather than written
+     *            before returning.
+     */
+    public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper, final boolean loggingEnabled,
+                        final LocationManager locationManager, @Nullable final AsyncLogEventWriter asyncWriter) {
         this.database = database;
         this.objectMapper = objectMapper;
         this.loggingEnabled = loggingEnabled;
         this.locationManager = locationManager;
+        this.asyncWriter = asyncWriter;
     }
 
     @Override
@@ -150,6 +172,10 @@ public class PgLogManager implements ILogManager {
 
     @Override
     public void transferLogEventsToRegisteredUser(final String oldUserId, final String newUserId) {
+        if (asyncWriter != null) {
+            // Make sure events logged against the old ID are in the database before we move them:
+            asyncWriter.flush();
+        }
         String query = "UPDATE logged_events SET user_id = ?, anonymous_user = TRUE WHERE user_id = ?;";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
@@ -496,6 +522,15 @@ public class PgLogManager implements ILogManager {
             LOG_EVENT.labels(eventType).inc();
         }
 
+        if (asyncWriter != null) {
+            // Serialise the details now, as the caller may modify them after we return:
+            asyncWriter.submit(new AsyncLogEventWriter.QueuedLogEvent(logEvent.getUserId(), logEvent.isAnonymousUser(),
+                    logEvent.getEventType(), logEvent.getEventDetailsType(),
+                    objectMapper.writeValueAsString(logEvent.getEventDetails()), logEvent.getIpAddress(),
+                    new java.sql.Timestamp(logEvent.getTimestamp().getTime())));
+            return;
+        }
+
         String query = "INSERT INTO logged_events(user_id, anonymous_user, event_type, event_details_type," +
                 " event_details, ip_address, timestamp) VALUES (?, ?, ?, ?, ?::text::jsonb, ?::inet, ?);";
         try (Connection conn = database.getDatabaseConnection();
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * A cache of content objects, partitioned into one namespace per content SHA.
+ *
+ * Each namespace is a weight-bounded cache with typed keys, so a lookup for one kind of object can never return
+ * another. Values are loaded atomically: concurrent requests for the same missing key share a single load. When the
+ * live content version changes the namespaces for every other SHA can be dropped in one go.
+ */
+public class ContentCache {
+    private static final Logger log = LoggerFactory.getLogger(ContentCache.class);
+
+    public static final long DEFAULT_MAX_WEIGHT_PER_VERSION = 100000;
+    private static final String METRIC_NAME_PREFIX = "git_content_manager_cache_";
+
+    private final long maxWeightPerVersion;
+    private final boolean recordMetrics;
+    private final Map<String, Cache<Key<?>, Object>> namespaces;
+
+    /**
+     * Create a content cache.
+     *
+     * @param maxWeightPerVersion
+     *            - the maximum total weight of objects held for any one content SHA.
+     * @param recordMetrics
+     *            - whether to register each namespace with the Prometheus cache metrics collector.
+     */
+    public ContentCache(final long maxWeightPerVersion, final boolean recordMetrics) {
+        this.maxWeightPerVersion = maxWeightPerVersion;
+        this.recordMetrics = recordMetrics;
+        this.namespaces = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get a value from the cache, loading and caching it if it is not present.
+     *
+     * A loader may return null to indicate the object does not exist; in that case null is returned and nothing is
+     * cached.
+     *
+     * @param contentSha
+     *            - the content version the value belongs to.
+     * @param key
+     *            - the typed key for the value.
+     * @param loader
+     *            - how to load the value if it is not already cached.
+     * @param <V>
+     *            - the type of the cached value.
+     * @return the cached or newly loaded value, or null if the loader found nothing.
+     * @throws ContentManagerException
+     *             - if the loader fails.
+     */
+    public <V> V get(final String contentSha, final Key<V> key, final Loader<V> loader)
+            throws ContentManagerException {
+        try {
+            return key.valueType.cast(namespace(contentSha).get(key, loader::load));
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // The loader returned null; this is not an error, just a cache miss we should not remember.
+            return null;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof ContentManagerException) {
+                throw (ContentManagerException) e.getCause();
+            }
+            throw new ContentManagerException("Unable to load " + key + " for content version " + contentSha,
+                    (Exception) (e.getCause() instanceof Exception ? e.getCause() : e));
+        }
+    }
+
+    /**
+     * Get a value from the cache only if it is already present.
+     *
+     * @param contentSha
+     *            - the content version the value belongs to.
+     * @param key
+     *            - the typed key for the value.
+     * @param <V>
+     *            - the type of the cached value.
+     * @return the cached value or null.
+     */
+    public <V> V getIfPresent(final String contentSha, final Key<V> key) {
+        Cache<Key<?>, Object> namespace = namespaces.get(contentSha);
+        if (null == namespace) {
+            return null;
+        }
+        return key.valueType.cast(namespace.getIfPresent(key));
+    }
+
+    /**
+     * Add a value to the cache, replacing any existing value.
+     *
+     * @param contentSha
+     *            - the content version the value belongs to.
+     * @param key
+     *            - the typed key for the value.
+     * @param value
+     *            - the value to cache, must not be null.
+     * @param <V>
+     *            - the type of the cached value.
+     */
+    public <V> void put(final String contentSha, final Key<V> key, final V value) {
+        namespace(contentSha).put(key, value);
+    }
+
+    /**
+     * Drop every namespace except the one for the given content SHA.
+     *
+     * @param liveContentSha
+     *            - the content version whose cached objects should be kept.
+     */
+    public void retainOnly(final String liveContentSha) {
+        for (String contentSha : ImmutableList.copyOf(namespaces.keySet())) {
+            if (!contentSha.equals(liveContentSha)) {
+                evict(contentSha);
+            }
+        }
+    }
+
+    /**
+     * Drop every cached object for a content SHA.
+     *
+     * @param contentSha
+     *            - the content version to evict.
+     */
+    public void evict(final String contentSha) {
+        Cache<Key<?>, Object> namespace = namespaces.remove(contentSha);
+        if (namespace != null) {
+            log.info(String.format("Evicting %d cached content objects for content version %s.",
+                    namespace.size(), contentSha));
+            if (recordMetrics) {
+                CACHE_METRICS_COLLECTOR.removeCache(METRIC_NAME_PREFIX + contentSha);
+            }
+            namespace.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the content SHAs which currently have a namespace in the cache.
+     */
+    public Collection<String> getCachedContentShas() {
+        return ImmutableList.copyOf(namespaces.keySet());
+    }
+
+    /**
+     * Find or create the namespace for a content SHA.
+     *
+     * @param contentSha the content version.
+     * @return the cache holding objects for that version.
+     */
+    private Cache<Key<?>, Object> namespace(final String contentSha) {
+        return namespaces.computeIfAbsent(contentSha, sha -> {
+            CacheBuilder<Key<?>, Object> builder = CacheBuilder.newBuilder()
+                    .expireAfterAccess(1, TimeUnit.DAYS)
+                    .maximumWeight(maxWeightPerVersion)
+                    .weigher((Key<?> k, Object v) -> weigh(v));
+            if (recordMetrics) {
+                builder.recordStats();
+            }
+            Cache<Key<?>, Object> cache = builder.build();
+            if (recordMetrics) {
+                CACHE_METRICS_COLLECTOR.addCache(METRIC_NAME_PREFIX + sha, cache);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Estimate the weight of a cached value: one unit per content object it holds.
+     *
+     * @param value the cached value.
+     * @return the weight.
+     */
+    private static int weigh(final Object value) {
+        if (value instanceof ResultsWrapper) {
+            List<?> results = ((ResultsWrapper<?>) value).getResults();
+            return null == results ? 1 : Math.max(1, results.size());
+        }
+        if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size());
+        }
+        return 1;
+    }
+
+    /**
+     * Loads a value on a cache miss.
+     *
+     * @param <V> the type of the value.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        /**
+         * @return the loaded value or null if it does not exist.
+         * @throws ContentManagerException if the value cannot be loaded.
+         */
+        V load() throws ContentManagerException;
+    }
+
+    /**
+     * A typed cache key: the kind of lookup, the value type it produces and the parameters of the lookup.
+     *
+     * @param <V> the type of value stored against this key.
+     */
+    public static final class Key<V> {
+        private final String kind;
+        private final Class<V> valueType;
+        private final List<Object> parameters;
+
+        /**
+         * @param kind the kind of lookup this key is for.
+         * @param valueType the type of value stored against this key.
+         * @param parameters the parameters of the lookup, which must have sensible equals and hashCode methods.
+         */
+        private Key(final String kind, final Class<V> valueType, final List<Object> parameters) {
+            this.kind = kind;
+            this.valueType = valueType;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Create a typed key.
+         *
+         * @param kind
+         *            - the kind of lookup this key is for, e.g. "getContentDOById".
+         * @param valueType
+         *            - the type of value stored against this key.
+         * @param parameters
+         *            - the parameters of the lookup.
+         * @param <V>
+         *            - the type of value stored against this key.
+         * @return the key.
+         */
+        public static <V> Key<V> of(final String kind, final Class<V> valueType, final Object... parameters) {
+            return new Key<>(kind, valueType, Arrays.asList(parameters));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key<?> other = (Key<?>) o;
+            return kind.equals(other.kind) && valueType.equals(other.valueType) && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, valueType, parameters);
+        }
+
+        @Override
+        public String toString() {
+            return kind + parameters;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.database.GitDb;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * A cache of the files, such as figures and documents, in the content repository.
+ *
+ * Each content version has an index from file path to blob id, built with a single walk of the commit's tree the
+ * first time a file from that version is needed. The file contents are then cached by blob id, so a file which has not
+ * changed between two versions is only read and held once, and the blob id can be used as an ETag for the file.
+ * Files too large to share the cache fairly are read from the repository on every request instead.
+ */
+public class ContentFileCache {
+    private static final Logger log = LoggerFactory.getLogger(ContentFileCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    // The live version, and the one it replaced while requests for that finish:
+    private static final int MAX_INDEXED_VERSIONS = 2;
+    private static final String METRIC_NAME = "git_content_file_cache";
+    // No single file may take more than this share of the cache:
+    private static final int MAX_FILE_FRACTION = 16;
+
+    private final GitDb database;
+    private final Cache<String, Map<String, ObjectId>> fileIdsBySha;
+    private final Cache<ObjectId, byte[]> filesById;
+    private final long maxCachedFileBytes;
+
+    /**
+     * Create a content file cache.
+     *
+     * @param database
+     *            - the content repository to read files from.
+     * @param maxBytes
+     *            - the maximum total size of the file contents to hold in memory.
+     * @param recordMetrics
+     *            - whether to register the file cache with the Prometheus cache metrics collector.
+     */
+    public ContentFileCache(final GitDb database, final long maxBytes, final boolean recordMetrics) {
+        this.database = database;
+        this.fileIdsBySha = CacheBuilder.newBuilder().maximumSize(MAX_INDEXED_VERSIONS).build();
+        this.maxCachedFileBytes = maxBytes / MAX_FILE_FRACTION;
+
+        CacheBuilder<ObjectId, byte[]> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ObjectId id, byte[] contents) -> contents.length);
+        if (recordMetrics) {
+            builder.recordStats();
+        }
+        this.filesById = builder.build();
+        if (recordMetrics) {
+            CACHE_METRICS_COLLECTOR.addCache(METRIC_NAME, filesById);
+        }
+    }
+
+    /**
+     * Find the blob holding a file in a content version, indexing the version's files if this has not been done yet.
+     *
+     * @param contentSha
+     *            - the content version.
+     * @param path
+     *            - the full path of the file in the repository.
+     * @return the id of the file's blob, or null if there is no such file in that version.
+     * @throws IOException
+     *             - if the version's files cannot be indexed.
+     */
+    public ObjectId getFileId(final String contentSha, final String path) throws IOException {
+        return this.getFileIds(contentSha).get(path);
+    }
+
+    /**
+     * Get the contents of a file, reading it from the repository if it is not already cached.
+     *
+     * The returned array may be shared with other requests for the same file and must not be modified.
+     *
+     * @param fileId
+     *            - the id of the file's blob, from {@link #getFileId(String, String)}.
+     * @return the contents of the file.
+     * @throws IOException
+     *             - if the file cannot be read.
+     */
+    public byte[] getFileBytes(final ObjectId fileId) throws IOException {
+        byte[] cached = filesById.getIfPresent(fileId);
+        if (cached != null) {
+            return cached;
+        }
+        if (database.getFileSizeById(fileId) > maxCachedFileBytes) {
+            return database.getFileBytesById(fileId);
+        }
+        try {
+            return filesById.get(fileId, () -> database.getFileBytesById(fileId));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw unwrap(e, "Unable to read file " + fileId.getName());
+        }
+    }
+
+    /**
+     * Index a content version's files ahead of the first request for one of them.
+     *
+     * @param contentSha
+     *            - the content version.
+     */
+    public void indexFiles(final String contentSha) {
+        try {
+            this.getFileIds(contentSha);
+        } catch (IOException e) {
+            log.error(String.format("Failed to index files for content SHA (%s).", contentSha), e);
+        }
+    }
+
+    /**
+     * @param contentSha
+     *            - the content version.
+     * @return the index of the version's files, by path.
+     * @throws IOException
+     *             - if the version's files cannot be indexed.
+     */
+    private Map<String, ObjectId> getFileIds(final String contentSha) throws IOException {
+        try {
+            return fileIdsBySha.get(contentSha, () -> {
+                long start = System.currentTimeMillis();
+                Map<String, ObjectId> fileIds = database.getFileIdsByCommitSHA(contentSha);
+                if (null == fileIds) {
+                    // Don't remember a missing version, in case it is fetched later:
+                    throw new IOException("Unable to locate content SHA " + contentSha);
+                }
+                log.info(String.format("Indexed %d files for content SHA (%s) in %dms.", fileIds.size(), contentSha,
+                        System.currentTimeMillis() - start));
+                return ImmutableMap.copyOf(fileIds);
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw unwrap(e, "Unable to index files for content SHA " + contentSha);
+        }
+    }
+
+    /**
+     * @param e - the exception thrown by a cache load.
+     * @param message - a description of what was being loaded.
+     * @return the IOException thrown by the load, or a new one wrapping whatever else was thrown.
+     */
+    private static IOException unwrap(final Throwable e, final String message) {
+        if (e.getCause() instanceof IOException) {
+            return (IOException) e.getCause();
+        }
+        return new IOException(message, e.getCause());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, in-memory copy of every content object indexed for one content SHA.
+ *
+ * This allows lookups by ID, ID prefix and lists of IDs to be answered without a round trip to the search provider.
+ * Content objects held here are shared between requests and must not be modified.
+ */
+public final class ContentSnapshot {
+    private final String contentSha;
+    private final ImmutableSortedMap<String, Content> contentById;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param contentSha
+     *            - the content version this snapshot is a copy of.
+     * @param contentById
+     *            - every content object in the version, keyed by ID.
+     */
+    public ContentSnapshot(final String contentSha, final Map<String, Content> contentById) {
+        this.contentSha = contentSha;
+        this.contentById = ImmutableSortedMap.copyOf(contentById);
+    }
+
+    /**
+     * @return the content version this snapshot is a copy of.
+     */
+    public String getContentSha() {
+        return contentSha;
+    }
+
+    /**
+     * @return the number of content objects in the snapshot.
+     */
+    public int size() {
+        return contentById.size();
+    }
+
+    /**
+     * @param id the content ID.
+     * @return the content object or null if it is not in the snapshot.
+     */
+    public Content getById(final String id) {
+        return contentById.get(id);
+    }
+
+    /**
+     * Find every content object with an ID starting with the given prefix, in ID order.
+     *
+     * @param idPrefix the ID prefix.
+     * @return the matching content objects.
+     */
+    public List<Content> getByIdPrefix(final String idPrefix) {
+        // Every ID with the prefix sorts between the prefix itself and the prefix followed by the largest char:
+        return contentById.subMap(idPrefix, true, idPrefix + Character.MAX_VALUE, false).values().asList();
+    }
+
+    /**
+     * Find the content objects with the given IDs, in the order the IDs are first provided. Missing IDs are skipped.
+     *
+     * @param ids the content IDs.
+     * @return the matching content objects.
+     */
+    public List<Content> getByIds(final Collection<String> ids) {
+        ImmutableList.Builder<Content> results = ImmutableList.builder();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Content content = contentById.get(id);
+            if (content != null) {
+                results.add(content);
+            }
+        }
+        return results.build();
+    }
+}
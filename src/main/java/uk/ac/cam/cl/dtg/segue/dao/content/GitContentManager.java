@@ -24,7 +24,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectId;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.search.SearchHit;
@@ -52,7 +54,6 @@ import uk.ac.cam.cl.dtg.segue.search.TermsFilterInstruction;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import jakarta.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -61,15 +62,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
-import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
 
 /**
  * Implementation that specifically works with Content objects.
@@ -79,6 +82,8 @@ public class GitContentManager {
     private static final Logger log = LoggerFactory.getLogger(GitContentManager.class);
 
     private static final String CONTENT_TYPE = "content";
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+    private static final int MULTI_GET_BATCH_SIZE = 1000;
 
     private final GitDb database;
     private final ContentMapper mapper;
@@ -87,8 +92,15 @@ public class GitContentManager {
     private final boolean allowOnlyPublishedContent;
     private final boolean hideRegressionTestContent;
 
-    private final Cache<Object, Object> cache;
+    private final ContentCache cache;
+    private final ContentFileCache fileCache;
+    private final ExecutorService fileIndexer;
     private final Cache<String, GetResponse> contentShaCache;
+    private volatile String lastSeenContentSHA;
+
+    private final boolean snapshotModeEnabled;
+    private final ExecutorService snapshotLoader;
+    private volatile ContentSnapshot snapshot;
 
     private final String contentIndex;
 
@@ -125,12 +137,28 @@ public class GitContentManager {
             log.info("API Configured to hide content tagged with 'regression_test'.");
         }
 
-        this.cache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        CACHE_METRICS_COLLECTOR.addCache("git_content_manager_cache", cache);
+        String maxCacheWeight = globalProperties.getProperty(Constants.CONTENT_CACHE_MAX_WEIGHT);
+        this.cache = new ContentCache(null == maxCacheWeight ? ContentCache.DEFAULT_MAX_WEIGHT_PER_VERSION
+                : Long.parseLong(maxCacheWeight), true);
+
+        String maxFileCacheBytes = globalProperties.getProperty(Constants.CONTENT_FILE_CACHE_MAX_BYTES);
+        this.fileCache = new ContentFileCache(database, null == maxFileCacheBytes ? ContentFileCache.DEFAULT_MAX_BYTES
+                : Long.parseLong(maxFileCacheBytes), true);
+        this.fileIndexer = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("content-file-indexer").setDaemon(true).build());
 
         this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(5, TimeUnit.SECONDS).build();
 
         this.contentIndex = globalProperties.getProperty(Constants.CONTENT_INDEX);
+
+        this.snapshotModeEnabled = Boolean.parseBoolean(globalProperties.getProperty(Constants.CONTENT_SNAPSHOT_MODE));
+        if (this.snapshotModeEnabled) {
+            log.info("API Configured to serve content lookups by ID from an in-memory snapshot.");
+            this.snapshotLoader = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("content-snapshot-loader").setDaemon(true).build());
+        } else {
+            this.snapshotLoader = null;
+        }
     }
 
     /**
@@ -151,9 +179,13 @@ public class GitContentManager {
         this.globalProperties = null;
         this.allowOnlyPublishedContent = false;
         this.hideRegressionTestContent = false;
-        this.cache = CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
+        this.cache = new ContentCache(ContentCache.DEFAULT_MAX_WEIGHT_PER_VERSION, false);
+        this.fileCache = new ContentFileCache(database, ContentFileCache.DEFAULT_MAX_BYTES, false);
+        this.fileIndexer = null;
         this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(1, TimeUnit.MINUTES).build();
         this.contentIndex = null;
+        this.snapshotModeEnabled = false;
+        this.snapshotLoader = null;
     }
 
     /**
@@ -186,15 +218,8 @@ public class GitContentManager {
      * @throws ContentManagerException on failure to return the object or null.
      */
     public final ContentDTO getContentById(final String id, final boolean failQuietly) throws ContentManagerException {
-        String k = "getContentById~" + getCurrentContentSHA() + "~" + id;
-        if (!cache.asMap().containsKey(k)) {
-            ContentDTO c = this.mapper.getDTOByDO(this.getContentDOById(id, failQuietly));
-            if (c != null) {
-                cache.put(k, c);
-            }
-        }
-
-        return (ContentDTO) cache.getIfPresent(k);
+        return cache.get(getCurrentContentSHA(), contentDTOKey(id),
+                () -> this.mapper.getDTOByDO(this.getContentDOById(id, failQuietly)));
     }
 
     /**
@@ -229,9 +254,17 @@ public class GitContentManager {
             return null;
         }
 
-        String k = "getContentDOById~" + getCurrentContentSHA() + "~" + id;
-        if (!cache.asMap().containsKey(k)) {
+        String contentSHA = getCurrentContentSHA();
+        ContentSnapshot currentSnapshot = getSnapshot(contentSHA);
+        if (currentSnapshot != null) {
+            Content content = currentSnapshot.getById(id);
+            if (null == content && !failQuietly) {
+                log.error(String.format("Failed to locate content with ID '%s' in the snapshot for content SHA (%s)", id, contentSHA));
+            }
+            return content;
+        }
 
+        return cache.get(contentSHA, contentDOKey(id), () -> {
             List<Content> searchResults = mapper.mapFromStringListToContentList(this.searchProvider.termSearch(
                     contentIndex,
                     CONTENT_TYPE, id,
@@ -241,16 +274,13 @@ public class GitContentManager {
 
             if (null == searchResults || searchResults.isEmpty()) {
                 if (!failQuietly) {
-                    log.error(String.format("Failed to locate content with ID '%s' in the cache for content SHA (%s)", id, getCurrentContentSHA()));
+                    log.error(String.format("Failed to locate content with ID '%s' in the cache for content SHA (%s)", id, contentSHA));
                 }
                 return null;
             }
 
-            cache.put(k, searchResults.get(0));
-        }
-
-        return (Content) cache.getIfPresent(k);
-
+            return searchResults.get(0);
+        });
     }
 
     /**
@@ -269,8 +299,14 @@ public class GitContentManager {
     public ResultsWrapper<ContentDTO> getByIdPrefix(final String idPrefix, final int startIndex,
                                                     final int limit) throws ContentManagerException {
 
-        String k = "getByIdPrefix~" + getCurrentContentSHA() + "~" + idPrefix + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
+        ContentCache.Key<ResultsWrapper> k = ContentCache.Key.of("getByIdPrefix", ResultsWrapper.class,
+                idPrefix, startIndex, limit);
+        String contentSHA = getCurrentContentSHA();
+        return cache.get(contentSHA, k, () -> {
+            ContentSnapshot currentSnapshot = getSnapshot(contentSHA);
+            if (currentSnapshot != null) {
+                return toPagedDTOResults(currentSnapshot.getByIdPrefix(idPrefix), startIndex, limit);
+            }
 
             ResultsWrapper<String> searchHits = this.searchProvider.findByPrefix(contentIndex, CONTENT_TYPE,
                     Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
@@ -278,10 +314,8 @@ public class GitContentManager {
 
             List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
 
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
-        }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+            return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        });
     }
 
     /**
@@ -294,21 +328,99 @@ public class GitContentManager {
      * @param ids the list of content object IDs.
      * @param startIndex the integer start index for pagination.
      * @param limit the limit for pagination.
-     * @return a ResultsWrapper of the matching content.
+     * @return a ResultsWrapper of the matching content, in the order the IDs were provided.
      * @throws ContentManagerException on failure to return the objects.
      */
     public ResultsWrapper<ContentDTO> getContentMatchingIds(final Collection<String> ids,
                                                             final int startIndex, final int limit)
             throws ContentManagerException {
+        List<ContentDTO> matchingContent = getContentByIds(ids);
+        int fromIndex = Math.min(Math.max(startIndex, 0), matchingContent.size());
+        int toIndex = limit < 0 ? matchingContent.size() : Math.min(fromIndex + limit, matchingContent.size());
+        return new ResultsWrapper<>(new ArrayList<>(matchingContent.subList(fromIndex, toIndex)),
+                (long) matchingContent.size());
+    }
+
+    /**
+     *  Get DTO objects for a batch of IDs, in the order the IDs are provided.
+     *
+     *  Objects already in the per-ID cache are returned from there; only the missing IDs are fetched from the data
+     *  store, in as few requests as possible, and the results are added to the per-ID caches.
+     *  IDs which do not match any content are skipped. Do not modify the returned DTO objects.
+     *
+     * @param ids the content object IDs.
+     * @return the matching content DTO objects.
+     * @throws ContentManagerException on failure to return the objects.
+     */
+    public final List<ContentDTO> getContentByIds(final Collection<String> ids) throws ContentManagerException {
+        String contentSHA = getCurrentContentSHA();
+        Map<String, ContentDTO> contentById = new HashMap<>();
+        List<String> uncachedIds = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (null == id || id.isEmpty()) {
+                continue;
+            }
+            ContentDTO content = cache.getIfPresent(contentSHA, contentDTOKey(id));
+            if (content != null) {
+                contentById.put(id, content);
+            } else {
+                uncachedIds.add(id);
+            }
+        }
+
+        for (Content content : getContentDOsByIds(contentSHA, uncachedIds)) {
+            ContentDTO contentDTO = mapper.getDTOByDO(content);
+            if (contentDTO != null) {
+                cache.put(contentSHA, contentDTOKey(content.getId()), contentDTO);
+                contentById.put(content.getId(), contentDTO);
+            }
+        }
+
+        List<ContentDTO> results = new ArrayList<>(contentById.size());
+        for (String id : new LinkedHashSet<>(ids)) {
+            ContentDTO content = contentById.get(id);
+            if (content != null) {
+                results.add(content);
+            }
+        }
+        return results;
+    }
+
+    /**
+     *  Get DO objects for a batch of distinct IDs, using the snapshot or per-ID cache where possible and fetching
+     *  the rest from the search provider in batched terms queries. Newly fetched objects are cached by ID.
+     *
+     * @param contentSHA the content version to look in.
+     * @param ids the distinct content object IDs.
+     * @return the matching content DO objects, in no particular order.
+     * @throws ContentManagerException on failure to return the objects.
+     */
+    private List<Content> getContentDOsByIds(final String contentSHA, final List<String> ids)
+            throws ContentManagerException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ContentSnapshot currentSnapshot = getSnapshot(contentSHA);
+        if (currentSnapshot != null) {
+            return currentSnapshot.getByIds(ids);
+        }
 
-        String k = "getContentMatchingIds~" + getCurrentContentSHA() + "~" + ids.toString() + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
+        List<Content> results = new ArrayList<>(ids.size());
+        List<String> uncachedIds = new ArrayList<>();
+        for (String id : ids) {
+            Content content = cache.getIfPresent(contentSHA, contentDOKey(id));
+            if (content != null) {
+                results.add(content);
+            } else {
+                uncachedIds.add(id);
+            }
+        }
 
+        // Batch the queries to avoid sending overly large terms queries to the search provider.
+        for (List<String> batch : Lists.partition(uncachedIds, MULTI_GET_BATCH_SIZE)) {
             Map<String, AbstractFilterInstruction> finalFilter = Maps.newHashMap();
-            finalFilter.putAll(new ImmutableMap.Builder<String, AbstractFilterInstruction>()
-                                .put(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
-                                    new TermsFilterInstruction(ids))
-                                .build());
+            finalFilter.put(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
+                    new TermsFilterInstruction(batch));
 
             if (getBaseFilters() != null) {
                 finalFilter.putAll(getBaseFilters());
@@ -319,16 +431,19 @@ public class GitContentManager {
                     CONTENT_TYPE,
                     null,
                     null,
-                    startIndex,
-                    limit,
+                    0,
+                    batch.size(),
                     finalFilter
             );
 
-            List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
+            for (Content content : mapper.mapFromStringListToContentList(searchHits.getResults())) {
+                if (content.getId() != null) {
+                    cache.put(contentSHA, contentDOKey(content.getId()), content);
+                    results.add(content);
+                }
+            }
         }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+        return results;
     }
 
     public final ResultsWrapper<ContentDTO> searchForContent(
@@ -524,8 +639,32 @@ public class GitContentManager {
         return finalResults;
     }
 
-    public final ByteArrayOutputStream getFileBytes(final String filename) throws IOException {
-        return database.getFileByCommitSHA(getCurrentContentSHA(), filename);
+    /**
+     * Find a file, such as a figure or document, in the current content version.
+     *
+     * @param path
+     *            - the full path of the file in the content repository.
+     * @return the id of the file's blob, which changes whenever the file does, or null if there is no such file.
+     * @throws IOException
+     *             - if the content version's files cannot be indexed.
+     */
+    public final ObjectId getFileId(final String path) throws IOException {
+        return fileCache.getFileId(getCurrentContentSHA(), path);
+    }
+
+    /**
+     * Get the contents of a file in the content repository.
+     *
+     * The returned array may be cached and shared between requests, so must not be modified.
+     *
+     * @param fileId
+     *            - the id of the file's blob, from {@link #getFileId(String)}.
+     * @return the contents of the file.
+     * @throws IOException
+     *             - if the file cannot be read.
+     */
+    public final byte[] getFileBytes(final ObjectId fileId) throws IOException {
+        return fileCache.getFileBytes(fileId);
     }
 
     public final String getLatestContentSHA() {
@@ -660,6 +799,16 @@ public class GitContentManager {
         return contentDTO;
     }
 
+    /**
+     * Get the cache of objects derived from each content version, so that other per-version caches are dropped
+     * together with the content when the live version changes.
+     *
+     * @return the content cache.
+     */
+    public ContentCache getContentCache() {
+        return cache;
+    }
+
     public String getCurrentContentSHA() {
         GetResponse shaResponse = contentShaCache.getIfPresent(contentIndex);
         try {
@@ -672,13 +821,113 @@ public class GitContentManager {
                         );
                 contentShaCache.put(contentIndex, shaResponse);
             }
-            return (String) shaResponse.getSource().get("version");
+            String contentSHA = (String) shaResponse.getSource().get("version");
+            if (null != contentSHA && !contentSHA.equals(lastSeenContentSHA)) {
+                // The live version has changed, so nothing cached for any other version will be requested again:
+                lastSeenContentSHA = contentSHA;
+                cache.retainOnly(contentSHA);
+                if (snapshotModeEnabled) {
+                    scheduleSnapshotLoad(contentSHA);
+                }
+                if (fileIndexer != null) {
+                    // Index the new version's files now, rather than making the first request for a figure wait:
+                    fileIndexer.submit(() -> fileCache.indexFiles(contentSHA));
+                }
+            }
+            return contentSHA;
         } catch (SegueSearchException e) {
             log.error("Failed to retrieve current content SHA from search provider", e);
             return "unknown";
         }
     }
 
+    /**
+     * Get the in-memory snapshot of the given content version, if snapshot mode is enabled and it has been loaded.
+     *
+     * @param contentSHA the content version required.
+     * @return the snapshot, or null if lookups must go to the search provider.
+     */
+    private ContentSnapshot getSnapshot(final String contentSHA) {
+        ContentSnapshot currentSnapshot = this.snapshot;
+        if (currentSnapshot != null && currentSnapshot.getContentSha().equals(contentSHA)) {
+            return currentSnapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Load a snapshot of a newly live content version in the background, and swap it in once it is complete.
+     *
+     * Until the new snapshot is ready, lookups fall back to the search provider; the previous snapshot is released as
+     * soon as it has been replaced.
+     *
+     * @param contentSHA the content version to load.
+     */
+    private void scheduleSnapshotLoad(final String contentSHA) {
+        snapshotLoader.submit(() -> {
+            if (!contentSHA.equals(lastSeenContentSHA)) {
+                // Superseded by a newer version before we got round to loading it.
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Map<String, Content> contentById = new HashMap<>();
+                // The content for each version is indexed under its SHA, so read that directly rather than via the
+                // live alias which may move while we are reading.
+                searchProvider.scrollAll(contentSHA, CONTENT_TYPE, this.getBaseFilters(), SNAPSHOT_BATCH_SIZE,
+                        batch -> {
+                            for (Content content : mapper.mapFromStringListToContentList(batch)) {
+                                if (content.getId() != null) {
+                                    contentById.put(content.getId(), content);
+                                }
+                            }
+                        });
+
+                ContentSnapshot newSnapshot = new ContentSnapshot(contentSHA, contentById);
+                if (contentSHA.equals(lastSeenContentSHA)) {
+                    this.snapshot = newSnapshot;
+                    log.info(String.format("Loaded snapshot of %d content objects for content SHA (%s) in %dms.",
+                            newSnapshot.size(), contentSHA, System.currentTimeMillis() - start));
+                }
+            } catch (SegueSearchException | RuntimeException e) {
+                log.error(String.format("Failed to load content snapshot for content SHA (%s); "
+                        + "falling back to the search provider.", contentSHA), e);
+            }
+        });
+    }
+
+    /**
+     * @param id the content object ID.
+     * @return the cache key for the DTO with that ID.
+     */
+    private static ContentCache.Key<ContentDTO> contentDTOKey(final String id) {
+        return ContentCache.Key.of("getContentById", ContentDTO.class, id);
+    }
+
+    /**
+     * @param id the content object ID.
+     * @return the cache key for the DO with that ID.
+     */
+    private static ContentCache.Key<Content> contentDOKey(final String id) {
+        return ContentCache.Key.of("getContentDOById", Content.class, id);
+    }
+
+    /**
+     * Map a list of content objects to DTOs, applying pagination.
+     *
+     * @param content the full list of matching content.
+     * @param startIndex the integer start index for pagination.
+     * @param limit the limit for pagination, or -1 for all results.
+     * @return a ResultsWrapper of the requested page of content.
+     */
+    private ResultsWrapper<ContentDTO> toPagedDTOResults(final List<Content> content, final int startIndex,
+                                                         final int limit) {
+        int fromIndex = Math.min(Math.max(startIndex, 0), content.size());
+        int toIndex = limit < 0 ? content.size() : Math.min(fromIndex + limit, content.size());
+        return new ResultsWrapper<>(mapper.getDTOByDOList(content.subList(fromIndex, toIndex)),
+                (long) content.size());
+    }
+
     /**
      * Returns the basic filter configuration.
      *
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.schools;
+
+import uk.ac.cam.cl.dtg.isaac.dos.users.School;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable in-memory index of the school list, for lookups by URN and prefix searches by name or postcode.
+ *
+ * Every word of each open school's name, postcode and URN is held once in a sorted array, which serves as a compact
+ * prefix trie: the words starting with a prefix are one contiguous range found by binary search. A school matches a
+ * query when every word of the query is a prefix of one of the school's words, so "camb acad" finds "Cambridge
+ * Academy" and "cb3" finds every school in CB3.
+ */
+class SchoolIndex {
+    private final Map<String, School> schoolsByUrn;
+    private final School[] searchableSchools;
+    // Sorted words, and for each word the (ascending) positions in searchableSchools of the schools containing it.
+    private final String[] words;
+    private final int[][] schoolsByWord;
+
+    /**
+     * Build an index over a school list.
+     *
+     * @param schools
+     *            - every school, including closed ones; closed schools can be found by URN but not by searching.
+     */
+    SchoolIndex(final Collection<School> schools) {
+        this.schoolsByUrn = new HashMap<>(schools.size() * 2);
+        List<School> searchable = new ArrayList<>(schools.size());
+        TreeMap<String, List<Integer>> postings = new TreeMap<>();
+
+        for (School school : schools) {
+            schoolsByUrn.put(school.getUrn(), school);
+            if (school.isClosed() != null && school.isClosed()) {
+                continue;
+            }
+            int position = searchable.size();
+            searchable.add(school);
+            for (String word : wordsOf(school)) {
+                postings.computeIfAbsent(word, w -> new ArrayList<>()).add(position);
+            }
+        }
+
+        this.searchableSchools = searchable.toArray(new School[0]);
+        this.words = postings.keySet().toArray(new String[0]);
+        this.schoolsByWord = new int[words.length][];
+        int i = 0;
+        for (List<Integer> positions : postings.values()) {
+            schoolsByWord[i++] = positions.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @param urn - the URN of the school.
+     * @return the school, or null if there is no school with that URN.
+     */
+    School getByUrn(final String urn) {
+        return schoolsByUrn.get(urn);
+    }
+
+    /**
+     * Find open schools with a word starting with each word of the query.
+     *
+     * Schools matching more of the query words exactly, rather than just as a prefix, are returned first.
+     *
+     * @param query - school name, postcode or URN, or the start of one.
+     * @param limit - the maximum number of schools to return.
+     * @return the matching schools, best first.
+     */
+    List<School> search(final String query, final int limit) {
+        List<String> queryWords = tokenise(query);
+        if (queryWords.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        BitSet matches = null;
+        int[] exactMatches = new int[searchableSchools.length];
+        for (String queryWord : queryWords) {
+            BitSet wordMatches = new BitSet(searchableSchools.length);
+            int first = firstWordAtLeast(queryWord);
+            for (int w = first; w < words.length && words[w].startsWith(queryWord); w++) {
+                boolean exact = words[w].length() == queryWord.length();
+                for (int position : schoolsByWord[w]) {
+                    wordMatches.set(position);
+                    if (exact) {
+                        exactMatches[position]++;
+                    }
+                }
+            }
+            if (null == matches) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        List<Integer> positions = new ArrayList<>(matches.cardinality());
+        for (int p = matches.nextSetBit(0); p >= 0; p = matches.nextSetBit(p + 1)) {
+            positions.add(p);
+        }
+        positions.sort((a, b) -> exactMatches[b] != exactMatches[a] ? exactMatches[b] - exactMatches[a]
+                : String.CASE_INSENSITIVE_ORDER.compare(nameOf(searchableSchools[a]), nameOf(searchableSchools[b])));
+
+        List<School> results = new ArrayList<>(Math.min(limit, positions.size()));
+        for (int i = 0; i < positions.size() && i < limit; i++) {
+            results.add(searchableSchools[positions.get(i)]);
+        }
+        return results;
+    }
+
+    /**
+     * @param prefix - a lower case word.
+     * @return the position of the first word in the sorted array not before the prefix.
+     */
+    private int firstWordAtLeast(final String prefix) {
+        int position = Arrays.binarySearch(words, prefix);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * @param school - the school.
+     * @return every word a search can match for the school; a postcode can also be matched without its space.
+     */
+    private static Set<String> wordsOf(final School school) {
+        Set<String> schoolWords = new LinkedHashSet<>();
+        schoolWords.addAll(tokenise(school.getName()));
+        List<String> postcodeWords = tokenise(school.getPostcode());
+        schoolWords.addAll(postcodeWords);
+        if (postcodeWords.size() > 1) {
+            schoolWords.add(String.join("", postcodeWords));
+        }
+        schoolWords.addAll(tokenise(school.getUrn()));
+        return schoolWords;
+    }
+
+    /**
+     * @param text - some text, possibly null.
+     * @return the lower case words of the text, ignoring punctuation.
+     */
+    private static List<String> tokenise(final String text) {
+        List<String> tokens = new ArrayList<>();
+        if (null == text) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @param school - the school.
+     * @return the school's name, or the empty string if it has none.
+     */
+    private static String nameOf(final School school) {
+        return null == school.getName() ? "" : school.getName();
+    }
+}
@@ -27,7 +27,10 @@ import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.DEFAULT_RESULTS_LIMIT;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.SCHOOLS_INDEX_BASE;
@@ -44,15 +47,26 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.UNPROCESSED_SEARCH_FIELD_SUFF
  * This class is threadsafe providing that the ISearchProvider given as a dependency is not given to another instance of
  * this class. Normally this class should be treated as a singleton to ensure the ISearchProvider is not shared with
  * another instance of this class.
+ *
+ * The whole school list is loaded from the search index into an in-memory {@link SchoolIndex}, which answers lookups
+ * by URN and searches by name or postcode without a search round trip. The list's modification date is checked every
+ * few minutes and the index rebuilt when it changes. If the index cannot be built, lookups fall back to the search
+ * provider, and the index is not tried again for a minute.
  */
 public class SchoolListReader {
     private static final Logger log = LoggerFactory.getLogger(SchoolListReader.class);
+    private static final long FRESHNESS_CHECK_INTERVAL_MILLISECONDS = TimeUnit.MINUTES.toMillis(5);
+    private static final long FAILED_LOAD_RETRY_INTERVAL_MILLISECONDS = TimeUnit.MINUTES.toMillis(1);
+    private static final int SCHOOL_LOAD_BATCH_SIZE = 5000;
 
     private final ISearchProvider searchProvider;
 
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final String dataSourceModificationDate;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile SchoolIndex schoolIndex;
+    private volatile long nextFreshnessCheckMillis;
+    private volatile String dataSourceModificationDate;
 
     /**
      * SchoolListReader constructor.
@@ -63,16 +77,7 @@ public class SchoolListReader {
     @Inject
     public SchoolListReader(final ISearchProvider searchProvider) {
         this.searchProvider = searchProvider;
-
-        String modificationDate;
-        try {
-            modificationDate = searchProvider.getById(
-                    SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.METADATA.toString(), "sourceFile").getSource().get("lastModified").toString();
-        } catch (SegueSearchException e) {
-            log.error("Failed to retrieve school list modification date", e);
-            modificationDate = "unknown";
-        }
-        dataSourceModificationDate = modificationDate;
+        this.dataSourceModificationDate = this.readDataSourceModificationDate();
     }
 
     /**
@@ -85,6 +90,15 @@ public class SchoolListReader {
      *             - if there is an error access the index of schools.
      */
     public List<School> findSchoolByNameOrPostCode(final String searchQuery) throws UnableToIndexSchoolsException, SegueSearchException {
+        SchoolIndex index = this.getSchoolIndex();
+        if (index != null) {
+            List<School> localResults = index.search(searchQuery, DEFAULT_RESULTS_LIMIT);
+            if (!localResults.isEmpty()) {
+                return localResults;
+            }
+            // Nothing starts with what was typed, so it may be misspelt; only the search provider can match that.
+        }
+
         if (!this.ensureSchoolList()) {
             log.error("Unable to ensure school search cache.");
             throw new UnableToIndexSchoolsException("unable to ensure the cache has been populated");
@@ -133,6 +147,11 @@ public class SchoolListReader {
     public School findSchoolById(final String schoolURN) throws UnableToIndexSchoolsException, JsonParseException,
             JsonMappingException, IOException, SegueSearchException {
 
+        SchoolIndex index = this.getSchoolIndex();
+        if (index != null) {
+            return index.getByUrn(schoolURN);
+        }
+
         if (!this.ensureSchoolList()) {
             log.error("Unable to ensure school search cache.");
             throw new UnableToIndexSchoolsException("unable to ensure the cache has been populated");
@@ -168,6 +187,92 @@ public class SchoolListReader {
 
 
 
+    /**
+     * Get the in-memory school index, building or rebuilding it first if the school list has changed.
+     *
+     * Only one thread checks for changes at a time; other threads carry on using the current index meanwhile. After
+     * a failed load, no thread waits for or tries another load until the retry interval has passed.
+     *
+     * @return the index, or null if it could not be built.
+     */
+    private SchoolIndex getSchoolIndex() {
+        SchoolIndex index = this.schoolIndex;
+        if (System.currentTimeMillis() < nextFreshnessCheckMillis) {
+            return index;
+        }
+
+        if (index != null) {
+            if (!indexLock.tryLock()) {
+                return index;
+            }
+        } else {
+            indexLock.lock();
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (now < nextFreshnessCheckMillis) {
+                return this.schoolIndex;
+            }
+            nextFreshnessCheckMillis = now + FRESHNESS_CHECK_INTERVAL_MILLISECONDS;
+
+            String modificationDate = this.readDataSourceModificationDate();
+            if (this.schoolIndex == null || !modificationDate.equals(this.dataSourceModificationDate)) {
+                this.schoolIndex = this.loadSchoolIndex();
+                this.dataSourceModificationDate = modificationDate;
+            }
+        } catch (SegueSearchException | UnableToIndexSchoolsException e) {
+            log.error("Unable to load the school list into memory; the previous list will be used if there is one.", e);
+            nextFreshnessCheckMillis = System.currentTimeMillis() + FAILED_LOAD_RETRY_INTERVAL_MILLISECONDS;
+        } finally {
+            indexLock.unlock();
+        }
+        return this.schoolIndex;
+    }
+
+    /**
+     * Read every school from the search index into a new in-memory index.
+     *
+     * @return the new index.
+     * @throws SegueSearchException - if the schools cannot be read.
+     * @throws UnableToIndexSchoolsException - if there is no school list in the search index.
+     */
+    private SchoolIndex loadSchoolIndex() throws SegueSearchException, UnableToIndexSchoolsException {
+        if (!this.ensureSchoolList()) {
+            throw new UnableToIndexSchoolsException("unable to ensure the cache has been populated");
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<School> schools = new ArrayList<>();
+        searchProvider.scrollAll(SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.SCHOOL_SEARCH.toString(), null,
+                SCHOOL_LOAD_BATCH_SIZE, batch -> {
+                    for (String schoolString : batch) {
+                        try {
+                            schools.add(mapper.readValue(schoolString, School.class));
+                        } catch (IOException e) {
+                            log.error("Unable to parse the school " + schoolString, e);
+                        }
+                    }
+                });
+        log.info(String.format("Loaded %s schools into memory in %sms.", schools.size(),
+                System.currentTimeMillis() - startTime));
+        return new SchoolIndex(schools);
+    }
+
+    /**
+     * Read the modification date of the school list from the search index.
+     *
+     * @return the date, or "unknown" if it cannot be read.
+     */
+    private String readDataSourceModificationDate() {
+        try {
+            return searchProvider.getById(
+                    SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.METADATA.toString(), "sourceFile").getSource().get("lastModified").toString();
+        } catch (SegueSearchException e) {
+            log.error("Failed to retrieve school list modification date", e);
+            return "unknown";
+        }
+    }
+
     /**
      * Method to help determine freshness of data.
      * @return date when the data source was last modified.
@@ -275,6 +275,18 @@ public interface IUserDataManager {
      */
     void updateUserLastSeen(final RegisteredUser user, final Date date) throws SegueDatabaseException;
 
+    /**
+     * Record when many users were last seen in one update.
+     *
+     * A user's last seen date is never moved backwards, so an older date that arrives late is ignored.
+     *
+     * @param lastSeenByUserId
+     *            - map of user id to the date that user was last seen.
+     * @throws SegueDatabaseException
+     *             if an error occurs
+     */
+    void updateUsersLastSeen(final Map<Long, Date> lastSeenByUserId) throws SegueDatabaseException;
+
     /**
      * Increment the session token of a user object in the data store.
      *
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.users;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.Histogram;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LAST_SEEN_FLUSH_DURATION;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LAST_SEEN_PENDING_USERS;
+
+/**
+ * Collects when users were last seen and writes them to the users table in batches.
+ *
+ * Only the latest date for each user is kept between flushes, so a burst of activity, such as a whole class arriving
+ * at the start of a lesson, becomes a single update on a fixed schedule rather than one update per request. Dates
+ * which fail to be written are kept and retried on the next flush, unless a later date has replaced them.
+ */
+public class LastSeenAggregator implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LastSeenAggregator.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 30;
+
+    private final IUserDataManager database;
+    // Map of user id --> latest last seen date in epoch milliseconds, not yet written.
+    private final ConcurrentMap<Long, Long> pendingLastSeen;
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * Creates an aggregator which flushes on a fixed schedule.
+     *
+     * @param database
+     *            - the user data manager to write last seen dates to.
+     * @param flushIntervalSeconds
+     *            - how often pending last seen dates are written.
+     */
+    public LastSeenAggregator(final IUserDataManager database, final long flushIntervalSeconds) {
+        this.database = database;
+        this.pendingLastSeen = new ConcurrentHashMap<>();
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("last-seen-writer").setDaemon(true).build());
+        this.flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Record that a user has been seen; the date will be written on the next flush.
+     *
+     * @param userId
+     *            - the id of the user.
+     * @param date
+     *            - when the user was seen.
+     */
+    public void recordLastSeen(final Long userId, final Date date) {
+        Validate.notNull(userId);
+        Validate.notNull(date);
+        pendingLastSeen.merge(userId, date.getTime(), Math::max);
+        LAST_SEEN_PENDING_USERS.set(pendingLastSeen.size());
+    }
+
+    /**
+     * Write all pending last seen dates in one batched update.
+     *
+     * @throws SegueDatabaseException
+     *             - if the update fails; the dates are kept to be retried.
+     */
+    public synchronized void flush() throws SegueDatabaseException {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> flushing = new HashMap<>(pendingLastSeen);
+        Map<Long, Date> lastSeenByUserId = new HashMap<>();
+        flushing.forEach((userId, millis) -> lastSeenByUserId.put(userId, new Date(millis)));
+
+        Histogram.Timer timer = LAST_SEEN_FLUSH_DURATION.startTimer();
+        try {
+            database.updateUsersLastSeen(lastSeenByUserId);
+        } finally {
+            timer.observeDuration();
+        }
+
+        // Only forget dates which have not been replaced by a later one while we were writing:
+        flushing.forEach(pendingLastSeen::remove);
+        LAST_SEEN_PENDING_USERS.set(pendingLastSeen.size());
+    }
+
+    /**
+     * Stop the schedule and write anything still pending.
+     */
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(DEFAULT_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * Flush, logging rather than throwing any failure, for use on the scheduler where an exception would stop it.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SegueDatabaseException | RuntimeException e) {
+            log.error(String.format("Unable to update last seen dates for %s users; will retry.",
+                    pendingLastSeen.size()), e);
+        }
+    }
+}
@@ -61,6 +61,8 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
     private static final String POSTGRES_EXCEPTION_MESSAGE = "Postgres exception";
     private static final String JSONB_PROCESSING_ERROR_MESSAGE = "Postgres JSONb processing exception";
+    // Keeps each batched last seen update well under the limit on bind parameters per statement.
+    private static final int LAST_SEEN_UPDATE_BATCH_SIZE = 1000;
 
     private final PostgresSqlDb database;
     private final ObjectMapper jsonMapper;
@@ -665,6 +667,38 @@ public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
         }
     }
 
+    @Override
+    public void updateUsersLastSeen(final Map<Long, Date> lastSeenByUserId) throws SegueDatabaseException {
+        Validate.notNull(lastSeenByUserId);
+        if (lastSeenByUserId.isEmpty()) {
+            return;
+        }
+
+        // Update the users in id order, so concurrent flushes from several nodes take their row locks in the same
+        // order rather than deadlocking:
+        List<Entry<Long, Date>> entries = new ArrayList<>(lastSeenByUserId.entrySet());
+        entries.sort(Entry.comparingByKey());
+        try (Connection conn = database.getDatabaseConnection()) {
+            for (int start = 0; start < entries.size(); start += LAST_SEEN_UPDATE_BATCH_SIZE) {
+                List<Entry<Long, Date>> batch =
+                        entries.subList(start, Math.min(start + LAST_SEEN_UPDATE_BATCH_SIZE, entries.size()));
+                String query = "UPDATE users SET last_seen = GREATEST(users.last_seen, seen.last_seen) FROM (VALUES "
+                        + String.join(",", Collections.nCopies(batch.size(), "(?::bigint, ?::timestamp)"))
+                        + ") AS seen(id, last_seen) WHERE users.id = seen.id";
+                try (PreparedStatement pst = conn.prepareStatement(query)) {
+                    int index = 1;
+                    for (Entry<Long, Date> entry : batch) {
+                        pst.setLong(index++, entry.getKey());
+                        pst.setTimestamp(index++, new Timestamp(entry.getValue().getTime()));
+                    }
+                    pst.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException(POSTGRES_EXCEPTION_MESSAGE, e);
+        }
+    }
+
     @Override
     public void incrementSessionToken(RegisteredUser user) throws SegueDatabaseException {
         Validate.notNull(user);
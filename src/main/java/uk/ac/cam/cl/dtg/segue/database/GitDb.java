@@ -36,6 +36,7 @@ import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -193,6 +194,75 @@ public class GitDb {
         return out;
     }
 
+    /**
+     * Index every file in a commit by its path, so files can be found without walking the tree again.
+     *
+     * @param sha
+     *            - the version to index.
+     * @return a map from the full path of each file to the id of its blob, or null if the commit cannot be found.
+     * @throws IOException
+     *             - if we cannot access the repo location.
+     */
+    public Map<String, ObjectId> getFileIdsByCommitSHA(final String sha) throws IOException {
+        Validate.notBlank(sha);
+
+        Repository repository = gitHandle.getRepository();
+        repository.scanForRepoChanges();
+
+        ObjectId commitId = repository.resolve(sha);
+        if (null == commitId) {
+            log.error("Unable to index files - Unable to locate resource with sha: " + sha);
+            return null;
+        }
+
+        Map<String, ObjectId> fileIds = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevCommit commit = revWalk.parseCommit(commitId);
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                fileIds.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        }
+        return fileIds;
+    }
+
+    /**
+     * Read the whole of a file from the repository.
+     *
+     * @param fileId
+     *            - the id of the file's blob.
+     * @return the contents of the file, which may be shared with JGit's own caches and must not be modified.
+     * @throws IOException
+     *             - if the blob cannot be read.
+     */
+    public byte[] getFileBytesById(final ObjectId fileId) throws IOException {
+        ObjectLoader loader = gitHandle.getRepository().open(fileId, Constants.OBJ_BLOB);
+        if (!loader.isLarge()) {
+            return loader.getCachedBytes();
+        }
+        // JGit will not load a blob above its streaming threshold in one piece, so copy it out as a stream:
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(loader.getSize(), Integer.MAX_VALUE - 8));
+        loader.copyTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Find the size of a file in the repository without reading it.
+     *
+     * @param fileId
+     *            - the id of the file's blob.
+     * @return the size of the file in bytes.
+     * @throws IOException
+     *             - if the blob cannot be found.
+     */
+    public long getFileSizeById(final ObjectId fileId) throws IOException {
+        try (ObjectReader reader = gitHandle.getRepository().newObjectReader()) {
+            return reader.getObjectSize(fileId, Constants.OBJ_BLOB);
+        }
+    }
+
     /**
      * This method will configure a treewalk object that can be used to navigate the git repository.
      * 
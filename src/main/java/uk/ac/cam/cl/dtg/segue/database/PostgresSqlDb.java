@@ -20,6 +20,7 @@ import org.apache.commons.dbcp2.BasicDataSource;
 
 import java.io.Closeable;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -76,6 +77,19 @@ public class PostgresSqlDb implements Closeable {
         return dataSource.getConnection();
     }
 
+    /**
+     * Open a new connection outside the pool, for long-lived uses such as LISTEN which would otherwise hold on to a
+     * pooled connection indefinitely and have it removed as abandoned.
+     *
+     * The caller is responsible for closing the connection.
+     *
+     * @return a new database connection.
+     * @throws SQLException if the connection cannot be opened.
+     */
+    public Connection getDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    }
+
     @Override
     public void close() {
 
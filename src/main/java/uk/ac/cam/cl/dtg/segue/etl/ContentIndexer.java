@@ -3,16 +3,18 @@ package uk.ac.cam.cl.dtg.segue.etl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.Validate;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.elasticsearch.action.ActionRequestValidationException;
@@ -49,6 +51,7 @@ import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 import jakarta.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
@@ -58,15 +61,21 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Maps.immutableEntry;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CONTENT_INDEX_STAGE_DURATION;
 
 /**
  * Created by Ian on 17/10/2016.
@@ -82,6 +91,13 @@ public class ContentIndexer {
 
     private static final int MEDIA_FILE_SIZE_LIMIT = 300 * 1024; // Bytes
     private static final int NANOSECONDS_IN_A_MILLISECOND = 1000000;
+    private static final double NANOSECONDS_IN_A_SECOND = 1e9;
+
+    // Files are parsed and validated on this many threads, and sent to the search provider in batches of this many
+    // objects, with at most this many bulk requests in flight at once:
+    private static final int ETL_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int CONTENT_BULK_BATCH_SIZE = 500;
+    private static final int MAX_CONCURRENT_BULK_REQUESTS = 4;
 
     @Inject
     public ContentIndexer(GitDb database, ElasticSearchIndexer es, ContentMapper mapper) {
@@ -129,6 +145,7 @@ public class ContentIndexer {
             totalStartTime = System.nanoTime();
             buildGitContentIndex(version, true, contentCache, tagsList, allUnits, publishedUnits, indexProblemCache);
             endTime = System.nanoTime();
+            recordStageDuration("load", totalStartTime, endTime);
 
             log.info("Finished populating Git content cache, took: " + ((endTime - totalStartTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
             log.info("Beginning to record content errors");
@@ -136,12 +153,14 @@ public class ContentIndexer {
             startTime = System.nanoTime();
             recordContentErrors(version, contentCache, indexProblemCache);
             endTime = System.nanoTime();
+            recordStageDuration("validate", startTime, endTime);
 
             log.info("Finished recording content errors, took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
 
             startTime = System.nanoTime();
             buildElasticSearchIndex(version, contentCache, tagsList, allUnits, publishedUnits, indexProblemCache);
             endTime = System.nanoTime();
+            recordStageDuration("index", startTime, endTime);
             log.info("Finished indexing git content cache, took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
 
             // Verify the version requested is now available
@@ -150,6 +169,7 @@ public class ContentIndexer {
                 throw new Exception(String.format("Failed to index version %s. Don't know why.", version));
             }
 
+            recordStageDuration("total", totalStartTime, endTime);
             log.info("Finished indexing version " + version + ", took: " + ((endTime - totalStartTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
 
         } finally {
@@ -200,131 +220,33 @@ public class ContentIndexer {
             TreeWalk treeWalk = database.getTreeWalk(sha, ".json");
             log.info("Populating git content cache based on sha " + sha + " ...");
 
-            // Traverse the git repository looking for the .json files
-            while (treeWalk.next()) {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
-                loader.copyTo(out);
-
-                // setup object mapper to use preconfigured deserializer
-                // module. Required to deal with type polymorphism
-                ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
-
-                Content content;
-                try {
-                    content = (Content) objectMapper.readValue(out.toString(), ContentBase.class);
-
-                    // check if we only want to index published content
-                    if (!includeUnpublished && !content.getPublished()) {
-                        log.debug("Skipping unpublished content: " + content.getId());
-                        continue;
-                    }
+            // Traverse the git repository looking for the .json files, reading and parsing them concurrently. The
+            // results are still added to the cache in the order they appear in the tree, so that when two files
+            // define the same ID it is always the same one that wins.
+            ExecutorService executor = newExecutor("content-etl-parser-%d");
+            try {
+                List<Future<ParsedContentFile>> parsedFiles = Lists.newArrayList();
+                while (treeWalk.next()) {
+                    String path = treeWalk.getPathString();
+                    ObjectId objectId = treeWalk.getObjectId(0);
+                    parsedFiles.add(executor.submit(
+                            () -> this.parseContentFile(repository, path, objectId, includeUnpublished)));
+                }
 
-                    content = this.augmentChildContent(content, treeWalk.getPathString(), null, content.getPublished());
-
-                    if (null != content) {
-                        // Walk the content for site-wide searchable fields
-                        StringBuilder searchableContentBuilder = new StringBuilder();
-                        this.collateSearchableContent(content, searchableContentBuilder);
-                        content.setSearchableContent(searchableContentBuilder.toString());
-
-                        // add children (and parent) from flattened Set to
-                        // cache if they have ids
-                        for (Content flattenedContent : this.flattenContentObjects(content)) {
-                            if (flattenedContent.getId() == null) {
-                                continue;
-                            }
-
-                            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
-                            // in the top-level children array.
-                            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
-                            // This also seems to be the only time we can prevent a file from being indexed entirely.
-                            if (flattenedContent instanceof IsaacQuiz) {
-                                List<ContentBase> children = flattenedContent.getChildren();
-                                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
-                                    log.debug("IsaacQuiz (" + flattenedContent.getId()
-                                           + ") contains top-level non-quiz sections. Skipping.");
-                                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
-                                           + "content type among quiz sections. Quizzes can only contain quiz sections "
-                                           + "in the top-level children array.", indexProblemCache);
-                                    continue;
-                                }
-                            }
-
-                            if (flattenedContent.getId().length() > 512) {
-                                log.debug("Content ID too long: " + flattenedContent.getId());
-                                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
-                                continue;
-                            }
-
-                            if (flattenedContent.getId().contains(".")) {
-                                // Otherwise, duplicate IDs with different content,
-                                // therefore log an error
-                                log.debug("Resource with invalid ID (" + content.getId()
-                                        + ") detected in cache. Skipping " + treeWalk.getPathString());
-
-                                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
-                                        + flattenedContent.getId() + " found in file " + treeWalk.getPathString()
-                                        + ". Must not contain restricted characters.", indexProblemCache);
-                                continue;
-                            }
-
-                            // check if we have seen this key before if
-                            // we have then we don't want to add it
-                            // again
-                            if (!contentCache.containsKey(flattenedContent.getId())) {
-                                // It must be new so we can add it
-                                log.debug("Loading into cache: " + flattenedContent.getId() + "("
-                                        + flattenedContent.getType() + ")" + " from " + treeWalk.getPathString());
-                                contentCache.put(flattenedContent.getId(), flattenedContent);
-                                registerTags(flattenedContent.getTags(), tagsList);
-
-                                // If this is a numeric question, extract any
-                                // units from its answers.
-
-                                if (flattenedContent instanceof IsaacNumericQuestion) {
-                                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
-                                }
-
-                                continue; // our work here is done
-                            }
-
-                            // shaCache contains key already, compare the
-                            // content
-                            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
-                                // content is the same therefore it is just
-                                // reuse of a content object so that is
-                                // fine.
-                                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping "
-                                        + treeWalk.getPathString());
-                                continue;
-                            }
-
-                            // Otherwise, duplicate IDs with different content,
-                            // therefore log an error
-                            log.debug("Resource with duplicate ID (" + content.getId()
-                                    + ") detected in cache. Skipping " + treeWalk.getPathString());
-                            this.registerContentProblem(flattenedContent, String.format(
-                                    "Index failure - Duplicate ID (%s) found in files (%s) and (%s): only one will be available.",
-                                    content.getId(), treeWalk.getPathString(), contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()),
+                for (Future<ParsedContentFile> parsedFile : parsedFiles) {
+                    ParsedContentFile file = awaitResult(parsedFile);
+                    if (null != file.problem) {
+                        this.registerContentProblem(file.problemContent(), file.problem, indexProblemCache);
+                    } else if (null != file.content) {
+                        this.addToContentCache(file, contentCache, tagsList, allUnits, publishedUnits,
                                 indexProblemCache);
-                        }
                     }
-                } catch (JsonMappingException e) {
-                    log.debug(String.format("Unable to parse the json file found %s as a content object. "
-                            + "Skipping file due to error: \n %s", treeWalk.getPathString(), e.getMessage()));
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent, "Index failure - Unable to parse json file found - "
-                            + treeWalk.getPathString() + ". The following error occurred: " + e.getMessage(), indexProblemCache);
-                } catch (IOException e) {
-                    log.error("IOException while trying to parse " + treeWalk.getPathString(), e);
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent,
-                            "Index failure - Unable to read the json file found - " + treeWalk.getPathString()
-                                    + ". The following error occurred: " + e.getMessage(), indexProblemCache);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ContentManagerException("Interrupted while populating git content cache.");
+            } finally {
+                executor.shutdownNow();
             }
 
             repository.close();
@@ -338,6 +260,155 @@ public class ContentIndexer {
         }
     }
 
+    /**
+     * Read, parse and augment a single content file, ready to be added to the content cache.
+     *
+     * This is run concurrently for many files, so must not touch any of the shared indexing state.
+     *
+     * @param repository
+     *            - the git repository containing the file.
+     * @param path
+     *            - the path of the file in the repository.
+     * @param objectId
+     *            - the blob holding the file.
+     * @param includeUnpublished
+     *            - whether unpublished content should be indexed.
+     * @return the parsed file, which holds no content if the file is skipped or has a problem.
+     */
+    private ParsedContentFile parseContentFile(final Repository repository, final String path,
+                                               final ObjectId objectId, final boolean includeUnpublished) {
+        // setup object mapper to use preconfigured deserializer
+        // module. Required to deal with type polymorphism
+        ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
+
+        try (InputStream in = repository.open(objectId).openStream()) {
+            Content content = (Content) objectMapper.readValue(in, ContentBase.class);
+
+            // check if we only want to index published content
+            if (!includeUnpublished && !content.getPublished()) {
+                log.debug("Skipping unpublished content: " + content.getId());
+                return new ParsedContentFile(path, null, null);
+            }
+
+            content = this.augmentChildContent(content, path, null, content.getPublished());
+
+            if (null != content) {
+                // Walk the content for site-wide searchable fields
+                StringBuilder searchableContentBuilder = new StringBuilder();
+                this.collateSearchableContent(content, searchableContentBuilder);
+                content.setSearchableContent(searchableContentBuilder.toString());
+            }
+            return new ParsedContentFile(path, content, null);
+
+        } catch (JsonMappingException e) {
+            log.debug(String.format("Unable to parse the json file found %s as a content object. "
+                    + "Skipping file due to error: \n %s", path, e.getMessage()));
+            return new ParsedContentFile(path, null, "Index failure - Unable to parse json file found - "
+                    + path + ". The following error occurred: " + e.getMessage());
+        } catch (IOException e) {
+            log.error("IOException while trying to parse " + path, e);
+            return new ParsedContentFile(path, null, "Index failure - Unable to read the json file found - "
+                    + path + ". The following error occurred: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add the content from a parsed file, and all of its children with ids, to the content cache.
+     *
+     * @param file
+     *            - a successfully parsed content file.
+     */
+    private void addToContentCache(final ParsedContentFile file,
+                                   final Map<String, Content> contentCache,
+                                   final Set<String> tagsList,
+                                   final Map<String, String> allUnits,
+                                   final Map<String, String> publishedUnits,
+                                   final Map<Content, List<String>> indexProblemCache) {
+        Content content = file.content;
+
+        // add children (and parent) from flattened Set to
+        // cache if they have ids
+        for (Content flattenedContent : this.flattenContentObjects(content)) {
+            if (flattenedContent.getId() == null) {
+                continue;
+            }
+
+            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
+            // in the top-level children array.
+            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
+            // This also seems to be the only time we can prevent a file from being indexed entirely.
+            if (flattenedContent instanceof IsaacQuiz) {
+                List<ContentBase> children = flattenedContent.getChildren();
+                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
+                    log.debug("IsaacQuiz (" + flattenedContent.getId()
+                           + ") contains top-level non-quiz sections. Skipping.");
+                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
+                           + "content type among quiz sections. Quizzes can only contain quiz sections "
+                           + "in the top-level children array.", indexProblemCache);
+                    continue;
+                }
+            }
+
+            if (flattenedContent.getId().length() > 512) {
+                log.debug("Content ID too long: " + flattenedContent.getId());
+                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
+                continue;
+            }
+
+            if (flattenedContent.getId().contains(".")) {
+                // Otherwise, duplicate IDs with different content,
+                // therefore log an error
+                log.debug("Resource with invalid ID (" + content.getId()
+                        + ") detected in cache. Skipping " + file.path);
+
+                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
+                        + flattenedContent.getId() + " found in file " + file.path
+                        + ". Must not contain restricted characters.", indexProblemCache);
+                continue;
+            }
+
+            // check if we have seen this key before if
+            // we have then we don't want to add it
+            // again
+            if (!contentCache.containsKey(flattenedContent.getId())) {
+                // It must be new so we can add it
+                log.debug("Loading into cache: " + flattenedContent.getId() + "("
+                        + flattenedContent.getType() + ")" + " from " + file.path);
+                contentCache.put(flattenedContent.getId(), flattenedContent);
+                registerTags(flattenedContent.getTags(), tagsList);
+
+                // If this is a numeric question, extract any
+                // units from its answers.
+
+                if (flattenedContent instanceof IsaacNumericQuestion) {
+                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
+                }
+
+                continue; // our work here is done
+            }
+
+            // shaCache contains key already, compare the
+            // content
+            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
+                // content is the same therefore it is just
+                // reuse of a content object so that is
+                // fine.
+                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping "
+                        + file.path);
+                continue;
+            }
+
+            // Otherwise, duplicate IDs with different content,
+            // therefore log an error
+            log.debug("Resource with duplicate ID (" + content.getId()
+                    + ") detected in cache. Skipping " + file.path);
+            this.registerContentProblem(flattenedContent, String.format(
+                    "Index failure - Duplicate ID (%s) found in files (%s) and (%s): only one will be available.",
+                    content.getId(), file.path, contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()),
+                indexProblemCache);
+        }
+    }
+
     /**
      * Augments all child objects recursively to include additional information.
      *
@@ -648,21 +719,29 @@ public class ContentIndexer {
 
         // setup object mapper to use pre-configured deserializer module.
         // Required to deal with type polymorphism
-        List<Map.Entry<String, String>> contentToIndex = Lists.newArrayList();
         ObjectMapper objectMapper = mapper.generateNewPreconfiguredContentMapper();
-        for (Content content : gitCache.values()) {
-            try {
-                contentToIndex.add(immutableEntry(content.getId(), objectMapper.writeValueAsString(content)));
-            } catch (JsonProcessingException e) {
-                log.error("Unable to serialize content object: " + content.getId()
-                        + " for indexing with the search provider.", e);
-                this.registerContentProblem(content, "Search Index Error: " + content.getId()
-                        + content.getCanonicalSourceFile() + " Exception: " + e.toString(), indexProblemCache);
-            }
-        }
 
         long startTime, endTime;
 
+        // Content is serialised a batch at a time as it is sent, so the whole corpus is never held as JSON at once.
+        // Any content which cannot be serialised is recorded as a content error, so this must happen first:
+        Iterator<List<Map.Entry<String, String>>> contentBatches = Iterators.transform(
+                Iterators.partition(gitCache.values().iterator(), CONTENT_BULK_BATCH_SIZE),
+                batch -> this.serialiseContentBatch(objectMapper, batch, indexProblemCache));
+        try {
+            startTime = System.nanoTime();
+            es.bulkIndexWithIDs(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), contentBatches,
+                    MAX_CONCURRENT_BULK_REQUESTS);
+            endTime = System.nanoTime();
+            recordStageDuration("index_content", startTime, endTime);
+            log.info("Bulk indexing content took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
+            log.info("Search index request sent for: " + sha);
+        } catch (SegueSearchException e) {
+            log.error("Error whilst trying to perform bulk index operation.", e);
+        } catch (ActionRequestValidationException e) {
+            log.error("Error validating content during index",e);
+        }
+
         try {
             es.indexObject(sha, CONTENT_INDEX_TYPE.METADATA.toString(),
                     objectMapper.writeValueAsString(ImmutableMap.of("version", sha, "created", new Date().toString())), "general");
@@ -687,6 +766,7 @@ public class ContentIndexer {
                 }
             }).filter(Objects::nonNull).collect(Collectors.toList()));
             endTime = System.nanoTime();
+            recordStageDuration("index_units", startTime, endTime);
             log.info("Bulk unit indexing took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
 
             startTime = System.nanoTime();
@@ -705,25 +785,39 @@ public class ContentIndexer {
                 }
             }).filter(Objects::nonNull).collect(Collectors.toList()));
             endTime = System.nanoTime();
+            recordStageDuration("index_errors", startTime, endTime);
             log.info("Bulk content error indexing took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
         } catch (JsonProcessingException e) {
             log.error("Unable to serialise sha or tags");
         } catch (SegueSearchException e) {
             log.error("Unable to index sha, tags, units or content errors.");
         }
+    }
 
-
-        try {
-            startTime = System.nanoTime();
-            es.bulkIndexWithIDs(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), contentToIndex);
-            endTime = System.nanoTime();
-            log.info("Bulk indexing content took: " + ((endTime - startTime) / NANOSECONDS_IN_A_MILLISECOND) + "ms");
-            log.info("Search index request sent for: " + sha);
-        } catch (SegueSearchException e) {
-            log.error("Error whilst trying to perform bulk index operation.", e);
-        } catch (ActionRequestValidationException e) {
-            log.error("Error validating content during index",e);
+    /**
+     * Serialise a batch of content objects for indexing, recording any which cannot be serialised as content errors.
+     *
+     * @param objectMapper
+     *            - preconfigured content mapper to serialise with.
+     * @param batch
+     *            - the content objects to serialise.
+     * @return the serialised content keyed by id.
+     */
+    private List<Map.Entry<String, String>> serialiseContentBatch(final ObjectMapper objectMapper,
+                                                                 final List<Content> batch,
+                                                                 final Map<Content, List<String>> indexProblemCache) {
+        List<Map.Entry<String, String>> contentToIndex = Lists.newArrayListWithCapacity(batch.size());
+        for (Content content : batch) {
+            try {
+                contentToIndex.add(immutableEntry(content.getId(), objectMapper.writeValueAsString(content)));
+            } catch (JsonProcessingException e) {
+                log.error("Unable to serialize content object: " + content.getId()
+                        + " for indexing with the search provider.", e);
+                this.registerContentProblem(content, "Search Index Error: " + content.getId()
+                        + content.getCanonicalSourceFile() + " Exception: " + e.toString(), indexProblemCache);
+            }
         }
+        return contentToIndex;
     }
 
 
@@ -767,12 +861,30 @@ public class ContentIndexer {
                 }
             }
 
-            // content type specific checks
-            try {
-                this.recordContentTypeSpecificError(sha, c, indexProblemCache);
-            } catch (NullPointerException e) {
-                log.warn("Failed processing content errors in file: " + c.getCanonicalSourceFile());
+        }
+
+        // Content type specific checks are independent of each other, and some look up files in git, so run them
+        // concurrently:
+        ExecutorService executor = newExecutor("content-etl-validator-%d");
+        try {
+            List<Future<?>> checks = Lists.newArrayList();
+            for (Content c : allObjectsSeen) {
+                checks.add(executor.submit(() -> {
+                    try {
+                        this.recordContentTypeSpecificError(sha, c, indexProblemCache);
+                    } catch (NullPointerException e) {
+                        log.warn("Failed processing content errors in file: " + c.getCanonicalSourceFile());
+                    }
+                }));
+            }
+            for (Future<?> check : checks) {
+                awaitResult(check);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while recording content errors for " + sha);
+        } finally {
+            executor.shutdownNow();
         }
 
         // Find all references to missing content.
@@ -861,6 +973,70 @@ public class ContentIndexer {
 
     // GitContentManager ensureCache
 
+    /**
+     * @param nameFormat - the name format for the threads, including a %d for the thread number.
+     * @return a new thread pool for one stage of indexing, which must be shut down when the stage is complete.
+     */
+    private static ExecutorService newExecutor(final String nameFormat) {
+        return Executors.newFixedThreadPool(ETL_THREADS,
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * Wait for a task, rethrowing anything it threw as if it had run on this thread.
+     *
+     * @param future - the task to wait for.
+     * @param <T> - the result type of the task.
+     * @return the result of the task.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static <T> T awaitResult(final Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @param stage - the stage of indexing.
+     * @param startTime - when the stage started, from System.nanoTime().
+     * @param endTime - when the stage ended, from System.nanoTime().
+     */
+    private static void recordStageDuration(final String stage, final long startTime, final long endTime) {
+        CONTENT_INDEX_STAGE_DURATION.labels(stage).observe((endTime - startTime) / NANOSECONDS_IN_A_SECOND);
+    }
+
+    /**
+     * The outcome of reading and parsing one content file.
+     */
+    private static final class ParsedContentFile {
+        private final String path;
+        private final Content content;
+        private final String problem;
+
+        /**
+         * @param path - the path of the file in the repository.
+         * @param content - the augmented content, or null if the file was skipped or could not be parsed.
+         * @param problem - why the file could not be parsed, or null if there was no problem.
+         */
+        private ParsedContentFile(final String path, @Nullable final Content content, @Nullable final String problem) {
+            this.path = path;
+            this.content = content;
+            this.problem = problem;
+        }
+
+        /**
+         * @return a placeholder content object to record the file's problem against.
+         */
+        private Content problemContent() {
+            Content dummyContent = new Content();
+            dummyContent.setCanonicalSourceFile(path);
+            return dummyContent;
+        }
+    }
+
     private String collateExpandableChildren(Content content) {
         StringBuilder ret = new StringBuilder();
         for (Content child : flattenContentObjects(content)) {
@@ -6,9 +6,12 @@ import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
 import org.apache.http.client.config.RequestConfig;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -21,6 +24,7 @@ import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetIndexResponse;
 import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.xcontent.XContentBuilder;
 import org.elasticsearch.xcontent.XContentFactory;
 import org.elasticsearch.xcontent.XContentType;
@@ -30,6 +34,7 @@ import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.search.ElasticSearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 
+import jakarta.annotation.Nullable;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,6 +42,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 /**
@@ -86,30 +93,42 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
         BulkRequest bulkRequest = buildBulkRequest.apply(typedIndex);
 
         try {
-            // increase default timeouts
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setConnectTimeout(180000)
-                    .setSocketTimeout(180000)
-                    .build();
-            RequestOptions options = RequestOptions.DEFAULT.toBuilder()
-                    .setRequestConfig(requestConfig)
-                    .build();
-
             // execute bulk request
-            BulkResponse bulkResponse = client.bulk(bulkRequest.timeout("180s").setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE), options);
-            if (bulkResponse.hasFailures()) {
-                // process failures by iterating through each bulk response item
-                for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
-                    if (itemResponse.isFailed()) {
-                        log.error("Unable to index the following item: " + itemResponse.getFailureMessage());
-                    }
-                }
-            }
+            BulkResponse bulkResponse = client.bulk(bulkRequest.timeout("180s").setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE), bulkRequestOptions());
+            logBulkFailures(bulkResponse);
         } catch (ElasticsearchException | IOException e) {
             throw new SegueSearchException("Error during bulk index operation.", e);
         }
     }
 
+    /**
+     * @return request options with timeouts long enough for large bulk requests.
+     */
+    private static RequestOptions bulkRequestOptions() {
+        // increase default timeouts
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(180000)
+                .setSocketTimeout(180000)
+                .build();
+        return RequestOptions.DEFAULT.toBuilder()
+                .setRequestConfig(requestConfig)
+                .build();
+    }
+
+    /**
+     * @param bulkResponse - the response to a bulk request, which may have failed to index some items.
+     */
+    private static void logBulkFailures(final BulkResponse bulkResponse) {
+        if (bulkResponse.hasFailures()) {
+            // process failures by iterating through each bulk response item
+            for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
+                if (itemResponse.isFailed()) {
+                    log.error("Unable to index the following item: " + itemResponse.getFailureMessage());
+                }
+            }
+        }
+    }
+
     void bulkIndex(final String indexBase, final String indexType, final List<String> dataToIndex)
             throws SegueSearchException {
         executeBulkIndexRequest(indexBase, indexType, typedIndex -> {
@@ -135,6 +154,97 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
     }
 
 
+    /**
+     * Index a large number of items a batch at a time, with several bulk requests in flight at once.
+     *
+     * The index is not refreshed until every batch has been sent, so the batches can be produced lazily as they are
+     * needed rather than all being held in memory.
+     *
+     * @param indexBase - the base name of the index, usually the content version.
+     * @param indexType - the type of the items.
+     * @param batches - batches of items to index, keyed by their ids.
+     * @param maxConcurrentRequests - the most bulk requests to have in flight at once.
+     * @throws SegueSearchException if a bulk request fails or the index cannot be refreshed.
+     */
+    void bulkIndexWithIDs(final String indexBase, final String indexType,
+                          final Iterator<List<Map.Entry<String, String>>> batches, final int maxConcurrentRequests)
+            throws SegueSearchException {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+
+        // check index already exists if not execute any initialisation steps.
+        if (!this.hasIndex(indexBase, indexType)) {
+            this.sendMappingCorrections(typedIndex, indexType);
+        }
+
+        this.setRefreshInterval(typedIndex, "-1");
+        try {
+            Semaphore requestsInFlight = new Semaphore(maxConcurrentRequests);
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            ActionListener<BulkResponse> listener = new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(final BulkResponse bulkResponse) {
+                    logBulkFailures(bulkResponse);
+                    requestsInFlight.release();
+                }
+
+                @Override
+                public void onFailure(final Exception e) {
+                    failure.compareAndSet(null, e);
+                    requestsInFlight.release();
+                }
+            };
+
+            while (batches.hasNext() && null == failure.get()) {
+                List<Map.Entry<String, String>> batch = batches.next();
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                BulkRequest bulkRequest = new BulkRequest();
+                batch.forEach(itemToIndex -> bulkRequest.add(
+                        new IndexRequest(typedIndex).id(itemToIndex.getKey()).source(itemToIndex.getValue(), XContentType.JSON)
+                ));
+                requestsInFlight.acquire();
+                client.bulkAsync(bulkRequest.timeout("180s"), bulkRequestOptions(), listener);
+            }
+
+            // Wait for the last requests to complete:
+            requestsInFlight.acquire(maxConcurrentRequests);
+            if (null != failure.get()) {
+                throw new SegueSearchException("Error during bulk index operation.", failure.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SegueSearchException("Interrupted during bulk index operation.", e);
+        } finally {
+            // Restore the default refresh interval, and make everything indexed so far searchable:
+            this.setRefreshInterval(typedIndex, null);
+        }
+    }
+
+    /**
+     * @param typedIndex - the index to change.
+     * @param refreshInterval - the new refresh interval, "-1" to disable refreshing, or null for the default; when
+     *                        set back to the default the index is also refreshed immediately.
+     * @throws SegueSearchException if the index settings cannot be changed.
+     */
+    private void setRefreshInterval(final String typedIndex, @Nullable final String refreshInterval)
+            throws SegueSearchException {
+        try {
+            Settings.Builder settings = Settings.builder();
+            if (null == refreshInterval) {
+                settings.putNull("index.refresh_interval");
+            } else {
+                settings.put("index.refresh_interval", refreshInterval);
+            }
+            client.indices().putSettings(new UpdateSettingsRequest(typedIndex).settings(settings), RequestOptions.DEFAULT);
+            if (null == refreshInterval) {
+                client.indices().refresh(new RefreshRequest(typedIndex), bulkRequestOptions());
+            }
+        } catch (ElasticsearchException | IOException e) {
+            throw new SegueSearchException("Error changing the refresh interval of " + typedIndex, e);
+        }
+    }
+
     void indexObject(final String indexBase, final String indexType, final String content, final String uniqueId)
             throws SegueSearchException {
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
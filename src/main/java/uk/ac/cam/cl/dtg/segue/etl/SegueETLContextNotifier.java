@@ -3,9 +3,13 @@ package uk.ac.cam.cl.dtg.segue.etl;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.PrometheusMetricsExporter;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
+import java.io.IOException;
 
 /**
  * SegueContextListener
@@ -31,6 +35,17 @@ public class SegueETLContextNotifier implements ServletContextListener {
         log.info("Segue Application Informed of server start up. Registering listeners.");
         Injector injector = ETLConfigurationModule.getGuiceInjector();
 
+        // Export indexing metrics, if a port has been configured for them:
+        String metricsPort = injector.getInstance(PropertiesLoader.class).getProperty(Constants.ETL_METRICS_EXPORT_PORT);
+        if (null != metricsPort) {
+            try {
+                log.info("Creating MetricsExporter on port (" + metricsPort + ")");
+                new PrometheusMetricsExporter(Integer.parseInt(metricsPort)).exposeJvmMetrics();
+            } catch (IOException e) {
+                log.error("Could not create MetricsExporter on port (" + metricsPort + ")");
+            }
+        }
+
         // Make sure the ETLManager has been created, forcing latest content to be indexed.
         injector.getInstance(ETLManager.class);
     }
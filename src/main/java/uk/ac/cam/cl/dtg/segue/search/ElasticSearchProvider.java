@@ -32,14 +32,17 @@ import org.apache.lucene.search.join.ScoreMode;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
@@ -74,6 +77,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 
@@ -95,6 +99,9 @@ public class ElasticSearchProvider implements ISearchProvider {
 
     private static final int DEFAULT_MAX_WINDOW_SIZE = 10000;
 
+    // how long elasticsearch should keep a scroll context alive between batches.
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
     // used to optimise index setting retrieval as these probably don't change every request.
     private final Cache<String, String> settingsCache;
 
@@ -718,6 +725,51 @@ public class ElasticSearchProvider implements ISearchProvider {
         }
     }
 
+    @Override
+    public void scrollAll(final String indexBase, final String indexType,
+                          @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+                          final int batchSize, final Consumer<List<String>> batchConsumer)
+            throws SegueSearchException {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        QueryBuilder query = QueryBuilders.matchAllQuery();
+        if (filterInstructions != null) {
+            query = QueryBuilders.boolQuery().must(query).filter(generateFilterQuery(filterInstructions));
+        }
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(query).size(batchSize).fetchSource(true);
+        SearchRequest searchRequest = new SearchRequest(typedIndex).source(sourceBuilder).scroll(SCROLL_KEEP_ALIVE);
+        String scrollId = null;
+        try {
+            SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+            scrollId = response.getScrollId();
+            SearchHit[] hits = response.getHits().getHits();
+            while (hits != null && hits.length > 0) {
+                List<String> batch = new ArrayList<>(hits.length);
+                for (SearchHit hit : hits) {
+                    batch.add(hit.getSourceAsString());
+                }
+                batchConsumer.accept(batch);
+
+                response = client.scroll(new SearchScrollRequest(scrollId).scroll(SCROLL_KEEP_ALIVE),
+                        RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+                hits = response.getHits().getHits();
+            }
+        } catch (ElasticsearchException | IOException e) {
+            throw new SegueSearchException(String.format("Failed to scroll through index %s", typedIndex), e);
+        } finally {
+            if (scrollId != null) {
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                try {
+                    client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+                } catch (ElasticsearchException | IOException e) {
+                    log.warn(String.format("Failed to clear scroll context for index %s", typedIndex), e);
+                }
+            }
+        }
+    }
+
     /**
      * This method returns the maximum window size. i.e. the number of results that can be returned in a single result
      * set without having to do a special scroll query.
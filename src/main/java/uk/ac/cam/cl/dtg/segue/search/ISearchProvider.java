@@ -26,6 +26,7 @@ import jakarta.validation.constraints.NotNull;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Interface describing behaviour of search providers.
@@ -237,6 +238,27 @@ public interface ISearchProvider {
             @Nullable Map<String, AbstractFilterInstruction> filterInstructions
     ) throws SegueSearchException;
 
+    /**
+     * Stream every document in an index, in batches, using a scroll request.
+     *
+     * Unlike the paginated searches this is not subject to the maximum result window of the index, so it is suitable
+     * for loading a whole index into memory.
+     *
+     * @param indexBase
+     *            base string for the index that the content is stored in
+     * @param indexType
+     *            - type of index as registered with search provider.
+     * @param filterInstructions
+     *            - filter instructions e.g. remove content of a certain type.
+     * @param batchSize
+     *            - the number of documents to retrieve per round trip.
+     * @param batchConsumer
+     *            - called with the source of each batch of documents, in order.
+     */
+    void scrollAll(String indexBase, String indexType,
+                   @Nullable Map<String, AbstractFilterInstruction> filterInstructions, int batchSize,
+                   Consumer<List<String>> batchConsumer) throws SegueSearchException;
+
     /*
      * TODO: We need to change the return type of these two methods to avoid having ES specific things
      */
@@ -26,6 +26,7 @@ import jakarta.mail.Message;
 import jakarta.mail.Message.RecipientType;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Multipart;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.Session;
 import jakarta.mail.Transport;
 import jakarta.mail.internet.AddressException;
@@ -33,7 +34,9 @@ import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeMultipart;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -41,15 +44,23 @@ import java.util.concurrent.ConcurrentMap;
 /**
  * Mailer Class Utility Class for sending e-mails such as contact us forms or
  * notifications.
+ *
+ * Each thread keeps its SMTP connections open between messages, so a thread sending many e-mails only connects to the
+ * server once per mail Session rather than once per message.
  * 
  * @author Stephen Cummins
  */
 public class Mailer {
     private static final Logger log = LoggerFactory.getLogger(Mailer.class);
+    // A stalled SMTP server must not hold a sending thread forever:
+    private static final int SMTP_CONNECTION_TIMEOUT_MILLISECONDS = 10000;
+    private static final int SMTP_READ_TIMEOUT_MILLISECONDS = 30000;
 	private String smtpAddress;
 	private String mailAddress;
 	private String smtpPort;
 	private final static ConcurrentMap<Integer, Session> sessionCache = new ConcurrentHashMap<>();
+	// Connected transports for the current thread, by the Session they belong to:
+	private final ThreadLocal<Map<Session, Transport>> connectedTransports = ThreadLocal.withInitial(HashMap::new);
 
 	/**
 	 * Mailer Class.
@@ -90,11 +101,12 @@ public class Mailer {
                                   @Nullable final String overrideEnvelopeFrom, @Nullable final InternetAddress replyTo,
                                   final String subject, final String contents)
 			throws MessagingException {
-        Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
+        Session session = this.getSession(fromAddress, overrideEnvelopeFrom);
+        Message msg = this.setupMessage(session, recipient, fromAddress, replyTo, subject);
         
         msg.setText(contents);
 
-        Transport.send(msg);
+        this.send(session, msg);
     }
 
     /**
@@ -128,7 +140,8 @@ public class Mailer {
                                   final List<EmailAttachment> attachments)
 			throws MessagingException, AddressException {
 
-    	Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
+        Session session = this.getSession(fromAddress, overrideEnvelopeFrom);
+    	Message msg = this.setupMessage(session, recipient, fromAddress, replyTo, subject);
         
         // Create the text part
         MimeBodyPart textPart = new MimeBodyPart();
@@ -157,7 +170,20 @@ public class Mailer {
 
         msg.setContent(multiPart);
         
-        Transport.send(msg);
+        this.send(session, msg);
+    }
+
+    /**
+     * Close the SMTP connections held open by the current thread.
+     *
+     * Threads which send e-mail should call this before they finish, so the server is not left waiting to time the
+     * connections out.
+     */
+    public void closeConnections() {
+        for (Transport transport : connectedTransports.get().values()) {
+            closeQuietly(transport);
+        }
+        connectedTransports.remove();
     }
 
 	/**
@@ -208,27 +234,15 @@ public class Mailer {
 	}
 	
     /**
-     * @param recipient
-     *            - string array of recipients that the message should be sent to
      * @param fromAddress
      *            - the e-mail address that should be used as the sending address
      * @param overrideEnvelopeFrom
      *            - (nullable) the e-mail address that should be used as the envelope from address, useful for routing
-     * @param replyTo
-     *            - the e-mail address that should be used as the reply-to address
-     * @param subject
-     *            - The message subject
-     * @return a newly created message with all of the headers populated.
-     * @throws MessagingException - if there is an error in setting up the message
+     * @return the (cached) mail Session for the SMTP server and addresses.
      */
-    private Message setupMessage(final String[] recipient, final InternetAddress fromAddress,
-                                 final String overrideEnvelopeFrom, @Nullable final InternetAddress replyTo,
-                                 final String subject)
-			throws MessagingException {
-        Validate.notEmpty(recipient);
-        Validate.notBlank(recipient[0]);
+    private Session getSession(final InternetAddress fromAddress, @Nullable final String overrideEnvelopeFrom) {
         Validate.notNull(fromAddress);
-        
+
         Properties p = new Properties();
 
         // Configure the SMTP server settings:
@@ -237,6 +251,8 @@ public class Mailer {
             p.put("mail.smtp.port", smtpPort);
         }
         p.put("mail.smtp.starttls.enable", "true");
+        p.put("mail.smtp.connectiontimeout", String.valueOf(SMTP_CONNECTION_TIMEOUT_MILLISECONDS));
+        p.put("mail.smtp.timeout", String.valueOf(SMTP_READ_TIMEOUT_MILLISECONDS));
 
         // Configure the email headers and routing:
         String envelopeFrom = mailAddress;
@@ -250,12 +266,35 @@ public class Mailer {
         // These are expensive to create so cache them based on the properties
         // they are configured with (using fact that hashcodes are equal only if objects equal):
         Integer propertiesHash = p.hashCode();
-        Session s = sessionCache.computeIfAbsent(propertiesHash, k -> {
+        return sessionCache.computeIfAbsent(propertiesHash, k -> {
             log.info(String.format("Creating new mail Session with properties: %s", p));
             return Session.getInstance(p);
         });
+    }
+
+    /**
+     * @param session
+     *            - the mail Session the message will be sent with
+     * @param recipient
+     *            - string array of recipients that the message should be sent to
+     * @param fromAddress
+     *            - the e-mail address that should be used as the sending address
+     * @param replyTo
+     *            - the e-mail address that should be used as the reply-to address
+     * @param subject
+     *            - The message subject
+     * @return a newly created message with all of the headers populated.
+     * @throws MessagingException - if there is an error in setting up the message
+     */
+    private Message setupMessage(final Session session, final String[] recipient, final InternetAddress fromAddress,
+                                 @Nullable final InternetAddress replyTo, final String subject)
+			throws MessagingException {
+        Validate.notEmpty(recipient);
+        Validate.notBlank(recipient[0]);
+        Validate.notNull(fromAddress);
+
         // Create the message and set the recipients:
-        Message msg = new MimeMessage(s);
+        Message msg = new MimeMessage(session);
 
         InternetAddress[] receivers = new InternetAddress[recipient.length];
 
@@ -273,4 +312,60 @@ public class Mailer {
 
         return msg;
     }
+
+    /**
+     * Send a message over this thread's connection for its Session, connecting first if there is none.
+     *
+     * The server may have closed a connection which has been idle, so if sending over an existing connection fails
+     * for any reason other than the message being rejected, we reconnect and try once more.
+     *
+     * @param session
+     *            - the mail Session the message was created with
+     * @param msg
+     *            - the message to send
+     * @throws MessagingException
+     *             - if we cannot send the message for some reason.
+     */
+    private void send(final Session session, final Message msg) throws MessagingException {
+        msg.saveChanges();
+        Map<Session, Transport> transports = connectedTransports.get();
+
+        Transport transport = transports.get(session);
+        if (null != transport) {
+            try {
+                transport.sendMessage(msg, msg.getAllRecipients());
+                return;
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException e) {
+                log.debug("Unable to send over existing SMTP connection; reconnecting.", e);
+                transports.remove(session);
+                closeQuietly(transport);
+            }
+        }
+
+        transport = session.getTransport("smtp");
+        transport.connect();
+        transports.put(session, transport);
+        try {
+            transport.sendMessage(msg, msg.getAllRecipients());
+        } catch (SendFailedException e) {
+            throw e;
+        } catch (MessagingException e) {
+            transports.remove(session);
+            closeQuietly(transport);
+            throw e;
+        }
+    }
+
+    /**
+     * @param transport - a transport to close, ignoring any error as we have no further use for it.
+     */
+    private static void closeQuietly(final Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection.", e);
+        }
+    }
 }
\ No newline at end of file
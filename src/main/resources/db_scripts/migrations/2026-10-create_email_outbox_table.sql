@@ -0,0 +1,24 @@
+CREATE TABLE email_outbox (
+    id BIGSERIAL NOT NULL,
+    priority INTEGER NOT NULL,
+    email_type TEXT NOT NULL,
+    user_id INTEGER,
+    recipient_address TEXT NOT NULL,
+    subject TEXT NOT NULL,
+    plain_text_message TEXT,
+    html_message TEXT,
+    override_from_address TEXT,
+    override_from_name TEXT,
+    override_envelope_from TEXT,
+    reply_to_address TEXT,
+    reply_to_name TEXT,
+    attachments JSONB,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    next_attempt TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    last_error TEXT,
+    failed BOOLEAN DEFAULT false NOT NULL,
+    created TIMESTAMP WITH TIME ZONE DEFAULT now() NOT NULL,
+    CONSTRAINT email_outbox_pk PRIMARY KEY (id)
+);
+
+CREATE INDEX email_outbox_pending ON email_outbox USING btree (priority, id) WHERE NOT failed;
@@ -0,0 +1,7 @@
+CREATE TABLE misuse_counters (
+    agent_identifier TEXT NOT NULL,
+    event_label TEXT NOT NULL,
+    window_expires TIMESTAMP WITH TIME ZONE NOT NULL,
+    count INTEGER NOT NULL,
+    CONSTRAINT misuse_counters_pk PRIMARY KEY (agent_identifier, event_label)
+);
@@ -0,0 +1,57 @@
+-- One row per user and question part, summarising all of that user's attempts at the part. It is kept up to date as
+-- attempts are recorded, so progress views need not read every attempt.
+--
+-- API versions older than this table do not update it, so once they have all been replaced this script should be run
+-- again to rebuild the summaries of any attempts they recorded; it is safe to re-run.
+--
+-- The mergeuser function in postgres-rutherford-functions.sql has also changed to rebuild the summaries of merged
+-- accounts, and must be re-applied.
+--
+-- The backfill commits after each batch of users, so this script must not be run inside a transaction block.
+
+CREATE TABLE IF NOT EXISTS question_attempt_summaries (
+    user_id integer NOT NULL,
+    question_id text NOT NULL,
+    page_id text NOT NULL,
+    first_attempt timestamp without time zone,
+    latest_attempt timestamp without time zone,
+    first_correct timestamp without time zone,
+    attempt_count integer NOT NULL,
+    CONSTRAINT question_attempt_summaries_pk PRIMARY KEY (user_id, question_id),
+    CONSTRAINT question_attempt_summaries_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS question_attempt_summaries_by_user_page
+    ON question_attempt_summaries USING btree (user_id, page_id);
+
+-- Rebuild the summaries a batch of users at a time. Locking the batch's users rows waits for any attempt being
+-- recorded for them to commit, and holds back new ones only until the batch commits, since recording an attempt takes
+-- a key share lock on its user through the foreign key. Each batch therefore sees exactly the attempts its summaries
+-- will count, without locking question_attempts.
+DO $$
+DECLARE
+    batch_size CONSTANT integer := 1000;
+    batch_start integer;
+    max_user_id integer;
+BEGIN
+    SELECT min(user_id), max(user_id) INTO batch_start, max_user_id FROM question_attempts;
+
+    WHILE batch_start <= max_user_id LOOP
+        PERFORM 1 FROM users WHERE id >= batch_start AND id < batch_start + batch_size ORDER BY id FOR UPDATE;
+
+        INSERT INTO question_attempt_summaries (user_id, question_id, page_id, first_attempt, latest_attempt,
+                                                first_correct, attempt_count)
+        SELECT user_id, question_id, split_part(question_id, '|', 1), min("timestamp"), max("timestamp"),
+               min("timestamp") FILTER (WHERE correct), count(*)
+        FROM question_attempts
+        WHERE user_id >= batch_start AND user_id < batch_start + batch_size
+        GROUP BY user_id, question_id
+        ON CONFLICT (user_id, question_id) DO UPDATE
+        SET first_attempt = excluded.first_attempt, latest_attempt = excluded.latest_attempt,
+            first_correct = excluded.first_correct, attempt_count = excluded.attempt_count;
+
+        COMMIT;
+        batch_start := batch_start + batch_size;
+    END LOOP;
+END
+$$;
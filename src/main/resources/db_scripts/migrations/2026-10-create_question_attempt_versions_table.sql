@@ -0,0 +1,16 @@
+-- A version number for each user's question attempts, bumped whenever they change, so that checking whether a user's
+-- attempts have changed (for ETags and cached attempts) reads one row however many attempts the user has made.
+-- Users without a row have version 0.
+--
+-- API versions older than this table do not bump the version, so attempts they record may be missed by cached
+-- attempts on newer servers until those old versions have all been replaced.
+--
+-- The mergeuser function in postgres-rutherford-functions.sql has also changed to bump the kept user's version, and
+-- must be re-applied.
+
+CREATE TABLE IF NOT EXISTS question_attempt_versions (
+    user_id integer NOT NULL,
+    version bigint NOT NULL,
+    CONSTRAINT question_attempt_versions_pk PRIMARY KEY (user_id),
+    CONSTRAINT question_attempt_versions_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,10 @@
+-- Store the question page id of each attempt, so attempts at a set of pages can be found with "page_id = ANY(?)"
+-- using an index rather than a chain of "question_id LIKE ?" clauses.
+--
+-- Adding a stored generated column rewrites the table under an exclusive lock, so this should be run while the API
+-- is down. The mergeuser function in postgres-rutherford-functions.sql now uses this column and must be re-applied
+-- afterwards.
+
+ALTER TABLE question_attempts ADD COLUMN page_id text GENERATED ALWAYS AS (split_part(question_id, '|', 1)) STORED;
+
+CREATE INDEX CONCURRENTLY question_attempts_by_user_page ON question_attempts USING btree (user_id, page_id);
@@ -0,0 +1,5 @@
+-- Replace the index on user_id alone with one which also covers id, so that the count and latest id of a user's
+-- attempts (used to version their attempts for ETags) can be read with an index-only scan.
+CREATE INDEX CONCURRENTLY question_attempts_by_user_id ON public.question_attempts USING btree (user_id, id);
+
+DROP INDEX CONCURRENTLY public."question-attempts-by-user";
@@ -72,6 +72,56 @@ ALTER TABLE public.assignments_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.assignments_id_seq OWNED BY public.assignments.id;
 
 
+--
+-- Name: email_outbox; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.email_outbox (
+    id bigint NOT NULL,
+    priority integer NOT NULL,
+    email_type text NOT NULL,
+    user_id integer,
+    recipient_address text NOT NULL,
+    subject text NOT NULL,
+    plain_text_message text,
+    html_message text,
+    override_from_address text,
+    override_from_name text,
+    override_envelope_from text,
+    reply_to_address text,
+    reply_to_name text,
+    attachments jsonb,
+    attempts integer DEFAULT 0 NOT NULL,
+    next_attempt timestamp with time zone DEFAULT now() NOT NULL,
+    last_error text,
+    failed boolean DEFAULT false NOT NULL,
+    created timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.email_outbox OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
+--
+
+CREATE SEQUENCE public.email_outbox_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER TABLE public.email_outbox_id_seq OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: rutherford
+--
+
+ALTER SEQUENCE public.email_outbox_id_seq OWNED BY public.email_outbox.id;
+
+
 --
 -- Name: event_bookings; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -315,6 +365,21 @@ ALTER TABLE public.logged_events_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.logged_events_id_seq OWNED BY public.logged_events.id;
 
 
+--
+-- Name: misuse_counters; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.misuse_counters (
+    agent_identifier text NOT NULL,
+    event_label text NOT NULL,
+    window_expires timestamp with time zone NOT NULL,
+    count integer NOT NULL
+);
+
+
+ALTER TABLE public.misuse_counters OWNER TO rutherford;
+
+
 --
 -- Name: question_attempts; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -325,12 +390,42 @@ CREATE TABLE public.question_attempts (
     question_id text NOT NULL,
     question_attempt jsonb,
     correct boolean,
-    "timestamp" timestamp without time zone
+    "timestamp" timestamp without time zone,
+    page_id text GENERATED ALWAYS AS (split_part(question_id, '|', 1)) STORED
 );
 
 
 ALTER TABLE public.question_attempts OWNER TO rutherford;
 
+--
+-- Name: question_attempt_summaries; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.question_attempt_summaries (
+    user_id integer NOT NULL,
+    question_id text NOT NULL,
+    page_id text NOT NULL,
+    first_attempt timestamp without time zone,
+    latest_attempt timestamp without time zone,
+    first_correct timestamp without time zone,
+    attempt_count integer NOT NULL
+);
+
+
+ALTER TABLE public.question_attempt_summaries OWNER TO rutherford;
+
+--
+-- Name: question_attempt_versions; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.question_attempt_versions (
+    user_id integer NOT NULL,
+    version bigint NOT NULL
+);
+
+
+ALTER TABLE public.question_attempt_versions OWNER TO rutherford;
+
 --
 -- Name: question_attempts_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
 --
@@ -751,6 +846,13 @@ ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
 ALTER TABLE ONLY public.assignments ALTER COLUMN id SET DEFAULT nextval('public.assignments_id_seq'::regclass);
 
 
+--
+-- Name: email_outbox id; Type: DEFAULT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox ALTER COLUMN id SET DEFAULT nextval('public.email_outbox_id_seq'::regclass);
+
+
 --
 -- Name: event_bookings id; Type: DEFAULT; Schema: public; Owner: rutherford
 --
@@ -846,6 +948,14 @@ ALTER TABLE ONLY public.linked_accounts
     ADD CONSTRAINT "compound key" PRIMARY KEY (user_id, provider);
 
 
+--
+-- Name: email_outbox email_outbox_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox
+    ADD CONSTRAINT email_outbox_pk PRIMARY KEY (id);
+
+
 --
 -- Name: event_bookings eventbooking id pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -926,6 +1036,22 @@ ALTER TABLE ONLY public.linked_accounts
     ADD CONSTRAINT "provider and user id" UNIQUE (provider, provider_user_id);
 
 
+--
+-- Name: question_attempt_summaries question_attempt_summaries_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_summaries
+    ADD CONSTRAINT question_attempt_summaries_pk PRIMARY KEY (user_id, question_id);
+
+
+--
+-- Name: question_attempt_versions question_attempt_versions_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_versions
+    ADD CONSTRAINT question_attempt_versions_pk PRIMARY KEY (user_id);
+
+
 --
 -- Name: question_attempts question_attempts_id; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -958,6 +1084,14 @@ ALTER TABLE ONLY public.quiz_question_attempts
     ADD CONSTRAINT quiz_question_attempts_id PRIMARY KEY (id);
 
 
+--
+-- Name: misuse_counters misuse_counters_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.misuse_counters
+    ADD CONSTRAINT misuse_counters_pk PRIMARY KEY (agent_identifier, event_label);
+
+
 --
 -- Name: scheduled_emails scheduled_emails_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1084,6 +1218,13 @@ CREATE INDEX assignments_by_id ON public.assignments USING btree (id);
 CREATE INDEX assignments_group_id ON public.assignments USING btree (group_id DESC);
 
 
+--
+-- Name: email_outbox_pending; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX email_outbox_pending ON public.email_outbox USING btree (priority, id) WHERE (NOT failed);
+
+
 --
 -- Name: event_booking_user_event_id_index; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1169,10 +1310,17 @@ CREATE UNIQUE INDEX only_one_attempt_per_assignment_per_user ON public.quiz_atte
 
 
 --
--- Name: question-attempts-by-user; Type: INDEX; Schema: public; Owner: rutherford
+-- Name: question_attempt_summaries_by_user_page; Type: INDEX; Schema: public; Owner: rutherford
 --
 
-CREATE INDEX "question-attempts-by-user" ON public.question_attempts USING btree (user_id);
+CREATE INDEX question_attempt_summaries_by_user_page ON public.question_attempt_summaries USING btree (user_id, page_id);
+
+
+--
+-- Name: question_attempts_by_user_id; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX question_attempts_by_user_id ON public.question_attempts USING btree (user_id, id);
 
 
 --
@@ -1182,6 +1330,13 @@ CREATE INDEX "question-attempts-by-user" ON public.question_attempts USING btree
 CREATE INDEX question_attempts_by_timestamp ON public.question_attempts USING btree ("timestamp");
 
 
+--
+-- Name: question_attempts_by_user_page; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX question_attempts_by_user_page ON public.question_attempts USING btree (user_id, page_id);
+
+
 --
 -- Name: question_attempts_by_user_question; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1450,6 +1605,22 @@ ALTER TABLE ONLY public.user_totp
     ADD CONSTRAINT user_id_mfa_fk FOREIGN KEY (user_id) REFERENCES public.users(id) ON UPDATE CASCADE ON DELETE CASCADE;
 
 
+--
+-- Name: question_attempt_summaries question_attempt_summaries_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_summaries
+    ADD CONSTRAINT question_attempt_summaries_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
+--
+-- Name: question_attempt_versions question_attempt_versions_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_versions
+    ADD CONSTRAINT question_attempt_versions_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: question_attempts user_id_question_attempts_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -2,7 +2,7 @@
 -- Merge and Delete Users
 --
 -- Authors: Stephen Cummins, James Sharkey
--- Last Modified: 2020-08-12
+-- Last Modified: 2026-10-17
 --
 
 CREATE OR REPLACE FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint) RETURNS boolean
@@ -62,6 +62,25 @@ BEGIN
   SET user_id = targetUserIdToKeep
   WHERE user_id = targetUserIdToDelete;
 
+  -- The summaries of attempts at the same question parts must be combined, so rebuild them from the attempts:
+  DELETE FROM question_attempt_summaries
+  WHERE user_id IN (targetUserIdToKeep, targetUserIdToDelete);
+
+  INSERT INTO question_attempt_summaries (user_id, question_id, page_id, first_attempt, latest_attempt,
+                                          first_correct, attempt_count)
+  SELECT user_id, question_id, page_id, min("timestamp"), max("timestamp"),
+         min("timestamp") FILTER (WHERE correct), count(*)
+  FROM question_attempts
+  WHERE user_id = targetUserIdToKeep
+  GROUP BY user_id, question_id, page_id;
+
+  -- The kept user's attempts have changed, so move their version past any version either user has had:
+  INSERT INTO question_attempt_versions (user_id, version)
+  SELECT targetUserIdToKeep, COALESCE(max(version), 0) + 1
+  FROM question_attempt_versions
+  WHERE user_id IN (targetUserIdToKeep, targetUserIdToDelete)
+  ON CONFLICT (user_id) DO UPDATE SET version = excluded.version;
+
   UPDATE user_alerts
   SET user_id = targetUserIdToKeep
   WHERE user_id = targetUserIdToDelete;
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import com.google.common.collect.Lists;
+import com.opencsv.CSVWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import ma.glasnost.orika.MapperFacade;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.api.managers.AssignmentManager;
+import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
+import uk.ac.cam.cl.dtg.isaac.api.services.AssignmentService;
+import uk.ac.cam.cl.dtg.isaac.dao.GameboardPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
+import uk.ac.cam.cl.dtg.isaac.dto.UserGroupDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.content.QuestionDTO;
+import uk.ac.cam.cl.dtg.isaac.dos.users.RegisteredUser;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
+import uk.ac.cam.cl.dtg.segue.api.managers.GroupManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserAssociationManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserAuthenticationManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserBadgeManager;
+import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.partialMockBuilder;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.CSV_DOWNLOAD_INCOMPLETE_MARKER;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.CSV_DOWNLOAD_USER_BATCH_SIZE;
+
+/**
+ * Test class for the CSV downloads of the AssignmentFacade, which are streamed to the client a batch of users at a
+ * time and must match the files built in full before streaming.
+ */
+public class AssignmentFacadeTest {
+    private static final long GROUP_ID = 5L;
+    private static final long ASSIGNMENT_ID = 7L;
+    // More than two batches, with the last one only partly full:
+    private static final int GROUP_SIZE = 2 * CSV_DOWNLOAD_USER_BATCH_SIZE + 50;
+    private static final Date DUE_DATE = new GregorianCalendar(2026, Calendar.JANUARY, 1).getTime();
+
+    private HttpServletRequest request;
+    private RegisteredUserDTO teacher;
+    private List<RegisteredUserDTO> groupMembers;
+    private List<AssignmentDTO> assignments;
+    private List<GameboardDTO> gameboards;
+    private Map<String, List<QuestionDTO>> questionPartsByPage;
+    private List<List<Long>> correctnessBatches;
+
+    private AssignmentFacade assignmentFacade;
+    private UserAccountManager userManager;
+    private AssignmentManager assignmentManager;
+    private GroupManager groupManager;
+    private GameManager gameManager;
+    private QuestionManager questionManager;
+    private UserAssociationManager associationManager;
+
+    @Before
+    public void setUp() throws Exception {
+        request = createMock(HttpServletRequest.class);
+        teacher = new RegisteredUserDTO();
+        teacher.setId(1L);
+        teacher.setGivenName("Ada");
+        teacher.setFamilyName("Teacher");
+
+        groupMembers = Lists.newArrayList();
+        for (long userId = 100; userId < 100 + GROUP_SIZE; userId++) {
+            RegisteredUserDTO student = new RegisteredUserDTO();
+            student.setId(userId);
+            student.setGivenName("Given" + userId);
+            student.setFamilyName("Family" + userId);
+            groupMembers.add(student);
+        }
+
+        questionPartsByPage = new HashMap<>();
+        GameboardDTO firstBoard = gameboard("board_1", "First Board", "page_1", "page_2");
+        GameboardDTO secondBoard = gameboard("board_2", null, "page_3");
+        gameboards = Arrays.asList(firstBoard, secondBoard);
+        assignments = Arrays.asList(assignment(ASSIGNMENT_ID, "board_1", DUE_DATE), assignment(8L, "board_2", null));
+        correctnessBatches = Lists.newArrayList();
+
+        assignmentManager = createMock(AssignmentManager.class);
+        groupManager = createMock(GroupManager.class);
+        GameboardPersistenceManager gameboardPersistenceManager = createMock(GameboardPersistenceManager.class);
+        questionManager = createMock(QuestionManager.class);
+        associationManager = createMock(UserAssociationManager.class);
+
+        UserGroupDTO group = new UserGroupDTO();
+        group.setId(GROUP_ID);
+        group.setGroupName("Test Group");
+        group.setOwnerId(teacher.getId());
+
+        // The user manager's session methods are final, so use a real one with the teacher logged in:
+        RegisteredUser teacherDO = new RegisteredUser();
+        teacherDO.setId(teacher.getId());
+        teacherDO.setLastSeen(new Date());
+        UserAuthenticationManager authenticationManager = createMock(UserAuthenticationManager.class);
+        expect(authenticationManager.getUserFromSession(request, false)).andStubReturn(teacherDO);
+        MapperFacade mapper = createMock(MapperFacade.class);
+        expect(mapper.map(teacherDO, RegisteredUserDTO.class)).andStubReturn(teacher);
+        expect(mapper.map(anyObject(RegisteredUserDTO.class), eq(UserSummaryDTO.class))).andStubAnswer(() -> {
+            RegisteredUserDTO user = (RegisteredUserDTO) getCurrentArguments()[0];
+            UserSummaryDTO summary = new UserSummaryDTO();
+            summary.setId(user.getId());
+            summary.setGivenName(user.getGivenName());
+            summary.setFamilyName(user.getFamilyName());
+            return summary;
+        });
+        PropertiesLoader properties = createMock(PropertiesLoader.class);
+        expect(properties.getProperty(anyString())).andStubReturn("test");
+        replay(authenticationManager, mapper, properties);
+        userManager = new UserAccountManager(null, questionManager, properties, Collections.emptyMap(), mapper, null,
+                null, createNiceMock(ILogManager.class), authenticationManager, null, null);
+
+        expect(associationManager.enforceAuthorisationPrivacy(eq(teacher), anyObject(UserSummaryDTO.class)))
+                .andStubAnswer(() -> {
+                    UserSummaryDTO summary = (UserSummaryDTO) getCurrentArguments()[1];
+                    summary.setAuthorisedFullAccess(isSharing(summary.getId()));
+                    return summary;
+                });
+        expect(groupManager.getGroupById(GROUP_ID)).andStubReturn(group);
+        expect(groupManager.getUsersInGroup(group)).andStubReturn(groupMembers);
+        expect(assignmentManager.getAssignmentById(ASSIGNMENT_ID)).andStubReturn(assignments.get(0));
+        expect(assignmentManager.getAllAssignmentsForSpecificGroups(Collections.singletonList(group), false))
+                .andStubReturn(assignments);
+        expect(gameboardPersistenceManager.getGameboardById("board_1")).andStubReturn(firstBoard);
+        expect(gameboardPersistenceManager.getGameboardsByIds(Arrays.asList("board_1", "board_2")))
+                .andStubReturn(gameboards);
+        gameManager = partialMockBuilder(GameManager.class)
+                .withConstructor(GitContentManager.class, GameboardPersistenceManager.class, MapperFacade.class,
+                        QuestionManager.class, String.class)
+                .withArgs(null, gameboardPersistenceManager, mapper, questionManager, "latest")
+                .addMockedMethod("getAllMarkableQuestionPartsDFSOrder", String.class)
+                .createMock();
+        expect(gameManager.getAllMarkableQuestionPartsDFSOrder(anyString())).andStubAnswer(
+                () -> questionPartsByPage.get((String) getCurrentArguments()[0]));
+
+        replay(request, assignmentManager, groupManager, gameboardPersistenceManager, gameManager,
+                associationManager);
+
+        assignmentFacade = new AssignmentFacade(assignmentManager, questionManager, userManager, groupManager,
+                properties, gameManager, createNiceMock(ILogManager.class),
+                associationManager, createNiceMock(UserBadgeManager.class), createNiceMock(AssignmentService.class));
+    }
+
+    @Test
+    public void getGroupAssignmentsProgressDownloadCSV_groupSpanningSeveralBatches_matchesUnbatchedFile()
+            throws Exception {
+        expectCorrectnessLookups(-1);
+
+        Response response = assignmentFacade.getGroupAssignmentsProgressDownloadCSV(request, GROUP_ID, null);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        String csv = writeEntity(response);
+
+        assertTrue(csv.startsWith("Assignments for 'Test Group' (5)\n"));
+        assertTrue(csv.endsWith(expectedGroupProgressRows()));
+        assertEquals(Arrays.asList(CSV_DOWNLOAD_USER_BATCH_SIZE, CSV_DOWNLOAD_USER_BATCH_SIZE, 50),
+                batchSizes());
+    }
+
+    @Test
+    public void getGroupAssignmentsProgressDownloadCSV_firstBatchFails_errorResponse() throws Exception {
+        expectCorrectnessLookups(0);
+
+        Response response = assignmentFacade.getGroupAssignmentsProgressDownloadCSV(request, GROUP_ID, null);
+
+        assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void getGroupAssignmentsProgressDownloadCSV_laterBatchFails_fileMarkedIncomplete() throws Exception {
+        expectCorrectnessLookups(1);
+
+        Response response = assignmentFacade.getGroupAssignmentsProgressDownloadCSV(request, GROUP_ID, null);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            ((StreamingOutput) response.getEntity()).write(output);
+            fail("The download should fail part way through.");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof SegueDatabaseException);
+        }
+        String csv = output.toString(StandardCharsets.UTF_8);
+        String[] lines = csv.split("\n");
+        assertEquals(csvLine(CSV_DOWNLOAD_INCOMPLETE_MARKER), lines[lines.length - 1] + "\n");
+        assertEquals(CSV_DOWNLOAD_USER_BATCH_SIZE, csv.split("\"Family").length - 1);
+    }
+
+    @Test
+    public void getAssignmentProgressDownloadCSV_groupSpanningSeveralBatches_matchesUnbatchedFile()
+            throws Exception {
+        expectCorrectnessLookups(-1);
+
+        Response response = assignmentFacade.getAssignmentProgressDownloadCSV(request, ASSIGNMENT_ID, null);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        String csv = writeEntity(response);
+
+        assertTrue(csv.startsWith("Assignment (7) Results: Downloaded on "));
+        assertTrue(csv.endsWith(expectedAssignmentProgressRows()));
+        assertEquals(Arrays.asList(CSV_DOWNLOAD_USER_BATCH_SIZE, CSV_DOWNLOAD_USER_BATCH_SIZE, 50),
+                batchSizes());
+    }
+
+    /**
+     * Build the group progress rows the way they were built before the download was streamed: every member's
+     * marks worked out up front, then the whole file written in one go.
+     */
+    private String expectedGroupProgressRows() {
+        List<String> questionIds = Lists.newArrayList();
+        List<String> dueDateRow = Lists.newArrayList("", "Due", "", "01/01/2026", "", "");
+        List<String> headerRow = Lists.newArrayList("Last Name", "First Name", "% Correct Overall",
+                "% Correct for 'First Board'", "% Correct for 'board_2'", "");
+        for (AssignmentDTO assignment : assignments) {
+            GameboardDTO gameboard = gameboards.get(assignments.indexOf(assignment));
+            for (GameboardItem questionPage : gameboard.getContents()) {
+                int partNumber = 1;
+                for (QuestionDTO question : questionPartsByPage.get(questionPage.getId())) {
+                    questionIds.add(question.getId());
+                    dueDateRow.add(null == assignment.getDueDate() ? "" : "01/01/2026");
+                    headerRow.add((null != question.getTitle() ? question.getTitle() : "Q" + partNumber) + " - "
+                            + questionPage.getTitle() + " - "
+                            + (null != gameboard.getTitle() ? gameboard.getTitle() : gameboard.getId()));
+                    partNumber++;
+                }
+            }
+        }
+
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(dueDateRow.toArray(new String[0]));
+        rows.add(headerRow.toArray(new String[0]));
+        for (RegisteredUserDTO student : groupMembers) {
+            List<String> row = Lists.newArrayList(student.getFamilyName(), student.getGivenName());
+            int totalCorrect = 0;
+            List<String> assignmentPercentages = Lists.newArrayList();
+            List<String> marks = Lists.newArrayList();
+            for (GameboardDTO gameboard : gameboards) {
+                int boardCorrect = 0;
+                int boardParts = 0;
+                for (GameboardItem questionPage : gameboard.getContents()) {
+                    for (QuestionDTO question : questionPartsByPage.get(questionPage.getId())) {
+                        Boolean correct = correctness(student.getId(), questionIds.indexOf(question.getId()));
+                        marks.add(isSharing(student.getId()) ? (null == correct ? "" : (correct ? "1" : "0"))
+                                : "NOT_SHARING");
+                        boardCorrect += Boolean.TRUE.equals(correct) ? 1 : 0;
+                        boardParts++;
+                    }
+                }
+                totalCorrect += boardCorrect;
+                assignmentPercentages.add(isSharing(student.getId())
+                        ? String.format("%.0f", (100f * boardCorrect) / boardParts) : "NOT_SHARING");
+            }
+            row.add(isSharing(student.getId())
+                    ? String.format("%.0f", (100f * totalCorrect) / questionIds.size()) : "NOT_SHARING");
+            row.addAll(assignmentPercentages);
+            row.add("");
+            row.addAll(marks);
+            rows.add(row.toArray(new String[0]));
+        }
+        return csvLines(rows) + "\n\nN.B.\n\"The percentages are for question parts completed, not question pages.\"\n";
+    }
+
+    /**
+     * Build the assignment progress rows the way they were built before the download was streamed.
+     */
+    private String expectedAssignmentProgressRows() {
+        List<String> headerRow = Lists.newArrayList("", "", "Q1 - Page page_1", "Q2 - Page page_1",
+                "Named part - Page page_2", "Q2 - Page page_2", "% Correct");
+        int questionCount = headerRow.size() - 3;
+        int[] columnTotals = new int[questionCount];
+        DecimalFormat percentageFormat = new DecimalFormat("###");
+        List<String[]> userRows = Lists.newArrayList();
+        for (RegisteredUserDTO student : groupMembers) {
+            List<String> row = Lists.newArrayList(student.getFamilyName(), student.getGivenName());
+            int totalCorrect = 0;
+            for (int column = 0; column < questionCount; column++) {
+                Boolean correct = correctness(student.getId(), column);
+                if (!isSharing(student.getId())) {
+                    row.add("NOT_SHARING");
+                    continue;
+                }
+                row.add(null == correct ? "" : (correct ? "1" : "0"));
+                if (Boolean.TRUE.equals(correct)) {
+                    totalCorrect++;
+                    columnTotals[column]++;
+                }
+            }
+            if (isSharing(student.getId())) {
+                row.add(percentageFormat.format(100.0 * totalCorrect / questionCount));
+            }
+            userRows.add(row.toArray(new String[0]));
+        }
+
+        List<String> totalsRow = Lists.newArrayList("", "Correct %");
+        for (int columnTotal : columnTotals) {
+            totalsRow.add(percentageFormat.format(100.0 * columnTotal / GROUP_SIZE));
+        }
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(headerRow.toArray(new String[0]));
+        rows.add(totalsRow.toArray(new String[0]));
+        rows.add(new String[] {"Last Name", "First Name"});
+        rows.addAll(userRows);
+        return csvLines(rows);
+    }
+
+    /**
+     * Answer the question part correctness lookups from {@link #correctness(Long, int)}, failing on one batch.
+     *
+     * @param failingBatch - the index of the batch whose lookup should fail, or -1 if none should.
+     */
+    private void expectCorrectnessLookups(final int failingBatch) throws SegueDatabaseException {
+        expect(questionManager.getQuestionPartCorrectness(anyObject(), anyObject())).andStubAnswer(() -> {
+            @SuppressWarnings("unchecked")
+            List<RegisteredUserDTO> batch = (List<RegisteredUserDTO>) getCurrentArguments()[0];
+            @SuppressWarnings("unchecked")
+            List<String> questionPageIds = (List<String>) getCurrentArguments()[1];
+            List<Long> batchUserIds = Lists.newArrayList();
+            batch.forEach(user -> batchUserIds.add(user.getId()));
+            correctnessBatches.add(batchUserIds);
+            if (correctnessBatches.size() - 1 == failingBatch) {
+                throw new SegueDatabaseException("Lost connection to the database.");
+            }
+
+            List<String> questionIds = Lists.newArrayList();
+            for (String questionPageId : questionPageIds) {
+                questionPartsByPage.get(questionPageId).forEach(question -> questionIds.add(question.getId()));
+            }
+            Map<Long, Map<String, Boolean>> results = new HashMap<>();
+            for (RegisteredUserDTO user : batch) {
+                Map<String, Boolean> userResults = new HashMap<>();
+                for (int column = 0; column < questionIds.size(); column++) {
+                    Boolean correct = correctness(user.getId(), column);
+                    if (null != correct) {
+                        userResults.put(questionIds.get(column), correct);
+                    }
+                }
+                // Users with no attempts at all are missing from the lookup, rather than mapped to nothing:
+                if (!userResults.isEmpty()) {
+                    results.put(user.getId(), userResults);
+                }
+            }
+            return results;
+        });
+        replay(questionManager);
+    }
+
+    private List<Integer> batchSizes() {
+        List<Integer> batchSizes = Lists.newArrayList();
+        correctnessBatches.forEach(batch -> batchSizes.add(batch.size()));
+        return batchSizes;
+    }
+
+    /**
+     * @return whether the user answered the question part at this position correctly, or null if they never tried.
+     */
+    private static Boolean correctness(final Long userId, final int questionPosition) {
+        if (userId % 11 == 0) {
+            return null;
+        }
+        switch ((int) ((userId + questionPosition) % 3)) {
+            case 0:
+                return null;
+            case 1:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSharing(final Long userId) {
+        return userId % 7 != 0;
+    }
+
+    private GameboardDTO gameboard(final String id, final String title, final String... questionPageIds) {
+        List<GameboardItem> contents = Lists.newArrayList();
+        for (String questionPageId : questionPageIds) {
+            GameboardItem questionPage = new GameboardItem();
+            questionPage.setId(questionPageId);
+            questionPage.setTitle("Page " + questionPageId);
+            contents.add(questionPage);
+
+            QuestionDTO untitledPart = new QuestionDTO();
+            untitledPart.setId(questionPageId + "|0");
+            QuestionDTO secondPart = new QuestionDTO();
+            secondPart.setId(questionPageId + "|1");
+            if (questionPageId.equals("page_2")) {
+                untitledPart.setTitle("Named part");
+            }
+            questionPartsByPage.put(questionPageId, Arrays.asList(untitledPart, secondPart));
+        }
+        GameboardDTO gameboard = new GameboardDTO();
+        gameboard.setId(id);
+        gameboard.setTitle(title);
+        gameboard.setContents(contents);
+        return gameboard;
+    }
+
+    private static AssignmentDTO assignment(final Long id, final String gameboardId, final Date dueDate) {
+        AssignmentDTO assignment = new AssignmentDTO();
+        assignment.setId(id);
+        assignment.setGameboardId(gameboardId);
+        assignment.setGroupId(GROUP_ID);
+        assignment.setDueDate(dueDate);
+        return assignment;
+    }
+
+    private static String writeEntity(final Response response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String csvLine(final String... cells) {
+        List<String[]> rows = Lists.newArrayList();
+        rows.add(cells);
+        return csvLines(rows);
+    }
+
+    private static String csvLines(final List<String[]> rows) {
+        StringWriter stringWriter = new StringWriter();
+        CSVWriter csvWriter = new CSVWriter(stringWriter);
+        csvWriter.writeAll(rows);
+        return stringWriter.toString();
+    }
+}
@@ -1,11 +1,16 @@
 package uk.ac.cam.cl.dtg.isaac.api;
 
+import com.google.common.collect.Lists;
+import com.opencsv.CSVWriter;
 import org.junit.Before;
 import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.eventbookings.BookingStatus;
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacEventPageDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.eventbookings.DetailedEventBookingDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.eventbookings.EventBookingDTO;
+import uk.ac.cam.cl.dtg.isaac.dos.users.School;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AdditionalAuthenticationRequiredException;
@@ -18,13 +23,23 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static org.easymock.EasyMock.createNiceMock;
@@ -35,6 +50,7 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.CSV_DOWNLOAD_USER_BATCH_SIZE;
 
 public class EventsFacadeIT extends IsaacIntegrationTest {
 
@@ -279,4 +295,145 @@ public class EventsFacadeIT extends IsaacIntegrationTest {
         // The event manager does not own the group so this should not succeed
         assertNotEquals(Response.Status.OK.getStatusCode(), eventManager_Response.getStatus());
     }
+
+    @Test
+    public void countNumberOfBookingsByStatus_bookingByDeletedUser_matchesPerEventCounts() throws Exception {
+        // User 11 has a confirmed booking on the regular test event:
+        setUserDeleted(11L, true);
+        try {
+            List<String> eventIds = List.of("_regular_test_event");
+            Map<String, Map<BookingStatus, Long>> batchedCounts =
+                    eventBookingManager.countNumberOfBookingsByStatus(eventIds);
+
+            for (String eventId : eventIds) {
+                for (BookingStatus status : BookingStatus.values()) {
+                    assertEquals(eventBookingManager.countNumberOfBookingsWithStatus(eventId, status),
+                            batchedCounts.getOrDefault(eventId, Map.of()).getOrDefault(status, 0L));
+                }
+            }
+            assertEquals(Long.valueOf(3), batchedCounts.get("_regular_test_event").get(BookingStatus.CONFIRMED));
+        } finally {
+            setUserDeleted(11L, false);
+        }
+    }
+
+    @Test
+    public void getEventBookingCSV_bookingsSpanningSeveralBatches_matchesPerBookingFile() throws Exception {
+        List<Long> extraUserIds = Lists.newArrayList();
+        try {
+            // Enough extra bookings that the users are looked up in more than one batch:
+            for (int i = 0; i < CSV_DOWNLOAD_USER_BATCH_SIZE + 50; i++) {
+                extraUserIds.add(createUserBookedOnEvent("_regular_test_event", i));
+            }
+            LoginResult eventManagerLogin = loginAs(httpSession, ITConstants.TEST_EVENTMANAGER_EMAIL,
+                    ITConstants.TEST_EVENTMANAGER_PASSWORD);
+            HttpServletRequest request = createRequestWithCookies(new Cookie[] {eventManagerLogin.cookie});
+            replay(request);
+
+            Response response = eventsFacade.getEventBookingCSV(request, "_regular_test_event");
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ((StreamingOutput) response.getEntity()).write(output);
+            String csv = output.toString(StandardCharsets.UTF_8);
+
+            // Build the rows the way they were built before the download was streamed, one user lookup per booking:
+            List<String[]> expectedRows = Lists.newArrayList();
+            expectedRows.add(new String[] {"", ""});
+            expectedRows.add(new String[0]);
+            expectedRows.add(("Family name,Given name,Role,School,Booking status,Booking date,Last updated date,"
+                    + "Year group,Job title,Stages,Exam boards,Level of teaching experience,"
+                    + "Medical/dietary requirements,Accessibility requirements,Emergency name,Emergency number")
+                    .split(","));
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            for (DetailedEventBookingDTO booking
+                    : eventBookingManager.adminGetBookingsByEventId("_regular_test_event")) {
+                UserSummaryDTO user = booking.getUserBooked();
+                RegisteredUserDTO registeredUser;
+                try {
+                    registeredUser = userAccountManager.getUserDTOById(user.getId());
+                } catch (NoUserException e) {
+                    continue;
+                }
+                Map<String, String> additionalInformation = booking.getAdditionalInformation();
+                String school = registeredUser.getSchoolOther();
+                if (null != registeredUser.getSchoolId()) {
+                    School registeredSchool = schoolListReader.findSchoolById(registeredUser.getSchoolId());
+                    school = null != registeredSchool ? registeredSchool.getName() : registeredUser.getSchoolId();
+                }
+                expectedRows.add(new String[] {user.getFamilyName(), user.getGivenName(),
+                        registeredUser.getRole().toString(), school, booking.getBookingStatus().toString(),
+                        dateFormat.format(booking.getBookingDate()), dateFormat.format(booking.getUpdated()),
+                        additionalInformation.get("yearGroup"), additionalInformation.get("jobTitle"),
+                        String.join(" ", user.getRegisteredContexts().stream()
+                                .map(uc -> uc.getStage() != null ? uc.getStage().name() : "")
+                                .collect(Collectors.toSet())),
+                        String.join(" ", user.getRegisteredContexts().stream()
+                                .map(uc -> uc.getExamBoard() != null ? uc.getExamBoard().name() : "")
+                                .collect(Collectors.toSet())),
+                        additionalInformation.get("experienceLevel"), additionalInformation.get("medicalRequirements"),
+                        additionalInformation.get("accessibilityRequirements"),
+                        additionalInformation.get("emergencyName"), additionalInformation.get("emergencyNumber")});
+            }
+            StringWriter expected = new StringWriter();
+            CSVWriter csvWriter = new CSVWriter(expected);
+            csvWriter.writeAll(expectedRows);
+            csvWriter.close();
+
+            assertTrue(csv.startsWith("Event (_regular_test_event) Attendance: Downloaded on "));
+            assertTrue(csv.endsWith(expected.toString()));
+            for (int i = 0; i < extraUserIds.size(); i++) {
+                assertTrue(csv.contains("\"Family" + i + "\",\"Given" + i + "\",\"STUDENT\",\"School " + i + "\""));
+            }
+        } finally {
+            deleteUsersAndBookings(extraUserIds);
+        }
+    }
+
+    private static long createUserBookedOnEvent(final String eventId, final int index) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement createUser = conn.prepareStatement(
+                     "INSERT INTO users(email, family_name, given_name, school_other, registration_date)"
+                             + " VALUES (?, ?, ?, ?, now()) RETURNING id");
+             PreparedStatement createBooking = conn.prepareStatement(
+                     "INSERT INTO event_bookings(event_id, created, updated, user_id, status,"
+                             + " additional_booking_information) VALUES (?, now(), now(), ?, 'CONFIRMED', ?::jsonb)")) {
+            createUser.setString(1, UUID.randomUUID() + "@example.com");
+            createUser.setString(2, "Family" + index);
+            createUser.setString(3, "Given" + index);
+            createUser.setString(4, "School " + index);
+            long userId;
+            try (ResultSet results = createUser.executeQuery()) {
+                results.next();
+                userId = results.getLong(1);
+            }
+            createBooking.setString(1, eventId);
+            createBooking.setLong(2, userId);
+            createBooking.setString(3, String.format("{\"yearGroup\": \"%d\", \"emergencyName\": \"Contact %d\"}",
+                    index % 13, index));
+            createBooking.executeUpdate();
+            return userId;
+        }
+    }
+
+    private static void deleteUsersAndBookings(final List<Long> userIds) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement deleteBookings = conn.prepareStatement(
+                     "DELETE FROM event_bookings WHERE user_id = ANY(?)");
+             PreparedStatement deleteUsers = conn.prepareStatement("DELETE FROM users WHERE id = ANY(?)")) {
+            Array userIdArray = conn.createArrayOf("bigint", userIds.toArray());
+            deleteBookings.setArray(1, userIdArray);
+            deleteBookings.executeUpdate();
+            deleteUsers.setArray(1, userIdArray);
+            deleteUsers.executeUpdate();
+        }
+    }
+
+    private static void setUserDeleted(final Long userId, final boolean deleted) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("UPDATE users SET deleted = ? WHERE id = ?;")) {
+            pst.setBoolean(1, deleted);
+            pst.setLong(2, userId);
+            pst.executeUpdate();
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.comm.CommunicationException;
+import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicationMessage;
+import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
+import uk.ac.cam.cl.dtg.segue.comm.EmailType;
+import uk.ac.cam.cl.dtg.segue.comm.PgEmailOutbox;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PgEmailOutboxIT extends IsaacIntegrationTest {
+    private static final long WAIT_TIMEOUT_MILLISECONDS = 20000;
+
+    private final List<PgEmailOutbox> outboxes = Lists.newArrayList();
+
+    @Before
+    public void setUp() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("DELETE FROM email_outbox;")) {
+            pst.executeUpdate();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (PgEmailOutbox outbox : outboxes) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void enqueue_emailsOfDifferentPriorities_sentHighestPriorityFirstAndDeleted() throws Exception {
+        RecordingCommunicator communicator = new RecordingCommunicator(0);
+        // Queue the emails before any worker can claim them, so they are claimed in one batch:
+        PgEmailOutbox producer = outbox(new RecordingCommunicator(0), 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        producer.close();
+        producer.enqueue(List.of(email("news@example.com", EmailType.NEWS_AND_UPDATES),
+                email("admin@example.com", EmailType.ADMIN), email("system@example.com", EmailType.SYSTEM)));
+
+        outbox(communicator, 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        waitFor(() -> communicator.sent.size() == 3 && countRows("TRUE") == 0);
+
+        assertEquals(List.of("admin@example.com", "system@example.com", "news@example.com"), communicator.sent);
+    }
+
+    @Test
+    public void enqueue_sendFails_rescheduledWithBackoffThenMarkedFailed() throws Exception {
+        RecordingCommunicator communicator = new RecordingCommunicator(Integer.MAX_VALUE);
+        PgEmailOutbox outbox = outbox(communicator, 1, 2);
+        outbox.enqueue(List.of(email("student@example.com", EmailType.SYSTEM)));
+
+        waitFor(() -> countRows("attempts = 1") == 1);
+        // The first retry waits a minute, so the email is not tried again straight away:
+        assertEquals(1, countRows("NOT failed AND last_error IS NOT NULL"
+                + " AND next_attempt BETWEEN now() + INTERVAL '50 seconds' AND now() + INTERVAL '70 seconds'"));
+        assertEquals(1, communicator.attempts);
+
+        // Once the retry is due, the last attempt fails and the email is abandoned:
+        executeUpdate("UPDATE email_outbox SET next_attempt = now();");
+        waitFor(() -> countRows("attempts = 2 AND failed") == 1);
+        assertEquals(2, communicator.attempts);
+        assertTrue(communicator.sent.isEmpty());
+    }
+
+    @Test
+    public void enqueue_emailLeasedByAnotherWorker_notSentUntilLeaseEnds() throws Exception {
+        RecordingCommunicator communicator = new RecordingCommunicator(0);
+        PgEmailOutbox producer = outbox(new RecordingCommunicator(0), 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        producer.close();
+        producer.enqueue(List.of(email("student@example.com", EmailType.SYSTEM)));
+        // As if a worker on a node which then died had claimed it:
+        executeUpdate("UPDATE email_outbox SET next_attempt = now() + INTERVAL '10 minutes';");
+
+        outbox(communicator, 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        Thread.sleep(2000);
+        assertTrue(communicator.sent.isEmpty());
+
+        executeUpdate("UPDATE email_outbox SET next_attempt = now();");
+        waitFor(() -> communicator.sent.size() == 1 && countRows("TRUE") == 0);
+    }
+
+    @Test
+    public void enqueue_workersOnSeveralNodes_eachEmailSentExactlyOnce() throws Exception {
+        RecordingCommunicator communicator = new RecordingCommunicator(0);
+        int emailCount = 200;
+        List<EmailCommunicationMessage> emails = Lists.newArrayList();
+        for (int i = 0; i < emailCount; i++) {
+            emails.add(email("student" + i + "@example.com", EmailType.ASSIGNMENTS));
+        }
+
+        // Two nodes with several workers each, all sending through the one communicator:
+        outbox(communicator, 3, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        PgEmailOutbox secondNode = outbox(communicator, 3, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        secondNode.enqueue(emails);
+
+        waitFor(() -> communicator.sent.size() >= emailCount && countRows("TRUE") == 0);
+        assertEquals(emailCount, communicator.sent.size());
+        assertEquals(emailCount, new HashSet<>(communicator.sent).size());
+    }
+
+    @Test
+    public void enqueue_unreadableEmailsInBatch_markedFailedAndRestOfBatchSent() throws Exception {
+        RecordingCommunicator communicator = new RecordingCommunicator(0);
+        PgEmailOutbox producer = outbox(new RecordingCommunicator(0), 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        producer.close();
+        producer.enqueue(List.of(email("first@example.com", EmailType.SYSTEM),
+                email("unknown-type@example.com", EmailType.SYSTEM),
+                email("bad-attachments@example.com", EmailType.SYSTEM), email("last@example.com", EmailType.SYSTEM)));
+        // As if written by a version which knew other email types, or stored attachments differently:
+        executeUpdate("UPDATE email_outbox SET email_type = 'NO_SUCH_TYPE'"
+                + " WHERE recipient_address = 'unknown-type@example.com';");
+        executeUpdate("UPDATE email_outbox SET attachments = '{\"fileName\": \"not a list\"}'::jsonb"
+                + " WHERE recipient_address = 'bad-attachments@example.com';");
+
+        outbox(communicator, 1, PgEmailOutbox.DEFAULT_MAX_ATTEMPTS);
+        waitFor(() -> communicator.sent.size() == 2 && countRows("TRUE") == 2);
+
+        assertEquals(List.of("first@example.com", "last@example.com"), communicator.sent);
+        assertEquals(2, countRows("failed AND attempts = 1 AND last_error LIKE 'Unable to read the email%'"));
+    }
+
+    private PgEmailOutbox outbox(final EmailCommunicator communicator, final int workers, final int maxAttempts) {
+        PgEmailOutbox outbox = new PgEmailOutbox(postgresSqlDb, communicator, workers, 1000, maxAttempts);
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    private static EmailCommunicationMessage email(final String recipient, final EmailType type) {
+        return new EmailCommunicationMessage(recipient, "Subject", "Message", null, type);
+    }
+
+    private static int countRows(final String condition) {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT COUNT(*) FROM email_outbox WHERE " + condition);
+             ResultSet results = pst.executeQuery()) {
+            results.next();
+            return results.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void executeUpdate(final String query) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+            pst.executeUpdate();
+        }
+    }
+
+    private static void waitFor(final Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_TIMEOUT_MILLISECONDS);
+        while (!condition.isMet()) {
+            assertFalse("Timed out waiting for the outbox", System.nanoTime() > deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Records who each email is sent to instead of sending it, failing a fixed number of attempts first.
+     */
+    private static final class RecordingCommunicator extends EmailCommunicator {
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final int failuresBeforeSuccess;
+        private volatile int attempts;
+
+        private RecordingCommunicator(final int failuresBeforeSuccess) {
+            super("localhost", "noreply@example.com", "Isaac");
+            this.failuresBeforeSuccess = failuresBeforeSuccess;
+        }
+
+        @Override
+        public synchronized void sendMessage(final EmailCommunicationMessage email) throws CommunicationException {
+            attempts++;
+            if (attempts <= failuresBeforeSuccess) {
+                throw new CommunicationException(new IllegalStateException("Mail server unavailable"));
+            }
+            sent.add(email.getRecipientAddress());
+        }
+
+        @Override
+        public void closeConnections() {
+            // Nothing is connected.
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.api.monitors.EmailVerificationRequestMisuseHandler;
+import uk.ac.cam.cl.dtg.segue.api.monitors.PgMisuseMonitor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PgMisuseMonitorIT extends IsaacIntegrationTest {
+    private static final String EVENT = EmailVerificationRequestMisuseHandler.class.getSimpleName();
+    private static final long SYNC_INTERVAL = 100;
+
+    // Two monitors sharing one database behave like two API nodes behind a load balancer.
+    private PgMisuseMonitor firstNode;
+    private PgMisuseMonitor secondNode;
+
+    @Before
+    public void setUp() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("DELETE FROM misuse_counters;")) {
+            pst.executeUpdate();
+        }
+
+        firstNode = new PgMisuseMonitor(postgresSqlDb, SYNC_INTERVAL, 0);
+        secondNode = new PgMisuseMonitor(postgresSqlDb, SYNC_INTERVAL, 0);
+        firstNode.registerHandler(EVENT, new EmailVerificationRequestMisuseHandler());
+        secondNode.registerHandler(EVENT, new EmailVerificationRequestMisuseHandler());
+    }
+
+    @After
+    public void tearDown() {
+        firstNode.close();
+        secondNode.close();
+    }
+
+    @Test
+    public void notifyEvent_eventsSplitBetweenNodes_hardThresholdEnforcedOnMergedCount() throws Exception {
+        String agent = "198.51.100.7";
+        int hardThreshold = EmailVerificationRequestMisuseHandler.HARD_THRESHOLD;
+
+        // Spend the whole allowance on the first node, and let it reach the database:
+        for (int i = 0; i < hardThreshold; i++) {
+            firstNode.notifyEvent(agent, EVENT);
+        }
+        firstNode.close();
+
+        // The second node has never seen this agent, but must still refuse any more attempts:
+        assertTrue(secondNode.hasMisused(agent, EVENT));
+        try {
+            secondNode.notifyEvent(agent, EVENT);
+            fail("Expected SegueResourceMisuseException from the second node");
+        } catch (SegueResourceMisuseException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void resetMisuseCount_countInDatabase_resetForEveryNode() throws Exception {
+        String agent = "user@example.com";
+        firstNode.notifyEvent(agent, EVENT, EmailVerificationRequestMisuseHandler.HARD_THRESHOLD);
+        firstNode.close();
+        assertTrue(secondNode.hasMisused(agent, EVENT));
+
+        secondNode.resetMisuseCount(agent, EVENT);
+
+        assertFalse(secondNode.hasMisused(agent, EVENT));
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT COUNT(*) FROM misuse_counters;");
+             ResultSet results = pst.executeQuery()) {
+            results.next();
+            assertEquals(0, results.getInt(1));
+        }
+    }
+
+    @Test
+    public void notifyEvent_moreCountsThanOneUpsertHolds_everyCountWritten() throws Exception {
+        // More rows than fit in one statement's bind parameters at 4 per row:
+        int agents = 17000;
+        for (int i = 0; i < agents; i++) {
+            firstNode.notifyEvent("agent-" + i, EVENT);
+        }
+        firstNode.close();
+
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT COUNT(*), SUM(count) FROM misuse_counters;");
+             ResultSet results = pst.executeQuery()) {
+            results.next();
+            assertEquals(agents, results.getInt(1));
+            assertEquals(agents, results.getInt(2));
+        }
+    }
+
+    @Test
+    public void purgeExpiredCounts_expiredAndCurrentCounts_onlyExpiredDeleted() throws Exception {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("INSERT INTO misuse_counters VALUES"
+                     + " ('expired', ?, now() - INTERVAL '1 minute', 3),"
+                     + " ('current', ?, now() + INTERVAL '1 hour', 3);")) {
+            pst.setString(1, EVENT);
+            pst.setString(2, EVENT);
+            pst.executeUpdate();
+        }
+
+        assertEquals(1, firstNode.purgeExpiredCounts());
+
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT agent_identifier FROM misuse_counters;");
+             ResultSet results = pst.executeQuery()) {
+            assertTrue(results.next());
+            assertEquals("current", results.getString(1));
+            assertFalse(results.next());
+        }
+    }
+}
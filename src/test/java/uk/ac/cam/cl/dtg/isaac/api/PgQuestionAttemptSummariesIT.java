@@ -0,0 +1,148 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
+import uk.ac.cam.cl.dtg.isaac.quiz.PgQuestionAttempts;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class PgQuestionAttemptSummariesIT extends IsaacIntegrationTest {
+    // Rows of the summaries table and of the same summary computed from the attempts, which must be identical:
+    private static final String SUMMARIES = "SELECT user_id, question_id, page_id, first_attempt, latest_attempt,"
+            + " first_correct, attempt_count FROM question_attempt_summaries WHERE user_id = ANY(?)";
+    private static final String SUMMARIES_FROM_ATTEMPTS = "SELECT user_id, question_id, page_id, min(\"timestamp\"),"
+            + " max(\"timestamp\"), min(\"timestamp\") FILTER (WHERE correct), count(*)::integer"
+            + " FROM question_attempts WHERE user_id = ANY(?) GROUP BY user_id, question_id, page_id";
+
+    private PgQuestionAttempts questionAttempts;
+    private long firstUserId;
+    private long secondUserId;
+
+    @Before
+    public void setUp() throws SQLException {
+        questionAttempts = new PgQuestionAttempts(postgresSqlDb,
+                new ContentMapper(new Reflections("uk.ac.cam.cl.dtg")));
+        firstUserId = createUser();
+        secondUserId = createUser();
+    }
+
+    @Test
+    public void registerQuestionAttempt_severalAttempts_summariesMatchAttempts() throws Exception {
+        registerAttempt(firstUserId, "page_a|part_1", false, 1000);
+        registerAttempt(firstUserId, "page_a|part_1", true, 2000);
+        registerAttempt(firstUserId, "page_a|part_1", false, 3000);
+        registerAttempt(firstUserId, "page_a|part_2", false, 4000);
+        registerAttempt(firstUserId, "page_b|part_1", true, 5000);
+        registerAttempt(secondUserId, "page_a|part_1", true, 6000);
+
+        assertEquals(4, countSummaryRows());
+        assertSummariesMatchAttempts();
+    }
+
+    @Test
+    public void mergeuser_bothUsersAttemptedSamePart_summariesMatchAttempts() throws Exception {
+        registerAttempt(firstUserId, "page_a|part_1", false, 1000);
+        registerAttempt(firstUserId, "page_a|part_2", true, 2000);
+        registerAttempt(secondUserId, "page_a|part_1", true, 500);
+        registerAttempt(secondUserId, "page_c|part_1", false, 3000);
+
+        mergeUsers();
+
+        // The kept user has one summary per part, combining both users' attempts at page_a|part_1:
+        assertEquals(3, countSummaryRows());
+        assertSummariesMatchAttempts();
+
+        // And later attempts still update the merged summaries:
+        registerAttempt(firstUserId, "page_a|part_1", false, 7000);
+        assertSummariesMatchAttempts();
+    }
+
+    @Test
+    public void getQuestionAttemptsVersion_attemptsRecordedAndMerged_versionChanges() throws Exception {
+        assertEquals("0", questionAttempts.getQuestionAttemptsVersion(firstUserId));
+
+        registerAttempt(firstUserId, "page_a|part_1", false, 1000);
+        registerAttempt(firstUserId, "page_a|part_1", true, 2000);
+        assertEquals("2", questionAttempts.getQuestionAttemptsVersion(firstUserId));
+
+        registerAttempt(secondUserId, "page_b|part_1", true, 3000);
+        registerAttempt(secondUserId, "page_b|part_2", true, 4000);
+        registerAttempt(secondUserId, "page_b|part_3", true, 5000);
+        assertEquals("3", questionAttempts.getQuestionAttemptsVersion(secondUserId));
+
+        // The kept user's version moves past both users' versions, so it differs from any they had before:
+        mergeUsers();
+        assertEquals("4", questionAttempts.getQuestionAttemptsVersion(firstUserId));
+    }
+
+    private void mergeUsers() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT mergeuser(?, ?);")) {
+            pst.setLong(1, firstUserId);
+            pst.setLong(2, secondUserId);
+            pst.execute();
+        }
+    }
+
+    private void registerAttempt(final long userId, final String questionId, final boolean correct,
+                                 final long timestamp) throws Exception {
+        StringChoice answer = new StringChoice();
+        answer.setValue("answer");
+        QuestionValidationResponse attempt = new QuestionValidationResponse(questionId, answer, correct, null,
+                new Date(timestamp));
+        questionAttempts.registerQuestionAttempt(userId, questionId.split("\\|")[0], questionId, attempt);
+    }
+
+    private void assertSummariesMatchAttempts() throws SQLException {
+        assertEquals(0, countRowsOfFirstNotInSecond(SUMMARIES, SUMMARIES_FROM_ATTEMPTS));
+        assertEquals(0, countRowsOfFirstNotInSecond(SUMMARIES_FROM_ATTEMPTS, SUMMARIES));
+    }
+
+    private int countRowsOfFirstNotInSecond(final String first, final String second) throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(
+                     "SELECT count(*) FROM (" + first + " EXCEPT " + second + ") AS difference")) {
+            Long[] userIds = {firstUserId, secondUserId};
+            pst.setArray(1, conn.createArrayOf("bigint", userIds));
+            pst.setArray(2, conn.createArrayOf("bigint", userIds));
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                return results.getInt(1);
+            }
+        }
+    }
+
+    private int countSummaryRows() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(
+                     "SELECT count(*) FROM question_attempt_summaries WHERE user_id = ANY(?)")) {
+            pst.setArray(1, conn.createArrayOf("bigint", new Long[] {firstUserId, secondUserId}));
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                return results.getInt(1);
+            }
+        }
+    }
+
+    private static long createUser() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("INSERT INTO users(email) VALUES (?) RETURNING id")) {
+            pst.setString(1, UUID.randomUUID() + "@example.com");
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                return results.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
+import uk.ac.cam.cl.dtg.isaac.quiz.PgQuestionAttempts;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class PgQuestionAttemptsPageIdIT extends IsaacIntegrationTest {
+    private PgQuestionAttempts questionAttempts;
+    private long firstUserId;
+    private long secondUserId;
+
+    @Before
+    public void setUp() throws Exception {
+        questionAttempts = new PgQuestionAttempts(postgresSqlDb,
+                new ContentMapper(new Reflections("uk.ac.cam.cl.dtg")));
+        firstUserId = createUser();
+        secondUserId = createUser();
+
+        // Pages whose ids are prefixes of one another, which a "question_id LIKE 'page%'" match would confuse:
+        registerAttempt(firstUserId, "page|part_1", true, 1000);
+        registerAttempt(firstUserId, "page|part_1", false, 2000);
+        registerAttempt(firstUserId, "page_2|part_1", true, 3000);
+        registerAttempt(firstUserId, "page_22|part_1", false, 4000);
+        registerAttempt(secondUserId, "page|part_2", true, 5000);
+        registerAttempt(secondUserId, "page_22|part_1", true, 6000);
+    }
+
+    @Test
+    public void getQuestionAttemptsByQuestionPages_pagesSharingPrefix_onlyRequestedPagesReturned() throws Exception {
+        Map<String, Map<String, List<QuestionValidationResponse>>> attempts =
+                questionAttempts.getQuestionAttemptsByQuestionPages(firstUserId, List.of("page", "page_22"));
+
+        assertEquals(Set.of("page", "page_22"), attempts.keySet());
+        assertEquals(Set.of("page|part_1"), attempts.get("page").keySet());
+        assertEquals(2, attempts.get("page").get("page|part_1").size());
+        assertEquals(Set.of("page_22|part_1"), attempts.get("page_22").keySet());
+    }
+
+    @Test
+    public void getQuestionAttemptsByUsersAndQuestionPrefix_pagesSharingPrefix_onlyRequestedPagesReturned()
+            throws Exception {
+        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> attempts =
+                questionAttempts.getQuestionAttemptsByUsersAndQuestionPrefix(
+                        List.of(firstUserId, secondUserId), List.of("page", "page_2"));
+
+        assertEquals(Set.of("page", "page_2"), attempts.get(firstUserId).keySet());
+        assertEquals(2, attempts.get(firstUserId).get("page").get("page|part_1").size());
+        assertEquals(1, attempts.get(firstUserId).get("page_2").get("page_2|part_1").size());
+        assertEquals(Set.of("page"), attempts.get(secondUserId).keySet());
+        assertEquals(Set.of("page|part_2"), attempts.get(secondUserId).get("page").keySet());
+    }
+
+    @Test
+    public void getQuestionAttemptsByUsersAndQuestionPrefix_noAttemptsAtPages_emptyMapForEachUser() throws Exception {
+        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> attempts =
+                questionAttempts.getQuestionAttemptsByUsersAndQuestionPrefix(
+                        List.of(firstUserId, secondUserId), List.of("pag"));
+
+        assertEquals(Map.of(firstUserId, Map.of(), secondUserId, Map.of()), attempts);
+    }
+
+    private void registerAttempt(final long userId, final String questionId, final boolean correct,
+                                 final long timestamp) throws Exception {
+        StringChoice answer = new StringChoice();
+        answer.setValue("answer");
+        QuestionValidationResponse attempt = new QuestionValidationResponse(questionId, answer, correct, null,
+                new Date(timestamp));
+        questionAttempts.registerQuestionAttempt(userId, questionId.split("\\|")[0], questionId, attempt);
+    }
+
+    private static long createUser() throws SQLException {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("INSERT INTO users(email) VALUES (?) RETURNING id")) {
+            pst.setString(1, UUID.randomUUID() + "@example.com");
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                return results.getLong(1);
+            }
+        }
+    }
+}
@@ -644,7 +644,7 @@ public class QuizFacadeTest extends AbstractFacadeTest {
                 as(student,
                     prepare(quizQuestionManager, m -> {
                         expect(m.convertJsonAnswerToChoice(jsonAnswer)).andReturn(choice);
-                        expect(m.validateAnswer(questionDO, choice)).andReturn(validationResponse);
+                        expect(m.validateAnswer(eq(questionDO), anyObject(), eq(choice))).andReturn(validationResponse);
                         //expect(m.augmentQuestionsForUser(studentQuiz, studentAttempt, student, false)).andReturn(quiz);
                         m.recordQuestionAttempt(studentAttempt, validationResponse);
                     }),
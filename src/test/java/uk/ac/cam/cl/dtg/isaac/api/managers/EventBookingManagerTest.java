@@ -43,6 +43,8 @@ import static org.easymock.EasyMock.mock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 
@@ -51,6 +53,7 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
  */
 public class EventBookingManagerTest {
     static private Date someFutureDate = new Date(System.currentTimeMillis() + 7*24*60*60*1000);
+    static private Date somePastDate = new Date(System.currentTimeMillis() - 7*24*60*60*1000);
     private EventBookingPersistenceManager dummyEventBookingPersistenceManager;
     private EmailManager dummyEmailManager;
     private UserAssociationManager dummyUserAssociationManager;
@@ -668,6 +671,62 @@ public class EventBookingManagerTest {
         verify(mockedObjects);
     }
 
+    @Test
+    public void getPlacesAvailable_listOfEvents_oneQueryAndSameResultsAsSingleEvents() throws Exception {
+        EventBookingManager ebm = this.buildEventBookingManager();
+        IsaacEventPageDTO studentEvent = new IsaacEventPageDTO() {{
+            setId("studentEventId");
+            setNumberOfPlaces(100);
+            setTags(ImmutableSet.of("student"));
+            setEventStatus(EventStatus.OPEN);
+            setDate(someFutureDate);
+        }};
+        IsaacEventPageDTO pastWaitingListOnlyEvent = new IsaacEventPageDTO() {{
+            setId("pastEventId");
+            setNumberOfPlaces(10);
+            setTags(ImmutableSet.of("teacher"));
+            setEventStatus(EventStatus.WAITING_LIST_ONLY);
+            setDate(somePastDate);
+        }};
+        IsaacEventPageDTO unlimitedEvent = new IsaacEventPageDTO() {{
+            setId("unlimitedEventId");
+            setTags(ImmutableSet.of("teacher"));
+            setEventStatus(EventStatus.OPEN);
+            setDate(someFutureDate);
+        }};
+        IsaacEventPageDTO emptyEvent = new IsaacEventPageDTO() {{
+            setId("emptyEventId");
+            setNumberOfPlaces(5);
+            setTags(ImmutableSet.of("teacher"));
+            setEventStatus(EventStatus.OPEN);
+            setDate(someFutureDate);
+        }};
+
+        Map<BookingStatus, Map<Role, Long>> studentEventCounts = generatePlacesAvailableMap();
+        studentEventCounts.get(BookingStatus.CONFIRMED).put(Role.STUDENT, 20L);
+        studentEventCounts.get(BookingStatus.CONFIRMED).put(Role.TEACHER, 5L);
+        studentEventCounts.get(BookingStatus.WAITING_LIST).put(Role.STUDENT, 3L);
+        Map<BookingStatus, Map<Role, Long>> pastEventCounts = generatePlacesAvailableMap();
+        pastEventCounts.get(BookingStatus.CONFIRMED).put(Role.TEACHER, 4L);
+        pastEventCounts.get(BookingStatus.WAITING_LIST).put(Role.TEACHER, 50L);
+
+        // Only events with a limit are queried, and only past events include deleted users:
+        expect(dummyEventBookingPersistenceManager.getEventBookingStatusCounts(
+                ImmutableList.of("studentEventId", "pastEventId", "emptyEventId"), ImmutableList.of("pastEventId")))
+                .andReturn(ImmutableMap.of("studentEventId", studentEventCounts, "pastEventId", pastEventCounts))
+                .once();
+
+        replay(mockedObjects);
+        Map<String, Long> placesAvailable = ebm.getPlacesAvailable(
+                ImmutableList.of(studentEvent, pastWaitingListOnlyEvent, unlimitedEvent, emptyEvent));
+        assertEquals(Long.valueOf(100 - 20 - 3), placesAvailable.get("studentEventId"));
+        assertEquals(Long.valueOf(10 - 4), placesAvailable.get("pastEventId"));
+        assertTrue(placesAvailable.containsKey("unlimitedEventId"));
+        assertNull(placesAvailable.get("unlimitedEventId"));
+        assertEquals(Long.valueOf(5), placesAvailable.get("emptyEventId"));
+        verify(mockedObjects);
+    }
+
     @Test
     public void getEventPage_checkWaitingListOnlyEventCapacity_capacityCalculatedCorrectly() throws
             Exception {
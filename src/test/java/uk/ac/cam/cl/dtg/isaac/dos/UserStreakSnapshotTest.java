@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dos;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the UserStreakSnapshot class.
+ */
+public class UserStreakSnapshotTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 14);
+    private static final long LOADED_MILLIS = 1_000_000L;
+    private static final long TOMORROW_MILLIS = 5_000_000L;
+
+    @Test
+    public void recordFirstCorrectAttempt_dailyTargetReached_streakExtendedOnce() {
+        UserStreakSnapshot snapshot = new UserStreakSnapshot(TODAY, LOADED_MILLIS, TOMORROW_MILLIS,
+                1, 3, 4, 4, 5, 10, 2, 6);
+
+        snapshot.recordFirstCorrectAttempt();
+        assertStreaks(snapshot.toMap(), 2, 4, 4, 6, 2, 6);
+        snapshot.recordFirstCorrectAttempt();
+        assertStreaks(snapshot.toMap(), 3, 5, 5, 7, 2, 6);
+        // Going past the target does not extend the streak again:
+        snapshot.recordFirstCorrectAttempt();
+        assertStreaks(snapshot.toMap(), 4, 5, 5, 8, 2, 6);
+    }
+
+    @Test
+    public void recordFirstCorrectAttempt_weeklyTargetReached_longestWeeklyStreakOnlyRaisedWhenBeaten() {
+        UserStreakSnapshot snapshot = new UserStreakSnapshot(TODAY, LOADED_MILLIS, TOMORROW_MILLIS,
+                5, 3, 1, 9, 9, 10, 6, 6);
+
+        snapshot.recordFirstCorrectAttempt();
+        assertStreaks(snapshot.toMap(), 6, 1, 9, 10, 7, 7);
+    }
+
+    @Test
+    public void needsReloading_afterReconcileIntervalOrNextDay_true() {
+        UserStreakSnapshot snapshot = new UserStreakSnapshot(TODAY, LOADED_MILLIS, TOMORROW_MILLIS,
+                0, 3, 0, 0, 0, 10, 0, 0);
+
+        assertFalse(snapshot.needsReloading(LOADED_MILLIS + 999, 1000));
+        assertTrue(snapshot.needsReloading(LOADED_MILLIS + 1000, 1000));
+        assertFalse(snapshot.needsReloading(TOMORROW_MILLIS - 1, Long.MAX_VALUE));
+        assertTrue(snapshot.needsReloading(TOMORROW_MILLIS, Long.MAX_VALUE));
+    }
+
+    /**
+     * Check the streak records sent to a user's websockets.
+     */
+    @SuppressWarnings("unchecked")
+    private static void assertStreaks(final Map<String, Object> snapshot, final int dailyProgress,
+                                      final int dailyStreak, final int longestDailyStreak, final int weeklyProgress,
+                                      final int weeklyStreak, final int longestWeeklyStreak) {
+        Map<String, Object> daily = (Map<String, Object>) snapshot.get("dailyStreakRecord");
+        assertEquals(dailyProgress, daily.get("currentActivity"));
+        assertEquals(dailyStreak, daily.get("currentStreak"));
+        assertEquals(longestDailyStreak, daily.get("largestStreak"));
+
+        Map<String, Object> weekly = (Map<String, Object>) snapshot.get("weeklyStreakRecord");
+        assertEquals(weeklyProgress, weekly.get("currentActivity"));
+        assertEquals(weeklyStreak, weekly.get("currentStreak"));
+        assertEquals(longestWeeklyStreak, weekly.get("largestWeeklyStreak"));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for the CachingQuestionAttemptManager class.
+ */
+public class CachingQuestionAttemptManagerTest {
+    private static final Long USER_ID = 7L;
+    private static final String PAGE_ID = "page";
+    private static final String OTHER_PAGE_ID = "other_page";
+    private static final String QUESTION_ID = PAGE_ID + "|question";
+    private static final String VERSION = "1";
+    private static final String NEXT_VERSION = "2";
+
+    private IQuestionAttemptManager database;
+    private CachingQuestionAttemptManager questionAttempts;
+    private QuestionValidationResponse firstAttempt;
+
+    @Before
+    public final void setUp() {
+        this.database = createMock(IQuestionAttemptManager.class);
+        this.questionAttempts = new CachingQuestionAttemptManager(database,
+                CachingQuestionAttemptManager.DEFAULT_MAX_ATTEMPTS, false);
+        this.firstAttempt = new QuestionValidationResponse(QUESTION_ID, null, false, null, new Date());
+    }
+
+    @Test
+    public void getQuestionAttempts_calledTwice_readFromDatabaseOnce() throws Exception {
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).times(2);
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).once();
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        Map<String, Map<String, List<QuestionValidationResponse>>> attempts
+                = questionAttempts.getQuestionAttempts(USER_ID);
+
+        assertSame(firstAttempt, attempts.get(PAGE_ID).get(QUESTION_ID).get(0));
+        verify(database);
+    }
+
+    @Test
+    public void getQuestionAttempts_resultModified_cacheUnchanged() throws Exception {
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).anyTimes();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).once();
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        questionAttempts.getQuestionAttempts(USER_ID).get(PAGE_ID).get(QUESTION_ID).clear();
+
+        assertEquals(1, questionAttempts.getQuestionAttempts(USER_ID).get(PAGE_ID).get(QUESTION_ID).size());
+        verify(database);
+    }
+
+    @Test
+    public void registerQuestionAttempt_attemptsCached_attemptAppended() throws Exception {
+        QuestionValidationResponse secondAttempt = new QuestionValidationResponse(QUESTION_ID, null, true, null,
+                new Date());
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).once();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).once();
+        database.registerQuestionAttempt(USER_ID, PAGE_ID, QUESTION_ID, secondAttempt);
+        expectLastCall().once();
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(NEXT_VERSION).times(2);
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        questionAttempts.registerQuestionAttempt(USER_ID, PAGE_ID, QUESTION_ID, secondAttempt);
+        List<QuestionValidationResponse> attempts = questionAttempts.getQuestionAttempts(USER_ID)
+                .get(PAGE_ID).get(QUESTION_ID);
+
+        assertEquals(Lists.newArrayList(firstAttempt, secondAttempt), attempts);
+        verify(database);
+    }
+
+    @Test
+    public void registerQuestionAttempt_attemptAlsoRecordedElsewhere_readAgainFromDatabase() throws Exception {
+        QuestionValidationResponse secondAttempt = new QuestionValidationResponse(QUESTION_ID, null, true, null,
+                new Date());
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).once();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).times(2);
+        database.registerQuestionAttempt(USER_ID, PAGE_ID, QUESTION_ID, secondAttempt);
+        expectLastCall().once();
+        // Another server recorded an attempt just before this one:
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn("3").times(2);
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        questionAttempts.registerQuestionAttempt(USER_ID, PAGE_ID, QUESTION_ID, secondAttempt);
+        questionAttempts.getQuestionAttempts(USER_ID);
+
+        verify(database);
+    }
+
+    @Test
+    public void getQuestionAttempts_versionChangedElsewhere_readAgainFromDatabase() throws Exception {
+        QuestionValidationResponse otherServerAttempt = new QuestionValidationResponse(QUESTION_ID, null, true, null,
+                new Date());
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).once();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).once();
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(NEXT_VERSION).times(3);
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(otherServerAttempt)).once();
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        assertSame(otherServerAttempt, questionAttempts.getQuestionAttempts(USER_ID)
+                .get(PAGE_ID).get(QUESTION_ID).get(0));
+        // The attempts read again are cached at the new version:
+        assertSame(otherServerAttempt, questionAttempts.getQuestionAttempts(USER_ID)
+                .get(PAGE_ID).get(QUESTION_ID).get(0));
+
+        verify(database);
+    }
+
+    @Test
+    public void getQuestionAttemptsByQuestionPages_attemptsCached_servedFromCache() throws Exception {
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).anyTimes();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).once();
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+
+        assertSame(firstAttempt, questionAttempts.getQuestionAttemptsByQuestionPages(USER_ID,
+                Collections.singletonList(PAGE_ID)).get(PAGE_ID).get(QUESTION_ID).get(0));
+        assertFalse(questionAttempts.getQuestionAttemptsByQuestionPages(USER_ID,
+                Collections.singletonList(OTHER_PAGE_ID)).containsKey(OTHER_PAGE_ID));
+        verify(database);
+    }
+
+    @Test
+    public void mergeAnonymousQuestionInformation_attemptsCached_readAgainFromDatabase() throws Exception {
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).anyTimes();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).times(2);
+        database.mergeAnonymousQuestionInformationWithRegisteredUserRecord("anonymous", USER_ID);
+        expectLastCall().once();
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        questionAttempts.mergeAnonymousQuestionInformationWithRegisteredUserRecord("anonymous", USER_ID);
+        questionAttempts.getQuestionAttempts(USER_ID);
+
+        verify(database);
+    }
+
+    @Test
+    public void invalidateCachedQuestionAttempts_attemptsCached_readAgainFromDatabase() throws Exception {
+        expect(database.getQuestionAttemptsVersion(USER_ID)).andReturn(VERSION).anyTimes();
+        expect(database.getQuestionAttempts(USER_ID)).andReturn(attemptsOf(firstAttempt)).times(2);
+        replay(database);
+
+        questionAttempts.getQuestionAttempts(USER_ID);
+        questionAttempts.invalidateCachedQuestionAttempts(USER_ID);
+        questionAttempts.getQuestionAttempts(USER_ID);
+
+        verify(database);
+    }
+
+    /**
+     * @param attempt an attempt at QUESTION_ID.
+     * @return the attempts map the database would return for a user with only that attempt.
+     */
+    private static Map<String, Map<String, List<QuestionValidationResponse>>> attemptsOf(
+            final QuestionValidationResponse attempt) {
+        Map<String, List<QuestionValidationResponse>> page = Maps.newLinkedHashMap();
+        page.put(QUESTION_ID, Lists.newArrayList(attempt));
+        Map<String, Map<String, List<QuestionValidationResponse>>> attempts = Maps.newLinkedHashMap();
+        attempts.put(PAGE_ID, page);
+        return attempts;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ExternalValidatorClient class, which talks to a stub checker on the loopback interface.
+ */
+public class ExternalValidatorClientTest {
+    private static final String PATH = "/check";
+    private static final int TIMEOUT_MILLISECONDS = 200;
+
+    private HttpServer checker;
+    private ExternalValidatorClient client;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final CountDownLatch releaseStalledRequests = new CountDownLatch(1);
+    private volatile int status = 200;
+    private volatile boolean stalled;
+
+    @Before
+    public final void setUp() throws Exception {
+        checker = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        checker.setExecutor(Executors.newCachedThreadPool());
+        checker.createContext(PATH, this::respond);
+        checker.start();
+        client = new ExternalValidatorClient("test-checker", "127.0.0.1",
+                String.valueOf(checker.getAddress().getPort()), TIMEOUT_MILLISECONDS, 4);
+    }
+
+    @After
+    public final void tearDown() {
+        releaseStalledRequests.countDown();
+        client.close();
+        checker.stop(0);
+    }
+
+    @Test
+    public void checkAll_severalRequests_responsesInRequestOrder() throws Exception {
+        List<HashMap<String, Object>> responses = client.checkAll(PATH, List.of(Map.of("target", "x"),
+                Map.of("target", "y"), Map.of("target", "z")));
+
+        assertEquals(3, responses.size());
+        assertEquals("x", responses.get(0).get("target"));
+        assertEquals("y", responses.get(1).get("target"));
+        assertEquals("z", responses.get(2).get("target"));
+    }
+
+    @Test
+    public void check_checkerStalls_failsWithinTimeout() {
+        stalled = true;
+        long start = System.currentTimeMillis();
+        try {
+            client.check(PATH, Map.of("target", "x"));
+            fail("Expected the stalled request to fail.");
+        } catch (IOException e) {
+            // The socket timeout may fire before the overall wait does; either way the request must fail promptly:
+            assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @Test
+    public void check_repeatedFailures_circuitOpensWithoutContactingChecker() throws Exception {
+        status = 500;
+        for (int i = 0; i < 5; i++) {
+            try {
+                client.check(PATH, Map.of("target", "attempt " + i));
+                fail("Expected the failing request to fail.");
+            } catch (IOException e) {
+                // Expected: the response body is not JSON.
+            }
+        }
+        int requestsBeforeCircuitOpened = requestCount.get();
+
+        try {
+            client.check(PATH, Map.of("target", "x"));
+            fail("Expected the circuit breaker to be open.");
+        } catch (IOException e) {
+            assertEquals(requestsBeforeCircuitOpened, requestCount.get());
+        }
+    }
+
+    @Test
+    public void checkAll_tooManyRequestsWaiting_refusedImmediately() {
+        stalled = true;
+        // Four running and forty waiting for a connection fill the client, so the last request must be refused:
+        List<Map<String, String>> requests = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            requests.add(Map.of("target", "request " + i));
+        }
+        long start = System.currentTimeMillis();
+        try {
+            client.checkAll(PATH, requests);
+            fail("Expected the request to be refused.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Too many requests"));
+            assertTrue(System.currentTimeMillis() - start < TIMEOUT_MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void check_clientClosed_failsWithoutContactingChecker() {
+        client.close();
+        try {
+            client.check(PATH, Map.of("target", "x"));
+            fail("Expected the closed client to refuse the request.");
+        } catch (IOException e) {
+            assertEquals(0, requestCount.get());
+        }
+    }
+
+    @Test
+    public void isCheckerError_errorWithAndWithoutCode_onlyFailuresOfTheChecker() {
+        assertTrue(ExternalValidatorClient.isCheckerError(Map.of("error", "Timeout", "code", 500)));
+        assertFalse(ExternalValidatorClient.isCheckerError(Map.of("error", "Bad syntax", "syntax_error", true)));
+        assertFalse(ExternalValidatorClient.isCheckerError(Map.of("equal", "true")));
+    }
+
+    /**
+     * Echo the request body back as the response, unless told to stall or fail.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response cannot be written.
+     */
+    private void respond(final HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (stalled) {
+            try {
+                releaseStalledRequests.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (status != 200) {
+            body = "Internal Server Error".getBytes(StandardCharsets.UTF_8);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the ValidationResponseCache class.
+ */
+public class ValidationResponseCacheTest {
+    private static final String SHA_A = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String SHA_B = "9a1f3b2c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String QUESTION_ID = "page|question";
+    private static final String ANSWER = "{\"type\":\"formula\",\"pythonExpression\":\"x\"}";
+
+    private ValidationResponseCache cache;
+    private QuestionValidationResponse response;
+
+    @Before
+    public final void setUp() {
+        this.cache = new ValidationResponseCache(ValidationResponseCache.DEFAULT_MAXIMUM_SIZE);
+        this.response = new QuestionValidationResponse(QUESTION_ID, null, true, null, new Date());
+    }
+
+    @Test
+    public void isCacheable_deterministicValidators_cacheable() {
+        assertTrue(ValidationResponseCache.isCacheable(IsaacSymbolicValidator.class));
+        assertTrue(ValidationResponseCache.isCacheable(IsaacNumericValidator.class));
+        assertFalse(ValidationResponseCache.isCacheable(UnmarkedInputQuestionValidator.class));
+    }
+
+    @Test
+    public void getIfPresent_sameAnswer_cachedResponseReturned() {
+        cache.put(SHA_A, QUESTION_ID, ANSWER, response);
+        assertSame(response, cache.getIfPresent("test", SHA_A, QUESTION_ID, ANSWER));
+    }
+
+    @Test
+    public void getIfPresent_differentContentVersionOrAnswer_nothingReturned() {
+        cache.put(SHA_A, QUESTION_ID, ANSWER, response);
+        assertNull(cache.getIfPresent("test", SHA_B, QUESTION_ID, ANSWER));
+        assertNull(cache.getIfPresent("test", SHA_A, QUESTION_ID, ANSWER.replace("x", "y")));
+    }
+}
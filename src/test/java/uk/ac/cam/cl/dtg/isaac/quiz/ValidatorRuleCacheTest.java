@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.quiz;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacRegexMatchQuestion;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Choice;
+import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
+import uk.ac.cam.cl.dtg.isaac.dos.content.RegexPattern;
+import uk.ac.cam.cl.dtg.isaac.dos.content.StringChoice;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentCache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ValidatorRuleCache class.
+ */
+public class ValidatorRuleCacheTest {
+    private static final String SHA_A = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String SHA_B = "9a1f3b2c5eff4f53604fe9f1c724d3f387799db9";
+
+    private ContentCache contentCache;
+    private ValidatorRuleCache cache;
+    private AtomicInteger compilations;
+
+    @Before
+    public final void setUp() {
+        this.contentCache = new ContentCache(ContentCache.DEFAULT_MAX_WEIGHT_PER_VERSION, false);
+        this.cache = new ValidatorRuleCache(contentCache);
+        this.compilations = new AtomicInteger();
+    }
+
+    @Test
+    public void get_sameQuestionAndContentVersion_compiledOnce() {
+        Object first = cache.get(SHA_A, question("page|question"), Object.class, this::compile);
+        Object second = cache.get(SHA_A, question("page|question"), Object.class, this::compile);
+
+        assertSame(first, second);
+        assertEquals(1, compilations.get());
+    }
+
+    @Test
+    public void get_questionsFromDifferentContentVersions_compiledSeparately() {
+        Object first = cache.get(SHA_A, question("page|question"), Object.class, this::compile);
+        Object second = cache.get(SHA_B, question("page|question"), Object.class, this::compile);
+
+        // A question loaded before the live version changed must still get the rules of its own version:
+        assertNotSame(first, second);
+        assertSame(first, cache.get(SHA_A, question("page|question"), Object.class, this::compile));
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void get_contentVersionEvicted_recompiled() {
+        Object first = cache.get(SHA_A, question("page|question"), Object.class, this::compile);
+        contentCache.retainOnly(SHA_B);
+        Object second = cache.get(SHA_A, question("page|question"), Object.class, this::compile);
+
+        assertNotSame(first, second);
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void get_contentVersionUnknown_compiledEveryTime() {
+        cache.get(null, question("page|question"), Object.class, this::compile);
+        cache.get(null, question("page|question"), Object.class, this::compile);
+
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void get_uncached_compiledEveryTime() {
+        ValidatorRuleCache uncached = ValidatorRuleCache.uncached();
+        uncached.get(SHA_A, question("page|question"), Object.class, this::compile);
+        uncached.get(SHA_A, question("page|question"), Object.class, this::compile);
+
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void regexMatchValidator_freshCopiesOfQuestion_patternCompiledOnceAndMarkedCorrectly() {
+        IsaacRegexMatchValidator validator = new IsaacRegexMatchValidator(cache);
+
+        // Each attempt sees a fresh copy of the question, as it is deserialised for every attempt:
+        assertTrue(validator.validateQuestionResponse(regexQuestion(), SHA_A, stringChoice("Acceleration"))
+                .isCorrect());
+        assertFalse(validator.validateQuestionResponse(regexQuestion(), SHA_A, stringChoice("velocity")).isCorrect());
+        assertTrue(validator.validateQuestionResponse(regexQuestion(), SHA_A, stringChoice("acceleration"))
+                .isCorrect());
+    }
+
+    @Test
+    public void regexMatchValidator_invalidPattern_failsLikeUncompiledEveryTimeItIsReached() {
+        IsaacRegexMatchValidator validator = new IsaacRegexMatchValidator(cache);
+        RegexPattern invalid = new RegexPattern();
+        invalid.setValue("accel(eration");
+        invalid.setCaseInsensitive(false);
+        invalid.setMultiLineRegex(false);
+        invalid.setMatchWholeString(false);
+        invalid.setCorrect(false);
+
+        // The valid correct choice is checked before the invalid incorrect one, so still marks matching answers:
+        assertTrue(validator.validateQuestionResponse(regexQuestion(invalid), SHA_A, stringChoice("Acceleration"))
+                .isCorrect());
+        for (int i = 0; i < 2; i++) {
+            try {
+                validator.validateQuestionResponse(regexQuestion(invalid), SHA_A, stringChoice("velocity"));
+                fail("An answer reaching the invalid pattern should not be marked.");
+            } catch (PatternSyntaxException e) {
+                assertEquals("accel(eration", e.getPattern());
+            }
+        }
+    }
+
+    private Object compile(final Question question) {
+        compilations.incrementAndGet();
+        return new Object();
+    }
+
+    private static IsaacRegexMatchQuestion regexQuestion(final Choice... otherChoices) {
+        IsaacRegexMatchQuestion question = new IsaacRegexMatchQuestion();
+        question.setId("page|regex");
+        RegexPattern pattern = new RegexPattern();
+        pattern.setValue("^accel[ea]ration$");
+        pattern.setCaseInsensitive(true);
+        pattern.setMultiLineRegex(false);
+        pattern.setMatchWholeString(true);
+        pattern.setCorrect(true);
+        List<Choice> choices = Lists.newArrayList(pattern);
+        choices.addAll(Arrays.asList(otherChoices));
+        question.setChoices(choices);
+        return question;
+    }
+
+    private static StringChoice stringChoice(final String value) {
+        StringChoice choice = new StringChoice();
+        choice.setValue(value);
+        return choice;
+    }
+
+    private static Question question(final String id) {
+        Question question = new Question();
+        question.setId(id);
+        return question;
+    }
+}
@@ -74,7 +74,9 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -141,6 +143,7 @@ public class UserManagerTest {
         expect(this.dummyPropertiesLoader.getProperty(Constants.SESSION_EXPIRY_SECONDS_REMEMBERED)).andReturn("360")
                 .anyTimes();
         expect(this.dummyPropertiesLoader.getProperty(Constants.SEGUE_APP_ENVIRONMENT)).andReturn("DEV").anyTimes();
+        expect(this.dummyPropertiesLoader.getProperty(Constants.SESSION_CACHE_SECONDS)).andReturn(null).anyTimes();
         replay(this.dummyPropertiesLoader);
     }
 
@@ -223,6 +226,47 @@ public class UserManagerTest {
         verify(dummyQuestionDatabase, request, dummyMapper);
     }
 
+    /**
+     * Test that a recently validated session is not re-read from the database until it is invalidated.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void getUserFromSession_repeatedRequests_databaseReadOnlyAfterInvalidation() throws Exception {
+        UserAuthenticationManager authManager = buildTestAuthenticationManager();
+        HttpServletRequest request = createMock(HttpServletRequest.class);
+
+        Long validUserId = 533L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, 500);
+        String validDateString = sdf.format(calendar.getTime());
+
+        RegisteredUser returnUser = new RegisteredUser(validUserId, "TestFirstName", "TestLastName", "", Role.STUDENT,
+                new Date(), Gender.MALE, new Date(), null, null, null, null);
+        returnUser.setSessionToken(0);
+
+        Map<String, String> sessionInformation = getSessionInformationAsAMap(authManager, validUserId.toString(),
+                validDateString, returnUser.getSessionToken());
+        expect(request.getCookies()).andReturn(getCookieArray(sessionInformation)).anyTimes();
+        replay(request);
+
+        expect(dummyDatabase.getById(validUserId)).andReturn(returnUser).times(2);
+        replay(dummyDatabase);
+
+        // Act
+        RegisteredUser first = authManager.getUserFromSession(request, false);
+        RegisteredUser second = authManager.getUserFromSession(request, false);
+        authManager.invalidateCachedSessions(validUserId);
+        RegisteredUser third = authManager.getUserFromSession(request, false);
+
+        // Assert
+        assertEquals(validUserId, first.getId());
+        assertEquals(validUserId, second.getId());
+        assertNotSame("Cached users must not be shared between requests", first, second);
+        assertEquals(validUserId, third.getId());
+        verify(dummyDatabase);
+    }
+
     /**
      * Test that requesting authentication with a bad provider behaves as expected.
      * 
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ConcurrentMisuseMonitor class.
+ */
+public class ConcurrentMisuseMonitorTest {
+    private static final String EVENT = "TestEvent";
+    private static final int SOFT_THRESHOLD = 5;
+    private static final int HARD_THRESHOLD = 10;
+    private static final int INTERVAL_SECONDS = 60;
+
+    private AtomicLong now;
+    private CountingHandler handler;
+    private ConcurrentMisuseMonitor misuseMonitor;
+
+    @Before
+    public final void setUp() {
+        this.now = new AtomicLong(1_700_000_000_000L);
+        this.handler = new CountingHandler();
+        this.misuseMonitor = new ConcurrentMisuseMonitor(now::get);
+        this.misuseMonitor.registerHandler(EVENT, handler);
+    }
+
+    @Test
+    public void notifyEvent_hardThresholdExceeded_actionsFireOnceAndExceptionThrown() throws Exception {
+        for (int i = 0; i < HARD_THRESHOLD; i++) {
+            misuseMonitor.notifyEvent("agent", EVENT);
+        }
+        assertTrue(misuseMonitor.hasMisused("agent", EVENT));
+
+        try {
+            misuseMonitor.notifyEvent("agent", EVENT);
+            fail("Expected SegueResourceMisuseException");
+        } catch (SegueResourceMisuseException e) {
+            // Expected.
+        }
+        assertEquals(1, handler.softActions.get());
+        assertEquals(1, handler.hardActions.get());
+        assertFalse(misuseMonitor.hasMisused("another agent", EVENT));
+    }
+
+    @Test
+    public void notifyEvent_accountingIntervalPassed_countStartsAgain() throws Exception {
+        for (int i = 0; i < HARD_THRESHOLD; i++) {
+            misuseMonitor.notifyEvent("agent", EVENT);
+        }
+        now.addAndGet(INTERVAL_SECONDS * 1000L + 1);
+
+        assertFalse(misuseMonitor.hasMisused("agent", EVENT));
+        misuseMonitor.notifyEvent("agent", EVENT);
+        assertFalse(misuseMonitor.willHaveMisused("agent", EVENT, HARD_THRESHOLD - 2));
+        assertTrue(misuseMonitor.willHaveMisused("agent", EVENT, HARD_THRESHOLD - 1));
+    }
+
+    @Test
+    public void resetMisuseCount_afterMisuse_noLongerMisused() throws Exception {
+        misuseMonitor.notifyEvent("agent", EVENT, HARD_THRESHOLD);
+        assertTrue(misuseMonitor.hasMisused("agent", EVENT));
+
+        misuseMonitor.resetMisuseCount("agent", EVENT);
+        assertFalse(misuseMonitor.hasMisused("agent", EVENT));
+    }
+
+    @Test
+    public void notifyEvent_manyThreadsCrossThresholds_actionsFireExactlyOnce() throws Exception {
+        int threadCount = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger exceptions = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < HARD_THRESHOLD; i++) {
+                        try {
+                            misuseMonitor.notifyEvent("agent", EVENT);
+                        } catch (SegueResourceMisuseException e) {
+                            exceptions.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, handler.softActions.get());
+        assertEquals(1, handler.hardActions.get());
+        assertEquals(threadCount * HARD_THRESHOLD - HARD_THRESHOLD, exceptions.get());
+    }
+
+    /**
+     * A handler which counts how often its threshold actions run.
+     */
+    private static class CountingHandler implements IMisuseHandler {
+        private final AtomicInteger softActions = new AtomicInteger();
+        private final AtomicInteger hardActions = new AtomicInteger();
+
+        @Override
+        public Integer getSoftThreshold() {
+            return SOFT_THRESHOLD;
+        }
+
+        @Override
+        public Integer getHardThreshold() {
+            return HARD_THRESHOLD;
+        }
+
+        @Override
+        public Integer getAccountingIntervalInSeconds() {
+            return INTERVAL_SECONDS;
+        }
+
+        @Override
+        public void executeSoftThresholdAction(final String message) {
+            softActions.incrementAndGet();
+        }
+
+        @Override
+        public void executeHardThresholdAction(final String message) {
+            hardActions.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.userAlerts;
+
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserAlert;
+import uk.ac.cam.cl.dtg.isaac.dos.PgUserAlert;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for the PgUserAlertBus class.
+ */
+public class PgUserAlertBusTest {
+
+    @Test
+    public void decodeNotification_persistedAlert_roundTripsEveryField() throws Exception {
+        IUserAlert alert = new PgUserAlert(12L, 7L, "Your assignment has been marked", "assignments",
+                new Date(1000), new Date(2000), null, new Date(3000));
+
+        PgUserAlertBus.AlertNotification notification = PgUserAlertBus.decodeNotification(
+                PgUserAlertBus.encodeNotification(7L, alert, 5000));
+
+        assertEquals(7L, notification.userId);
+        assertEquals(5000, notification.publishedMillis);
+        assertEquals(Long.valueOf(12), notification.alert.getId());
+        assertEquals(Long.valueOf(7), notification.alert.getUserId());
+        assertEquals("Your assignment has been marked", notification.alert.getMessage());
+        assertEquals("assignments", notification.alert.getLink());
+        assertEquals(new Date(1000), notification.alert.getCreated());
+        assertEquals(new Date(2000), notification.alert.getSeen());
+        assertNull(notification.alert.getClicked());
+        assertEquals(new Date(3000), notification.alert.getDismissed());
+    }
+
+    @Test
+    public void decodeNotification_transientAlertWithoutId_idStaysNull() throws Exception {
+        IUserAlert alert = new PgUserAlert(null, 7L, "{\"dailyStreakRecord\":{}}", "progress", new Date(1000),
+                null, null, null);
+
+        PgUserAlertBus.AlertNotification notification = PgUserAlertBus.decodeNotification(
+                PgUserAlertBus.encodeNotification(7L, alert, 5000));
+
+        assertNull(notification.alert.getId());
+        assertEquals("{\"dailyStreakRecord\":{}}", notification.alert.getMessage());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the EmailTemplate class.
+ */
+public class EmailTemplateTest {
+    private Properties properties;
+
+    @Before
+    public final void setUp() {
+        this.properties = new Properties();
+        properties.put("givenName", "Ada");
+        properties.put("event.title", "Masterclass");
+        properties.put("event.title_HTML", "<b>Masterclass</b>");
+        properties.put("sig", "{{givenName}}");
+    }
+
+    @Test
+    public void render_knownTags_replacedWithoutRescanningValues() {
+        EmailTemplate template = EmailTemplate.parse("Hi {{givenName}}, see you at {{event.title}}. {{sig}}");
+
+        assertEquals("Hi Ada, see you at Masterclass. {{givenName}}", template.render(properties, false));
+    }
+
+    @Test
+    public void render_html_htmlPropertyPreferred() {
+        EmailTemplate template = EmailTemplate.parse("{{event.title}} for {{givenName}}");
+
+        assertEquals("<b>Masterclass</b> for Ada", template.render(properties, true));
+    }
+
+    @Test
+    public void render_noTagsOrNotQuiteTags_textUnchanged() {
+        assertEquals("", EmailTemplate.parse("").render(properties, false));
+        assertEquals("{{}} {{not a tag}} {givenName}",
+                EmailTemplate.parse("{{}} {{not a tag}} {givenName}").render(properties, false));
+    }
+
+    @Test
+    public void render_unknownTags_allReportedInException() {
+        try {
+            EmailTemplate.parse("{{unknown}} {{givenName}} {{missing}}").render(properties, false);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("{{unknown}}"));
+            assertTrue(e.getMessage().contains("{{missing}}"));
+        }
+    }
+
+    @Test
+    public void parse_sameTemplateText_parsedOnce() {
+        String text = "Dear {{givenName}}";
+        assertSame(EmailTemplate.parse(text), EmailTemplate.parse(new String(text.toCharArray())));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import org.apache.commons.beanutils.BeanMap;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
+import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the EmailTokenAccessor class.
+ */
+public class EmailTokenAccessorTest {
+
+    @Test
+    public void getProperties_registeredUser_sameAsBeanMap() {
+        RegisteredUserDTO user = new RegisteredUserDTO();
+        user.setId(7L);
+        user.setGivenName("Ada");
+        user.setFamilyName("Lovelace");
+        user.setEmail("ada@example.org");
+        user.setRole(Role.TEACHER);
+        user.setRegistrationDate(new Date(1000));
+        user.setEmailVerificationStatus(EmailVerificationStatus.VERIFIED);
+
+        Map<Object, Object> expected = new HashMap<>(new BeanMap(user));
+        // BeanMap also reads getClass(), which is never an email token:
+        expected.remove("class");
+
+        assertEquals(expected, new HashMap<>(EmailTokenAccessor.forClass(RegisteredUserDTO.class).getProperties(user)));
+    }
+}
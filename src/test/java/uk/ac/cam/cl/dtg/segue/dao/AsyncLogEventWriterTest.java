@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the AsyncLogEventWriter class.
+ */
+public class AsyncLogEventWriterTest {
+    private PostgresSqlDb database;
+    private Connection connection;
+    private PreparedStatement statement;
+    private Capture<String> query;
+
+    @Before
+    public final void setUp() throws Exception {
+        this.database = createNiceMock(PostgresSqlDb.class);
+        this.connection = createNiceMock(Connection.class);
+        this.statement = createNiceMock(PreparedStatement.class);
+        this.query = newCapture(CaptureType.ALL);
+
+        expect(database.getDatabaseConnection()).andReturn(connection).anyTimes();
+        expect(connection.prepareStatement(capture(query))).andReturn(statement).anyTimes();
+    }
+
+    @Test
+    public void close_eventsQueued_writtenInOneBatch() throws Exception {
+        statement.setString(anyInt(), anyString());
+        expectLastCall().anyTimes();
+        statement.setString(anyInt(), isNull());
+        expectLastCall().anyTimes();
+        statement.setBoolean(anyInt(), anyBoolean());
+        expectLastCall().anyTimes();
+        statement.setTimestamp(anyInt(), anyObject(Timestamp.class));
+        expectLastCall().anyTimes();
+        expect(statement.executeUpdate()).andReturn(3).once();
+        replay(database, connection, statement);
+
+        // A long flush interval means nothing can be written until the writer is closed:
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(database, 10, 10, 60000);
+        for (int i = 0; i < 3; i++) {
+            writer.submit(event("user" + i));
+        }
+        writer.close();
+
+        verify(statement);
+        assertEquals(3, query.getValue().split("::inet").length - 1);
+    }
+
+    @Test
+    public void submit_afterClose_writtenImmediately() throws Exception {
+        expect(statement.executeUpdate()).andReturn(1).once();
+        replay(database, connection, statement);
+
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(database, 10, 10, 60000);
+        writer.close();
+        writer.submit(event("user"));
+
+        verify(statement);
+        assertEquals(1, query.getValue().split("::inet").length - 1);
+    }
+
+    @Test
+    public void close_batchRejected_retriedInHalves() throws Exception {
+        // The first INSERT of all three events is rejected, then each half succeeds:
+        expect(statement.executeUpdate()).andThrow(new SQLException("invalid input syntax for type json", "22P02"))
+                .once();
+        expect(statement.executeUpdate()).andReturn(1).once();
+        expect(statement.executeUpdate()).andReturn(2).once();
+        replay(database, connection, statement);
+
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(database, 10, 10, 60000);
+        for (int i = 0; i < 3; i++) {
+            writer.submit(event("user" + i));
+        }
+        writer.close();
+
+        verify(statement);
+        List<Integer> rowsPerQuery = query.getValues().stream()
+                .map(q -> q.split("::inet").length - 1).collect(Collectors.toList());
+        assertEquals(Arrays.asList(3, 1, 2), rowsPerQuery);
+    }
+
+    @Test
+    public void close_connectionLost_batchNotRetried() throws Exception {
+        expect(statement.executeUpdate()).andThrow(new SQLException("connection failure", "08006")).once();
+        replay(database, connection, statement);
+
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(database, 10, 10, 60000);
+        for (int i = 0; i < 3; i++) {
+            writer.submit(event("user" + i));
+        }
+        writer.close();
+
+        verify(statement);
+    }
+
+    /**
+     * @param userId the user who caused the event.
+     * @return a queued log event for the user.
+     */
+    private static AsyncLogEventWriter.QueuedLogEvent event(final String userId) {
+        return new AsyncLogEventWriter.QueuedLogEvent(userId, false, "TEST_EVENT", null, "null", null,
+                new Timestamp(System.currentTimeMillis()));
+    }
+}
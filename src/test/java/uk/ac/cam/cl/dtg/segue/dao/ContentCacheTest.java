@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentCache;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ContentCache class.
+ */
+public class ContentCacheTest {
+    private static final String SHA_A = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String SHA_B = "9a1f3b2c5eff4f53604fe9f1c724d3f387799db9";
+
+    private ContentCache cache;
+
+    @Before
+    public final void setUp() {
+        this.cache = new ContentCache(ContentCache.DEFAULT_MAX_WEIGHT_PER_VERSION, false);
+    }
+
+    @Test
+    public void get_repeatedLookup_loaderCalledOnce() throws ContentManagerException {
+        AtomicInteger loads = new AtomicInteger();
+        ContentCache.Key<String> key = ContentCache.Key.of("test", String.class, "id");
+
+        assertEquals("value", cache.get(SHA_A, key, () -> "value" + (loads.incrementAndGet() > 1 ? "!" : "")));
+        assertEquals("value", cache.get(SHA_A, key, () -> "value" + (loads.incrementAndGet() > 1 ? "!" : "")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_loaderReturnsNull_nothingCached() throws ContentManagerException {
+        ContentCache.Key<String> key = ContentCache.Key.of("test", String.class, "missing");
+
+        assertNull(cache.get(SHA_A, key, () -> null));
+        assertNull(cache.getIfPresent(SHA_A, key));
+        assertEquals("found", cache.get(SHA_A, key, () -> "found"));
+    }
+
+    @Test
+    public void get_loaderThrows_contentManagerExceptionPropagated() {
+        ContentCache.Key<String> key = ContentCache.Key.of("test", String.class, "broken");
+        try {
+            cache.get(SHA_A, key, () -> {
+                throw new ContentManagerException("broken");
+            });
+            fail("Expected ContentManagerException");
+        } catch (ContentManagerException e) {
+            assertEquals("broken", e.getMessage());
+        }
+    }
+
+    @Test
+    public void get_sameParametersDifferentKind_keptSeparate() throws ContentManagerException {
+        ContentCache.Key<String> first = ContentCache.Key.of("first", String.class, "id");
+        ContentCache.Key<Integer> second = ContentCache.Key.of("second", Integer.class, "id");
+
+        cache.put(SHA_A, first, "value");
+        assertEquals(Integer.valueOf(7), cache.get(SHA_A, second, () -> 7));
+        assertEquals("value", cache.getIfPresent(SHA_A, first));
+    }
+
+    @Test
+    public void retainOnly_otherVersionsCached_otherVersionsEvicted() {
+        ContentCache.Key<String> key = ContentCache.Key.of("test", String.class, "id");
+        cache.put(SHA_A, key, "old");
+        cache.put(SHA_B, key, "new");
+
+        cache.retainOnly(SHA_B);
+
+        assertNull(cache.getIfPresent(SHA_A, key));
+        assertEquals("new", cache.getIfPresent(SHA_B, key));
+        assertTrue(cache.getCachedContentShas().contains(SHA_B));
+        assertEquals(1, cache.getCachedContentShas().size());
+    }
+}
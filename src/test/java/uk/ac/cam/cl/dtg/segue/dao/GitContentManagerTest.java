@@ -15,9 +15,12 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao;
 
+import org.elasticsearch.action.get.GetResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
@@ -25,10 +28,15 @@ import uk.ac.cam.cl.dtg.segue.database.GitDb;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Content;
 import uk.ac.cam.cl.dtg.isaac.dos.content.ContentBase;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -45,6 +53,11 @@ public class GitContentManagerTest {
 	private GitContentManager defaultGCM;
 
 	private static final String INITIAL_VERSION = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+	private static final String NEW_VERSION = "1c83a95d6f005e64715ff0a2d835e4f498800ec0";
+	private static final String CONTENT_INDEX = "content_index";
+	private static final long SNAPSHOT_LOAD_TIMEOUT_MILLISECONDS = 5000;
+
+	private final Map<String, Object> contentMetadata = new HashMap<>();
 
 	/**
 	 * Initial configuration of tests.
@@ -73,6 +86,178 @@ public class GitContentManagerTest {
 		}
 	}
 
+	/**
+	 * Test that once the snapshot of the live version is loaded, lookups by ID are answered from it without the
+	 * search provider, whether or not the content exists.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void getContentDOById_snapshotLoaded_hitsAndMissesAnsweredFromSnapshot() throws Exception {
+		Content question = createEmptyContentElement(new LinkedList<>(), "question_1");
+		GitContentManager snapshotGCM = createSnapshotGCM(true, INITIAL_VERSION);
+		expectSnapshotLoad(INITIAL_VERSION, question);
+		allowSearchUntilSnapshotLoaded();
+		replay(searchProvider, contentMapper);
+
+		awaitSnapshot(snapshotGCM, question);
+		// From now on, any request to the search provider other than for the content version fails the test:
+		expectOnlyVersionLookups();
+
+		assertSame(question, snapshotGCM.getContentDOById("question_1"));
+		assertNull(snapshotGCM.getContentDOById("question_2"));
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that without snapshot mode, no snapshot is loaded and lookups by ID go to the search provider.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void getContentDOById_snapshotDisabled_searchProviderQueried() throws Exception {
+		Content question = createEmptyContentElement(new LinkedList<>(), "question_1");
+		GitContentManager snapshotGCM = createSnapshotGCM(false, INITIAL_VERSION);
+		expect(searchProvider.termSearch(eq(CONTENT_INDEX), anyString(), eq("question_1"), anyString(), eq(0), eq(1),
+				anyObject())).andReturn(new ResultsWrapper<>(List.of("{}"), 1L)).once();
+		expect(contentMapper.mapFromStringListToContentList(List.of("{}"))).andReturn(List.of(question)).once();
+		replay(searchProvider, contentMapper);
+
+		assertSame(question, snapshotGCM.getContentDOById("question_1"));
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Test that when the live content version changes, the snapshot of the new version replaces the old one.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@Test
+	public void getContentDOById_contentVersionChanges_snapshotReplaced() throws Exception {
+		Content oldQuestion = createEmptyContentElement(new LinkedList<>(), "question_1");
+		Content newQuestion = createEmptyContentElement(new LinkedList<>(), "question_1");
+		GitContentManager snapshotGCM = createSnapshotGCM(true, INITIAL_VERSION);
+		expectSnapshotLoad(INITIAL_VERSION, oldQuestion);
+		expectSnapshotLoad(NEW_VERSION, newQuestion);
+		allowSearchUntilSnapshotLoaded();
+		replay(searchProvider, contentMapper);
+
+		awaitSnapshot(snapshotGCM, oldQuestion);
+		contentMetadata.put("version", NEW_VERSION);
+		awaitSnapshot(snapshotGCM, newQuestion);
+		expectOnlyVersionLookups();
+
+		assertEquals(NEW_VERSION, snapshotGCM.getCurrentContentSHA());
+		assertSame(newQuestion, snapshotGCM.getContentDOById("question_1"));
+		verify(searchProvider, contentMapper);
+	}
+
+	/**
+	 * Helper method for the snapshot tests, creates a GitContentManager configured from properties, reading the live
+	 * content version from contentMetadata.
+	 *
+	 * @param snapshotMode
+	 *            - whether snapshot mode is enabled
+	 * @param liveVersion
+	 *            - the initial live content version
+	 * @return An instance of GitContentManager
+	 * @throws Exception
+	 *             - test exception
+	 */
+	private GitContentManager createSnapshotGCM(final boolean snapshotMode, final String liveVersion)
+			throws Exception {
+		PropertiesLoader properties = createMock(PropertiesLoader.class);
+		expect(properties.getProperty(Constants.CONTENT_INDEX)).andReturn(CONTENT_INDEX).anyTimes();
+		expect(properties.getProperty(Constants.CONTENT_SNAPSHOT_MODE)).andReturn(String.valueOf(snapshotMode))
+				.anyTimes();
+		expect(properties.getProperty(anyString())).andReturn(null).anyTimes();
+		replay(properties);
+
+		contentMetadata.put("version", liveVersion);
+		GetResponse metadata = createMock(GetResponse.class);
+		expect(metadata.getSource()).andAnswer(() -> contentMetadata).anyTimes();
+		replay(metadata);
+		expect(searchProvider.getById(CONTENT_INDEX, Constants.CONTENT_INDEX_TYPE.METADATA.toString(), "general"))
+				.andReturn(metadata).anyTimes();
+
+		return new GitContentManager(database, searchProvider, contentMapper, properties);
+	}
+
+	/**
+	 * Helper method for the snapshot tests, expects a single scroll through the given version of the content.
+	 *
+	 * @param version
+	 *            - the content version to be loaded
+	 * @param content
+	 *            - the content objects in that version
+	 * @throws Exception
+	 *             - test exception
+	 */
+	@SuppressWarnings("unchecked")
+	private void expectSnapshotLoad(final String version, final Content... content) throws Exception {
+		List<String> batch = Collections.nCopies(content.length, "{}");
+		searchProvider.scrollAll(eq(version), anyString(), anyObject(), anyInt(), anyObject());
+		expectLastCall().andAnswer(() -> {
+			((Consumer<List<String>>) getCurrentArguments()[4]).accept(batch);
+			return null;
+		}).once();
+		expect(contentMapper.mapFromStringListToContentList(batch)).andReturn(List.of(content)).once();
+	}
+
+	/**
+	 * Helper method for the snapshot tests, lets lookups fall back to the search provider, finding nothing, until
+	 * the snapshot is ready. This must be recorded after the expected snapshot loads, so as not to match them.
+	 *
+	 * @throws Exception
+	 *             - test exception
+	 */
+	private void allowSearchUntilSnapshotLoaded() throws Exception {
+		expect(searchProvider.termSearch(eq(CONTENT_INDEX), anyString(), anyString(), anyString(), anyInt(), anyInt(),
+				anyObject())).andReturn(new ResultsWrapper<>(List.of(), 0L)).anyTimes();
+		expect(contentMapper.mapFromStringListToContentList(List.of())).andReturn(List.of()).anyTimes();
+	}
+
+	/**
+	 * Helper method for the snapshot tests, waits for the snapshot containing the given content to be loaded.
+	 *
+	 * @param gcm
+	 *            - the GitContentManager loading the snapshot
+	 * @param expected
+	 *            - a content object which is only in the awaited snapshot
+	 * @throws Exception
+	 *             - test exception
+	 */
+	private void awaitSnapshot(final GitContentManager gcm, final Content expected) throws Exception {
+		long deadline = System.currentTimeMillis() + SNAPSHOT_LOAD_TIMEOUT_MILLISECONDS;
+		while (gcm.getContentDOById(expected.getId(), true) != expected) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("The snapshot was not loaded in time.");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Helper method for the snapshot tests, replaces all expectations on the search provider with lookups of the
+	 * content version, so that any content query fails the test.
+	 */
+	private void expectOnlyVersionLookups() {
+		GetResponse metadata = createMock(GetResponse.class);
+		expect(metadata.getSource()).andAnswer(() -> contentMetadata).anyTimes();
+		replay(metadata);
+		reset(searchProvider, contentMapper);
+		try {
+			expect(searchProvider.getById(CONTENT_INDEX, Constants.CONTENT_INDEX_TYPE.METADATA.toString(), "general"))
+					.andReturn(metadata).anyTimes();
+		} catch (Exception e) {
+			fail("Unexpected exception while recording expectations.");
+		}
+		replay(searchProvider, contentMapper);
+	}
+
 	/**
 	 * Helper method for the
 	 * flattenContentObjects_flattenMultiTierObject_checkCorrectObjectReturned
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.ImmutableMap;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.GitDb;
+
+import java.io.IOException;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ContentFileCache class.
+ */
+public class ContentFileCacheTest {
+    private static final String OLD_SHA = "0b72984c5eff4f53604fe9f1c724d3f387799db9";
+    private static final String NEW_SHA = "1c83a95d6f005e64715ff0a2d835e4f498800ec0";
+    private static final String FIGURE_PATH = "content/questions/physics/figures/pulley.svg";
+    private static final ObjectId FIGURE_ID = ObjectId.fromString("2d94ba6e7a116f75826aa1b3e946f5a5a9911fd1");
+
+    private GitDb database;
+    private ContentFileCache fileCache;
+
+    @Before
+    public final void setUp() {
+        this.database = createMock(GitDb.class);
+        this.fileCache = new ContentFileCache(database, ContentFileCache.DEFAULT_MAX_BYTES, false);
+    }
+
+    @Test
+    public void getFileId_manyLookupsInOneVersion_treeWalkedOnce() throws Exception {
+        expect(database.getFileIdsByCommitSHA(OLD_SHA)).andReturn(ImmutableMap.of(FIGURE_PATH, FIGURE_ID)).once();
+        replay(database);
+
+        assertEquals(FIGURE_ID, fileCache.getFileId(OLD_SHA, FIGURE_PATH));
+        assertEquals(FIGURE_ID, fileCache.getFileId(OLD_SHA, FIGURE_PATH));
+        assertNull(fileCache.getFileId(OLD_SHA, "content/questions/physics/figures/missing.svg"));
+
+        verify(database);
+    }
+
+    @Test
+    public void getFileBytes_fileUnchangedBetweenVersions_readOnceAndShared() throws Exception {
+        byte[] figure = "<svg/>".getBytes();
+        expect(database.getFileIdsByCommitSHA(OLD_SHA)).andReturn(ImmutableMap.of(FIGURE_PATH, FIGURE_ID)).once();
+        expect(database.getFileIdsByCommitSHA(NEW_SHA)).andReturn(ImmutableMap.of(FIGURE_PATH, FIGURE_ID)).once();
+        expect(database.getFileSizeById(FIGURE_ID)).andReturn((long) figure.length).once();
+        expect(database.getFileBytesById(FIGURE_ID)).andReturn(figure).once();
+        replay(database);
+
+        assertSame(figure, fileCache.getFileBytes(fileCache.getFileId(OLD_SHA, FIGURE_PATH)));
+        assertSame(figure, fileCache.getFileBytes(fileCache.getFileId(NEW_SHA, FIGURE_PATH)));
+
+        verify(database);
+    }
+
+    @Test
+    public void getFileBytes_fileTooLargeToCache_readEveryTime() throws Exception {
+        ContentFileCache smallCache = new ContentFileCache(database, 1024, false);
+        byte[] document = new byte[512];
+        expect(database.getFileSizeById(FIGURE_ID)).andReturn((long) document.length).times(2);
+        expect(database.getFileBytesById(FIGURE_ID)).andReturn(document).times(2);
+        replay(database);
+
+        assertSame(document, smallCache.getFileBytes(FIGURE_ID));
+        assertSame(document, smallCache.getFileBytes(FIGURE_ID));
+
+        verify(database);
+    }
+
+    @Test
+    public void getFileId_unknownVersion_notRemembered() throws Exception {
+        expect(database.getFileIdsByCommitSHA(NEW_SHA)).andReturn(null).once();
+        expect(database.getFileIdsByCommitSHA(NEW_SHA)).andReturn(ImmutableMap.of(FIGURE_PATH, FIGURE_ID)).once();
+        replay(database);
+
+        try {
+            fileCache.getFileId(NEW_SHA, FIGURE_PATH);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+        // Once the version has been fetched, its files can be found:
+        assertEquals(FIGURE_ID, fileCache.getFileId(NEW_SHA, FIGURE_PATH));
+
+        verify(database);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.schools;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.users.School;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the SchoolIndex class.
+ */
+public class SchoolIndexTest {
+    private static final School CAMBRIDGE_ACADEMY =
+            new School("100001", "Cambridge Academy", "CB3 0FD", false, School.SchoolDataSource.GOVERNMENT_UK);
+    private static final School CAMBRIDGE_GRAMMAR =
+            new School("100002", "Cambridge Grammar School", "CB1 2AB", false, School.SchoolDataSource.GOVERNMENT_UK);
+    private static final School OXFORD_ACADEMY =
+            new School("100003", "Oxford Academy", "OX1 3QD", false, School.SchoolDataSource.GOVERNMENT_UK);
+    private static final School CAM_VALLEY =
+            new School("100005", "Cam Valley School", "CB4 1AA", false, School.SchoolDataSource.GOVERNMENT_UK);
+    private static final School CLOSED_SCHOOL =
+            new School("100004", "Cambridge Closed School", "CB3 9ZZ", true, School.SchoolDataSource.GOVERNMENT_UK);
+
+    private SchoolIndex index;
+
+    @Before
+    public final void setUp() {
+        this.index = new SchoolIndex(ImmutableList.of(CAMBRIDGE_ACADEMY, CAMBRIDGE_GRAMMAR, OXFORD_ACADEMY,
+                CAM_VALLEY, CLOSED_SCHOOL));
+    }
+
+    @Test
+    public void getByUrn_includingClosedSchools_schoolReturned() {
+        assertEquals(OXFORD_ACADEMY, index.getByUrn("100003"));
+        assertEquals(CLOSED_SCHOOL, index.getByUrn("100004"));
+        assertNull(index.getByUrn("999999"));
+    }
+
+    @Test
+    public void search_prefixOfEveryWord_onlySchoolsMatchingAllWordsReturned() {
+        assertEquals(ImmutableList.of(CAMBRIDGE_ACADEMY), index.search("camb acad", 10));
+        assertEquals(ImmutableList.of(CAMBRIDGE_ACADEMY, OXFORD_ACADEMY), index.search("Academy", 10));
+    }
+
+    @Test
+    public void search_postcodeWithOrWithoutSpace_schoolReturned() {
+        assertEquals(ImmutableList.of(CAMBRIDGE_ACADEMY), index.search("cb3 0fd", 10));
+        assertEquals(ImmutableList.of(CAMBRIDGE_ACADEMY), index.search("CB30F", 10));
+    }
+
+    @Test
+    public void search_exactWordMatches_rankedBeforePrefixMatches() {
+        assertEquals(ImmutableList.of(CAM_VALLEY, CAMBRIDGE_ACADEMY, CAMBRIDGE_GRAMMAR), index.search("cam", 10));
+        assertEquals(ImmutableList.of(CAM_VALLEY, CAMBRIDGE_ACADEMY), index.search("cam", 2));
+    }
+
+    @Test
+    public void search_closedOrUnmatchedSchools_notReturned() {
+        assertTrue(index.search("closed", 10).isEmpty());
+        assertTrue(index.search("bristol", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+}
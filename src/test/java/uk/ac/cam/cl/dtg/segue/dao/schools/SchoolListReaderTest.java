@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.schools;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
+import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the SchoolListReader class.
+ */
+public class SchoolListReaderTest {
+    private ISearchProvider searchProvider;
+
+    @Before
+    public final void setUp() {
+        this.searchProvider = createMock(ISearchProvider.class);
+    }
+
+    @Test
+    public void findSchoolById_indexFailedToLoad_notReloadedUntilRetryInterval() throws Exception {
+        // Once when constructed and once for the first load, but not again for the second lookup:
+        expect(searchProvider.getById(anyString(), anyString(), anyString()))
+                .andThrow(new SegueSearchException("Search unavailable")).times(2);
+        // For the first load, then for each lookup falling back to the search provider:
+        expect(searchProvider.hasIndex(anyString(), anyString())).andReturn(false).times(3);
+        replay(searchProvider);
+
+        SchoolListReader schoolListReader = new SchoolListReader(searchProvider);
+        for (int i = 0; i < 2; i++) {
+            try {
+                schoolListReader.findSchoolById("100001");
+                fail("Expected the lookup to fail without a school list.");
+            } catch (UnableToIndexSchoolsException e) {
+                // Expected.
+            }
+        }
+
+        verify(searchProvider);
+    }
+}
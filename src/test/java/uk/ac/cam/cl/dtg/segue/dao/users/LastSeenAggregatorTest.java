@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.users;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import java.util.Date;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the LastSeenAggregator class.
+ */
+public class LastSeenAggregatorTest {
+    private IUserDataManager database;
+    private LastSeenAggregator aggregator;
+
+    @Before
+    public final void setUp() {
+        this.database = createMock(IUserDataManager.class);
+        // A long interval, so only the flushes made by the tests happen:
+        this.aggregator = new LastSeenAggregator(database, 3600);
+    }
+
+    @After
+    public final void tearDown() {
+        aggregator.close();
+    }
+
+    @Test
+    public void flush_manyRequestsFromSameUsers_oneUpdateWithLatestDates() throws Exception {
+        database.updateUsersLastSeen(ImmutableMap.of(1L, new Date(3000), 2L, new Date(2000)));
+        expectLastCall().once();
+        replay(database);
+
+        aggregator.recordLastSeen(1L, new Date(1000));
+        aggregator.recordLastSeen(1L, new Date(3000));
+        aggregator.recordLastSeen(2L, new Date(2000));
+        aggregator.recordLastSeen(1L, new Date(2500));
+        aggregator.flush();
+        // Nothing is pending, so neither of these should write again:
+        aggregator.flush();
+        aggregator.close();
+
+        verify(database);
+    }
+
+    @Test
+    public void flush_databaseError_datesRetriedOnNextFlush() throws Exception {
+        database.updateUsersLastSeen(ImmutableMap.of(1L, new Date(1000)));
+        expectLastCall().andThrow(new SegueDatabaseException("Postgres exception"));
+        database.updateUsersLastSeen(ImmutableMap.of(1L, new Date(1000)));
+        expectLastCall().once();
+        replay(database);
+
+        aggregator.recordLastSeen(1L, new Date(1000));
+        try {
+            aggregator.flush();
+            fail("Expected SegueDatabaseException");
+        } catch (SegueDatabaseException e) {
+            // Expected.
+        }
+        aggregator.flush();
+
+        verify(database);
+    }
+}
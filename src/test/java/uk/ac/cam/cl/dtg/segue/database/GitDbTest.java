@@ -18,16 +18,26 @@ package uk.ac.cam.cl.dtg.segue.database;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.Random;
 
 import org.easymock.EasyMock;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import org.powermock.api.easymock.PowerMock;
 
 public class GitDbTest {
 
+	@Rule
+	public TemporaryFolder repoFolder = new TemporaryFolder();
+
 	@Test
 	public void gitDbOtherConstructor_checkForBadParameters_exceptionsShouldBeThrown() {
 		// Test that if you provide an empty string or null, an IllegalArgumentException gets thrown and git.open never gets called.
@@ -98,4 +108,28 @@ public class GitDbTest {
 
 		assertNull(db.getTreeWalk("sha", "")); // Blank path is explicitly allowed. This should not throw an exception. But in this case we've passed an invalid sha, so we should get null back.
 	}
+
+	@Test
+	public void getFileBytesById_blobAboveStreamingThreshold_readInFull() throws Exception {
+		// Lower JGit's threshold rather than writing a blob of the default 50MB:
+		WindowCacheConfig smallThreshold = new WindowCacheConfig();
+		smallThreshold.setStreamFileThreshold(1024);
+		smallThreshold.install();
+		try (Git git = Git.init().setDirectory(repoFolder.getRoot()).call()) {
+			byte[] contents = new byte[64 * 1024];
+			new Random(42).nextBytes(contents);
+			ObjectId blobId;
+			try (ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+				blobId = inserter.insert(Constants.OBJ_BLOB, contents);
+				inserter.flush();
+			}
+
+			GitDb db = new GitDb(git);
+
+			assertEquals(contents.length, db.getFileSizeById(blobId));
+			assertArrayEquals(contents, db.getFileBytesById(blobId));
+		} finally {
+			new WindowCacheConfig().install();
+		}
+	}
 }
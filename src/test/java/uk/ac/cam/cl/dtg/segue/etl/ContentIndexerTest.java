@@ -145,9 +145,16 @@ public class ContentIndexerTest {
         searchProvider.bulkIndex(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT_ERROR.toString()), anyObject());
         expectLastCall().once();
 
-        // Ensure at least one bulk index for general content is requested
-        searchProvider.bulkIndexWithIDs(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()), anyObject());
-		expectLastCall().once();
+        // Ensure general content is bulk indexed, serialising the batches as they are sent
+        List<Map.Entry<String, String>> indexedContent = new ArrayList<>();
+        searchProvider.bulkIndexWithIDs(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()),
+                anyObject(Iterator.class), anyInt());
+        expectLastCall().andAnswer(() -> {
+            Iterator<List<Map.Entry<String, String>>> batches =
+                    (Iterator<List<Map.Entry<String, String>>>) getCurrentArguments()[2];
+            batches.forEachRemaining(indexedContent::addAll);
+            return null;
+        }).once();
 
 		replay(searchProvider, contentMapper, objectMapper);
 
@@ -160,6 +167,9 @@ public class ContentIndexerTest {
                 INITIAL_VERSION, contents, someTagsList, someUnitsMap, publishedUnitsMap, someContentProblemsMap);
 
 		verify(searchProvider, contentMapper, objectMapper);
+        assertEquals(1, indexedContent.size());
+        assertEquals(uniqueObjectId, indexedContent.get(0).getKey());
+        assertEquals(uniqueObjectHash, indexedContent.get(0).getValue());
 	}
 
     /**
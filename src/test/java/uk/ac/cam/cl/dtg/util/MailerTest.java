@@ -0,0 +1,219 @@
+/*
+ * Copyright 2026 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.mail.internet.InternetAddress;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the Mailer class, which sends to a minimal SMTP server on the loopback interface.
+ */
+public class MailerTest {
+    private static final String FROM_ADDRESS = "noreply@test.isaacphysics.org";
+
+    private SmtpStub smtpServer;
+    private Mailer mailer;
+    private InternetAddress fromAddress;
+
+    @Before
+    public final void setUp() throws Exception {
+        this.smtpServer = new SmtpStub();
+        this.mailer = new Mailer("127.0.0.1", FROM_ADDRESS);
+        this.mailer.setSmtpPort(String.valueOf(smtpServer.getPort()));
+        this.fromAddress = new InternetAddress(FROM_ADDRESS, "Isaac Physics");
+    }
+
+    @After
+    public final void tearDown() throws Exception {
+        mailer.closeConnections();
+        smtpServer.close();
+    }
+
+    @Test
+    public void sendMail_severalMessagesOnOneThread_connectionReused() throws Exception {
+        mailer.sendPlainTextMail(new String[] {"student1@test.isaacphysics.org"}, fromAddress, null, null,
+                "First subject", "First message");
+        mailer.sendMultiPartMail(new String[] {"student2@test.isaacphysics.org"}, fromAddress, null, null,
+                "Second subject", "Second message", "<p>Second message</p>", null);
+        mailer.sendPlainTextMail(new String[] {"student3@test.isaacphysics.org"}, fromAddress, null, null,
+                "Third subject", "Third message");
+
+        assertEquals(3, smtpServer.getMessages().size());
+        assertEquals(1, smtpServer.getConnectionCount());
+        assertTrue(smtpServer.getMessages().get(0).contains("Subject: First subject"));
+        assertTrue(smtpServer.getMessages().get(1).contains("<p>Second message</p>"));
+    }
+
+    @Test
+    public void sendMail_serverClosesConnectionBetweenMessages_reconnectsAndSends() throws Exception {
+        smtpServer.setCloseAfterEachMessage(true);
+
+        mailer.sendPlainTextMail(new String[] {"student1@test.isaacphysics.org"}, fromAddress, null, null,
+                "First subject", "First message");
+        mailer.sendPlainTextMail(new String[] {"student2@test.isaacphysics.org"}, fromAddress, null, null,
+                "Second subject", "Second message");
+
+        assertEquals(2, smtpServer.getMessages().size());
+        assertEquals(2, smtpServer.getConnectionCount());
+    }
+
+    @Test
+    public void closeConnections_afterSending_sessionEndedWithQuit() throws Exception {
+        mailer.sendPlainTextMail(new String[] {"student1@test.isaacphysics.org"}, fromAddress, null, null,
+                "Subject", "Message");
+        mailer.closeConnections();
+
+        smtpServer.awaitQuit();
+        assertEquals(1, smtpServer.getQuitCount());
+    }
+
+    /**
+     * Just enough of an SMTP server to accept messages, recording each message and connection.
+     */
+    private static final class SmtpStub {
+        private final ServerSocket serverSocket;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connectionCount = new AtomicInteger();
+        private final AtomicInteger quitCount = new AtomicInteger();
+        private volatile boolean closeAfterEachMessage;
+
+        /**
+         * Start listening on a free port.
+         *
+         * @throws IOException if the port cannot be opened.
+         */
+        private SmtpStub() throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::acceptConnections, "smtp-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private List<String> getMessages() {
+            return messages;
+        }
+
+        private int getConnectionCount() {
+            return connectionCount.get();
+        }
+
+        private int getQuitCount() {
+            return quitCount.get();
+        }
+
+        private void setCloseAfterEachMessage(final boolean closeAfterEachMessage) {
+            this.closeAfterEachMessage = closeAfterEachMessage;
+        }
+
+        /**
+         * Wait briefly for a client to end its session, since QUIT is handled on the stub's thread.
+         *
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        private void awaitQuit() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (quitCount.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+        }
+
+        private void acceptConnections() {
+            try {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    connectionCount.incrementAndGet();
+                    Thread handler = new Thread(() -> handle(socket), "smtp-stub-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException e) {
+                // The stub has been closed.
+            }
+        }
+
+        /**
+         * @param socket a client connection, handled until the client quits or the stub drops it.
+         */
+        private void handle(final Socket socket) {
+            try (Socket client = socket;
+                 BufferedReader in = new BufferedReader(
+                         new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+                 OutputStream out = client.getOutputStream()
+            ) {
+                reply(out, "220 localhost SMTP stub");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase();
+                    if ("QUIT".equals(command)) {
+                        quitCount.incrementAndGet();
+                        reply(out, "221 Bye");
+                        return;
+                    } else if ("DATA".equals(command)) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder message = new StringBuilder();
+                        while ((line = in.readLine()) != null && !".".equals(line)) {
+                            message.append(line).append("\n");
+                        }
+                        messages.add(message.toString());
+                        reply(out, "250 OK");
+                        if (closeAfterEachMessage) {
+                            return;
+                        }
+                    } else {
+                        // EHLO, MAIL, RCPT, RSET and NOOP all succeed.
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (SocketException e) {
+                // The client or the stub closed the connection.
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void reply(final OutputStream out, final String response) throws IOException {
+            out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+}